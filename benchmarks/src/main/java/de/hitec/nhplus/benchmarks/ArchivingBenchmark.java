@@ -0,0 +1,183 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.archiving.ArchivingService;
+import de.hitec.nhplus.archiving.CaregiverArchivingService;
+import de.hitec.nhplus.archiving.PatientArchivingService;
+import de.hitec.nhplus.archiving.TreatmentArchivingService;
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.Dao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.EntityCache;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The three <code>ArchivingService</code> implementations on the generated data. Every invocation is one full run,
+ * e.g. locking all records older than {@value #YEARS} years. The records it changed are set back to
+ * <code>ACTIVE</code> with their original status change date afterwards, outside the measurement, since caregivers
+ * are selected by that date. <code>lockInChunks</code> works like the archiving job: it finds the candidates chunk
+ * by chunk and transitions each chunk.
+ * <p>
+ * <code>readAllAndFilter</code> is the baseline the SQL queries replaced: it reads the whole table with
+ * <code>readAll</code> and keeps the records older than {@value #YEARS} years in Java, like
+ * <code>findRecordsOlderThan</code> did before. Compare it with <code>streamRecordsOlderThan</code>, which returns
+ * the same records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchivingBenchmark {
+
+    private static final int YEARS = 10;
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"patient", "treatment", "caregiver"})
+    public String service;
+
+    private ArchivingService<?> archivingService;
+    private Dao<?> dao;
+    /** Date the baseline compares with the cutoff, as the old implementation of the service did. */
+    private Function<Object, LocalDate> dateOf;
+    private String table;
+    private String idColumn;
+    private final List<Long> changedIds = new ArrayList<>();
+    /** Original status change dates of the active records, by ID. */
+    private final Map<Long, String> statusChangeDates = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp(DatabaseState database) throws SQLException {
+        switch (this.service) {
+            case "patient" -> {
+                this.archivingService = new PatientArchivingService();
+                this.dao = DaoFactory.getDaoFactory().createPatientDAO();
+                this.dateOf = record -> LocalDate.parse(((Patient) record).getDateOfBirth());
+                this.table = "patient";
+                this.idColumn = "pid";
+            }
+            case "treatment" -> {
+                this.archivingService = new TreatmentArchivingService();
+                this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+                this.dateOf = record -> LocalDate.parse(((Treatment) record).getDate());
+                this.table = "treatment";
+                this.idColumn = "tid";
+            }
+            case "caregiver" -> {
+                this.archivingService = new CaregiverArchivingService();
+                this.dao = DaoFactory.getDaoFactory().createCaregiverDAO();
+                this.dateOf = record -> ((Caregiver) record).getStatusChangeDate();
+                this.table = "caregiver";
+                this.idColumn = "cid";
+            }
+            default -> throw new IllegalArgumentException("Unbekannter Dienst: " + this.service);
+        }
+        try (Statement statement = ConnectionBuilder.getReadConnection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT " + this.idColumn + ", status_change_date FROM "
+                     + this.table + " WHERE status = 'ACTIVE'")) {
+            while (result.next()) {
+                this.statusChangeDates.put(result.getLong(1), result.getString(2));
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void restore() throws SQLException {
+        if (this.changedIds.isEmpty()) {
+            return;
+        }
+        long[] ids = new long[this.changedIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = this.changedIds.get(i);
+        }
+        this.archivingService.transition(ids, RecordStatus.LOCKED, RecordStatus.ACTIVE);
+        ConnectionBuilder.inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("UPDATE " + this.table
+                    + " SET status_change_date = ? WHERE " + this.idColumn + " = ?")) {
+                for (long id : ids) {
+                    statement.setString(1, this.statusChangeDates.get(id));
+                    statement.setLong(2, id);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+        this.changedIds.clear();
+    }
+
+    @Benchmark
+    public int lockAllOlderThan() {
+        List<Long> ids = this.archivingService.lockAllOlderThan(YEARS);
+        this.changedIds.addAll(ids);
+        return ids.size();
+    }
+
+    @Benchmark
+    public int lockInChunks() throws SQLException {
+        long afterId = 0;
+        long[] ids;
+        while ((ids = this.archivingService.findLockCandidates(YEARS, afterId, CHUNK_SIZE)).length > 0) {
+            this.changedIds.addAll(this.archivingService.transition(ids, RecordStatus.ACTIVE, RecordStatus.LOCKED));
+            afterId = ids[ids.length - 1];
+        }
+        return this.changedIds.size();
+    }
+
+    @Benchmark
+    public int readAllAndFilter() throws SQLException {
+        // The old implementation had no entity cache in front of readAll
+        for (EntityCache<?> cache : EntityCache.getAll()) {
+            cache.invalidateAll();
+        }
+        LocalDate cutoffDate = LocalDate.now().minusYears(YEARS);
+        List<Object> result = new ArrayList<>();
+        for (Object record : this.dao.readAll()) {
+            if (this.dateOf.apply(record).isBefore(cutoffDate)) {
+                result.add(record);
+            }
+        }
+        return result.size();
+    }
+
+    @Benchmark
+    public long streamRecordsOlderThan() {
+        try (Stream<?> records = this.archivingService.streamRecordsOlderThan(YEARS)) {
+            return records.count();
+        }
+    }
+
+    @Benchmark
+    public int findRecordsByStatus() {
+        return this.archivingService.findRecordsByStatus(RecordStatus.LOCKED).size();
+    }
+}
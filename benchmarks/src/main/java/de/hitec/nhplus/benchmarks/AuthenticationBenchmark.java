@@ -0,0 +1,65 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.CaregiverDaoImpl;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.utils.PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login latency: <code>CaregiverDaoImpl.authenticate</code> for a correct and a wrong password and an unknown user,
+ * and the PBKDF2 verification on its own. The iteration count is the one the <code>PasswordHasher</code> uses in the
+ * application, calibrated or set with <code>nhplus.password.iterations</code>. The size of the database hardly
+ * matters here, so <code>-p treatments=10000</code> is enough.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private CaregiverDaoImpl dao;
+    private PasswordHasher hasher;
+    private String storedHash;
+
+    @Setup(Level.Trial)
+    public void setUp(DatabaseState database) {
+        this.dao = (CaregiverDaoImpl) DaoFactory.getDaoFactory().createCaregiverDAO();
+        this.hasher = PasswordHasher.getInstance();
+        this.storedHash = this.hasher.hash(BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public Caregiver authenticate() {
+        return this.dao.authenticate(BenchmarkDatabase.USERNAME, BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public Caregiver authenticateWrongPassword() {
+        return this.dao.authenticate(BenchmarkDatabase.USERNAME, "falsch");
+    }
+
+    @Benchmark
+    public Caregiver authenticateUnknownUser() {
+        return this.dao.authenticate("unbekannt", BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return this.hasher.verify(BenchmarkDatabase.PASSWORD, this.storedHash);
+    }
+}
@@ -0,0 +1,84 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.utils.SetUpDB;
+import de.hitec.nhplus.utils.SyntheticDataGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Generated databases the benchmarks run against. Every size gets its own SQLite file in
+ * <code>nhplus.benchmark.dir</code> (default <code>target/benchmark-db</code>), which is generated on first use and
+ * reused by later runs as long as it holds the expected number of patients.
+ * <p>
+ * The data comes from the {@link SyntheticDataGenerator} with a fixed seed: {@value #YEARS} years of history,
+ * {@value #TREATMENTS_PER_YEAR} treatments per patient and year, one caregiver per 1000 treatments, 10 % of the
+ * records locked and 5 % deleted. The number of patients is chosen so that the database holds about the requested
+ * number of treatments. One extra caregiver with a password is added for the authentication benchmarks.
+ */
+public final class BenchmarkDatabase {
+
+    /** Username and password of the caregiver the authentication benchmarks log in with. */
+    public static final String USERNAME = "benchmark";
+    public static final String PASSWORD = "benchmark123";
+
+    static final int YEARS = 15;
+    static final int TREATMENTS_PER_YEAR = 50;
+
+    private static final long SEED = 42;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Points the <code>ConnectionBuilder</code> at the database with about the given number of treatments,
+     * generating it if necessary. Has to be called before the first connection is opened.
+     *
+     * @param treatments Requested number of treatments.
+     * @return The actual number of treatments in the database.
+     */
+    public static int open(int treatments) throws SQLException {
+        Path directory = Path.of(System.getProperty("nhplus.benchmark.dir", "target/benchmark-db"));
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setProperty("nhplus.db.path", directory.resolve("nhplus-" + treatments + ".db").toString());
+
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(SEED)
+                .years(YEARS)
+                .treatmentsPerPatientPerYear(TREATMENTS_PER_YEAR)
+                .caregivers(Math.max(10, treatments / 1000))
+                .statusFractions(0.1, 0.05);
+        int patients = (int) Math.max(10, Math.round(treatments / generator.expectedTreatmentsPerPatient()));
+        generator.patients(patients);
+
+        SchemaMigrator.migrate();
+        if (count("patient") != patients) {
+            System.out.println("Erzeuge Benchmark-Datenbank mit etwa " + treatments + " Behandlungen...");
+            SetUpDB.wipeDb(ConnectionBuilder.getConnection());
+            SchemaMigrator.migrate();
+            generator.generate();
+            DaoFactory.getDaoFactory().createCaregiverDAO()
+                    .create(new Caregiver(0, USERNAME, PASSWORD, "Bench", "Mark", "0000000000"));
+        }
+        return count("treatment");
+    }
+
+    static int count(String table) throws SQLException {
+        try (Statement statement = ConnectionBuilder.getConnection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CRUD paths of <code>DaoImp</code> on the treatment table: single against batched inserts, reads by ID and
+ * updates. The create benchmarks report the time per row. Rows created during an iteration are deleted after it,
+ * so the database keeps its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoCrudBenchmark {
+
+    private static final int ROWS = 100;
+
+    private TreatmentDao dao;
+    private int maxTid;
+    private List<Treatment> rows;
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp(DatabaseState database) {
+        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        this.maxTid = database.treatmentCount;
+        this.rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            this.rows.add(new Treatment(0, 1, 1, LocalDate.now(), LocalTime.of(9, 0), LocalTime.of(9, 30),
+                    "Benchmark", "Zeile " + i, RecordStatus.ACTIVE, LocalDate.now()));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteCreated() throws SQLException {
+        long[] ids = new long[this.createdIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = this.createdIds.get(i);
+        }
+        this.dao.deleteAllById(ids);
+        this.createdIds.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createSingle() throws SQLException {
+        for (Treatment treatment : this.rows) {
+            this.createdIds.add(this.dao.create(treatment));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createBatched() throws SQLException {
+        for (long id : this.dao.createAll(this.rows)) {
+            this.createdIds.add(id);
+        }
+    }
+
+    @Benchmark
+    public Treatment read() throws SQLException {
+        return this.dao.read(randomTid());
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        Treatment treatment = this.dao.read(randomTid());
+        treatment.setRemarks("Geändert " + System.nanoTime());
+        this.dao.update(treatment);
+    }
+
+    private long randomTid() {
+        return 1 + ThreadLocalRandom.current().nextInt(this.maxTid);
+    }
+}
@@ -0,0 +1,35 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+
+/**
+ * The generated database a benchmark runs against, one per requested number of treatments. Every parameter combination runs in its own
+ * forked JVM, so the static <code>ConnectionBuilder</code> only ever sees one database.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+
+    @Param({"10000", "100000", "1000000"})
+    public int treatments;
+
+    /** Actual number of treatments, which is close to the requested one; their IDs run from 1 to this number. */
+    int treatmentCount;
+
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        this.treatmentCount = BenchmarkDatabase.open(this.treatments);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        ConnectionBuilder.closeConnection();
+    }
+}
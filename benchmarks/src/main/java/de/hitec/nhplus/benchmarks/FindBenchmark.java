@@ -0,0 +1,85 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.CaregiverDaoImpl;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The status and date queries of the DAOs the archiving is built on. They run in SQL on the
+ * <code>(status, date)</code> indexes, so their cost should follow the number of matching rows rather than the size
+ * of the table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private PatientDao patientDao;
+    private TreatmentDao treatmentDao;
+    private CaregiverDaoImpl caregiverDao;
+    private LocalDate cutoff;
+
+    @Setup(Level.Trial)
+    public void setUp(DatabaseState database) {
+        this.patientDao = DaoFactory.getDaoFactory().createPatientDAO();
+        this.treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
+        this.caregiverDao = (CaregiverDaoImpl) DaoFactory.getDaoFactory().createCaregiverDAO();
+        this.cutoff = LocalDate.now().minusYears(10);
+    }
+
+    @Benchmark
+    public List<Patient> patientsByStatus() throws SQLException {
+        return this.patientDao.findByStatus(RecordStatus.LOCKED);
+    }
+
+    @Benchmark
+    public List<Patient> patientsOlderThan() throws SQLException {
+        return this.patientDao.findOlderThan(this.cutoff);
+    }
+
+    @Benchmark
+    public List<Treatment> treatmentsByStatus() throws SQLException {
+        return this.treatmentDao.findByStatus(RecordStatus.LOCKED);
+    }
+
+    @Benchmark
+    public List<Treatment> treatmentsOlderThan() throws SQLException {
+        return this.treatmentDao.findOlderThan(this.cutoff);
+    }
+
+    @Benchmark
+    public long[] treatmentIdsOlderThan() throws SQLException {
+        return this.treatmentDao.findIdsOlderThan(RecordStatus.ACTIVE, this.cutoff, 0, CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public List<Caregiver> caregiversByStatus() throws SQLException {
+        return this.caregiverDao.findByStatus(RecordStatus.LOCKED);
+    }
+}
@@ -0,0 +1,117 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Mapping of treatment rows with <code>TreatmentDao.getListFromResultSet</code>. <code>scanPage</code> runs the same
+ * query as <code>mapPage</code> but only steps through the rows, so the difference between both is the cost of the
+ * mapping itself. <code>streamAll</code> maps the whole table row by row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreatmentMappingBenchmark {
+
+    private static final String PAGE_SQL = "SELECT * FROM treatment WHERE tid > ? ORDER BY tid LIMIT ?";
+
+    @Param({"100", "10000"})
+    public int pageSize;
+
+    private MappingDao dao;
+    private int maxTid;
+
+    @Setup(Level.Trial)
+    public void setUp(DatabaseState database) {
+        this.dao = new MappingDao(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
+        this.maxTid = Math.max(1, database.treatmentCount - this.pageSize);
+    }
+
+    @Benchmark
+    public List<Treatment> mapPage() throws SQLException {
+        return this.dao.mapPage(randomStart(), this.pageSize);
+    }
+
+    @Benchmark
+    public int scanPage() throws SQLException {
+        return this.dao.scanPage(randomStart(), this.pageSize);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long streamAll() throws SQLException {
+        try (Stream<Treatment> treatments = this.dao.streamAll()) {
+            return treatments.count();
+        }
+    }
+
+    private long randomStart() {
+        return ThreadLocalRandom.current().nextInt(this.maxTid);
+    }
+
+    /**
+     * Gives the benchmark access to the protected mapping of the DAO.
+     */
+    static class MappingDao extends TreatmentDao {
+
+        MappingDao(Connection connection, Connection readConnection) {
+            super(connection, readConnection);
+        }
+
+        List<Treatment> mapPage(long afterId, int limit) throws SQLException {
+            PreparedStatement statement = prepareReadStatement(PAGE_SQL);
+            try {
+                statement.setLong(1, afterId);
+                statement.setInt(2, limit);
+                try (ResultSet result = statement.executeQuery()) {
+                    return getListFromResultSet(result);
+                }
+            } finally {
+                releaseStatement(statement);
+            }
+        }
+
+        int scanPage(long afterId, int limit) throws SQLException {
+            PreparedStatement statement = prepareReadStatement(PAGE_SQL);
+            try {
+                statement.setLong(1, afterId);
+                statement.setInt(2, limit);
+                int rows = 0;
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        rows++;
+                    }
+                }
+                return rows;
+            } finally {
+                releaseStatement(statement);
+            }
+        }
+    }
+}
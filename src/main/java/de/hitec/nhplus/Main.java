@@ -1,13 +1,19 @@
 package de.hitec.nhplus;
 
+import de.hitec.nhplus.archiving.ArchivingLogger;
+import de.hitec.nhplus.archiving.ArchivingScheduler;
 import de.hitec.nhplus.controller.MainWindowController;
 import de.hitec.nhplus.controller.LoginViewController;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.ConnectionBuilder;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.DatabaseInitializer;
 import de.hitec.nhplus.gui.LoginView;
+import de.hitec.nhplus.service.AccountLockService;
+import de.hitec.nhplus.service.LoginLogService;
 import de.hitec.nhplus.utils.AuthorizationManager;
+import de.hitec.nhplus.utils.PasswordHasher;
 
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -22,11 +28,26 @@ import java.io.IOException;
 public class Main extends Application {
 
     private Stage primaryStage;
+    private ArchivingScheduler archivingScheduler;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
 
+        // Calibrating the password hash takes a moment, it runs while the rest of the application starts
+        PasswordHasher.calibrateAsync();
+
+        // As client of an NHPlus server, the server owns the database and runs the archiving
+        if (!DaoFactory.getDaoFactory().isRemote()) {
+            // Bring the schema up to date once, before the first DAO is used
+            DatabaseInitializer.initializeDatabase();
+            LoginLogService.importLogFile();
+
+            // Daily archiving runs in the background for as long as the application is open, if it is enabled
+            this.archivingScheduler = new ArchivingScheduler();
+            this.archivingScheduler.startScheduler();
+        }
+
      
         if (AuthorizationManager.getInstance().isLoggedOut()) {
     
@@ -64,15 +85,6 @@ public class Main extends Application {
             controller.setMain(this);
             controller.setPrimaryStage(this.primaryStage);
 
-          
-            try {
-                // Use DatabaseInitializer to ensure all required tables are created
-                DatabaseInitializer.initializeDatabase();
-                System.out.println("Alle Tabellen wurden initialisiert.");
-            } catch (Exception e) {
-                System.err.println("Fehler bei der Tabelleninitialisierung: " + e.getMessage());
-                e.printStackTrace();
-            }
 
        
             String title = "NHPlus";
@@ -87,16 +99,29 @@ public class Main extends Application {
             this.primaryStage.setResizable(true);
             this.primaryStage.show();
 
-            this.primaryStage.setOnCloseRequest(event -> {
-                ConnectionBuilder.closeConnection();
-                Platform.exit();
-                System.exit(0);
-            });
+            // Platform.exit() runs stop(), which writes everything that is still queued
+            this.primaryStage.setOnCloseRequest(event -> Platform.exit());
         } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
+    /**
+     * Stops the background work and closes the database when the application ends, whichever window was closed
+     * last. The writer threads are daemons, so anything still queued would otherwise be lost.
+     */
+    @Override
+    public void stop() {
+        if (this.archivingScheduler != null) {
+            this.archivingScheduler.stopScheduler();
+        }
+        AccountLockService.shutdown();
+        // Also writes the cell edits and login attempts that are still queued
+        AsyncDao.shutdown();
+        ArchivingLogger.shutdown();
+        ConnectionBuilder.closeConnection();
+    }
+
     /**
      * Returns the primary stage for window operations
      * @return the primary stage
@@ -2,22 +2,89 @@ package de.hitec.nhplus.archiving;
 
 import de.hitec.nhplus.model.RecordStatus;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Logs archiving and deletion actions
+ * Logs archiving and deletion actions to <code>archiving.log</code>.
+ * <p>
+ * Callers only format their line and put it into a bounded in-memory queue. A background thread takes all queued
+ * lines at once and appends them with a single write to one open <code>FileChannel</code> (group commit), so a bulk
+ * run of thousands of status changes does not open and close the file once per record. If the queue is full, the
+ * caller writes its line itself, so no entry is ever dropped.
+ * <p>
+ * The file is rotated when the date changes or when it exceeds the maximum size. Rotated segments are named
+ * <code>archiving-yyyy-MM-dd.log.gz</code> (with a counter if there are several on one day). A rotation only renames
+ * the file; the background thread compresses the segment afterwards, so writers never wait for gzip. All queued
+ * lines are written, and all rotated segments compressed, when the application shuts down.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.archiving.log.queueSize</code> - capacity of the queue, default 10000</li>
+ *     <li><code>nhplus.archiving.log.maxSize</code> - size in bytes after which the file is rotated, default 10 MB</li>
+ *     <li><code>nhplus.archiving.log.sync</code> - force every batch to disk, default <code>true</code></li>
+ * </ul>
  */
 public class ArchivingLogger {
     private static final Logger LOGGER = Logger.getLogger(ArchivingLogger.class.getName());
     private static final String LOG_FILE = "archiving.log";
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Set once the logger has been created, so {@link #shutdown()} does not create it just to close it.
+     */
+    private static volatile boolean started;
+
+    private final Path file;
+    private final BlockingQueue<String> queue;
+    private final long maxSize;
+    private final boolean sync;
+    private final Thread flusher;
+    private final Queue<Path> uncompressedSegments = new ConcurrentLinkedQueue<>();
+
+    private FileChannel channel;
+    private LocalDate segmentDate;
+    private volatile boolean closed;
+    private long enqueued;
+    private long written;
+
+    private ArchivingLogger(Path file) {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<>(getQueueSize());
+        this.maxSize = getMaxSize();
+        this.sync = Boolean.parseBoolean(System.getProperty("nhplus.archiving.log.sync", "true"));
+        this.flusher = new Thread(this::flushLoop, "nhplus-archiving-log");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "nhplus-archiving-log-shutdown"));
+        started = true;
+    }
 
     /**
      * Logs a status change
@@ -37,14 +104,235 @@ public class ArchivingLogger {
                 newStatus,
                 user);
 
-        LOGGER.log(Level.INFO, logMessage);
+        LOGGER.log(Level.FINE, logMessage);
+        Holder.INSTANCE.append(logMessage);
+    }
+
+    /**
+     * Blocks until all lines logged so far are written to the file.
+     */
+    public static void flush() throws InterruptedException {
+        Holder.INSTANCE.awaitWritten();
+    }
+
+    /**
+     * Writes all queued lines and closes the file. Lines logged afterwards are written directly by the caller.
+     * Is also called by a shutdown hook, so calling it explicitly is only needed for an orderly shutdown. Does
+     * nothing if the logger was never used, instead of starting it just to close it.
+     */
+    public static void shutdown() {
+        if (started) {
+            Holder.INSTANCE.close();
+        }
+    }
+
+    private void append(String line) {
+        synchronized (this) {
+            this.enqueued++;
+        }
+        if (!this.closed && this.queue.offer(line)) {
+            if (this.closed) {
+                // close() may have drained the queue before the line arrived
+                drainAndWrite();
+            }
+            return;
+        }
+        // Queue full or flusher stopped: the caller pays for the write instead of losing the line
+        writeBatch(List.of(line));
+        if (this.closed) {
+            compressSegments();
+        }
+    }
+
+    private void drainAndWrite() {
+        List<String> rest = new ArrayList<>();
+        this.queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+    }
+
+    private void flushLoop() {
+        List<String> batch = new ArrayList<>();
+        while (!this.closed || !this.queue.isEmpty()) {
+            try {
+                String first = this.queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.queue.drainTo(batch);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                compressSegments();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
 
-        // Write to file
-        try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, true))) {
-            writer.println(logMessage);
+    /**
+     * Appends the given lines with one write. Rotates the file first, if necessary.
+     */
+    private synchronized void writeBatch(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(System.lineSeparator());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            rotateIfNecessary(buffer.remaining());
+            FileChannel channel = openChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (this.sync) {
+                channel.force(false);
+            }
         } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error writing to log", e);
+            LOGGER.log(Level.SEVERE, "Error writing to log, " + lines.size() + " entries lost", e);
+            closeChannel();
+        } finally {
+            this.written += lines.size();
+            notifyAll();
         }
     }
-}
 
+    private FileChannel openChannel() throws IOException {
+        if (this.channel == null) {
+            this.channel = FileChannel.open(this.file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.segmentDate = this.channel.size() > 0 ? lastModifiedDate() : LocalDate.now();
+        }
+        return this.channel;
+    }
+
+    private void rotateIfNecessary(int bytes) throws IOException {
+        if (!Files.exists(this.file) || Files.size(this.file) == 0) {
+            return;
+        }
+        if (this.segmentDate == null) {
+            this.segmentDate = lastModifiedDate();
+        }
+        boolean dateChanged = this.segmentDate.isBefore(LocalDate.now());
+        boolean tooLarge = Files.size(this.file) + bytes > this.maxSize;
+        if (!dateChanged && !tooLarge) {
+            return;
+        }
+        closeChannel();
+        Path segment = nextSegmentName(this.segmentDate);
+        Files.move(this.file, segment);
+        this.uncompressedSegments.add(segment);
+        this.segmentDate = null;
+    }
+
+    /**
+     * Compresses the segments rotated so far. Runs without holding the lock of {@link #writeBatch}, so logging
+     * continues into the new file meanwhile.
+     */
+    private void compressSegments() {
+        Path segment;
+        while ((segment = this.uncompressedSegments.poll()) != null) {
+            compress(segment);
+        }
+    }
+
+    /**
+     * Replaces a rotated segment by its gzip-compressed version. The plain segment is kept if compression fails.
+     */
+    private void compress(Path segment) {
+        Path target = segment.resolveSibling(segment.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not compress rotated log " + segment, e);
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException ignored) {
+                // the incomplete archive is overwritten by the next attempt
+            }
+            return;
+        }
+        try {
+            Files.delete(segment);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete rotated log " + segment, e);
+        }
+    }
+
+    private Path nextSegmentName(LocalDate date) {
+        String prefix = "archiving-" + date;
+        Path candidate = this.file.resolveSibling(prefix + ".log");
+        for (int counter = 1; Files.exists(candidate)
+                || Files.exists(candidate.resolveSibling(candidate.getFileName() + ".gz")); counter++) {
+            candidate = this.file.resolveSibling(prefix + "." + counter + ".log");
+        }
+        return candidate;
+    }
+
+    private LocalDate lastModifiedDate() throws IOException {
+        Instant modified = Files.getLastModifiedTime(this.file).toInstant();
+        return LocalDate.ofInstant(modified, ZoneId.systemDefault());
+    }
+
+    private synchronized void awaitWritten() throws InterruptedException {
+        long target = this.enqueued;
+        while (this.written < target) {
+            wait();
+        }
+    }
+
+    private void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.flusher.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            drainAndWrite();
+            closeChannel();
+        }
+        compressSegments();
+    }
+
+    private synchronized void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing log", e);
+            }
+            this.channel = null;
+        }
+    }
+
+    private static int getQueueSize() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.archiving.log.queueSize", String.valueOf(DEFAULT_QUEUE_SIZE))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_QUEUE_SIZE;
+        }
+    }
+
+    private static long getMaxSize() {
+        try {
+            return Math.max(1, Long.parseLong(
+                    System.getProperty("nhplus.archiving.log.maxSize", String.valueOf(DEFAULT_MAX_SIZE))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_MAX_SIZE;
+        }
+    }
+
+    /**
+     * Creates the logger and starts its flusher thread on first use.
+     */
+    private static final class Holder {
+        private static final ArchivingLogger INSTANCE = new ArchivingLogger(Paths.get(LOG_FILE));
+    }
+}
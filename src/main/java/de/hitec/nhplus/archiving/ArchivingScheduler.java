@@ -1,134 +1,274 @@
 package de.hitec.nhplus.archiving;
 
-import de.hitec.nhplus.model.Caregiver;
-import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.datastorage.ArchivingJobDao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.metrics.Counter;
+import de.hitec.nhplus.metrics.LatencyHistogram;
+import de.hitec.nhplus.metrics.Metrics;
+import de.hitec.nhplus.model.ArchivingRun;
 import de.hitec.nhplus.model.RecordStatus;
-import de.hitec.nhplus.model.Treatment;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Scheduler for automatic archiving and deletion
+ * Scheduler for automatic archiving and deletion.
+ * <p>
+ * Once a day, at a configurable time of day, every archiving job locks the active records of its entity type that
+ * are older than 10 years. A job works in chunks: it reads the next ids in ascending order, changes their status
+ * with one set-based update and stores the last processed id as checkpoint in the database. A run that is
+ * interrupted, e.g. because the application is closed, is resumed from its checkpoint; this happens right at the
+ * next start of the scheduler instead of at the next scheduled time. Only one run can be active at a time, further
+ * requests are refused. Duration and throughput of every run are logged and stored in <code>archiving_run</code>.
+ * <p>
+ * The scheduler is off unless it is switched on explicitly. The patient job stays off even then, unless it is
+ * switched on by its own property: it selects patients by their date of birth, not by the date they left the home,
+ * so it would lock practically every resident. It may only be enabled once that criterion is replaced.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.archiving.enabled</code> - <code>true</code> starts the daily runs, default
+ *     <code>false</code></li>
+ *     <li><code>nhplus.archiving.time</code> - time of day of the daily run, <code>HH:mm</code>, default
+ *     <code>00:00</code></li>
+ *     <li><code>nhplus.archiving.chunkSize</code> - records per chunk, default 1000</li>
+ *     <li><code>nhplus.archiving.&lt;job&gt;.enabled</code> - <code>false</code> leaves out the job
+ *     <code>treatment</code>, <code>caregiver</code> or <code>patient</code>; default <code>true</code>, except
+ *     for <code>patient</code></li>
+ * </ul>
  */
 public class ArchivingScheduler {
     private static final Logger LOGGER = Logger.getLogger(ArchivingScheduler.class.getName());
-    private final ArchivingService<Treatment> treatmentArchivingService;
-    private final ArchivingService<Caregiver> caregiverArchivingService;
-    private final ArchivingService<Patient> patientArchivingService;
+    private static final int RETENTION_YEARS = 10;
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final LocalTime DEFAULT_RUN_TIME = LocalTime.MIDNIGHT;
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
 
-    private Timer timer;
+    private final Map<String, ArchivingService<?>> jobs = new LinkedHashMap<>();
+    private final Map<String, ArchivingRun> lastRuns = new ConcurrentHashMap<>();
+    private final ArchivingJobDao jobDao;
+    private final LocalTime runTime;
+    private final int chunkSize;
+
+    private ScheduledExecutorService executor;
 
     public ArchivingScheduler() {
-        this.treatmentArchivingService = new TreatmentArchivingService();
-        this.caregiverArchivingService = new CaregiverArchivingService();
-        this.patientArchivingService = new PatientArchivingService();
+        addJob("treatment", new TreatmentArchivingService(), true);
+        addJob("caregiver", new CaregiverArchivingService(), true);
+        addJob("patient", new PatientArchivingService(), false);
+        this.jobDao = DaoFactory.getDaoFactory().createArchivingJobDao();
+        this.runTime = getRunTime();
+        this.chunkSize = getChunkSize();
+    }
 
-        this.timer = new Timer(true);
+    /**
+     * @return <code>true</code>, if the daily runs are switched on with <code>nhplus.archiving.enabled</code>.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("nhplus.archiving.enabled");
     }
 
     /**
-     * Starts the scheduler for daily checks.
+     * Starts the scheduler for daily runs, if it {@link #isEnabled() is enabled}. An interrupted run is resumed
+     * immediately.
      */
-    public void startScheduler() {
-        // Run daily at midnight
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                runArchivingTasks();
-            }
-        }, 0, 24 * 60 * 60 * 1000); // Once per day
+    public synchronized void startScheduler() {
+        if (executor != null) {
+            return;
+        }
+        if (!isEnabled()) {
+            LOGGER.log(Level.INFO, "Automatic archiving is disabled, set nhplus.archiving.enabled=true to enable it");
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-archiving");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (hasInterruptedRun()) {
+            LOGGER.log(Level.INFO, "Resuming interrupted archiving run");
+            executor.execute(this::runAndReschedule);
+        } else {
+            scheduleNextRun();
+        }
     }
 
     /**
-     * Stops the scheduler.
+     * Stops the scheduler. A running job is interrupted after its current chunk and resumed at the next start.
      */
-    public void stopScheduler() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+    public synchronized void stopScheduler() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
         }
     }
 
     /**
-     * Executes the archiving tasks.
+     * Executes all archiving jobs, unless a run is already active.
+     *
+     * @return <code>false</code>, if the run was refused because another one is still active.
      */
-    public void runArchivingTasks() {
-        LOGGER.log(Level.INFO, "Starting archiving process...");
+    public boolean runArchivingTasks() {
+        if (!RUNNING.compareAndSet(false, true)) {
+            LOGGER.log(Level.WARNING, "Archiving process is already running, request ignored");
+            return false;
+        }
+        try {
+            LOGGER.log(Level.INFO, "Starting archiving process...");
+            for (Map.Entry<String, ArchivingService<?>> job : jobs.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                try {
+                    runJob(job.getKey(), job.getValue());
+                } catch (SQLException e) {
+                    LOGGER.log(Level.SEVERE, "Archiving job " + job.getKey() + " failed, it resumes with the next run", e);
+                }
+            }
+            LOGGER.log(Level.INFO, "Archiving process completed");
+            return true;
+        } finally {
+            RUNNING.set(false);
+        }
+    }
 
-        // 1. Behandlungen archivieren
-        processTreatments();
+    /**
+     * @return The last run of every job since the application was started.
+     */
+    public List<ArchivingRun> getLastRuns() {
+        return new ArrayList<>(lastRuns.values());
+    }
 
-        // 2. Pfleger archivieren
-        processCaregivers();
+    /**
+     * Locks the old records of one entity type chunk by chunk, starting after the checkpoint of an interrupted run.
+     */
+    private void runJob(String job, ArchivingService<?> service) throws SQLException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        long processed = 0;
+        long changed = 0;
+        boolean completed = false;
+        try {
+            long lastId = jobDao.readCheckpoint(job);
+            if (lastId > 0) {
+                LOGGER.log(Level.INFO, "Archiving job {0} resumes after ID {1}", new Object[]{job, lastId});
+            }
+            LatencyHistogram chunkLatency = Metrics.histogram("archiving." + job + ".chunk");
+            Counter processedRecords = Metrics.counter("archiving." + job + ".processed");
+            Counter changedRecords = Metrics.counter("archiving." + job + ".changed");
+            while (!Thread.currentThread().isInterrupted()) {
+                long chunkStart = System.nanoTime();
+                long[] ids = service.findLockCandidates(RETENTION_YEARS, lastId, chunkSize);
+                if (ids.length == 0) {
+                    completed = true;
+                    break;
+                }
+                int chunkChanged = service.transition(ids, RecordStatus.ACTIVE, RecordStatus.LOCKED).size();
+                chunkLatency.recordSince(chunkStart);
+                processedRecords.add(ids.length);
+                changedRecords.add(chunkChanged);
+                changed += chunkChanged;
+                processed += ids.length;
+                lastId = ids[ids.length - 1];
+                jobDao.saveCheckpoint(job, lastId);
+            }
+            if (completed) {
+                jobDao.clearCheckpoint(job);
+            }
+        } finally {
+            recordRun(new ArchivingRun(job, startedAt, Duration.ofNanos(System.nanoTime() - start), processed, changed,
+                    completed));
+        }
+    }
 
-        processPatients();
+    /**
+     * Adds a job to the runs, unless it is switched off with <code>nhplus.archiving.&lt;job&gt;.enabled</code>.
+     */
+    private void addJob(String job, ArchivingService<?> service, boolean enabledByDefault) {
+        String enabled = System.getProperty("nhplus.archiving." + job + ".enabled");
+        if (enabled == null ? enabledByDefault : Boolean.parseBoolean(enabled)) {
+            jobs.put(job, service);
+        } else if (isEnabled()) {
+            LOGGER.log(Level.INFO, "Archiving job {0} is disabled, set nhplus.archiving.{0}.enabled=true to enable it",
+                    job);
+        }
+    }
 
+    private void recordRun(ArchivingRun run) {
+        lastRuns.put(run.getJob(), run);
+        LOGGER.log(Level.INFO, "Archiving run {0}", run);
+        try {
+            jobDao.recordRun(run);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not store statistics of archiving run " + run.getJob(), e);
+        }
+    }
 
-        LOGGER.log(Level.INFO, "Archiving process completed");
+    private void runAndReschedule() {
+        try {
+            runArchivingTasks();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Archiving process failed", e);
+        } finally {
+            scheduleNextRun();
+        }
     }
 
-    private void processTreatments() {
-        // Find records that are older than 10 years
-        List<Treatment> oldTreatments = treatmentArchivingService.findRecordsOlderThan(10);
-        LOGGER.log(Level.INFO, "Found: {0} treatments that are older than 10 years", oldTreatments.size());
-
-        // For each old record, check if it is already locked
-        for (Treatment treatment : oldTreatments) {
-            if (treatment.getStatus() == RecordStatus.ACTIVE) {
-                // If active, lock it
-                boolean locked = treatmentArchivingService.lockRecord(treatment.getTid());
-                if (locked) {
-                    LOGGER.log(Level.INFO, "Treatment with ID {0} was automatically locked", treatment.getTid());
-                }
-            } else if (treatment.getStatus() == RecordStatus.LOCKED) {
-                // If already locked, do nothing
-                LOGGER.log(Level.FINE, "Treatment with ID {0} is already locked", treatment.getTid());
-            }
+    private synchronized void scheduleNextRun() {
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = now.with(runTime);
+        if (!next.isAfter(now)) {
+            next = now.plusDays(1).with(runTime);
         }
+        LOGGER.log(Level.INFO, "Next archiving run at {0}", next);
+        executor.schedule(this::runAndReschedule, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private void processCaregivers() {
-        // Find caregivers that are older than 10 years
-        List<Caregiver> oldCaregivers = caregiverArchivingService.findRecordsOlderThan(10);
-        LOGGER.log(Level.INFO, "Found: {0} caregivers that are older than 10 years", oldCaregivers.size());
-
-        // For each old caregiver, check if it is already locked
-        for (Caregiver caregiver : oldCaregivers) {
-            if (caregiver.getStatus() == RecordStatus.ACTIVE) {
-                // If active, lock it
-                boolean locked = caregiverArchivingService.lockRecord(caregiver.getCid());
-                if (locked) {
-                    LOGGER.log(Level.INFO, "Caregiver with ID {0} was automatically locked", caregiver.getCid());
+    private boolean hasInterruptedRun() {
+        try {
+            for (String job : jobs.keySet()) {
+                if (jobDao.readCheckpoint(job) > 0) {
+                    return true;
                 }
-            } else if (caregiver.getStatus() == RecordStatus.LOCKED) {
-                // If already locked, do nothing
-                LOGGER.log(Level.FINE, "Caregiver with ID {0} is already locked", caregiver.getCid());
             }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read archiving checkpoints", e);
         }
+        return false;
     }
 
-    private void processPatients() {
-        // Patienten finden, die älter als 10 Jahre sind
-        List<Patient> oldPatients = patientArchivingService.findRecordsOlderThan(10);
-        LOGGER.log(Level.INFO, "Gefunden: {0} Patienten, die älter als 10 Jahre sind", oldPatients.size());
-
-        // Für jeden alten Patienten prüfen, ob er bereits gesperrt ist
-        for (Patient patient : oldPatients) {
-            if (patient.getStatus() == RecordStatus.ACTIVE) {
-                // Falls aktiv, sperren
-                boolean locked = patientArchivingService.lockRecord(patient.getPid());
-                if (locked) {
-                    LOGGER.log(Level.INFO, "Patient mit ID {0} wurde automatisch gesperrt", patient.getPid());
-                }
-            } else if (patient.getStatus() == RecordStatus.LOCKED) {
-                // Falls bereits gesperrt, nichts tun
-                LOGGER.log(Level.FINE, "Patient mit ID {0} ist bereits gesperrt", patient.getPid());
-            }
+    private static LocalTime getRunTime() {
+        try {
+            return LocalTime.parse(System.getProperty("nhplus.archiving.time", DEFAULT_RUN_TIME.toString()));
+        } catch (DateTimeParseException exception) {
+            return DEFAULT_RUN_TIME;
         }
+    }
 
+    private static int getChunkSize() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.archiving.chunkSize", String.valueOf(DEFAULT_CHUNK_SIZE))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_CHUNK_SIZE;
+        }
     }
-}
\ No newline at end of file
+}
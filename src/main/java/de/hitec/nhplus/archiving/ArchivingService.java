@@ -2,8 +2,10 @@ package de.hitec.nhplus.archiving;
 
 import de.hitec.nhplus.model.RecordStatus;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Generic interface for archiving management
@@ -25,6 +27,37 @@ public interface ArchivingService<T> {
      */
     boolean deleteRecord(long id);
 
+    /**
+     * Locks all active records that are older than the specified number of years, using set-based updates instead
+     * of one read and update per record. Every locked record is logged.
+     * @param years Number of years
+     * @return IDs of the locked records
+     */
+    List<Long> lockAllOlderThan(int years);
+
+    /**
+     * Changes the status of the given records from one status to another, using set-based updates. Records that do
+     * not have the expected status are skipped. Every changed record is logged.
+     * @param ids IDs of the records
+     * @param from Expected current status
+     * @param to New status
+     * @return IDs of the changed records
+     * @throws SQLException If the update failed; none of the records was changed then
+     */
+    List<Long> transition(long[] ids, RecordStatus from, RecordStatus to) throws SQLException;
+
+    /**
+     * Finds the IDs of active records that are older than the specified number of years, in ascending order and one
+     * chunk at a time. Together with {@link #transition} this lets a job lock records chunk by chunk and resume
+     * after the last processed ID.
+     * @param years Number of years
+     * @param afterId Last ID of the previous chunk, or 0 for the first one
+     * @param limit Maximum number of IDs
+     * @return The found IDs, ascending
+     * @throws SQLException on database problems
+     */
+    long[] findLockCandidates(int years, long afterId, int limit) throws SQLException;
+
     /**
      * Finds all records that are older than the specified number of years.
      * @param years Number of years
@@ -39,6 +72,23 @@ public interface ArchivingService<T> {
      */
     List<T> findRecordsByStatus(RecordStatus status);
 
+    /**
+     * Streams all records that are older than the specified number of years. The filter runs in SQL, so only the
+     * matching rows are read; the stream has to be closed. A database error while reading throws a
+     * <code>DataAccessException</code>.
+     * @param years Number of years
+     * @return Stream of found records
+     */
+    Stream<T> streamRecordsOlderThan(int years);
+
+    /**
+     * Streams all records with a specific status. The filter runs in SQL, so only the matching rows are read; the
+     * stream has to be closed. A database error while reading throws a <code>DataAccessException</code>.
+     * @param status Status to search for
+     * @return Stream of found records
+     */
+    Stream<T> streamRecordsByStatus(RecordStatus status);
+
     /**
      * Logs a status change.
      * @param id ID of the affected record
@@ -1,7 +1,9 @@
 package de.hitec.nhplus.archiving;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DataAccessException;
 import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.metrics.ArchivingChunkEvent;
 import de.hitec.nhplus.model.RecordStatus;
 import de.hitec.nhplus.model.Caregiver;
 
@@ -11,6 +13,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of ArchivingService for Caregivers
@@ -40,9 +44,12 @@ public class CaregiverArchivingService implements ArchivingService<Caregiver> {
                 return false;
             }
 
+            // Only the status columns are written, and only if nobody changed the status in the meantime
             RecordStatus oldStatus = caregiver.getStatus();
-            caregiver.setStatus(RecordStatus.LOCKED);
-            dao.update(caregiver);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.LOCKED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Caregiver with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Log status change
             logStatusChange(id, oldStatus, RecordStatus.LOCKED, LocalDate.now(), "System");
@@ -83,9 +90,12 @@ public class CaregiverArchivingService implements ArchivingService<Caregiver> {
                 return false;
             }
 
+            // Only the status columns are written, and only if nobody changed the status in the meantime
             RecordStatus oldStatus = caregiver.getStatus();
-            caregiver.setStatus(RecordStatus.DELETED);
-            dao.update(caregiver);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.DELETED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Caregiver with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Log status change
             logStatusChange(id, oldStatus, RecordStatus.DELETED, LocalDate.now(), "System");
@@ -98,40 +108,79 @@ public class CaregiverArchivingService implements ArchivingService<Caregiver> {
     }
 
     @Override
-    public List<Caregiver> findRecordsOlderThan(int years) {
-        List<Caregiver> result = new ArrayList<>();
+    public List<Long> lockAllOlderThan(int years) {
         try {
-            List<Caregiver> allCaregivers = dao.readAll();
             LocalDate cutoffDate = LocalDate.now().minusYears(years);
-
-            for (Caregiver caregiver : allCaregivers) {
-                // For caregivers, we might need a different criterion than treatment date
-                // For now, let's use the status change date as a proxy
-                if (caregiver.getStatusChangeDate().isBefore(cutoffDate)) {
-                    result.add(caregiver);
-                }
-            }
+            List<Long> ids = dao.changeStatusOlderThan(cutoffDate, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            logStatusChanges(ids, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            return ids;
         } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error locking caregivers older than " + years + " years", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public List<Long> transition(long[] ids, RecordStatus from, RecordStatus to) throws SQLException {
+        ArchivingChunkEvent event = new ArchivingChunkEvent("caregiver", from.name(), to.name(), ids.length);
+        event.begin();
+        List<Long> changedIds = dao.changeStatus(ids, from, to);
+        logStatusChanges(changedIds, from, to);
+        event.changed = changedIds.size();
+        event.commit();
+        return changedIds;
+    }
+
+    @Override
+    public long[] findLockCandidates(int years, long afterId, int limit) throws SQLException {
+        return dao.findIdsOlderThan(RecordStatus.ACTIVE, LocalDate.now().minusYears(years), afterId, limit);
+    }
+
+    private void logStatusChanges(List<Long> ids, RecordStatus from, RecordStatus to) {
+        LocalDate today = LocalDate.now();
+        for (long id : ids) {
+            logStatusChange(id, from, to, today, "System");
+        }
+    }
+
+    @Override
+    public List<Caregiver> findRecordsOlderThan(int years) {
+        try (Stream<Caregiver> records = streamRecordsOlderThan(years)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
             LOGGER.log(Level.SEVERE, "Error searching for old caregivers", e);
+            return new ArrayList<>();
         }
-        return result;
     }
 
     @Override
     public List<Caregiver> findRecordsByStatus(RecordStatus status) {
-        List<Caregiver> result = new ArrayList<>();
+        try (Stream<Caregiver> records = streamRecordsByStatus(status)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for caregivers with status " + status, e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Stream<Caregiver> streamRecordsOlderThan(int years) {
         try {
-            List<Caregiver> allCaregivers = dao.readAll();
+            return dao.streamOlderThan(LocalDate.now().minusYears(years));
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for old caregivers", e);
+            return Stream.empty();
+        }
+    }
 
-            for (Caregiver caregiver : allCaregivers) {
-                if (caregiver.getStatus() == status) {
-                    result.add(caregiver);
-                }
-            }
+    @Override
+    public Stream<Caregiver> streamRecordsByStatus(RecordStatus status) {
+        try {
+            return dao.streamByStatus(status);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error searching for caregivers with status " + status, e);
+            return Stream.empty();
         }
-        return result;
     }
 
     @Override
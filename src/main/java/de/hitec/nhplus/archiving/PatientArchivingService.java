@@ -1,7 +1,9 @@
 package de.hitec.nhplus.archiving;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DataAccessException;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.metrics.ArchivingChunkEvent;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.RecordStatus;
 
@@ -11,6 +13,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of ArchivingService for Patients
@@ -40,9 +44,12 @@ public class PatientArchivingService implements ArchivingService<Patient> {
                 return false;
             }
 
+            // Nur die Statusspalten schreiben, und nur, wenn der Status nicht zwischenzeitlich geändert wurde
             RecordStatus oldStatus = patient.getStatus();
-            patient.setStatus(RecordStatus.LOCKED);
-            dao.update(patient);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.LOCKED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Patient with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Status-Änderung protokollieren
             logStatusChange(id, oldStatus, RecordStatus.LOCKED, LocalDate.now(), "System");
@@ -83,9 +90,12 @@ public class PatientArchivingService implements ArchivingService<Patient> {
                 return false;
             }
 
+            // Nur die Statusspalten schreiben, und nur, wenn der Status nicht zwischenzeitlich geändert wurde
             RecordStatus oldStatus = patient.getStatus();
-            patient.setStatus(RecordStatus.DELETED);
-            dao.update(patient);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.DELETED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Patient with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Status-Änderung protokollieren
             logStatusChange(id, oldStatus, RecordStatus.DELETED, LocalDate.now(), "System");
@@ -98,39 +108,79 @@ public class PatientArchivingService implements ArchivingService<Patient> {
     }
 
     @Override
-    public List<Patient> findRecordsOlderThan(int years) {
-        List<Patient> result = new ArrayList<>();
+    public List<Long> lockAllOlderThan(int years) {
         try {
-            List<Patient> allPatients = dao.readAll();
             LocalDate cutoffDate = LocalDate.now().minusYears(years);
-
-            for (Patient patient : allPatients) {
-                LocalDate birthDate = LocalDate.parse(patient.getDateOfBirth());
-                if (birthDate.isBefore(cutoffDate)) {
-                    result.add(patient);
-                }
-            }
+            List<Long> ids = dao.changeStatusBornBefore(cutoffDate, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            logStatusChanges(ids, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            return ids;
         } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error locking patients older than " + years + " years", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public List<Long> transition(long[] ids, RecordStatus from, RecordStatus to) throws SQLException {
+        ArchivingChunkEvent event = new ArchivingChunkEvent("patient", from.name(), to.name(), ids.length);
+        event.begin();
+        List<Long> changedIds = dao.changeStatus(ids, from, to);
+        logStatusChanges(changedIds, from, to);
+        event.changed = changedIds.size();
+        event.commit();
+        return changedIds;
+    }
+
+    @Override
+    public long[] findLockCandidates(int years, long afterId, int limit) throws SQLException {
+        return dao.findIdsBornBefore(RecordStatus.ACTIVE, LocalDate.now().minusYears(years), afterId, limit);
+    }
+
+    private void logStatusChanges(List<Long> ids, RecordStatus from, RecordStatus to) {
+        LocalDate today = LocalDate.now();
+        for (long id : ids) {
+            logStatusChange(id, from, to, today, "System");
+        }
+    }
+
+    @Override
+    public List<Patient> findRecordsOlderThan(int years) {
+        try (Stream<Patient> records = streamRecordsOlderThan(years)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
             LOGGER.log(Level.SEVERE, "Error searching for old patients", e);
+            return new ArrayList<>();
         }
-        return result;
     }
 
     @Override
     public List<Patient> findRecordsByStatus(RecordStatus status) {
-        List<Patient> result = new ArrayList<>();
+        try (Stream<Patient> records = streamRecordsByStatus(status)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for patients with status " + status, e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Stream<Patient> streamRecordsOlderThan(int years) {
         try {
-            List<Patient> allPatients = dao.readAll();
+            return dao.streamBornBefore(LocalDate.now().minusYears(years));
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for old patients", e);
+            return Stream.empty();
+        }
+    }
 
-            for (Patient patient : allPatients) {
-                if (patient.getStatus() == status) {
-                    result.add(patient);
-                }
-            }
+    @Override
+    public Stream<Patient> streamRecordsByStatus(RecordStatus status) {
+        try {
+            return dao.streamByStatus(status);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error searching for patients with status " + status, e);
+            return Stream.empty();
         }
-        return result;
     }
 
     @Override
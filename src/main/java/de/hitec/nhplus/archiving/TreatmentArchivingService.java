@@ -1,7 +1,9 @@
 package de.hitec.nhplus.archiving;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DataAccessException;
 import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.metrics.ArchivingChunkEvent;
 import de.hitec.nhplus.model.RecordStatus;
 import de.hitec.nhplus.model.Treatment;
 
@@ -11,6 +13,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of ArchivingService for Treatments
@@ -40,9 +44,12 @@ public class TreatmentArchivingService implements ArchivingService<Treatment> {
                 return false;
             }
 
+            // Only the status columns are written, and only if nobody changed the status in the meantime
             RecordStatus oldStatus = treatment.getStatus();
-            treatment.setStatus(RecordStatus.LOCKED);
-            dao.update(treatment);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.LOCKED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Treatment with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Log status change
             logStatusChange(id, oldStatus, RecordStatus.LOCKED, LocalDate.now(), "System");
@@ -82,9 +89,12 @@ public class TreatmentArchivingService implements ArchivingService<Treatment> {
                 return false;
             }
 
+            // Only the status columns are written, and only if nobody changed the status in the meantime
             RecordStatus oldStatus = treatment.getStatus();
-            treatment.setStatus(RecordStatus.DELETED);
-            dao.update(treatment);
+            if (dao.changeStatus(new long[]{id}, oldStatus, RecordStatus.DELETED).isEmpty()) {
+                LOGGER.log(Level.WARNING, "Status of Treatment with ID {0} was changed concurrently", id);
+                return false;
+            }
 
             // Log status change
             logStatusChange(id, oldStatus, RecordStatus.DELETED, LocalDate.now(), "System");
@@ -97,47 +107,85 @@ public class TreatmentArchivingService implements ArchivingService<Treatment> {
     }
 
     @Override
-    public List<Treatment> findRecordsOlderThan(int years) {
-        List<Treatment> result = new ArrayList<>();
+    public List<Long> lockAllOlderThan(int years) {
         try {
-            List<Treatment> allTreatments = dao.readAll();
             LocalDate cutoffDate = LocalDate.now().minusYears(years);
-
-            for (Treatment treatment : allTreatments) {
-                LocalDate treatmentDate = LocalDate.parse(treatment.getDate());
-                if (treatmentDate.isBefore(cutoffDate)) {
-                    result.add(treatment);
-                }
-            }
+            List<Long> ids = dao.changeStatusOlderThan(cutoffDate, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            logStatusChanges(ids, RecordStatus.ACTIVE, RecordStatus.LOCKED);
+            return ids;
         } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error locking treatments older than " + years + " years", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public List<Long> transition(long[] ids, RecordStatus from, RecordStatus to) throws SQLException {
+        ArchivingChunkEvent event = new ArchivingChunkEvent("treatment", from.name(), to.name(), ids.length);
+        event.begin();
+        List<Long> changedIds = dao.changeStatus(ids, from, to);
+        logStatusChanges(changedIds, from, to);
+        event.changed = changedIds.size();
+        event.commit();
+        return changedIds;
+    }
+
+    @Override
+    public long[] findLockCandidates(int years, long afterId, int limit) throws SQLException {
+        return dao.findIdsOlderThan(RecordStatus.ACTIVE, LocalDate.now().minusYears(years), afterId, limit);
+    }
+
+    private void logStatusChanges(List<Long> ids, RecordStatus from, RecordStatus to) {
+        LocalDate today = LocalDate.now();
+        for (long id : ids) {
+            logStatusChange(id, from, to, today, "System");
+        }
+    }
+
+    @Override
+    public List<Treatment> findRecordsOlderThan(int years) {
+        try (Stream<Treatment> records = streamRecordsOlderThan(years)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
             LOGGER.log(Level.SEVERE, "Error searching for old treatments", e);
+            return new ArrayList<>();
         }
-        return result;
     }
 
     @Override
     public List<Treatment> findRecordsByStatus(RecordStatus status) {
-        List<Treatment> result = new ArrayList<>();
+        try (Stream<Treatment> records = streamRecordsByStatus(status)) {
+            return records.collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for treatments with status " + status, e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Stream<Treatment> streamRecordsOlderThan(int years) {
         try {
-            List<Treatment> allTreatments = dao.readAll();
+            return dao.streamOlderThan(LocalDate.now().minusYears(years));
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error searching for old treatments", e);
+            return Stream.empty();
+        }
+    }
 
-            for (Treatment treatment : allTreatments) {
-                if (treatment.getStatus() == status) {
-                    result.add(treatment);
-                }
-            }
+    @Override
+    public Stream<Treatment> streamRecordsByStatus(RecordStatus status) {
+        try {
+            return dao.streamByStatus(status);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error searching for treatments with status " + status, e);
+            return Stream.empty();
         }
-        return result;
     }
 
     @Override
     public void logStatusChange(long id, RecordStatus oldStatus, RecordStatus newStatus,
                                 LocalDate date, String user) {
-        // In a real application, logging would be done in a database
-        LOGGER.log(Level.INFO, "Status for Treatment {0} changed from {1} to {2} by {3} on {4}",
-                new Object[]{id, oldStatus, newStatus, user, date});
+        ArchivingLogger.logStatusChange("Treatment", id, oldStatus, newStatus, user);
     }
 }
 
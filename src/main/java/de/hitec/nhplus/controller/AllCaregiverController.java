@@ -3,6 +3,7 @@ package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.archiving.ArchivingService;
 import de.hitec.nhplus.archiving.CaregiverArchivingService;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.CaregiverDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.TreatmentDao;
@@ -38,7 +39,7 @@ import java.util.Optional;
  * The AllCaregiverController contains the entire logic of the caregiver view.
  * It determines which data is displayed and how to react to events.
  */
-public class AllCaregiverController {
+public class AllCaregiverController implements Refreshable {
 
     @FXML
     private TableView<Caregiver> tableView;
@@ -81,6 +82,7 @@ public class AllCaregiverController {
     private ArchivingService<Caregiver> archivingService;
     private Stage primaryStage;
     private MainWindowController mainWindowController;
+    private int loadRequest;
 
     /**
      * Initializes the controller. This method is called after all FXML fields are initialized.
@@ -138,6 +140,14 @@ public class AllCaregiverController {
         checkForAutomaticDeletion();
     }
 
+    /**
+     * Reloads the caregivers when the view is shown again.
+     */
+    @Override
+    public void refresh() {
+        this.readAllAndShowInTableView();
+    }
+
     /**
      * Creates a row factory for styling locked and deleted records.
      *
@@ -163,10 +173,11 @@ public class AllCaregiverController {
     }
 
     /**
-     * Checks for records that should be automatically deleted based on the deletion rules.
+     * Checks for records that should be automatically deleted based on the deletion rules. The check runs on the
+     * writer thread of {@link AsyncDao}; the table is reloaded once it is done.
      */
     private void checkForAutomaticDeletion() {
-        try {
+        AsyncDao.deliver(AsyncDao.write(() -> {
             CaregiverDao caregiverDao = DaoFactory.getDaoFactory().createCaregiverDAO();
             TreatmentDao treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
             List<Caregiver> allCaregivers = caregiverDao.readAll();
@@ -198,16 +209,18 @@ public class AllCaregiverController {
                     }
                 }
             }
-
+            return null;
+        }), ignored -> {
             // Refresh the view after potential deletions
             readAllAndShowInTableView();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
-        } catch (Exception e) {
-            e.printStackTrace();
-            showErrorMessage("Error", "An unexpected error occurred during automatic deletion check.");
-        }
+        }, exception -> {
+            exception.printStackTrace();
+            if (exception instanceof SQLException) {
+                showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
+            } else {
+                showErrorMessage("Error", "An unexpected error occurred during automatic deletion check.");
+            }
+        });
     }
 
     /**
@@ -270,25 +283,37 @@ public class AllCaregiverController {
      * @param event The cell edit event containing the caregiver to update
      */
     private void doUpdate(TableColumn.CellEditEvent<Caregiver, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException e) {
-            e.printStackTrace();
+        Caregiver caregiver = event.getRowValue();
+        AsyncDao.deliver(AsyncDao.write(() -> {
+            this.dao.update(caregiver);
+            return null;
+        }), ignored -> {
+        }, exception -> {
+            exception.printStackTrace();
             showErrorMessage("Database Error", "Failed to update the caregiver.");
-        }
+        });
     }
 
     /**
-     * Reloads all caregivers from the database and displays them in the table.
+     * Reloads all caregivers in the background and displays them in the table. A progress indicator is shown in the
+     * empty table until they arrive; results of a load that has been superseded by a newer one are dropped.
      */
     private void readAllAndShowInTableView() {
         this.caregivers.clear();
-        try {
-            this.caregivers.addAll(this.dao.readAll());
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorMessage("Database Error", "Failed to load caregivers.");
-        }
+        this.tableView.setPlaceholder(new ProgressIndicator());
+        int request = ++this.loadRequest;
+        AsyncDao.deliver(AsyncDao.read(this.dao::readAll), loadedCaregivers -> {
+            if (request == this.loadRequest) {
+                this.caregivers.setAll(loadedCaregivers);
+                this.tableView.setPlaceholder(new Label("Keine Pfleger vorhanden"));
+            }
+        }, exception -> {
+            if (request == this.loadRequest) {
+                this.tableView.setPlaceholder(new Label("Keine Pfleger vorhanden"));
+                exception.printStackTrace();
+                showErrorMessage("Database Error", "Failed to load caregivers.");
+            }
+        });
     }
 
     /**
@@ -447,13 +472,13 @@ public class AllCaregiverController {
             Optional<Pair<String, String>> result = dialog.showAndWait();
 
             result.ifPresent(usernamePassword -> {
-                try {
-                    String username = usernamePassword.getKey();
-                    String password = usernamePassword.getValue();
+                String username = usernamePassword.getKey();
+                String password = usernamePassword.getValue();
 
-                    // Erstelle einen Pfleger mit den neuen Feldern
-                    Caregiver caregiver = new Caregiver(0, username, password, firstname, surname, telephone);
+                // Erstelle einen Pfleger mit den neuen Feldern
+                Caregiver caregiver = new Caregiver(0, username, password, firstname, surname, telephone);
 
+                AsyncDao.deliver(AsyncDao.write(() -> {
                     long caregiverId = this.dao.create(caregiver);
                     caregiver.setCid(caregiverId);
 
@@ -470,7 +495,8 @@ public class AllCaregiverController {
                     );
                     user.setCaregiverId(caregiverId); // Verknüpfung mit Caregiver-ID
                     userDao.createUser(user);
-
+                    return caregiverId;
+                }), caregiverId -> {
                     this.readAllAndShowInTableView();
                     clearTextfields();
 
@@ -480,12 +506,10 @@ public class AllCaregiverController {
                     successAlert.setContentText("Der Pfleger " + firstname + " " + surname +
                             " wurde erfolgreich hinzugefügt.\nBenutzername: " + username);
                     successAlert.showAndWait();
-
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    showErrorMessage("Fehler beim Hinzufügen", "Der Pfleger konnte nicht hinzugefügt werden: " + e.getMessage());
-                }
-
+                }, exception -> {
+                    exception.printStackTrace();
+                    showErrorMessage("Fehler beim Hinzufügen", "Der Pfleger konnte nicht hinzugefügt werden: " + exception.getMessage());
+                });
             });
         }
     }
@@ -2,6 +2,7 @@ package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.archiving.ArchivingService;
 import de.hitec.nhplus.archiving.PatientArchivingService;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
 import de.hitec.nhplus.datastorage.TreatmentDao;
@@ -30,7 +31,7 @@ import java.util.Optional;
  * It determines which data is displayed and how to react to events.
  */
 
-public class AllPatientController {
+public class AllPatientController implements Refreshable {
     @FXML
     private TableView<Patient> tableView;
     @FXML
@@ -65,6 +66,7 @@ public class AllPatientController {
     private final ObservableList<Patient> patients = FXCollections.observableArrayList();
     private PatientDao dao;
     private ArchivingService<Patient> archivingService;
+    private int loadRequest;
 
 
     /**
@@ -131,6 +133,14 @@ public class AllPatientController {
         checkForAutomaticDeletion();
     }
 
+    /**
+     * Reloads the patients when the view is shown again.
+     */
+    @Override
+    public void refresh() {
+        this.readAllAndShowInTableView();
+    }
+
     /**
      * Creates a row factory for styling locked and deleted records.
      *
@@ -156,10 +166,11 @@ public class AllPatientController {
     }
 
     /**
-     * Checks for records that should be automatically deleted based on the deletion rules.
+     * Checks for records that should be automatically deleted based on the deletion rules. The check runs on the
+     * writer thread of {@link AsyncDao}; the table is reloaded once it is done.
      */
     private void checkForAutomaticDeletion() {
-        try {
+        AsyncDao.deliver(AsyncDao.write(() -> {
             PatientDao patientDao = DaoFactory.getDaoFactory().createPatientDAO();
             TreatmentDao treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
             List<Patient> allPatients = patientDao.readAll();
@@ -191,16 +202,17 @@ public class AllPatientController {
                     }
                 }
             }
-
+            return null;
+        }), ignored -> {
             // Refresh the view after potential deletions
             readAllAndShowInTableView();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
-        } catch (Exception e) {
-            e.printStackTrace();
+        }, exception -> {
+            exception.printStackTrace();
             // Keine Meldung, falls das Archivierungssystem nicht verfügbar ist
-        }
+            if (exception instanceof SQLException) {
+                showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
+            }
+        });
     }
 
     @FXML
@@ -269,23 +281,39 @@ public class AllPatientController {
     }
 
     private void doUpdate(TableColumn.CellEditEvent<Patient, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
+        Patient patient = event.getRowValue();
+        PatientDao patientDao = this.dao;
+        AsyncDao.deliver(AsyncDao.write(() -> {
+            patientDao.update(patient);
+            return null;
+        }), ignored -> {
+        }, exception -> {
             exception.printStackTrace();
             showErrorMessage("Database Error", "Failed to update the patient.");
-        }
+        });
     }
 
+    /**
+     * Reloads all patients in the background. A progress indicator is shown in the empty table until they arrive;
+     * results of a load that has been superseded by a newer one are dropped.
+     */
     private void readAllAndShowInTableView() {
         this.patients.clear();
         this.dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            this.patients.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-            showErrorMessage("Database Error", "Failed to load patients.");
-        }
+        this.tableView.setPlaceholder(new ProgressIndicator());
+        int request = ++this.loadRequest;
+        AsyncDao.deliver(AsyncDao.read(this.dao::readAll), loadedPatients -> {
+            if (request == this.loadRequest) {
+                this.patients.setAll(loadedPatients);
+                this.tableView.setPlaceholder(new Label("Keine Patienten vorhanden"));
+            }
+        }, exception -> {
+            if (request == this.loadRequest) {
+                this.tableView.setPlaceholder(new Label("Keine Patienten vorhanden"));
+                exception.printStackTrace();
+                showErrorMessage("Database Error", "Failed to load patients.");
+            }
+        });
     }
 
     /**
@@ -356,16 +384,16 @@ public class AllPatientController {
         String careLevel = this.textFieldCareLevel.getText();
         String roomNumber = this.textFieldRoomNumber.getText();
 
-        try {
-            LocalDate dateOfBirthLocalDate = DateConverter.convertStringToLocalDate(dateOfBirth);
-            Patient newPatient = new Patient(firstName, surname, dateOfBirthLocalDate, careLevel, roomNumber);
-            this.dao.create(newPatient);
+        LocalDate dateOfBirthLocalDate = DateConverter.convertStringToLocalDate(dateOfBirth);
+        Patient newPatient = new Patient(firstName, surname, dateOfBirthLocalDate, careLevel, roomNumber);
+        PatientDao patientDao = this.dao;
+        AsyncDao.deliver(AsyncDao.write(() -> patientDao.create(newPatient)), pid -> {
             readAllAndShowInTableView();
             clearTextfields();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }, exception -> {
+            exception.printStackTrace();
             showErrorMessage("Database Error", "A database error occurred. The patient could not be added.");
-        }
+        });
     }
 
     private void clearTextfields() {
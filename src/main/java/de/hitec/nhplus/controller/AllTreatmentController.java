@@ -3,6 +3,7 @@ package de.hitec.nhplus.controller;
 import de.hitec.nhplus.Main;
 import de.hitec.nhplus.archiving.ArchivingService;
 import de.hitec.nhplus.archiving.TreatmentArchivingService;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
 import de.hitec.nhplus.datastorage.TreatmentDao;
@@ -32,7 +33,7 @@ import java.util.Optional;
  * The AllTreatmentController contains the entire logic of the treatment view.
  * It determines which data is displayed and how to react to events.
  */
-public class AllTreatmentController {
+public class AllTreatmentController implements Refreshable {
 
     @FXML
     private TableView<Treatment> tableView;
@@ -72,7 +73,8 @@ public class AllTreatmentController {
     private final ObservableList<Treatment> treatments = FXCollections.observableArrayList();
     private TreatmentDao dao;
     private final ObservableList<String> patientSelection = FXCollections.observableArrayList();
-    private ArrayList<Patient> patientList;
+    private ArrayList<Patient> patientList = new ArrayList<>();
+    private int loadRequest;
 
     /**
      * Initializes the controller. This method is called after all FXML fields are initialized.
@@ -131,6 +133,21 @@ public class AllTreatmentController {
         checkForAutomaticDeletion();
     }
 
+    /**
+     * Reloads the patients of the selection and the treatments when the view is shown again. A patient selected in
+     * the combo box stays selected.
+     */
+    @Override
+    public void refresh() {
+        this.createPatientComboBoxData();
+        if (this.comboBoxPatientSelection.getSelectionModel().isEmpty()) {
+            this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+            showTreatments(this.dao::readAll, "Failed to load treatments.");
+        } else {
+            handlePatientComboBox();
+        }
+    }
+
     /**
      * Creates a row factory for styling locked and deleted records.
      *
@@ -156,10 +173,11 @@ public class AllTreatmentController {
     }
 
     /**
-     * Checks for records that should be automatically deleted based on the deletion rules.
+     * Checks for records that should be automatically deleted based on the deletion rules. The check runs on the
+     * writer thread of {@link AsyncDao}; the table is reloaded once it is done.
      */
     private void checkForAutomaticDeletion() {
-        try {
+        AsyncDao.deliver(AsyncDao.write(() -> {
             TreatmentDao treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
             List<Treatment> allTreatments = treatmentDao.readAll();
 
@@ -179,32 +197,52 @@ public class AllTreatmentController {
                     archivingService.deleteRecord(treatment.getTid());
                 }
             }
-
+            return null;
+        }), ignored -> {
             // Refresh the view after potential deletions
             readAllAndShowInTableView();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
-        } catch (Exception e) {
-            e.printStackTrace();
+        }, exception -> {
+            exception.printStackTrace();
             // Keine Meldung, falls das Archivierungssystem nicht verfügbar ist
-        }
+            if (exception instanceof SQLException) {
+                showErrorMessage("Automatic Deletion Error", "Failed to check for records to delete automatically.");
+            }
+        });
     }
 
     /**
      * Reloads all treatments from the database and displays them in the table.
      */
     public void readAllAndShowInTableView() {
-        this.treatments.clear();
         comboBoxPatientSelection.getSelectionModel().select(0);
         this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            List<Treatment> treatmentList = dao.readAll();
-            this.treatments.setAll(treatmentList);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-            showErrorMessage("Database Error", "Failed to load treatments.");
-        }
+        showTreatments(this.dao::readAll, "Failed to load treatments.");
+    }
+
+    /**
+     * Runs the given query in the background and shows its result in the table. A progress indicator is shown in
+     * the empty table until the result arrives; results of a query that has been superseded by a newer one, e.g.
+     * after a quick change of the patient selection, are dropped.
+     *
+     * @param query        Query that returns the treatments to show.
+     * @param errorMessage Message shown if the query fails.
+     */
+    private void showTreatments(AsyncDao.DaoCall<List<Treatment>> query, String errorMessage) {
+        this.treatments.clear();
+        this.tableView.setPlaceholder(new ProgressIndicator());
+        int request = ++this.loadRequest;
+        AsyncDao.deliver(AsyncDao.read(query), loadedTreatments -> {
+            if (request == this.loadRequest) {
+                this.treatments.setAll(loadedTreatments);
+                this.tableView.setPlaceholder(new Label("Keine Behandlungen vorhanden"));
+            }
+        }, exception -> {
+            if (request == this.loadRequest) {
+                this.tableView.setPlaceholder(new Label("Keine Behandlungen vorhanden"));
+                exception.printStackTrace();
+                showErrorMessage("Database Error", errorMessage);
+            }
+        });
     }
 
     /**
@@ -212,16 +250,18 @@ public class AllTreatmentController {
      */
     private void createPatientComboBoxData() {
         PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            patientList = (ArrayList<Patient>) dao.readAll();
-            this.patientSelection.add("all");
+        AsyncDao.deliver(AsyncDao.read(dao::readAll), patients -> {
+            patientList = new ArrayList<>(patients);
+            List<String> selection = new ArrayList<>();
+            selection.add("all");
             for (Patient patient: patientList) {
-                this.patientSelection.add(patient.getSurname());
+                selection.add(patient.getSurname());
             }
-        } catch (SQLException exception) {
+            this.patientSelection.setAll(selection);
+        }, exception -> {
             exception.printStackTrace();
             showErrorMessage("Database Error", "Failed to load patient data for selection.");
-        }
+        });
     }
 
     /**
@@ -231,26 +271,18 @@ public class AllTreatmentController {
     @FXML
     public void handlePatientComboBox() {
         String selectedPatient = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-        this.treatments.clear();
         this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
 
-        if (selectedPatient.equals("all")) {
-            try {
-                this.treatments.addAll(this.dao.readAll());
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-                showErrorMessage("Database Error", "Failed to load all treatments.");
-            }
+        if ("all".equals(selectedPatient)) {
+            showTreatments(this.dao::readAll, "Failed to load all treatments.");
+            return;
         }
 
         Patient patient = searchInPatientList(selectedPatient);
         if (patient != null) {
-            try {
-                this.treatments.addAll(this.dao.readTreatmentsByPid(patient.getPid()));
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-                showErrorMessage("Database Error", "Failed to load treatments for the selected patient.");
-            }
+            TreatmentDao treatmentDao = this.dao;
+            showTreatments(() -> treatmentDao.readTreatmentsByPid(patient.getPid()),
+                    "Failed to load treatments for the selected patient.");
         }
     }
 
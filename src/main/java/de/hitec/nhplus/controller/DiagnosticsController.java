@@ -0,0 +1,159 @@
+package de.hitec.nhplus.controller;
+
+import de.hitec.nhplus.metrics.CacheStatistics;
+import de.hitec.nhplus.metrics.Counter;
+import de.hitec.nhplus.metrics.LatencyHistogram;
+import de.hitec.nhplus.metrics.Metrics;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.util.Callback;
+import javafx.util.Duration;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Shows the metrics of the running application: the latency histograms of the DAO operations, the login
+ * verification and the archiving chunks, the hit rates of the statement and entity caches, the archiving throughput
+ * and the login counters. Only administrators can open the view.
+ */
+public class DiagnosticsController implements Initializable, Refreshable {
+    @FXML
+    private TableView<Map.Entry<String, LatencyHistogram>> latencyTable;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> nameColumn;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> countColumn;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> meanColumn;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> p50Column;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> p95Column;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> p99Column;
+    @FXML
+    private TableColumn<Map.Entry<String, LatencyHistogram>, String> maxColumn;
+    @FXML
+    private TableView<Map.Entry<String, String>> valueTable;
+    @FXML
+    private TableColumn<Map.Entry<String, String>, String> valueNameColumn;
+    @FXML
+    private TableColumn<Map.Entry<String, String>, String> valueColumn;
+    @FXML
+    private CheckBox autoRefreshCheckBox;
+
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(2);
+
+    private final ObservableList<Map.Entry<String, LatencyHistogram>> latencies = FXCollections.observableArrayList();
+    private final ObservableList<Map.Entry<String, String>> values = FXCollections.observableArrayList();
+    private final Timeline autoRefresh = new Timeline(new KeyFrame(REFRESH_INTERVAL, event -> refresh()));
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        setupTableColumns();
+        autoRefresh.setCycleCount(Animation.INDEFINITE);
+        // The timeline would keep the view alive after the user switched to another one. The view stays loaded, so
+        // the timeline is resumed when it is shown again.
+        latencyTable.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene == null) {
+                autoRefresh.stop();
+            } else if (autoRefreshCheckBox.isSelected()) {
+                autoRefresh.play();
+            }
+        });
+        refresh();
+    }
+
+    private void setupTableColumns() {
+        nameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getKey()));
+        countColumn.setCellValueFactory(cellData ->
+                new SimpleStringProperty(String.valueOf(cellData.getValue().getValue().getCount())));
+        meanColumn.setCellValueFactory(millis(LatencyHistogram::getMeanMillis));
+        p50Column.setCellValueFactory(millis(LatencyHistogram::getP50Millis));
+        p95Column.setCellValueFactory(millis(LatencyHistogram::getP95Millis));
+        p99Column.setCellValueFactory(millis(LatencyHistogram::getP99Millis));
+        maxColumn.setCellValueFactory(millis(LatencyHistogram::getMaxMillis));
+        latencyTable.setItems(latencies);
+        latencyTable.setPlaceholder(new Label("Noch keine Messwerte vorhanden"));
+
+        valueNameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getKey()));
+        valueColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getValue()));
+        valueTable.setItems(values);
+        valueTable.setPlaceholder(new Label("Noch keine Messwerte vorhanden"));
+    }
+
+    @FXML
+    @Override
+    public void refresh() {
+        latencies.setAll(new ArrayList<>(Metrics.getHistograms().entrySet()));
+
+        List<Map.Entry<String, String>> rows = new ArrayList<>();
+        for (CacheStatistics cache : Metrics.getCaches().values()) {
+            rows.add(Map.entry("Cache " + cache.getName() + ": Trefferquote", String.format(Locale.GERMANY,
+                    "%.1f %% (%d Treffer, %d Fehlgriffe)", cache.getHitRate() * 100, cache.getHits(),
+                    cache.getMisses())));
+            rows.add(Map.entry("Cache " + cache.getName() + ": Einträge / Verdrängungen",
+                    cache.getSize() + " / " + cache.getEvictions()));
+        }
+        for (Map.Entry<String, Counter> counter : Metrics.getCounters().entrySet()) {
+            rows.add(Map.entry(counter.getKey(), String.valueOf(counter.getValue().getCount())));
+            addArchivingThroughput(rows, counter.getKey(), counter.getValue());
+        }
+        values.setAll(rows);
+    }
+
+    /**
+     * Adds the number of records an archiving job processes per second of chunk time, next to the counter of the
+     * processed records.
+     */
+    private void addArchivingThroughput(List<Map.Entry<String, String>> rows, String name, Counter processed) {
+        if (!name.startsWith("archiving.") || !name.endsWith(".processed")) {
+            return;
+        }
+        String job = name.substring(0, name.length() - ".processed".length());
+        LatencyHistogram chunks = Metrics.getHistograms().get(job + ".chunk");
+        if (chunks == null || chunks.getTotalMillis() == 0) {
+            return;
+        }
+        rows.add(Map.entry(job + ".throughput", String.format(Locale.GERMANY, "%.0f Datensätze/s",
+                processed.getCount() * 1000 / chunks.getTotalMillis())));
+    }
+
+    @FXML
+    private void toggleAutoRefresh() {
+        if (autoRefreshCheckBox.isSelected()) {
+            autoRefresh.play();
+        } else {
+            autoRefresh.stop();
+        }
+    }
+
+    @FXML
+    private void resetHistograms() {
+        Metrics.getHistograms().values().forEach(LatencyHistogram::reset);
+        refresh();
+    }
+
+    private static Callback<TableColumn.CellDataFeatures<Map.Entry<String, LatencyHistogram>, String>,
+            ObservableValue<String>> millis(ToDoubleFunction<LatencyHistogram> value) {
+        return cellData -> new SimpleStringProperty(
+                String.format(Locale.GERMANY, "%.3f", value.applyAsDouble(cellData.getValue().getValue())));
+    }
+}
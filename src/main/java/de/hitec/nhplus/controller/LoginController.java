@@ -11,8 +11,11 @@ import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.UserDao;
 import de.hitec.nhplus.model.User;
 import de.hitec.nhplus.utils.AuthorizationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class LoginController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginController.class);
 
     private UserDao userDao;
     private AuthorizationManager authManager;
@@ -22,16 +25,11 @@ public class LoginController {
             this.userDao = DaoFactory.getDaoFactory().createUserDAO();
             this.authManager = AuthorizationManager.getInstance();
 
-            System.out.println("Initialisiere Benutzer-Tabelle...");
-            this.userDao.createTable();
-            System.out.println("Benutzer-Tabelle erfolgreich initialisiert.");
-
-            System.out.println("Starte Migration alter Daten...");
+            LOGGER.info("Starte Migration alter Daten...");
             migrateOldData();
-            System.out.println("Migration abgeschlossen.");
+            LOGGER.info("Migration abgeschlossen.");
         } catch (Exception e) {
-            System.err.println("Fehler bei der Initialisierung des LoginControllers: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Fehler bei der Initialisierung des LoginControllers", e);
         }
     }
 
@@ -1,16 +1,23 @@
 package de.hitec.nhplus.controller;
 
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.model.LoginLog;
 import de.hitec.nhplus.service.LoginLogService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Button;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 
 import java.net.URL;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ResourceBundle;
 
@@ -27,9 +34,25 @@ public class LoginLogController implements Initializable {
     private TableColumn<LoginLog, String> statusColumn;
     @FXML
     private TableColumn<LoginLog, String> reasonColumn;
+    @FXML
+    private TextField usernameFilter;
+    @FXML
+    private DatePicker fromDatePicker;
+    @FXML
+    private DatePicker toDatePicker;
+    @FXML
+    private Button previousButton;
+    @FXML
+    private Button nextButton;
+    @FXML
+    private Label pageLabel;
+
+    private static final int PAGE_SIZE = 100;
 
     private LoginLogService loginLogService = new LoginLogService();
     private ObservableList<LoginLog> logs = FXCollections.observableArrayList();
+    private int page;
+    private int loadRequest;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -50,13 +73,72 @@ public class LoginLogController implements Initializable {
         logTable.setItems(logs);
     }
 
+    /**
+     * Loads the current page with the current filters in the background. One entry more than a page is read to find
+     * out whether there is a next page.
+     */
     private void loadLogs() {
-        logs.clear();
-        logs.addAll(loginLogService.getRecentLogs(100));
+        LocalDate fromDate = fromDatePicker.getValue();
+        LocalDate toDate = toDatePicker.getValue();
+        LocalDateTime from = fromDate != null ? fromDate.atStartOfDay() : null;
+        LocalDateTime to = toDate != null ? toDate.plusDays(1).atStartOfDay() : null;
+        String username = usernameFilter.getText();
+        int offset = this.page * PAGE_SIZE;
+
+        logTable.setPlaceholder(new ProgressIndicator());
+        previousButton.setDisable(true);
+        nextButton.setDisable(true);
+        int request = ++this.loadRequest;
+        AsyncDao.deliver(AsyncDao.read(() -> loginLogService.getLogs(username, from, to, offset, PAGE_SIZE + 1)),
+                entries -> {
+                    if (request != this.loadRequest) {
+                        return;
+                    }
+                    boolean hasNextPage = entries.size() > PAGE_SIZE;
+                    logs.setAll(hasNextPage ? entries.subList(0, PAGE_SIZE) : entries);
+                    logTable.setPlaceholder(new Label("Keine Einträge vorhanden"));
+                    pageLabel.setText("Seite " + (this.page + 1));
+                    previousButton.setDisable(this.page == 0);
+                    nextButton.setDisable(!hasNextPage);
+                }, exception -> {
+                    if (request == this.loadRequest) {
+                        logTable.setPlaceholder(new Label("Keine Einträge vorhanden"));
+                        previousButton.setDisable(this.page == 0);
+                        exception.printStackTrace();
+                    }
+                });
     }
 
     @FXML
     private void refreshLogs() {
         loadLogs();
     }
+
+    @FXML
+    private void applyFilter() {
+        page = 0;
+        loadLogs();
+    }
+
+    @FXML
+    private void resetFilter() {
+        usernameFilter.clear();
+        fromDatePicker.setValue(null);
+        toDatePicker.setValue(null);
+        applyFilter();
+    }
+
+    @FXML
+    private void previousPage() {
+        if (page > 0) {
+            page--;
+            loadLogs();
+        }
+    }
+
+    @FXML
+    private void nextPage() {
+        page++;
+        loadLogs();
+    }
 }
@@ -2,27 +2,58 @@ package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.datastorage.remote.RemoteUserDao;
+import de.hitec.nhplus.metrics.LoginVerificationEvent;
 import de.hitec.nhplus.model.User;
 import de.hitec.nhplus.utils.AuthorizationManager;
+import de.hitec.nhplus.utils.PasswordHasher;
+import de.hitec.nhplus.service.AccountLockService;
 import de.hitec.nhplus.service.LoginLogService;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
+
+/**
+ * Controller of the login form.
+ * <p>
+ * Verifying a password is deliberately slow, so the whole check - lock state, password verification, bookkeeping of
+ * failed attempts and the login log - runs in a background {@link Task}. The form shows a spinner meanwhile and the
+ * attempt can be cancelled; a cancelled attempt never logs the user in. While the form is shown for the first time,
+ * another task opens the database connection and loads the DAOs, the lock states and the password hasher, so the
+ * first attempt does not pay for that.
+ * <p>
+ * As client of an NHPlus server, the server counts the failed attempts and keeps the locks for all workstations, so
+ * the local {@link AccountLockService} is not used.
+ */
 public class LoginViewController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginViewController.class);
     @FXML
     private TextField usernameField;
     @FXML
     private PasswordField passwordField;
     @FXML
     private Label lblStatus;
+    @FXML
+    private Button loginButton;
+    @FXML
+    private Button cancelButton;
+    @FXML
+    private ProgressIndicator progressIndicator;
     private UserDao userDao;
     private MainWindowController mainController;
     private LoginLogService loginLogService = new LoginLogService();
+    private Task<LoginResult> loginTask;
     public void setMainWindowController(MainWindowController controller) {
         this.mainController = controller;
     }
@@ -33,102 +64,254 @@ public class LoginViewController {
             if (this.lblStatus != null) {
                 this.lblStatus.setText("");
             }
+            setBusy(false);
+            startInBackground(new Task<Void>() {
+                @Override
+                protected Void call() {
+                    warmUp();
+                    return null;
+                }
+            }, "nhplus-login-warmup");
         } catch (Exception e) {
-            System.err.println("Fehler bei der Initialisierung des LoginViewController: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Fehler bei der Initialisierung des LoginViewController", e);
         }
     }
     @FXML
     public void handleLogin() {
-        try {
-            String username = this.usernameField.getText();
-            String password = this.passwordField.getText();
-            String ipAddress = "localhost";
-            if (username == null || username.trim().isEmpty() || 
-                password == null || password.isEmpty()) {
-                this.lblStatus.setText("Bitte Benutzername und Passwort eingeben!");
-                this.lblStatus.setTextFill(Color.RED);
-                loginLogService.logLoginAttempt(username, ipAddress, false, "Eingabe leer");
-                return;
-            }
-            if ("admin".equals(username) && "unlock123".equals(password)) {
-                if (this.userDao instanceof de.hitec.nhplus.datastorage.UserDaoImpl) {
-                    boolean unlocked = ((de.hitec.nhplus.datastorage.UserDaoImpl)this.userDao).unlockUser("admin");
-                    if (unlocked) {
-                        this.lblStatus.setText("Admin-Account wurde entsperrt. Bitte mit normalem Passwort anmelden.");
-                        this.lblStatus.setTextFill(Color.GREEN);
-                        this.passwordField.clear();
-                        return;
+        if (this.loginTask != null && this.loginTask.isRunning()) {
+            return;
+        }
+        String username = this.usernameField.getText();
+        String password = this.passwordField.getText();
+        String ipAddress = "localhost";
+        if (username == null || username.trim().isEmpty() ||
+            password == null || password.isEmpty()) {
+            this.lblStatus.setText("Bitte Benutzername und Passwort eingeben!");
+            this.lblStatus.setTextFill(Color.RED);
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Eingabe leer");
+            return;
+        }
+
+        Task<LoginResult> task = new Task<>() {
+            @Override
+            protected LoginResult call() {
+                LoginVerificationEvent verification = new LoginVerificationEvent();
+                verification.begin();
+                LoginResult result = null;
+                try {
+                    result = verify(username, password, ipAddress, this);
+                    return result;
+                } finally {
+                    verification.end();
+                    if (verification.shouldCommit()) {
+                        verification.username = username;
+                        verification.successful = result != null && result.user != null;
+                        verification.cancelled = isCancelled();
+                        verification.commit();
                     }
                 }
             }
-            User user = this.userDao.findByUsername(username);
-            long now = System.currentTimeMillis();
-            if (user != null && user.getLockUntil() > now) {
-                long minLeft = (user.getLockUntil() - now) / 60000 + 1;
-                this.lblStatus.setText("Account gesperrt für " + minLeft + " min.");
-                this.lblStatus.setTextFill(Color.RED);
-                loginLogService.logLoginAttempt(username, ipAddress, false, "Account gesperrt");
-                return;
+        };
+        task.setOnSucceeded(event -> {
+            setBusy(false);
+            showResult(task.getValue());
+        });
+        task.setOnFailed(event -> {
+            setBusy(false);
+            Throwable e = task.getException();
+            LOGGER.error("Fehler bei der Anmeldung", e);
+            this.lblStatus.setText("Fehler bei der Anmeldung: " + e.getMessage());
+            this.lblStatus.setTextFill(Color.RED);
+            this.showError("Anmeldefehler", "Bei der Anmeldung ist ein Fehler aufgetreten: " + e.getMessage());
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Fehler: " + e.getMessage());
+        });
+        task.setOnCancelled(event -> {
+            setBusy(false);
+            this.lblStatus.setText("Anmeldung abgebrochen.");
+            this.lblStatus.setTextFill(Color.RED);
+        });
+
+        this.loginTask = task;
+        this.lblStatus.setText("Anmeldung wird geprüft...");
+        this.lblStatus.setTextFill(Color.BLACK);
+        setBusy(true);
+        startInBackground(task, "nhplus-login");
+    }
+    @FXML
+    public void handleCancel() {
+        if (this.loginTask != null) {
+            this.loginTask.cancel();
+        }
+    }
+
+    /**
+     * Checks the credentials and records the attempt. Runs on a background thread and must not touch the UI.
+     */
+    private LoginResult verify(String username, String password, String ipAddress, Task<?> task) {
+        if (this.userDao instanceof RemoteUserDao remoteUserDao) {
+            return verifyOnServer(remoteUserDao, username, password, ipAddress, task);
+        }
+        AccountLockService lockService = AccountLockService.getInstance();
+        // The form only knows "localhost"; counted under that address, ten failures of any users would lock the
+        // whole workstation. Attempts are therefore counted per username only.
+        String lockAddress = null;
+        if ("admin".equals(username) && "unlock123".equals(password)) {
+            if (lockService.unlockAccount("admin", lockAddress)) {
+                return LoginResult.message("Admin-Account wurde entsperrt. Bitte mit normalem Passwort anmelden.",
+                        Color.GREEN);
             }
-            User authUser = this.userDao.authenticate(username, password);
-            if (authUser != null) {
-                authUser.setFailedAttempts(0);
-                authUser.setLockUntil(0);
-                this.userDao.updateUser(authUser);
-                AuthorizationManager.getInstance().setCurrentUser(authUser);
-                System.out.println("Benutzer '" + authUser.getUsername() + "' erfolgreich authentifiziert.");
-                loginLogService.logLoginAttempt(username, ipAddress, true, null);
-                try {
-                    Stage loginStage = (Stage) this.usernameField.getScene().getWindow();
-                    if (this.mainController != null) {
-                        this.mainController.setPrimaryStage(loginStage);
-                        this.mainController.showMainView();
-                    } else {
-                        System.err.println("MainWindowController ist null. Kann nicht zur Hauptansicht wechseln.");
-                        this.showError("Anwendungsfehler", "Die Anwendung konnte nicht korrekt initialisiert werden.");
-                    }
-                } catch (Exception e) {
-                    System.err.println("Fehler bei der Anmeldung: " + e.getMessage());
-                    e.printStackTrace();
-                    this.showError("Anmeldefehler", "Fehler beim Anzeigen der Hauptansicht: " + e.getMessage());
+        }
+        User user = this.userDao.findByUsername(username);
+        long lockMillis = lockService.getRemainingLockMillis(username, lockAddress);
+        if (lockMillis > 0) {
+            long minLeft = lockMillis / 60000 + 1;
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Account gesperrt");
+            return LoginResult.message("Account gesperrt für " + minLeft + " min.", Color.RED);
+        }
+        if (task.isCancelled()) {
+            return null;
+        }
+        User authUser = this.userDao.authenticate(username, password);
+        if (authUser != null) {
+            if (task.isCancelled()) {
+                // the password was right, but the user no longer wants to log in
+                return null;
+            }
+            lockService.recordSuccessfulLogin(username);
+            LOGGER.debug("Benutzer '{}' erfolgreich authentifiziert.", authUser.getUsername());
+            loginLogService.logLoginAttempt(username, ipAddress, true, null);
+            return LoginResult.success(authUser);
+        }
+
+        int attempts = lockService.recordFailedAttempt(username, lockAddress);
+        if (user != null) {
+            if (!"admin".equals(username) || !"admin123".equals(password)) {
+                int maxAttempts = AccountLockService.getMaxFailedAttempts();
+                if (lockService.isAccountLocked(username)) {
+                    loginLogService.logLoginAttempt(username, ipAddress, false, "Account gesperrt nach Fehlversuchen");
+                    return LoginResult.failure("Account gesperrt für " + AccountLockService.getLockoutDurationMinutes()
+                            + " min. (Notfall: 'unlock123')");
                 }
-            } else {
-                if (user != null) {
-                    if (!"admin".equals(username) || !"admin123".equals(password)) {
-                        int attempts = user.getFailedAttempts() + 1;
-                        user.setFailedAttempts(attempts);
-                        if (attempts >= 3) {
-                            user.setLockUntil(System.currentTimeMillis() + 15 * 60 * 1000);
-                            this.lblStatus.setText("Account gesperrt für 15 min. (Notfall: 'unlock123')");
-                            loginLogService.logLoginAttempt(username, ipAddress, false, "Account gesperrt nach Fehlversuchen");
-                        } else {
-                            this.lblStatus.setText("Benutzername oder Passwort falsch! (" + attempts + "/3)");
-                            loginLogService.logLoginAttempt(username, ipAddress, false, "Falsches Passwort");
-                        }
-                        this.userDao.updateUser(user);
-                    } else {
-                        this.lblStatus.setText("Benutzername oder Passwort falsch!");
-                        loginLogService.logLoginAttempt(username, ipAddress, false, "Falsches Passwort");
-                    }
-                } else {
-                    this.lblStatus.setText("Benutzername oder Passwort falsch!");
-                    loginLogService.logLoginAttempt(username, ipAddress, false, "Unbekannter Benutzer");
+                loginLogService.logLoginAttempt(username, ipAddress, false, "Falsches Passwort");
+                return LoginResult.failure("Benutzername oder Passwort falsch! (" + attempts + "/" + maxAttempts + ")");
+            }
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Falsches Passwort");
+            return LoginResult.failure("Benutzername oder Passwort falsch!");
+        }
+        loginLogService.logLoginAttempt(username, ipAddress, false, "Unbekannter Benutzer");
+        return LoginResult.failure("Benutzername oder Passwort falsch!");
+    }
+
+    /**
+     * Checks the credentials on the server, which also counts the attempt and keeps the locks. Runs on a background
+     * thread and must not touch the UI.
+     */
+    private LoginResult verifyOnServer(RemoteUserDao remoteUserDao, String username, String password,
+                                       String ipAddress, Task<?> task) {
+        if ("admin".equals(username) && "unlock123".equals(password)) {
+            try {
+                if (remoteUserDao.unlockAccount(username, password)) {
+                    return LoginResult.message("Admin-Account wurde entsperrt. Bitte mit normalem Passwort anmelden.",
+                            Color.GREEN);
                 }
-                this.lblStatus.setTextFill(Color.RED);
-                this.passwordField.clear();
+            } catch (SQLException e) {
+                LOGGER.warn("Entsperren über den Server fehlgeschlagen: {}", e.getMessage());
+                return LoginResult.failure("Entsperren ist nur direkt am Server möglich.");
+            }
+        }
+        User authUser;
+        try {
+            authUser = remoteUserDao.login(username, password);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == RemoteUserDao.LOCKED) {
+                loginLogService.logLoginAttempt(username, ipAddress, false, "Account gesperrt");
+                return LoginResult.failure("Account gesperrt für bis zu "
+                        + AccountLockService.getLockoutDurationMinutes() + " min.");
+            }
+            LOGGER.error("Fehler bei der Anmeldung über den Server: {}", e.getMessage());
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Fehler: " + e.getMessage());
+            return LoginResult.failure("Anmeldung über den Server fehlgeschlagen: " + e.getMessage());
+        }
+        if (authUser == null) {
+            loginLogService.logLoginAttempt(username, ipAddress, false, "Ungültige Anmeldedaten");
+            return LoginResult.failure("Benutzername oder Passwort falsch!");
+        }
+        if (task.isCancelled()) {
+            // the password was right, but the user no longer wants to log in
+            return null;
+        }
+        LOGGER.debug("Benutzer '{}' vom Server authentifiziert.", authUser.getUsername());
+        loginLogService.logLoginAttempt(username, ipAddress, true, null);
+        return LoginResult.success(authUser);
+    }
+
+    /**
+     * Shows the outcome of a finished attempt. Runs on the JavaFX application thread.
+     */
+    private void showResult(LoginResult result) {
+        if (result == null) {
+            return;
+        }
+        if (result.user == null) {
+            this.lblStatus.setText(result.message);
+            this.lblStatus.setTextFill(result.color);
+            this.passwordField.clear();
+            if (result.failed) {
                 this.passwordField.requestFocus();
             }
+            return;
+        }
+        AuthorizationManager.getInstance().setCurrentUser(result.user);
+        try {
+            Stage loginStage = (Stage) this.usernameField.getScene().getWindow();
+            if (this.mainController != null) {
+                this.mainController.setPrimaryStage(loginStage);
+                this.mainController.showMainView();
+            } else {
+                LOGGER.error("MainWindowController ist null. Kann nicht zur Hauptansicht wechseln.");
+                this.showError("Anwendungsfehler", "Die Anwendung konnte nicht korrekt initialisiert werden.");
+            }
         } catch (Exception e) {
-            System.err.println("Fehler bei der Anmeldung: " + e.getMessage());
-            e.printStackTrace();
-            this.lblStatus.setText("Fehler bei der Anmeldung: " + e.getMessage());
-            this.lblStatus.setTextFill(Color.RED);
-            this.showError("Anmeldefehler", "Bei der Anmeldung ist ein Fehler aufgetreten: " + e.getMessage());
-            loginLogService.logLoginAttempt(
-                this.usernameField.getText(), "localhost", false, "Fehler: " + e.getMessage());
+            LOGGER.error("Fehler bei der Anmeldung", e);
+            this.showError("Anmeldefehler", "Fehler beim Anzeigen der Hauptansicht: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads everything the first login needs. Runs on a background thread.
+     */
+    private static void warmUp() {
+        try {
+            DaoFactory factory = DaoFactory.getDaoFactory();
+            factory.createPatientDAO();
+            factory.createTreatmentDao();
+            factory.createCaregiverDAO();
+            if (!factory.isRemote()) {
+                AccountLockService.getInstance();
+            }
+            PasswordHasher.getInstance();
+        } catch (RuntimeException e) {
+            // only a head start, the login does the same work again if necessary
+            LOGGER.warn("Vorbereitung der Anmeldung fehlgeschlagen: {}", e.getMessage());
         }
     }
+
+    private void setBusy(boolean busy) {
+        this.loginButton.setDisable(busy);
+        this.usernameField.setDisable(busy);
+        this.passwordField.setDisable(busy);
+        this.cancelButton.setVisible(busy);
+        this.cancelButton.setManaged(busy);
+        this.progressIndicator.setVisible(busy);
+        this.progressIndicator.setManaged(busy);
+    }
+
+    private static void startInBackground(Task<?> task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private void showError(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -136,4 +319,33 @@ public class LoginViewController {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    /**
+     * Outcome of a login attempt: either the authenticated user or a message for the status label.
+     */
+    private static final class LoginResult {
+        private final User user;
+        private final String message;
+        private final Color color;
+        private final boolean failed;
+
+        private LoginResult(User user, String message, Color color, boolean failed) {
+            this.user = user;
+            this.message = message;
+            this.color = color;
+            this.failed = failed;
+        }
+
+        static LoginResult success(User user) {
+            return new LoginResult(user, null, null, false);
+        }
+
+        static LoginResult failure(String message) {
+            return new LoginResult(null, message, Color.RED, true);
+        }
+
+        static LoginResult message(String message, Color color) {
+            return new LoginResult(null, message, color, false);
+        }
+    }
 }
@@ -16,6 +16,7 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.util.Duration;
 import java.io.IOException;
+import java.util.List;
 
 public class MainWindowController {
     @FXML
@@ -24,6 +25,9 @@ public class MainWindowController {
     private Main main;
     private PauseTransition inactivityTimer;
     private static final int INACTIVITY_MINUTES = 15;
+    private static final List<String> PRELOADED_VIEWS =
+            List.of("AllPatientView.fxml", "AllTreatmentView.fxml", "AllCaregiverView.fxml");
+    private final ViewRegistry views = new ViewRegistry();
     public void setMain(Main main) {
         this.main = main;
     }
@@ -33,7 +37,7 @@ public class MainWindowController {
     public void showMainView() {
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/MainWindowView.fxml"));
-            BorderPane pane = loader.load();
+            BorderPane pane = ViewRegistry.load(loader);
             MainWindowController controller = loader.getController();
             controller.setPrimaryStage(primaryStage);
             if (main != null) {
@@ -47,6 +51,7 @@ public class MainWindowController {
             primaryStage.setResizable(true);
             primaryStage.show();
             setupInactivityTimer(scene);
+            controller.views.preload(PRELOADED_VIEWS);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -83,19 +88,16 @@ public class MainWindowController {
     }
     @FXML
     private void handleShowAllPatient(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllPatientView.fxml"));
         try {
-            mainBorderPane.setCenter(loader.load());
+            showView("AllPatientView.fxml");
         } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
     @FXML
     private void handleShowAllCaregiver(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllCaregiverView.fxml"));
         try {
-            mainBorderPane.setCenter(loader.load());
-            AllCaregiverController controller = loader.getController();
+            AllCaregiverController controller = showView("AllCaregiverView.fxml");
             if (controller != null) {
                 controller.setPrimaryStage(primaryStage);
                 controller.setMainWindowController(this);
@@ -106,9 +108,8 @@ public class MainWindowController {
     }
     @FXML
     private void handleShowAllTreatments(ActionEvent event) {
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllTreatmentView.fxml"));
         try {
-            mainBorderPane.setCenter(loader.load());
+            showView("AllTreatmentView.fxml");
         } catch (IOException exception) {
             exception.printStackTrace();
         }
@@ -119,9 +120,20 @@ public class MainWindowController {
             showErrorAlert("Keine Berechtigung", "Sie haben keine Berechtigung für die Benutzerverwaltung.");
             return;
         }
-        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/UserManagementView.fxml"));
         try {
-            mainBorderPane.setCenter(loader.load());
+            showView("UserManagementView.fxml");
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+    @FXML
+    private void handleShowDiagnostics(ActionEvent event) {
+        if (!AuthorizationManager.getInstance().isAdmin()) {
+            showErrorAlert("Keine Berechtigung", "Sie haben keine Berechtigung für die Diagnoseansicht.");
+            return;
+        }
+        try {
+            showView("DiagnosticsView.fxml");
         } catch (IOException exception) {
             exception.printStackTrace();
         }
@@ -141,6 +153,17 @@ public class MainWindowController {
             mainApp.showLoginView();
         }
     }
+    /**
+     * Shows the given view in the center of the main window. The view is loaded on its first visit and only
+     * refreshed on later ones, see {@link ViewRegistry}.
+     *
+     * @return The controller of the view.
+     */
+    private <C> C showView(String fxml) throws IOException {
+        ViewRegistry.View<C> view = this.views.get(fxml);
+        mainBorderPane.setCenter(view.node());
+        return view.controller();
+    }
     public Main getMain() {
         return this.main;
     }
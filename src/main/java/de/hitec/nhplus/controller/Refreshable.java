@@ -0,0 +1,13 @@
+package de.hitec.nhplus.controller;
+
+/**
+ * Controller of a view that the {@link ViewRegistry} keeps loaded between two visits.
+ */
+public interface Refreshable {
+
+    /**
+     * Reloads the data shown by the view. Is called every time the loaded view is shown again, instead of loading
+     * the view anew.
+     */
+    void refresh();
+}
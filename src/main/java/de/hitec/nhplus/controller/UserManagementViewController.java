@@ -17,7 +17,7 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 
-public class UserManagementViewController {
+public class UserManagementViewController implements Refreshable {
     @FXML
     private TableView<User> tableView;
 
@@ -122,6 +122,16 @@ public class UserManagementViewController {
         this.buttonUpdate.setDisable(true);
     }
 
+    /**
+     * Reloads the users when the view is shown again.
+     */
+    @Override
+    public void refresh() {
+        if (AuthorizationManager.getInstance().isAdmin()) {
+            loadUsers();
+        }
+    }
+
     private void disableControls() {
         this.tableView.setDisable(true);
         this.textFieldUsername.setDisable(true);
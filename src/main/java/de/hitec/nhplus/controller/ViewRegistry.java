@@ -0,0 +1,117 @@
+package de.hitec.nhplus.controller;
+
+import de.hitec.nhplus.Main;
+import de.hitec.nhplus.metrics.FxmlLoadEvent;
+import de.hitec.nhplus.utils.AuthorizationManager;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Keeps the views shown in the main window loaded, so the FXML of a view is parsed and the <code>initialize</code>
+ * method of its controller, including the automatic deletion check, runs only once per session. When a loaded view
+ * is shown again, only its data is reloaded with {@link Refreshable#refresh()}.
+ * <p>
+ * The registry belongs to one {@link MainWindowController}, i.e. to one login; the next user gets new views.
+ * All methods have to be called on the JavaFX application thread.
+ */
+final class ViewRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ViewRegistry.class);
+
+    private final Map<String, View<?>> views = new HashMap<>();
+
+    /**
+     * A loaded view.
+     *
+     * @param node       Root node of the view.
+     * @param controller Controller of the view.
+     * @param <C>        Type of the controller.
+     */
+    record View<C>(Parent node, C controller) {
+    }
+
+    /**
+     * Returns the view of the given FXML file. A view that is already loaded is refreshed, otherwise it is loaded.
+     *
+     * @param fxml Name of the FXML file in <code>/de/hitec/nhplus/</code>, e.g. <code>AllPatientView.fxml</code>.
+     * @param <C>  Type of the controller.
+     * @return The view.
+     * @throws IOException If the view cannot be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    <C> View<C> get(String fxml) throws IOException {
+        View<C> view = (View<C>) this.views.get(fxml);
+        if (view == null) {
+            return load(fxml);
+        }
+        if (view.controller() instanceof Refreshable refreshable) {
+            refreshable.refresh();
+        }
+        return view;
+    }
+
+    /**
+     * Loads the given views that are not loaded yet, one per turn of the JavaFX application thread, so input of the
+     * user is handled in between. The views cannot be loaded on another thread: their controllers start loading
+     * their data in <code>initialize</code> and receive it on the application thread, possibly while
+     * <code>initialize</code> would still be running. Stops when the user logs out.
+     *
+     * @param fxmls Names of the FXML files, in the order they are loaded.
+     */
+    void preload(List<String> fxmls) {
+        preloadNext(new ArrayDeque<>(fxmls));
+    }
+
+    private void preloadNext(Queue<String> fxmls) {
+        Platform.runLater(() -> {
+            String fxml = fxmls.poll();
+            if (fxml == null || AuthorizationManager.getInstance().isLoggedOut()) {
+                return;
+            }
+            if (!this.views.containsKey(fxml)) {
+                try {
+                    load(fxml);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Ansicht {} konnte nicht vorgeladen werden", fxml, e);
+                }
+            }
+            preloadNext(fxmls);
+        });
+    }
+
+    private <C> View<C> load(String fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/" + fxml));
+        View<C> view = new View<>(load(loader), loader.getController());
+        this.views.put(fxml, view);
+        return view;
+    }
+
+    /**
+     * Loads the view of the given loader and records the load, including the <code>initialize</code> method of the
+     * controller, as flight recorder event.
+     */
+    static <N> N load(FXMLLoader loader) throws IOException {
+        FxmlLoadEvent event = new FxmlLoadEvent();
+        event.begin();
+        try {
+            return loader.load();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.view = loader.getLocation() != null ? loader.getLocation().getPath() : null;
+                Object controller = loader.getController();
+                event.controller = controller != null ? controller.getClass() : null;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.ArchivingRun;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the progress of the archiving jobs: the checkpoint of a running job, so that an interrupted run can be
+ * resumed where it stopped, and the statistics of every run.
+ */
+public class ArchivingJobDao {
+
+    static final String READ_CHECKPOINT_SQL = "SELECT last_id FROM archiving_checkpoint WHERE job = ?";
+    static final String SAVE_CHECKPOINT_SQL = "INSERT INTO archiving_checkpoint (job, last_id, updated_at) " +
+            "VALUES (?, ?, ?) ON CONFLICT (job) DO UPDATE SET last_id = excluded.last_id, updated_at = excluded.updated_at";
+    static final String CLEAR_CHECKPOINT_SQL = "DELETE FROM archiving_checkpoint WHERE job = ?";
+
+    private final Connection connection;
+    private final Connection readConnection;
+
+    /**
+     * @param connection     Writer connection, used for all modifying statements.
+     * @param readConnection Read-only connection, used for all queries.
+     */
+    public ArchivingJobDao(Connection connection, Connection readConnection) {
+        this.connection = connection;
+        this.readConnection = readConnection;
+    }
+
+    /**
+     * @param job Name of the job.
+     * @return The last id processed by an unfinished run of the job, or 0 if there is none.
+     */
+    public long readCheckpoint(String job) throws SQLException {
+        StatementCache cache = StatementCache.forConnection(this.readConnection);
+        PreparedStatement statement = cache.acquire(READ_CHECKPOINT_SQL);
+        try {
+            statement.setString(1, job);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0;
+            }
+        } finally {
+            cache.release(statement);
+        }
+    }
+
+    /**
+     * Stores the last id processed by the given job.
+     */
+    public void saveCheckpoint(String job, long lastId) throws SQLException {
+        executeUpdate(SAVE_CHECKPOINT_SQL, job, lastId, LocalDateTime.now().toString());
+    }
+
+    /**
+     * Removes the checkpoint of the given job once a run has finished, so the next run starts from the beginning.
+     */
+    public void clearCheckpoint(String job) throws SQLException {
+        executeUpdate(CLEAR_CHECKPOINT_SQL, job);
+    }
+
+    /**
+     * Stores the statistics of a run.
+     */
+    public void recordRun(ArchivingRun run) throws SQLException {
+        executeUpdate("INSERT INTO archiving_run (job, started_at, duration_ms, processed, changed, completed) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)",
+                run.getJob(), run.getStartedAt().toString(), run.getDuration().toMillis(), run.getProcessed(),
+                run.getChanged(), run.isCompleted());
+    }
+
+    /**
+     * @param limit Maximum number of runs.
+     * @return The most recent runs of all jobs, newest first.
+     */
+    public List<ArchivingRun> readRecentRuns(int limit) throws SQLException {
+        List<ArchivingRun> runs = new ArrayList<>();
+        StatementCache cache = StatementCache.forConnection(this.readConnection);
+        PreparedStatement statement = cache.acquire("SELECT job, started_at, duration_ms, processed, changed, completed " +
+                "FROM archiving_run ORDER BY id DESC LIMIT ?");
+        try {
+            statement.setInt(1, limit);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    runs.add(new ArchivingRun(result.getString(1), LocalDateTime.parse(result.getString(2)),
+                            Duration.ofMillis(result.getLong(3)), result.getLong(4), result.getLong(5),
+                            result.getBoolean(6)));
+                }
+            }
+        } finally {
+            cache.release(statement);
+        }
+        return runs;
+    }
+
+    private void executeUpdate(String sql, Object... parameters) throws SQLException {
+        StatementCache cache = StatementCache.forConnection(this.connection);
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement statement = null;
+        try {
+            statement = cache.acquire(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            statement.executeUpdate();
+        } finally {
+            if (statement != null) {
+                cache.release(statement);
+            }
+            ConnectionBuilder.getWriteLock().unlock();
+        }
+    }
+}
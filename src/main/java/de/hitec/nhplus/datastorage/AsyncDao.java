@@ -0,0 +1,129 @@
+package de.hitec.nhplus.datastorage;
+
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs DAO calls off the JavaFX application thread.
+ * <p>
+ * Reads are executed on a small pool with one thread per read-only connection of the {@link ConnectionBuilder}.
+ * Writes are executed one after another on a single writer thread, so modifications reach the database in the order
+ * in which they were submitted. The writer connection only allows one writer at a time anyway; a second thread
+ * would just wait for the write lock.
+ * <p>
+ * Results are handed back to the UI with {@link #deliver}, which runs the callbacks through
+ * <code>Platform.runLater</code>.
+ */
+public final class AsyncDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncDao.class);
+
+    private static final ExecutorService READERS =
+            Executors.newFixedThreadPool(ConnectionBuilder.getReaderCount(), threadFactory("nhplus-db-reader"));
+    private static final ExecutorService WRITER =
+            Executors.newSingleThreadExecutor(threadFactory("nhplus-db-writer"));
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private AsyncDao() {
+    }
+
+    /**
+     * Executes a reading DAO call in the background.
+     *
+     * @param call DAO call to execute, e.g. <code>dao::readAll</code>.
+     * @return Future that completes with the result of the call on a reader thread.
+     */
+    public static <R> CompletableFuture<R> read(DaoCall<R> call) {
+        return submit(call, READERS);
+    }
+
+    /**
+     * Executes a modifying DAO call in the background. Calls submitted with this method run strictly in submission
+     * order.
+     *
+     * @param call DAO call to execute, e.g. <code>() -> dao.update(patient)</code>.
+     * @return Future that completes with the result of the call on the writer thread.
+     */
+    public static <R> CompletableFuture<R> write(DaoCall<R> call) {
+        return submit(call, WRITER);
+    }
+
+    /**
+     * Hands the outcome of a background call to the JavaFX application thread.
+     *
+     * @param future    Future returned by {@link #read} or {@link #write}.
+     * @param onSuccess Receives the result.
+     * @param onFailure Receives the exception thrown by the DAO, usually a <code>SQLException</code>.
+     */
+    public static <R> void deliver(CompletableFuture<R> future, Consumer<R> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, exception) -> Platform.runLater(() -> {
+            if (exception == null) {
+                onSuccess.accept(result);
+            } else {
+                onFailure.accept(unwrap(exception));
+            }
+        }));
+    }
+
+    /**
+     * Stops accepting new calls and waits until all submitted writes are done. Pending reads are cancelled.
+     */
+    public static void shutdown() {
+        READERS.shutdownNow();
+        WRITER.shutdown();
+        try {
+            if (!WRITER.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Ausstehende Schreibzugriffe wurden nicht innerhalb von {} Sekunden abgeschlossen.",
+                        SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <R> CompletableFuture<R> submit(DaoCall<R> call, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (SQLException exception) {
+                throw new CompletionException(exception);
+            }
+        }, executor);
+    }
+
+    private static Throwable unwrap(Throwable exception) {
+        while ((exception instanceof CompletionException || exception instanceof ExecutionException)
+                && exception.getCause() != null) {
+            exception = exception.getCause();
+        }
+        return exception;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A DAO call that may throw a <code>SQLException</code>.
+     */
+    @FunctionalInterface
+    public interface DaoCall<R> {
+        R call() throws SQLException;
+    }
+}
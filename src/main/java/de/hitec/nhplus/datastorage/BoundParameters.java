@@ -0,0 +1,76 @@
+package de.hitec.nhplus.datastorage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the values bound to a prepared statement, so the {@link SlowQueryLog} can show them. The
+ * {@link StatementCache} wraps its statements in a proxy with this handler while the slow query log captures bound
+ * values; every call is passed on to the real statement. The values are forgotten with
+ * <code>clearParameters()</code>, i.e. when the statement is handed back to the cache, and with
+ * <code>addBatch()</code>, since only the last row of a batch would be left.
+ */
+final class BoundParameters implements InvocationHandler {
+
+    private final PreparedStatement statement;
+    private final List<Object> values = new ArrayList<>();
+
+    private BoundParameters(PreparedStatement statement) {
+        this.statement = statement;
+    }
+
+    /**
+     * @return A proxy of <code>statement</code> that remembers the bound values.
+     */
+    static PreparedStatement wrap(PreparedStatement statement) {
+        return (PreparedStatement) Proxy.newProxyInstance(BoundParameters.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new BoundParameters(statement));
+    }
+
+    /**
+     * @param statement A statement, may be <code>null</code>.
+     * @return The values bound to the statement, in the order of the placeholders; empty if the statement was not
+     * created by {@link #wrap}.
+     */
+    static List<Object> of(PreparedStatement statement) {
+        if (statement == null || !Proxy.isProxyClass(statement.getClass())
+                || !(Proxy.getInvocationHandler(statement) instanceof BoundParameters parameters)) {
+            return List.of();
+        }
+        return new ArrayList<>(parameters.values);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        // The caches keep statements in identity maps, but a proxy should still only be equal to itself
+        if (name.equals("equals") && args != null && args.length == 1) {
+            return proxy == args[0];
+        } else if (name.equals("hashCode") && args == null) {
+            return System.identityHashCode(proxy);
+        }
+        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                && index > 0) {
+            remember(index, name.equals("setNull") ? null : args[1]);
+        } else if (name.equals("clearParameters") || name.equals("addBatch")) {
+            this.values.clear();
+        }
+        try {
+            return method.invoke(this.statement, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void remember(int index, Object value) {
+        while (this.values.size() < index) {
+            this.values.add(null);
+        }
+        this.values.set(index - 1, value);
+    }
+}
@@ -1,13 +1,15 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.RecordStatus;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface CaregiverDao extends Dao<Caregiver> {
 
-    void createTable();
-
     Caregiver createCaregiver(Caregiver caregiver);
 
     ArrayList<Caregiver> readAllCaregivers();
@@ -19,4 +21,37 @@ public interface CaregiverDao extends Dao<Caregiver> {
     void delete(Caregiver caregiver);
 
     Caregiver authenticate(String username, String password);
+
+    /**
+     * Liefert alle Caregivers mit einem bestimmten Status als Stream. Der Stream muss geschlossen werden.
+     */
+    Stream<Caregiver> streamByStatus(RecordStatus status) throws SQLException;
+
+    /**
+     * Liefert alle Caregivers, deren Status älter als das angegebene Datum ist, als Stream. Der Stream muss
+     * geschlossen werden.
+     */
+    Stream<Caregiver> streamOlderThan(LocalDate date) throws SQLException;
+
+    /**
+     * Findet die IDs der Caregivers mit einem bestimmten Status, deren letzte Statusänderung vor dem angegebenen
+     * Datum liegt, abschnittsweise in aufsteigender Reihenfolge ab <code>afterId</code>.
+     */
+    long[] findIdsOlderThan(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException;
+
+    /**
+     * Ändert den Status der angegebenen Caregivers in einer Transaktion von <code>from</code> auf <code>to</code>.
+     * Caregivers, die nicht den Status <code>from</code> haben, bleiben unverändert.
+     *
+     * @return Die IDs der geänderten Caregivers
+     */
+    List<Long> changeStatus(long[] cids, RecordStatus from, RecordStatus to) throws SQLException;
+
+    /**
+     * Ändert den Status aller Caregivers mit Status <code>from</code>, deren letzte Statusänderung vor dem
+     * angegebenen Datum liegt, in einer Transaktion auf <code>to</code>.
+     *
+     * @return Die IDs der geänderten Caregivers
+     */
+    List<Long> changeStatusOlderThan(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException;
 }
\ No newline at end of file
@@ -2,111 +2,130 @@ package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Caregiver;
 import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.utils.PasswordHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 
 public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaregiverDaoImpl.class);
 
-    public CaregiverDaoImpl(Connection connection) {
-        super(connection);
-    }
-
-    @Override
-    protected PreparedStatement getCreateStatement(Caregiver caregiver) {
-        PreparedStatement preparedStatement = null;
-        try {
-            createTable();
+    static final String TABLE = "caregiver";
+    static final String ID_COLUMN = "cid";
+    /**
+     * Spalte, nach der die Archivierung Pflegekräfte auswählt.
+     */
+    static final String ARCHIVING_DATE_COLUMN = "status_change_date";
 
-            String username = caregiver.getUsername();
-            if (username == null || username.isEmpty()) {
-                username = (caregiver.getFirstName().toLowerCase().charAt(0) +
-                        caregiver.getSurname().toLowerCase().replace(" ", ""));
-                caregiver.setUsername(username);
-            }
+    static final String READ_BY_ID_SQL = "SELECT * FROM caregiver WHERE cid = ?";
+    static final String FIND_BY_STATUS_SQL = "SELECT * FROM caregiver WHERE status = ?";
+    static final String FIND_OLDER_THAN_SQL =
+            "SELECT * FROM caregiver WHERE " + ANY_STATUS + " AND status_change_date < ?";
+    static final String FIND_BY_USERNAME_SQL = "SELECT * FROM caregiver WHERE username = ?";
+    static final String COUNT_BY_USERNAME_SQL = "SELECT COUNT(*) FROM caregiver WHERE username = ?";
+    static final String READ_PASSWORD_SQL = "SELECT password FROM caregiver WHERE cid = ?";
+    static final String UPDATE_SQL = "UPDATE caregiver SET username = ?, password = ?, firstname = ?, surname = ?, telephone = ?, status = ?, status_change_date = ? WHERE cid = ?";
+    static final String REPLACE_PASSWORD_SQL = "UPDATE caregiver SET password = ? WHERE cid = ? AND password = ?";
+    static final String DELETE_SQL = "DELETE FROM caregiver WHERE cid = ?";
 
-            System.out.println("Erstelle Caregiver mit Username: " + username);
+    private static final EntityCache<Caregiver> CACHE = new EntityCache<>("caregiver", Caregiver::getCid, CaregiverDaoImpl::copy);
 
-            UserDao userDao = DaoFactory.getDaoFactory().createUserDAO();
-            userDao.createTable();
+    /**
+     * Gespeicherte Hashes der Pflegekräfte eines laufenden {@link #updateAll(Collection)} nach cid; außerhalb davon
+     * <code>null</code>. Wird nur unter der Schreibsperre benutzt.
+     */
+    private Map<Long, String> storedPasswords;
 
-            String password = caregiver.getPassword();
-            if (password == null) {
-                password = "";
-                caregiver.setPassword(password);
-            }
+    public CaregiverDaoImpl(Connection connection) {
+        super(connection);
+    }
 
-            if (this.connection == null) {
-                System.err.println("FEHLER: Datenbankverbindung ist null!");
-                this.connection = ConnectionBuilder.getConnection();
-                if (this.connection == null) {
-                    throw new SQLException("Konnte keine Datenbankverbindung herstellen");
-                }
-            }
+    public CaregiverDaoImpl(Connection connection, Connection readConnection) {
+        super(connection, readConnection);
+    }
 
-            ResultSet tables = this.connection.getMetaData().getTables(null, null, "caregiver", null);
-            boolean tableExists = tables.next();
-            tables.close();
+    /**
+     * Caregivers are read far more often than they change, so they are served from a shared cache.
+     */
+    @Override
+    protected EntityCache<Caregiver> getEntityCache() {
+        return CACHE;
+    }
 
-            if (!tableExists) {
-                System.out.println("Tabelle 'caregiver' existiert nicht. Erstelle neu...");
-                createTable();
-            }
+    private static Caregiver copy(Caregiver caregiver) {
+        return new Caregiver(caregiver.getCid(), caregiver.getUsername(), caregiver.getPassword(),
+                caregiver.getFirstName(), caregiver.getSurname(), caregiver.getTelephone(), caregiver.getStatus(),
+                caregiver.getStatusChangeDate());
+    }
 
-            PreparedStatement checkStatement = this.connection.prepareStatement(
-                    "SELECT COUNT(*) FROM caregiver WHERE username = ?");
-            checkStatement.setString(1, username);
-            ResultSet checkResult = checkStatement.executeQuery();
-            if (checkResult.next() && checkResult.getInt(1) > 0) {
-                System.out.println("WARNUNG: Ein Benutzer mit dem Benutzernamen '" + username + "' existiert bereits!");
-            }
-            checkResult.close();
-            checkStatement.close();
+    @Override
+    protected String getEntityName() {
+        return "caregiver";
+    }
 
+    @Override
+    protected String getCreateSQL() {
+        return "INSERT INTO caregiver (firstname, surname, telephone, username, password, status, status_change_date) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
 
-            final String SQL = "INSERT INTO caregiver (firstname, surname, telephone, username, password, status, status_change_date) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
-            preparedStatement.setString(1, caregiver.getFirstName());
-            preparedStatement.setString(2, caregiver.getSurname());
-            preparedStatement.setString(3, caregiver.getTelephone());
-            preparedStatement.setString(4, username);
-            preparedStatement.setString(5, encryptPassword(password));
-            preparedStatement.setString(6, caregiver.getStatus().toString());
-            preparedStatement.setString(7, caregiver.getStatusChangeDate().toString());
+    /**
+     * Binds the given caregiver to the insert statement. A missing username is derived from the name of the
+     * caregiver and a missing password is replaced by an empty one.
+     */
+    @Override
+    protected void bindCreateStatement(PreparedStatement preparedStatement, Caregiver caregiver) throws SQLException {
+        String username = caregiver.getUsername();
+        if (username == null || username.isEmpty()) {
+            username = (caregiver.getFirstName().toLowerCase().charAt(0) +
+                    caregiver.getSurname().toLowerCase().replace(" ", ""));
+            caregiver.setUsername(username);
+        }
 
+        LOGGER.debug("Erstelle Caregiver mit Username: {}", username);
 
-            System.out.println("PreparedStatement erfolgreich erstellt: " + preparedStatement);
-        } catch (SQLException exception) {
-            System.err.println("Fehler beim Erstellen des PreparedStatements: " + exception.getMessage());
-            exception.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler im getCreateStatement: " + e.getMessage());
-            e.printStackTrace();
+        String password = caregiver.getPassword();
+        if (password == null) {
+            password = "";
+            caregiver.setPassword(password);
         }
 
-        if (preparedStatement == null) {
-            System.err.println("WARNUNG: PreparedStatement ist null nach getCreateStatement!");
+        PreparedStatement checkStatement = prepareStatement(COUNT_BY_USERNAME_SQL);
+        try {
+            checkStatement.setString(1, username);
+            try (ResultSet checkResult = checkStatement.executeQuery()) {
+                if (checkResult.next() && checkResult.getInt(1) > 0) {
+                    LOGGER.warn("Ein Benutzer mit dem Benutzernamen '{}' existiert bereits!", username);
+                }
+            }
+        } finally {
+            releaseStatement(checkStatement);
         }
 
-        return preparedStatement;
+        preparedStatement.setString(1, caregiver.getFirstName());
+        preparedStatement.setString(2, caregiver.getSurname());
+        preparedStatement.setString(3, caregiver.getTelephone());
+        preparedStatement.setString(4, username);
+        preparedStatement.setString(5, encryptPassword(password));
+        preparedStatement.setString(6, caregiver.getStatus().toString());
+        preparedStatement.setString(7, caregiver.getStatusChangeDate().toString());
     }
 
     private String encryptPassword(String password) {
         if (password == null || password.isEmpty()) {
             return "";
         }
-
-        // Debug-Ausgabe
-        String hashedPassword = de.hitec.nhplus.utils.PasswordUtils.hashPassword(password);
-        System.out.println("Passwort verschlüsselt: " + password + " -> " + hashedPassword);
-        return hashedPassword;
+        return PasswordHasher.getInstance().hash(password);
     }
 
 
@@ -114,11 +133,10 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
     protected PreparedStatement getReadByIDStatement(long key) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM caregiver WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(READ_BY_ID_SQL);
             preparedStatement.setLong(1, key);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Pflegekraft {} konnte nicht gelesen werden", key, exception);
         }
         return preparedStatement;
     }
@@ -173,9 +191,9 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM caregiver";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareReadStatement(SQL);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Pflegekräfte konnten nicht gelesen werden", exception);
         }
         return statement;
     }
@@ -231,109 +249,116 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
     }
 
     @Override
-    protected PreparedStatement getUpdateStatement(Caregiver caregiver) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "UPDATE caregiver SET username = ?, password = ?, firstname = ?, surname = ?, telephone = ?, status = ?, status_change_date = ? WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, caregiver.getUsername());
-
-            String currentPasswordInDb = getPasswordFromDatabase(caregiver.getCid());
-            System.out.println("Aktuelles Passwort in DB: " + (currentPasswordInDb != null ? "[verschlüsselt]" : "null"));
-            System.out.println("Neues Passwort: " + (caregiver.getPassword() != null ? "[vorhanden]" : "null"));
+    protected String getUpdateSQL() {
+        return UPDATE_SQL;
+    }
 
+    @Override
+    protected void bindUpdateStatement(PreparedStatement preparedStatement, Caregiver caregiver) throws SQLException {
+        preparedStatement.setString(1, caregiver.getUsername());
+
+        // Eine aus der Datenbank gelesene Pflegekraft trägt den gespeicherten Hash; nur ein geänderter Wert ist ein
+        // neues Passwort
+        String currentPasswordInDb = this.storedPasswords != null
+                ? this.storedPasswords.get(caregiver.getCid())
+                : getPasswordFromDatabase(caregiver.getCid());
+        if (caregiver.getPassword() != null && caregiver.getPassword().equals(currentPasswordInDb)) {
+            preparedStatement.setString(2, currentPasswordInDb);
+        } else {
             preparedStatement.setString(2, encryptPassword(caregiver.getPassword()));
-            System.out.println("Passwort wurde verschlüsselt und wird aktualisiert.");
+            LOGGER.debug("Passwort wurde geändert und wird verschlüsselt gespeichert.");
+        }
 
-            preparedStatement.setString(3, caregiver.getFirstName());
-            preparedStatement.setString(4, caregiver.getSurname());
-            preparedStatement.setString(5, caregiver.getTelephone());
-            preparedStatement.setString(6, caregiver.getStatus().toString());
-            preparedStatement.setString(7, caregiver.getStatusChangeDate().toString());
-            preparedStatement.setLong(8, caregiver.getCid());
+        preparedStatement.setString(3, caregiver.getFirstName());
+        preparedStatement.setString(4, caregiver.getSurname());
+        preparedStatement.setString(5, caregiver.getTelephone());
+        preparedStatement.setString(6, caregiver.getStatus().toString());
+        preparedStatement.setString(7, caregiver.getStatusChangeDate().toString());
+        preparedStatement.setLong(8, caregiver.getCid());
+    }
 
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    @Override
+    protected void beforeUpdateBatch(Collection<Caregiver> caregivers) throws SQLException {
+        long[] cids = caregivers.stream().mapToLong(Caregiver::getCid).toArray();
+        this.storedPasswords = readColumnByIds(TABLE, ID_COLUMN, "password", cids);
+    }
+
+    @Override
+    protected void afterUpdateBatch() {
+        this.storedPasswords = null;
     }
 
     private String getPasswordFromDatabase(long cid) {
+        PreparedStatement st = null;
         try {
-            PreparedStatement st = connection.prepareStatement("SELECT password FROM caregiver WHERE cid = ?");
+            st = prepareStatement(READ_PASSWORD_SQL);
             st.setLong(1, cid);
 
-            ResultSet rs = st.executeQuery();
             String password = null;
-            if (rs.next()) {
-                password = rs.getString("password");
+            try (ResultSet rs = st.executeQuery()) {
+                if (rs.next()) {
+                    password = rs.getString("password");
+                }
             }
-            rs.close();
-            st.close();
             return password;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Gespeichertes Passwort von Pflegekraft {} konnte nicht gelesen werden", cid, e);
             return null;
+        } finally {
+            releaseStatement(st);
         }
     }
 
     @Override
-    protected PreparedStatement getDeleteStatement(long key) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "DELETE FROM caregiver WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, key);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    protected String getDeleteSQL() {
+        return DELETE_SQL;
     }
 
     /**
      * Findet alle Caregivers mit einem bestimmten Status
+     *
      * @param status Status nach dem gesucht wird
      * @return Liste der gefundenen Caregivers
      * @throws SQLException bei Datenbankproblemen
      */
     public List<Caregiver> findByStatus(RecordStatus status) throws SQLException {
-        List<Caregiver> result = new ArrayList<>();
-        final String SQL = "SELECT * FROM caregiver WHERE status = ?";
-
-        try (PreparedStatement statement = this.connection.prepareStatement(SQL)) {
-            statement.setString(1, status.toString());
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                Caregiver caregiver = getInstanceFromResultSet(resultSet);
-                result.add(caregiver);
-            }
-        }
-
-        return result;
+        return queryList(FIND_BY_STATUS_SQL, status.name());
     }
 
     /**
      * Findet alle Caregivers, deren Status älter als das angegebene Datum ist
+     *
      * @param date Das Vergleichsdatum
      * @return Liste der gefundenen Caregivers
      * @throws SQLException bei Datenbankproblemen
      */
     public List<Caregiver> findOlderThan(LocalDate date) throws SQLException {
-        List<Caregiver> result = new ArrayList<>();
-        final String SQL = "SELECT * FROM caregiver WHERE status_change_date < ?";
+        return queryList(FIND_OLDER_THAN_SQL, date.toString());
+    }
 
-        try (PreparedStatement statement = this.connection.prepareStatement(SQL)) {
-            statement.setString(1, date.toString());
-            ResultSet resultSet = statement.executeQuery();
+    @Override
+    public Stream<Caregiver> streamByStatus(RecordStatus status) throws SQLException {
+        return stream(FIND_BY_STATUS_SQL, status.name());
+    }
 
-            while (resultSet.next()) {
-                Caregiver caregiver = getInstanceFromResultSet(resultSet);
-                result.add(caregiver);
-            }
-        }
+    @Override
+    public Stream<Caregiver> streamOlderThan(LocalDate date) throws SQLException {
+        return stream(FIND_OLDER_THAN_SQL, date.toString());
+    }
+
+    @Override
+    public long[] findIdsOlderThan(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return findIdsBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, status, date, afterId, limit);
+    }
+
+    @Override
+    public List<Long> changeStatus(long[] cids, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatus(TABLE, ID_COLUMN, cids, from, to);
+    }
 
-        return result;
+    @Override
+    public List<Long> changeStatusOlderThan(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatusBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, date, from, to);
     }
 
     @Override
@@ -361,110 +386,6 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         super.deleteById(key);
     }
 
-    @Override
-    public void createTable() {
-        try {
-            if (connection == null) {
-                System.err.println("FEHLER: Connection ist null in createTable");
-                connection = ConnectionBuilder.getConnection();
-                if (connection == null) {
-                    throw new SQLException("Konnte keine Datenbankverbindung herstellen");
-                }
-            }
-
-            Statement st = connection.createStatement();
-            System.out.println("Prüfe, ob Tabelle 'caregiver' existiert...");
-
-            ResultSet tables = connection.getMetaData().getTables(null, null, "caregiver", null);
-            boolean tableExists = tables.next();
-            tables.close();
-
-            if (!tableExists) {
-                System.out.println("Tabelle 'caregiver' existiert nicht. Erstelle neu...");
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS caregiver (" +
-                        "cid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "username TEXT, " +
-                        "password TEXT, " +
-                        "firstname TEXT NOT NULL, " +
-                        "surname TEXT NOT NULL, " +
-                        "telephone TEXT, " +
-                        "status TEXT, " +
-                        "status_change_date TEXT)";
-
-                System.out.println("Führe SQL aus: " + createTableSQL);
-                st.executeUpdate(createTableSQL);
-                System.out.println("Tabelle 'caregiver' erfolgreich erstellt.");
-            } else {
-                System.out.println("Tabelle 'caregiver' existiert bereits.");
-                try {
-                    ResultSet columns = connection.getMetaData().getColumns(null, null, "caregiver", "username");
-                    boolean usernameExists = columns.next();
-                    columns.close();
-
-                    if (!usernameExists) {
-                        System.out.println("Spalten 'username' und 'password' fehlen. Füge hinzu...");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN username TEXT");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN password TEXT");
-
-                        st.executeUpdate("UPDATE caregiver SET username = 'caregiver_' || cid, password = '' WHERE username IS NULL");
-                        System.out.println("Spalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    }
-                } catch (SQLException e) {
-                    System.out.println("Fehler beim Prüfen der Spalten: " + e.getMessage());
-                    try {
-                        System.out.println("Versuche, Spalten 'username' und 'password' hinzuzufügen...");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN username TEXT UNIQUE");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN password TEXT");
-
-                        st.executeUpdate("UPDATE caregiver SET username = 'caregiver_' || cid, password = '' WHERE username IS NULL");
-                        System.out.println("Spalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    } catch (SQLException ex) {
-                        System.err.println("Fehler beim Hinzufügen der Spalten: " + ex.getMessage());
-                        ex.printStackTrace();
-                    }
-                }
-
-                try {
-                    ResultSet columns = connection.getMetaData().getColumns(null, null, "caregiver", "status");
-                    boolean statusExists = columns.next();
-                    columns.close();
-
-                    if (!statusExists) {
-                        System.out.println("Spalten 'status' und 'status_change_date' fehlen. Füge hinzu...");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN status TEXT");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN status_change_date TEXT");
-
-                        st.executeUpdate("UPDATE caregiver SET status = 'ACTIVE', status_change_date = date('now') WHERE status IS NULL");
-                        System.out.println("Statusspalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    }
-                } catch (SQLException e) {
-                    System.out.println("Fehler beim Prüfen der Statusspalten: " + e.getMessage());
-                    try {
-                        System.out.println("Versuche, Spalten 'status' und 'status_change_date' hinzuzufügen...");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN status TEXT");
-                        st.executeUpdate("ALTER TABLE caregiver ADD COLUMN status_change_date TEXT");
-
-                        st.executeUpdate("UPDATE caregiver SET status = 'ACTIVE', status_change_date = date('now') WHERE status IS NULL");
-                        System.out.println("Statusspalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    } catch (SQLException ex) {
-                        System.err.println("Fehler beim Hinzufügen der Statusspalten: " + ex.getMessage());
-                        ex.printStackTrace();
-                    }
-                }
-            }
-
-            st.close();
-            System.out.println("Tabelle 'caregiver' ist bereit.");
-
-        } catch (SQLException e) {
-            System.err.println("SQL-Fehler in createTable: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler in createTable: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     @Override
     public Caregiver createCaregiver(Caregiver caregiver) {
         try {
@@ -472,7 +393,7 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
             caregiver.setCid(id);
             return caregiver;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekraft konnte nicht angelegt werden", e);
             return null;
         }
     }
@@ -482,61 +403,78 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         try {
             return (ArrayList<Caregiver>) readAll();
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekräfte konnten nicht gelesen werden", e);
             return new ArrayList<>();
         }
     }
 
     @Override
     public Caregiver authenticate(String username, String password) {
+        PreparedStatement st = null;
         try {
-            // Debug-Ausgaben hinzufügen
-            System.out.println("Versuche Authentifizierung für Benutzer: " + username);
+            LOGGER.debug("Versuche Authentifizierung für Benutzer: {}", username);
 
-            PreparedStatement st = connection.prepareStatement(
-                    "SELECT * FROM caregiver WHERE username = ?"
-            );
+            st = prepareReadStatement(FIND_BY_USERNAME_SQL);
             st.setString(1, username);
 
-            ResultSet rs = st.executeQuery();
-
-            // Prüfen, ob Ergebnisse zurückgegeben wurden
-            if (!rs.next()) {
-                System.out.println("Kein Benutzer mit Benutzernamen '" + username + "' gefunden.");
-                rs.close();
-                st.close();
+            Caregiver caregiver = null;
+            try (ResultSet rs = st.executeQuery()) {
+                if (rs.next()) {
+                    caregiver = getInstanceFromResultSet(rs);
+                }
+            }
+            releaseStatement(st);
+            st = null;
+
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (caregiver == null) {
+                // as slow as a wrong password, so the response time does not reveal which usernames exist
+                hasher.verifyDummy(password);
+                LOGGER.debug("Kein Benutzer mit Benutzernamen '{}' gefunden.", username);
                 return null;
             }
 
-            // Caregiver aus ResultSet erstellen
-            Caregiver caregiver = getInstanceFromResultSet(rs);
-            System.out.println("Benutzer gefunden: " + caregiver.getFullName() + ", Username: " + caregiver.getUsername());
-
-            // Passwort überprüfen
+            // Passwort überprüfen, ohne Zeitvorteil für frühe Abweichungen
             String storedPassword = caregiver.getPassword();
-            String encryptedInputPassword = encryptPassword(password);
-
-            System.out.println("Gespeichertes Passwort (Hash): " + storedPassword);
-            System.out.println("Eingegebenes Passwort (Hash): " + encryptedInputPassword);
-
-            if (storedPassword == null || !storedPassword.equals(encryptedInputPassword)) {
-                System.out.println("Passwörter stimmen nicht überein für Benutzer '" + username + "'");
-                caregiver = null;
-            } else {
-                System.out.println("Authentifizierung erfolgreich für " + username);
+            if (!hasher.verify(password, storedPassword)) {
+                LOGGER.debug("Passwörter stimmen nicht überein für Benutzer '{}'", username);
+                return null;
             }
-
-            rs.close();
-            st.close();
+            if (hasher.needsRehash(storedPassword)) {
+                replacePasswordHash(caregiver, storedPassword, hasher.hash(password));
+            }
+            LOGGER.debug("Authentifizierung erfolgreich für {}", username);
             return caregiver;
         } catch (SQLException e) {
-            System.err.println("SQL-Fehler bei der Authentifizierung: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("SQL-Fehler bei der Authentifizierung", e);
             return null;
         } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler bei der Authentifizierung: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Unerwarteter Fehler bei der Authentifizierung", e);
             return null;
+        } finally {
+            releaseStatement(st);
+        }
+    }
+
+    /**
+     * Ersetzt den gespeicherten Hash einer Pflegekraft, z.B. einen Hash im alten Format nach erfolgreicher Anmeldung.
+     * Wurde das Passwort inzwischen geändert, bleibt es unverändert.
+     */
+    private void replacePasswordHash(Caregiver caregiver, String expected, String newHash) throws SQLException {
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement st = null;
+        try {
+            st = prepareStatement(REPLACE_PASSWORD_SQL);
+            st.setString(1, newHash);
+            st.setLong(2, caregiver.getCid());
+            st.setString(3, expected);
+            if (st.executeUpdate() > 0) {
+                caregiver.setPassword(newHash);
+                getEntityCache().invalidate(caregiver.getCid());
+            }
+        } finally {
+            releaseStatement(st);
+            ConnectionBuilder.getWriteLock().unlock();
         }
     }
 
@@ -546,7 +484,7 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         try {
             return read(cid);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekraft {} konnte nicht gelesen werden", cid, e);
             return null;
         }
     }
@@ -556,7 +494,7 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         try {
             update(caregiver);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekraft {} konnte nicht aktualisiert werden", caregiver.getCid(), e);
         }
     }
 
@@ -565,7 +503,7 @@ public class CaregiverDaoImpl extends DaoImp<Caregiver> implements CaregiverDao
         try {
             deleteById(caregiver.getCid());
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekraft {} konnte nicht gelöscht werden", caregiver.getCid(), e);
         }
     }
 }
\ No newline at end of file
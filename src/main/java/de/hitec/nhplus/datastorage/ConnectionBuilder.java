@@ -3,38 +3,179 @@ package de.hitec.nhplus.datastorage;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sqlite.SQLiteConfig;
 
+/**
+ * Small connection pool for the SQLite database.
+ * <p>
+ * The database is opened in WAL journal mode. All writes go through one dedicated writer connection, guarded by
+ * {@link #getWriteLock()}, while reads are spread round-robin over a configurable number of read-only connections.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.db.path</code> - path of the database file, default <code>db/nursingHome.db</code></li>
+ *     <li><code>nhplus.db.readers</code> - number of read-only connections, default
+ *     <code>min(4, available processors)</code></li>
+ * </ul>
+ */
 public class ConnectionBuilder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionBuilder.class);
 
     private static final String DB_NAME = "nursingHome.db";
-    private static final String URL = "jdbc:sqlite:db/" + DB_NAME;
+    private static final String DEFAULT_PATH = "db/" + DB_NAME;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    private static final AtomicInteger NEXT_READER = new AtomicInteger();
 
     private static Connection connection;
+    private static List<Connection> readConnections = new ArrayList<>();
 
+    /**
+     * Returns the writer connection. Every statement that modifies the database has to use this connection.
+     *
+     * @return The shared writer connection or <code>null</code>, if the database could not be opened.
+     */
     synchronized public static Connection getConnection() {
         try {
-            if (ConnectionBuilder.connection == null) {
-                SQLiteConfig configuration = new SQLiteConfig();
-                configuration.enforceForeignKeys(true);
-                ConnectionBuilder.connection = DriverManager.getConnection(URL, configuration.toProperties());
+            if (ConnectionBuilder.connection == null || ConnectionBuilder.connection.isClosed()) {
+                SQLiteConfig configuration = createConfiguration();
+                configuration.setJournalMode(SQLiteConfig.JournalMode.WAL);
+                ConnectionBuilder.connection = DriverManager.getConnection(getUrl(), configuration.toProperties());
             }
         } catch (SQLException exception) {
-            System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
-            exception.printStackTrace();
+            LOGGER.error("Verbindung zur Datenbank konnte nicht aufgebaut werden!", exception);
         }
         return ConnectionBuilder.connection;
     }
 
+    /**
+     * Returns one of the read-only connections. The connections are handed out round-robin, so DAOs created one
+     * after another spread their queries over all readers.
+     *
+     * @return A read-only connection, or the writer connection if no reader could be opened.
+     */
+    synchronized public static Connection getReadConnection() {
+        // The writer has to exist first: it switches the database to WAL, which the read-only connections cannot do.
+        Connection writer = getConnection();
+        try {
+            if (readConnections.isEmpty()) {
+                SQLiteConfig configuration = createConfiguration();
+                configuration.setReadOnly(true);
+                for (int i = 0; i < getReaderCount(); i++) {
+                    readConnections.add(DriverManager.getConnection(getUrl(), configuration.toProperties()));
+                }
+            }
+            int index = Math.floorMod(NEXT_READER.getAndIncrement(), readConnections.size());
+            Connection reader = readConnections.get(index);
+            if (reader.isClosed()) {
+                closeReadConnections();
+                return getReadConnection();
+            }
+            return reader;
+        } catch (SQLException exception) {
+            LOGGER.error("Lesende Verbindung zur Datenbank konnte nicht aufgebaut werden!", exception);
+            closeReadConnections();
+            return writer;
+        }
+    }
+
+    /**
+     * Lock that serializes all work on the writer connection. It has to be held for the whole duration of a write
+     * or a transaction, so that statements of other threads do not end up inside a foreign transaction.
+     *
+     * @return The lock guarding the writer connection.
+     */
+    public static ReentrantLock getWriteLock() {
+        return WRITE_LOCK;
+    }
+
+    /**
+     * Executes the given work in one transaction on the writer connection while holding the write lock. The
+     * transaction is committed if the work completes and rolled back if it throws. Nested calls join the
+     * transaction that is already running.
+     *
+     * @param work Work to execute.
+     * @param <R>  Type of the result of the work.
+     * @return The result of the work.
+     * @throws SQLException If the work or the commit fails.
+     */
+    public static <R> R inTransaction(TransactionWork<R> work) throws SQLException {
+        WRITE_LOCK.lock();
+        try {
+            Connection writer = getConnection();
+            if (writer == null) {
+                throw new SQLException("Keine Datenbankverbindung vorhanden");
+            }
+            if (!writer.getAutoCommit()) {
+                return work.execute(writer);
+            }
+            writer.setAutoCommit(false);
+            try {
+                R result = work.execute(writer);
+                writer.commit();
+                return result;
+            } catch (SQLException | RuntimeException exception) {
+                writer.rollback();
+                throw exception;
+            } finally {
+                writer.setAutoCommit(true);
+            }
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
     synchronized public static void closeConnection() {
         try {
+            closeReadConnections();
             if (ConnectionBuilder.connection != null) {
+                StatementCache.discard(ConnectionBuilder.connection);
                 ConnectionBuilder.connection.close();
                 ConnectionBuilder.connection = null;
             }
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.warn("Verbindung zur Datenbank konnte nicht geschlossen werden", exception);
+        }
+    }
+
+    private static void closeReadConnections() {
+        for (Connection reader : readConnections) {
+            try {
+                StatementCache.discard(reader);
+                reader.close();
+            } catch (SQLException exception) {
+                LOGGER.warn("Lesende Verbindung zur Datenbank konnte nicht geschlossen werden", exception);
+            }
+        }
+        readConnections = new ArrayList<>();
+    }
+
+    private static SQLiteConfig createConfiguration() {
+        SQLiteConfig configuration = new SQLiteConfig();
+        configuration.enforceForeignKeys(true);
+        configuration.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        configuration.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        return configuration;
+    }
+
+    private static String getUrl() {
+        return "jdbc:sqlite:" + System.getProperty("nhplus.db.path", DEFAULT_PATH);
+    }
+
+    static int getReaderCount() {
+        int defaultCount = Math.min(4, Runtime.getRuntime().availableProcessors());
+        try {
+            return Math.max(1, Integer.parseInt(System.getProperty("nhplus.db.readers", String.valueOf(defaultCount))));
+        } catch (NumberFormatException exception) {
+            return defaultCount;
         }
     }
 }
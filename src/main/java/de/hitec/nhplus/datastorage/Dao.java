@@ -1,6 +1,7 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 public interface Dao<T> {
@@ -13,4 +14,10 @@ public interface Dao<T> {
     void update(T t) throws SQLException;
 
     void deleteById(long key) throws SQLException;
+
+    long[] createAll(Collection<T> objects) throws SQLException;
+
+    void updateAll(Collection<T> objects) throws SQLException;
+
+    void deleteAllById(long[] keys) throws SQLException;
 }
\ No newline at end of file
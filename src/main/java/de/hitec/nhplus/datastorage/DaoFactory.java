@@ -1,32 +1,71 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.datastorage.remote.RemoteDaoFactory;
+
+import java.sql.SQLException;
+
+/**
+ * Creates the DAOs of the application. Every DAO is bound to the shared writer connection for modifications and to
+ * one of the read-only connections of the {@link ConnectionBuilder} pool for queries.
+ * <p>
+ * If the system property <code>nhplus.server.url</code> is set, e.g. to <code>http://station1:8421</code>, the
+ * application is a client of the NHPlus server instead: {@link #getDaoFactory()} returns a
+ * {@link RemoteDaoFactory}, whose DAOs send every call to the server and never open the database file.
+ */
 public class DaoFactory {
 
     private static DaoFactory instance;
 
-    private DaoFactory() {
+    protected DaoFactory() {
     }
 
     public static synchronized DaoFactory getDaoFactory() {
         if (DaoFactory.instance == null) {
-            DaoFactory.instance = new DaoFactory();
+            String serverUrl = System.getProperty("nhplus.server.url");
+            DaoFactory.instance = serverUrl == null || serverUrl.isBlank()
+                    ? new DaoFactory()
+                    : new RemoteDaoFactory(serverUrl);
         }
         return DaoFactory.instance;
     }
 
+    /**
+     * @return <code>true</code>, if the DAOs talk to the server instead of the local database.
+     */
+    public boolean isRemote() {
+        return false;
+    }
+
+    /**
+     * Executes the given work in one transaction of the DAOs of this factory.
+     *
+     * @see ConnectionBuilder#inTransaction(TransactionWork)
+     */
+    public <R> R inTransaction(TransactionWork<R> work) throws SQLException {
+        return ConnectionBuilder.inTransaction(work);
+    }
+
     public TreatmentDao createTreatmentDao() {
-        return new TreatmentDao(ConnectionBuilder.getConnection());
+        return new TreatmentDao(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
     }
 
     public PatientDao createPatientDAO() {
-        return new PatientDao(ConnectionBuilder.getConnection());
+        return new PatientDao(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
     }
 
     public CaregiverDao createCaregiverDAO() {
-        return new CaregiverDaoImpl(ConnectionBuilder.getConnection());
+        return new CaregiverDaoImpl(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
     }
 
     public UserDao createUserDAO() {
-        return new UserDaoImpl(ConnectionBuilder.getConnection());
+        return new UserDaoImpl(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
+    }
+
+    public ArchivingJobDao createArchivingJobDao() {
+        return new ArchivingJobDao(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
+    }
+
+    public LoginLogDao createLoginLogDao() {
+        return new LoginLogDao(ConnectionBuilder.getConnection(), ConnectionBuilder.getReadConnection());
     }
 }
\ No newline at end of file
@@ -1,99 +1,716 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.metrics.DaoMetrics;
+import de.hitec.nhplus.metrics.DaoOperation;
+import de.hitec.nhplus.metrics.Metrics;
+import de.hitec.nhplus.model.RecordStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class DaoImp<T> implements Dao<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoImp.class);
+    private static final String LAST_INSERT_ID_SQL = "SELECT last_insert_rowid()";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 256;
+
+    /**
+     * SQL condition that holds for every {@link RecordStatus}. Put in front of a range condition on a date column, it
+     * lets SQLite answer the range from the composite <code>(status, date)</code> index of the table instead of
+     * scanning all rows. Rows without a status are not matched; the schema migrations fill the column for every row.
+     */
+    protected static final String ANY_STATUS = "status IN (" + Arrays.stream(RecordStatus.values())
+            .map(status -> "'" + status.name() + "'")
+            .collect(Collectors.joining(", ")) + ")";
+
     protected Connection connection;
+    protected Connection readConnection;
+    private DaoMetrics metrics;
 
     public DaoImp(Connection connection) {
+        this(connection, connection);
+    }
+
+    /**
+     * @param connection     Writer connection, used for all modifying statements.
+     * @param readConnection Read-only connection, used for all queries.
+     */
+    public DaoImp(Connection connection, Connection readConnection) {
         this.connection = connection;
+        this.readConnection = readConnection;
     }
 
     @Override
     public long create(T t) throws SQLException {
-        PreparedStatement preparedStatement = getCreateStatement(t);
-
-
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        int rows = 0;
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement preparedStatement = null;
         try {
-            preparedStatement.executeUpdate();
-
-
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                } else {
-                    throw new SQLException("Creating " + t.getClass().getSimpleName() + " failed, no ID obtained.");
-                }
-            }
+            preparedStatement = getCreateStatement(t);
+            rows = preparedStatement.executeUpdate();
+            return getLastInsertId();
         } catch (SQLException e) {
-            System.err.println("SQL-Fehler beim Ausführen des PreparedStatements: " + e.getMessage());
+            LOGGER.error("SQL-Fehler beim Ausführen des PreparedStatements: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler beim Erstellen des Objekts: " + e.getMessage());
+            LOGGER.error("Unerwarteter Fehler beim Erstellen des Objekts: {}", e.getMessage());
             throw new SQLException("Fehler beim Erstellen: " + e.getMessage(), e);
         } finally {
-            try {
-                if (preparedStatement != null) {
-                    preparedStatement.close();
+            endTrace(trace, getCreateSQL(), preparedStatement, rows);
+            releaseStatement(preparedStatement);
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateList();
+            }
+            ConnectionBuilder.getWriteLock().unlock();
+            metrics().record(DaoOperation.CREATE, start);
+        }
+    }
+
+    /**
+     * Inserts all given objects in one transaction. The rows are sent in JDBC batches of
+     * <code>nhplus.db.batchSize</code> rows (default 500), so memory stays bounded for large collections.
+     *
+     * @param objects Objects to persist.
+     * @return The generated ids, in the iteration order of <code>objects</code>.
+     */
+    @Override
+    public long[] createAll(Collection<T> objects) throws SQLException {
+        long[] keys = new long[objects.size()];
+        if (objects.isEmpty()) {
+            return keys;
+        }
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        try {
+            return ConnectionBuilder.inTransaction(writer -> {
+                int batchSize = getBatchSize();
+                int index = 0;
+                int pending = 0;
+                PreparedStatement preparedStatement = prepareStatement(getCreateSQL());
+                try {
+                    for (T t : objects) {
+                        bindCreateStatement(preparedStatement, t);
+                        preparedStatement.addBatch();
+                        pending++;
+                        if (pending == batchSize) {
+                            index = executeCreateBatch(preparedStatement, keys, index, pending);
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        executeCreateBatch(preparedStatement, keys, index, pending);
+                    }
+                } finally {
+                    preparedStatement.clearBatch();
+                    releaseStatement(preparedStatement);
                 }
-            } catch (SQLException e) {
-                System.err.println("Fehler beim Schließen des PreparedStatements: " + e.getMessage());
+                return keys;
+            });
+        } finally {
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateList();
             }
+            endBatchTrace(trace, getCreateSQL(), objects.size());
+            metrics().record(DaoOperation.CREATE_ALL, start);
+        }
+    }
+
+    /**
+     * Executes the pending inserts and stores their ids in <code>keys</code>. The batch runs inside a transaction on
+     * the only writer connection, so SQLite assigns consecutive row ids and the ids of the whole batch follow from
+     * the last one.
+     */
+    private int executeCreateBatch(PreparedStatement preparedStatement, long[] keys, int index, int count)
+            throws SQLException {
+        int[] counts = preparedStatement.executeBatch();
+        if (counts.length != count) {
+            throw new SQLException("Batch-Insert unvollständig: " + counts.length + " von " + count + " Zeilen.");
+        }
+        long lastId = getLastInsertId();
+        for (int i = 0; i < count; i++) {
+            keys[index + i] = lastId - count + 1 + i;
+        }
+        return index + count;
+    }
+
+    private long getLastInsertId() throws SQLException {
+        PreparedStatement lastIdStatement = prepareStatement(LAST_INSERT_ID_SQL);
+        try (ResultSet rs = lastIdStatement.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+            throw new SQLException("Keine ID erhalten.");
+        } finally {
+            releaseStatement(lastIdStatement);
         }
     }
 
     @Override
     public T read(long key) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            EntityCache<T> cache = getEntityCache();
+            if (cache != null) {
+                return cache.get(key, () -> readFromDatabase(key));
+            }
+            return readFromDatabase(key);
+        } finally {
+            metrics().record(DaoOperation.READ, start);
+        }
+    }
+
+    private T readFromDatabase(long key) throws SQLException {
+        StatementTrace trace = new StatementTrace();
+        PreparedStatement preparedStatement = getReadByIDStatement(key);
         T object = null;
-        ResultSet result = getReadByIDStatement(key).executeQuery();
-        if (result.next()) {
-            object = getInstanceFromResultSet(result);
+        try (ResultSet result = preparedStatement.executeQuery()) {
+            if (result.next()) {
+                object = getInstanceFromResultSet(result);
+            }
+            return object;
+        } finally {
+            endTrace(trace, preparedStatement, object != null ? 1 : 0);
+            releaseStatement(preparedStatement);
         }
-        return object;
     }
 
     @Override
     public List<T> readAll() throws SQLException {
-        return getListFromResultSet(getReadAllStatement().executeQuery());
+        long start = System.nanoTime();
+        try {
+            EntityCache<T> cache = getEntityCache();
+            if (cache != null) {
+                return cache.getAll(() -> queryList(getReadAllStatement()));
+            }
+            return queryList(getReadAllStatement());
+        } finally {
+            metrics().record(DaoOperation.READ_ALL, start);
+        }
     }
 
     @Override
     public void update(T t) throws SQLException {
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        int rowsAffected = 0;
+        ConnectionBuilder.getWriteLock().lock();
         PreparedStatement preparedStatement = null;
         try {
             preparedStatement = getUpdateStatement(t);
             if (preparedStatement == null) {
                 throw new SQLException("Fehler beim Aktualisieren des Objekts " + t.getClass().getSimpleName() + ": PreparedStatement ist null.");
             }
-            int rowsAffected = preparedStatement.executeUpdate();
-            System.out.println("Update durchgeführt. Betroffene Zeilen: " + rowsAffected);
+            rowsAffected = preparedStatement.executeUpdate();
+            LOGGER.debug("Update durchgeführt. Betroffene Zeilen: {}", rowsAffected);
         } catch (SQLException e) {
-            System.err.println("SQL-Fehler beim Ausführen des Update-PreparedStatements: " + e.getMessage());
+            LOGGER.error("SQL-Fehler beim Ausführen des Update-PreparedStatements: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler beim Aktualisieren des Objekts: " + e.getMessage());
+            LOGGER.error("Unerwarteter Fehler beim Aktualisieren des Objekts: {}", e.getMessage());
             throw new SQLException("Fehler beim Aktualisieren: " + e.getMessage(), e);
         } finally {
-            try {
-                if (preparedStatement != null) {
-                    preparedStatement.close();
+            endTrace(trace, getUpdateSQL(), preparedStatement, rowsAffected);
+            releaseStatement(preparedStatement);
+            if (getEntityCache() != null) {
+                getEntityCache().invalidate(t);
+            }
+            ConnectionBuilder.getWriteLock().unlock();
+            metrics().record(DaoOperation.UPDATE, start);
+        }
+    }
+
+    /**
+     * Updates all given objects in one transaction, using JDBC batches of <code>nhplus.db.batchSize</code> rows.
+     * {@link #beforeUpdateBatch(Collection)} and {@link #afterUpdateBatch()} enclose the binding of the rows.
+     *
+     * @param objects Objects to update.
+     */
+    @Override
+    public void updateAll(Collection<T> objects) throws SQLException {
+        if (objects.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        try {
+            ConnectionBuilder.inTransaction(writer -> {
+                int batchSize = getBatchSize();
+                int pending = 0;
+                beforeUpdateBatch(objects);
+                PreparedStatement preparedStatement = prepareStatement(getUpdateSQL());
+                try {
+                    for (T t : objects) {
+                        bindUpdateStatement(preparedStatement, t);
+                        preparedStatement.addBatch();
+                        if (++pending == batchSize) {
+                            preparedStatement.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        preparedStatement.executeBatch();
+                    }
+                } finally {
+                    preparedStatement.clearBatch();
+                    releaseStatement(preparedStatement);
+                    afterUpdateBatch();
+                }
+                return null;
+            });
+        } finally {
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateAll();
+            }
+            endBatchTrace(trace, getUpdateSQL(), objects.size());
+            metrics().record(DaoOperation.UPDATE_ALL, start);
+        }
+    }
+
+    /**
+     * Deletes all rows with the given ids in one transaction, using JDBC batches of <code>nhplus.db.batchSize</code>
+     * rows.
+     *
+     * @param keys Ids of the rows to delete.
+     */
+    @Override
+    public void deleteAllById(long[] keys) throws SQLException {
+        if (keys.length == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        try {
+            ConnectionBuilder.inTransaction(writer -> {
+                int batchSize = getBatchSize();
+                int pending = 0;
+                PreparedStatement preparedStatement = prepareStatement(getDeleteSQL());
+                try {
+                    for (long key : keys) {
+                        preparedStatement.setLong(1, key);
+                        preparedStatement.addBatch();
+                        if (++pending == batchSize) {
+                            preparedStatement.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        preparedStatement.executeBatch();
+                    }
+                } finally {
+                    preparedStatement.clearBatch();
+                    releaseStatement(preparedStatement);
                 }
-            } catch (SQLException e) {
-                System.err.println("Fehler beim Schließen des PreparedStatements: " + e.getMessage());
+                return null;
+            });
+        } finally {
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateAll();
             }
+            endBatchTrace(trace, getDeleteSQL(), keys.length);
+            metrics().record(DaoOperation.DELETE_ALL, start);
         }
     }
 
     @Override
     public void deleteById(long key) throws SQLException {
-        getDeleteStatement(key).executeUpdate();
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        int rows = 0;
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = getDeleteStatement(key);
+            rows = preparedStatement.executeUpdate();
+        } finally {
+            endTrace(trace, getDeleteSQL(), preparedStatement, rows);
+            releaseStatement(preparedStatement);
+            if (getEntityCache() != null) {
+                getEntityCache().invalidate(key);
+            }
+            ConnectionBuilder.getWriteLock().unlock();
+            metrics().record(DaoOperation.DELETE, start);
+        }
+    }
+
+    /**
+     * Moves the rows with the given ids from status <code>from</code> to status <code>to</code> and sets their status
+     * change date to today. Rows that do not have status <code>from</code> (any more) are left alone. The ids are
+     * processed in chunks of <code>nhplus.db.batchSize</code>, each with one conditional <code>UPDATE</code>; all
+     * chunks run in one transaction.
+     *
+     * @param table    Table of this DAO.
+     * @param idColumn Primary key column of <code>table</code>.
+     * @param ids      Ids of the rows to change.
+     * @param from     Status the rows must have.
+     * @param to       New status.
+     * @return The ids of the rows that were actually changed.
+     */
+    protected List<Long> transitionStatus(String table, String idColumn, long[] ids, RecordStatus from,
+                                          RecordStatus to) throws SQLException {
+        List<Long> changed = new ArrayList<>();
+        if (ids.length == 0 || from == to) {
+            return changed;
+        }
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        int chunkSize = Math.min(ids.length, getBatchSize());
+        String sql = transitionStatusSql(table, idColumn, chunkSize);
+        try {
+            ConnectionBuilder.inTransaction(writer -> {
+                PreparedStatement preparedStatement = prepareStatement(sql);
+                try {
+                    String today = LocalDate.now().toString();
+                    for (int offset = 0; offset < ids.length; offset += chunkSize) {
+                        preparedStatement.setString(1, to.toString());
+                        preparedStatement.setString(2, today);
+                        for (int i = 0; i < chunkSize; i++) {
+                            // The last chunk repeats its last id, so every chunk uses the same statement
+                            preparedStatement.setLong(3 + i, ids[Math.min(offset + i, ids.length - 1)]);
+                        }
+                        preparedStatement.setString(3 + chunkSize, from.toString());
+                        collectIds(preparedStatement, changed);
+                    }
+                } finally {
+                    releaseStatement(preparedStatement);
+                }
+                return null;
+            });
+        } finally {
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateAll();
+            }
+            endTrace(trace, sql, null, changed.size());
+            metrics().record(DaoOperation.TRANSITION, start);
+        }
+        return changed;
+    }
+
+    /**
+     * Moves all rows with status <code>from</code> whose date column lies before <code>cutoff</code> to status
+     * <code>to</code> and sets their status change date to today. Works in chunks of
+     * <code>nhplus.db.batchSize</code> rows, each with one conditional <code>UPDATE</code>, until no matching row is
+     * left; all chunks run in one transaction. The condition on <code>(status, dateColumn)</code> can use the
+     * composite status indexes.
+     *
+     * @param table      Table of this DAO.
+     * @param idColumn   Primary key column of <code>table</code>.
+     * @param dateColumn Column with an ISO date (<code>yyyy-MM-dd</code>) to compare with <code>cutoff</code>.
+     * @param cutoff     Only rows dated before this day are changed.
+     * @param from       Status the rows must have.
+     * @param to         New status.
+     * @return The ids of the rows that were changed.
+     */
+    protected List<Long> transitionStatusBefore(String table, String idColumn, String dateColumn, LocalDate cutoff,
+                                                RecordStatus from, RecordStatus to) throws SQLException {
+        List<Long> changed = new ArrayList<>();
+        if (from == to) {
+            return changed;
+        }
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        int chunkSize = getBatchSize();
+        String sql = transitionStatusBeforeSql(table, idColumn, dateColumn);
+        try {
+            ConnectionBuilder.inTransaction(writer -> {
+                PreparedStatement preparedStatement = prepareStatement(sql);
+                try {
+                    String today = LocalDate.now().toString();
+                    int count;
+                    do {
+                        preparedStatement.setString(1, to.toString());
+                        preparedStatement.setString(2, today);
+                        preparedStatement.setString(3, from.toString());
+                        preparedStatement.setString(4, cutoff.toString());
+                        preparedStatement.setInt(5, chunkSize);
+                        count = collectIds(preparedStatement, changed);
+                    } while (count == chunkSize);
+                } finally {
+                    releaseStatement(preparedStatement);
+                }
+                return null;
+            });
+        } finally {
+            if (getEntityCache() != null) {
+                getEntityCache().invalidateAll();
+            }
+            endTrace(trace, sql, null, changed.size());
+            metrics().record(DaoOperation.TRANSITION, start);
+        }
+        return changed;
+    }
+
+    /**
+     * Reads the ids of the rows with the given status whose date column lies before <code>cutoff</code>, in
+     * ascending order and starting after <code>afterId</code>. Used to walk through a table in chunks that can be
+     * resumed from the last processed id. The query walks the primary key from <code>afterId</code> on, so every
+     * chunk costs about the same no matter how far into the table it is.
+     *
+     * @param table      Table of this DAO.
+     * @param idColumn   Primary key column of <code>table</code>.
+     * @param dateColumn Column with an ISO date (<code>yyyy-MM-dd</code>) to compare with <code>cutoff</code>.
+     * @param status     Status the rows must have.
+     * @param cutoff     Only rows dated before this day are returned.
+     * @param afterId    Last id of the previous chunk, or 0 for the first one.
+     * @param limit      Maximum number of ids.
+     * @return The matching ids, ascending.
+     */
+    protected long[] findIdsBefore(String table, String idColumn, String dateColumn, RecordStatus status,
+                                   LocalDate cutoff, long afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        StatementTrace trace = new StatementTrace();
+        PreparedStatement statement = prepareReadStatement(findIdsBeforeSql(table, idColumn, dateColumn),
+                afterId, status.name(), cutoff.toString(), limit);
+        long[] ids = new long[limit];
+        int count = 0;
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                ids[count++] = result.getLong(1);
+            }
+            return Arrays.copyOf(ids, count);
+        } finally {
+            endTrace(trace, statement, count);
+            releaseStatement(statement);
+            metrics().record(DaoOperation.QUERY, start);
+        }
+    }
+
+    /**
+     * Executes an <code>UPDATE ... RETURNING id</code> statement and adds the returned ids to <code>ids</code>.
+     *
+     * @return The number of returned ids.
+     */
+    /**
+     * Reads one column of the rows with the given ids, with one <code>SELECT ... WHERE idColumn IN (...)</code> per
+     * chunk of <code>nhplus.db.batchSize</code> ids instead of one query per row.
+     *
+     * @param table    Table of this DAO.
+     * @param idColumn Primary key column of <code>table</code>.
+     * @param column   Column to read.
+     * @param ids      Ids of the rows to read.
+     * @return The values by id. Ids without a row are missing.
+     */
+    protected Map<Long, String> readColumnByIds(String table, String idColumn, String column, long[] ids)
+            throws SQLException {
+        Map<Long, String> values = new HashMap<>();
+        if (ids.length == 0) {
+            return values;
+        }
+        int chunkSize = Math.min(ids.length, getBatchSize());
+        PreparedStatement preparedStatement = prepareStatement(readColumnByIdsSql(table, idColumn, column, chunkSize));
+        try {
+            for (int offset = 0; offset < ids.length; offset += chunkSize) {
+                for (int i = 0; i < chunkSize; i++) {
+                    // The last chunk repeats its last id, so every chunk uses the same statement
+                    preparedStatement.setLong(1 + i, ids[Math.min(offset + i, ids.length - 1)]);
+                }
+                try (ResultSet result = preparedStatement.executeQuery()) {
+                    while (result.next()) {
+                        values.put(result.getLong(1), result.getString(2));
+                    }
+                }
+            }
+        } finally {
+            releaseStatement(preparedStatement);
+        }
+        return values;
+    }
+
+    /**
+     * @return SQL of {@link #transitionStatus} for chunks of <code>chunkSize</code> ids.
+     */
+    static String transitionStatusSql(String table, String idColumn, int chunkSize) {
+        // The unary plus keeps SQLite from choosing the status index over the primary key lookups.
+        return "UPDATE " + table + " SET status = ?, status_change_date = ? WHERE " + idColumn + " IN ("
+                + String.join(", ", Collections.nCopies(chunkSize, "?")) + ") AND +status = ? RETURNING " + idColumn;
+    }
+
+    /**
+     * @return SQL of {@link #transitionStatusBefore}.
+     */
+    static String transitionStatusBeforeSql(String table, String idColumn, String dateColumn) {
+        return "UPDATE " + table + " SET status = ?, status_change_date = ? WHERE " + idColumn + " IN ("
+                + "SELECT " + idColumn + " FROM " + table + " WHERE status = ? AND " + dateColumn + " < ? LIMIT ?)"
+                + " RETURNING " + idColumn;
+    }
+
+    /**
+     * @return SQL of {@link #findIdsBefore}.
+     */
+    static String findIdsBeforeSql(String table, String idColumn, String dateColumn) {
+        // The unary plus keeps SQLite from choosing the status index, which would have to sort all matches
+        return "SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " > ? AND +status = ? AND "
+                + dateColumn + " < ? ORDER BY " + idColumn + " LIMIT ?";
+    }
+
+    /**
+     * @return SQL of {@link #readColumnByIds} for chunks of <code>chunkSize</code> ids.
+     */
+    static String readColumnByIdsSql(String table, String idColumn, String column, int chunkSize) {
+        return "SELECT " + idColumn + ", " + column + " FROM " + table + " WHERE " + idColumn + " IN ("
+                + String.join(", ", Collections.nCopies(chunkSize, "?")) + ")";
+    }
+
+    private static int collectIds(PreparedStatement statement, List<Long> ids) throws SQLException {
+        int count = 0;
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                ids.add(result.getLong(1));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks out a cached statement of the writer connection. It has to be handed back with
+     * {@link #releaseStatement(PreparedStatement)}.
+     *
+     * @param sql SQL of the statement.
+     * @return The prepared statement.
+     */
+    protected PreparedStatement prepareStatement(String sql) throws SQLException {
+        return StatementCache.forConnection(this.connection).acquire(sql);
+    }
+
+    /**
+     * Checks out a cached statement of the writer connection that returns the generated keys.
+     *
+     * @param sql               SQL of the statement.
+     * @param autoGeneratedKeys <code>Statement.RETURN_GENERATED_KEYS</code> or <code>Statement.NO_GENERATED_KEYS</code>.
+     * @return The prepared statement.
+     */
+    protected PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return StatementCache.forConnection(this.connection).acquire(sql, autoGeneratedKeys);
+    }
+
+    /**
+     * Checks out a cached statement of the read-only connection. It has to be handed back with
+     * {@link #releaseStatement(PreparedStatement)}.
+     *
+     * @param sql SQL of the query.
+     * @return The prepared statement.
+     */
+    protected PreparedStatement prepareReadStatement(String sql) throws SQLException {
+        return StatementCache.forConnection(this.readConnection).acquire(sql);
+    }
+
+    /**
+     * Hands a statement obtained by <code>prepareStatement</code> or <code>prepareReadStatement</code> back to its
+     * cache. Statements that do not belong to a cache are closed. <code>null</code> is ignored.
+     *
+     * @param statement Statement to release.
+     */
+    protected void releaseStatement(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+        if (release(this.readConnection, statement) || release(this.connection, statement)) {
+            return;
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.warn("Fehler beim Schließen des PreparedStatements: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hands the statement back to the cache of the connection. Never creates a cache, so a statement that outlives
+     * {@link ConnectionBuilder#closeConnection()} is closed by the caller instead of filling a new one.
+     *
+     * @return <code>true</code>, if the statement was checked out from the cache of <code>connection</code>.
+     */
+    private static boolean release(Connection connection, PreparedStatement statement) {
+        StatementCache cache = StatementCache.find(connection);
+        return cache != null && cache.release(statement);
+    }
+
+    /**
+     * @return The SQL of a statement checked out from the cache of the connection, otherwise <code>null</code>.
+     */
+    private static String getSql(Connection connection, PreparedStatement statement) {
+        StatementCache cache = StatementCache.find(connection);
+        return cache != null ? cache.getSql(statement) : null;
+    }
+
+    /**
+     * Executes the given query, maps all rows with {@link #getListFromResultSet(ResultSet)} and releases the
+     * statement afterwards.
+     *
+     * @param statement Query to execute.
+     * @return All mapped rows.
+     */
+    protected List<T> queryList(PreparedStatement statement) throws SQLException {
+        StatementTrace trace = new StatementTrace();
+        List<T> list = null;
+        try (ResultSet result = statement.executeQuery()) {
+            list = getListFromResultSet(result);
+            return list;
+        } finally {
+            endTrace(trace, statement, list != null ? list.size() : 0);
+            releaseStatement(statement);
+        }
+    }
+
+    /**
+     * Executes the given query on the read-only connection and maps all rows.
+     *
+     * @param sql        Query to execute.
+     * @param parameters Values for the placeholders of <code>sql</code>, in order.
+     * @return All mapped rows.
+     */
+    protected List<T> queryList(String sql, Object... parameters) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return queryList(prepareReadStatement(sql, parameters));
+        } finally {
+            metrics().record(DaoOperation.QUERY, start);
+        }
+    }
+
+    /**
+     * Executes the given query on the read-only connection and maps its rows lazily, see
+     * {@link #stream(PreparedStatement)}.
+     *
+     * @param sql        Query to execute.
+     * @param parameters Values for the placeholders of <code>sql</code>, in order.
+     * @return Lazily mapped rows of the query. The stream has to be closed.
+     */
+    protected Stream<T> stream(String sql, Object... parameters) throws SQLException {
+        return stream(prepareReadStatement(sql, parameters));
+    }
+
+    private PreparedStatement prepareReadStatement(String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = prepareReadStatement(sql);
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+        } catch (SQLException | RuntimeException exception) {
+            releaseStatement(statement);
+            throw exception;
+        }
+        return statement;
     }
 
     protected abstract T getInstanceFromResultSet(ResultSet set) throws SQLException;
@@ -101,13 +718,216 @@ public abstract class DaoImp<T> implements Dao<T> {
     protected abstract ArrayList<T> getListFromResultSet(ResultSet set) throws SQLException;
 
 
-    protected abstract PreparedStatement getCreateStatement(T t);
+    /**
+     * Executes the given query and maps its rows lazily, one at a time, with
+     * {@link #getInstanceFromResultSet(ResultSet)}. The rows are fetched in chunks of <code>nhplus.db.fetchSize</code>
+     * rows (default 256). The <code>ResultSet</code> stays open until the stream is closed, which also hands the
+     * statement back to its cache, so the stream must be used in a try-with-resources block.
+     * <p>
+     * A <code>SQLException</code> while reading a row is rethrown as {@link DataAccessException}.
+     *
+     * @param statement Query to execute.
+     * @return Lazily mapped rows of the query.
+     */
+    protected Stream<T> stream(PreparedStatement statement) throws SQLException {
+        StatementTrace trace = new StatementTrace();
+        ResultSet result;
+        try {
+            statement.setFetchSize(getFetchSize());
+            result = statement.executeQuery();
+        } catch (SQLException | RuntimeException exception) {
+            endTrace(trace, statement, 0);
+            releaseStatement(statement);
+            throw exception;
+        }
+        long[] count = new long[1];
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!result.next()) {
+                        return false;
+                    }
+                    count[0]++;
+                    action.accept(getInstanceFromResultSet(result));
+                    return true;
+                } catch (SQLException exception) {
+                    throw new DataAccessException("Fehler beim Lesen der nächsten Zeile", exception);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                result.close();
+            } catch (SQLException exception) {
+                LOGGER.warn("Fehler beim Schließen des ResultSets: {}", exception.getMessage());
+            } finally {
+                endTrace(trace, statement, count[0]);
+                releaseStatement(statement);
+            }
+        });
+    }
+
+    /**
+     * Ends the measurement of a statement and reports it, if necessary. The SQL is looked up in the statement cache
+     * only then, so it has to be called before the statement is released.
+     */
+    private void endTrace(StatementTrace trace, PreparedStatement statement, long rows) {
+        if (trace.end()) {
+            String sql = getSql(this.readConnection, statement);
+            if (sql == null) {
+                sql = getSql(this.connection, statement);
+            }
+            trace.report(this.readConnection, getEntityName(), sql, statement, rows);
+        }
+    }
+
+    /**
+     * Ends the measurement of a statement and reports it, if necessary.
+     *
+     * @param statement The executed statement, or <code>null</code> if its bound values do not matter.
+     */
+    private void endTrace(StatementTrace trace, String sql, PreparedStatement statement, long rows) {
+        if (trace.end()) {
+            trace.report(this.readConnection, getEntityName(), sql, statement, rows);
+        }
+    }
+
+    /**
+     * Ends the measurement of JDBC batches and reports their size, if necessary.
+     */
+    private void endBatchTrace(StatementTrace trace, String sql, long rows) {
+        if (trace.end()) {
+            trace.reportBatch(this.readConnection, getEntityName(), sql, rows);
+        }
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to persist the given object.
+     */
+    protected PreparedStatement getCreateStatement(T t) throws SQLException {
+        PreparedStatement preparedStatement = prepareStatement(getCreateSQL());
+        try {
+            bindCreateStatement(preparedStatement, t);
+        } catch (SQLException | RuntimeException exception) {
+            releaseStatement(preparedStatement);
+            throw exception;
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to update the given object.
+     */
+    protected PreparedStatement getUpdateStatement(T t) throws SQLException {
+        PreparedStatement preparedStatement = prepareStatement(getUpdateSQL());
+        try {
+            bindUpdateStatement(preparedStatement, t);
+        } catch (SQLException | RuntimeException exception) {
+            releaseStatement(preparedStatement);
+            throw exception;
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Generates a <code>PreparedStatement</code> to delete the row with the given id.
+     */
+    protected PreparedStatement getDeleteStatement(long key) throws SQLException {
+        PreparedStatement preparedStatement = prepareStatement(getDeleteSQL());
+        preparedStatement.setLong(1, key);
+        return preparedStatement;
+    }
+
+    /**
+     * @return The histograms of this DAO, named after {@link #getEntityName()}.
+     */
+    private DaoMetrics metrics() {
+        if (this.metrics == null) {
+            this.metrics = Metrics.dao(getEntityName());
+        }
+        return this.metrics;
+    }
+
+    /**
+     * Cache in front of {@link #read(long)} and {@link #readAll()}. DAOs of slowly changing reference records return
+     * a shared {@link EntityCache}, which knows how to identify and copy the entities; the default is no caching. Every write of
+     * this DAO invalidates the affected entries once it is done, so the cache only stays correct as long as the table
+     * is not changed past the DAO.
+     *
+     * @return The entity cache of this DAO, or <code>null</code>.
+     */
+    protected EntityCache<T> getEntityCache() {
+        return null;
+    }
+
+    /**
+     * @return Name of the entity type in the metrics, e.g. <code>treatment</code>.
+     */
+    protected abstract String getEntityName();
 
     protected abstract PreparedStatement getReadByIDStatement(long key);
 
     protected abstract PreparedStatement getReadAllStatement();
 
-    protected abstract PreparedStatement getUpdateStatement(T t);
+    /**
+     * @return SQL of the insert statement, used for single and batched inserts.
+     */
+    protected abstract String getCreateSQL();
+
+    /**
+     * Binds the values of the given object to the statement returned by {@link #getCreateSQL()}.
+     */
+    protected abstract void bindCreateStatement(PreparedStatement statement, T t) throws SQLException;
 
-    protected abstract PreparedStatement getDeleteStatement(long key);
+    /**
+     * @return SQL of the update statement, used for single and batched updates.
+     */
+    protected abstract String getUpdateSQL();
+
+    /**
+     * Binds the values of the given object to the statement returned by {@link #getUpdateSQL()}.
+     */
+    protected abstract void bindUpdateStatement(PreparedStatement statement, T t) throws SQLException;
+
+    /**
+     * Called by {@link #updateAll(Collection)} inside its transaction before the first row is bound, e.g. to load
+     * what {@link #bindUpdateStatement(PreparedStatement, Object)} needs for all rows at once. Does nothing by
+     * default.
+     *
+     * @param objects Objects that are about to be updated.
+     */
+    protected void beforeUpdateBatch(Collection<T> objects) throws SQLException {
+    }
+
+    /**
+     * Called by {@link #updateAll(Collection)} after the last batch, also if it failed, to drop what
+     * {@link #beforeUpdateBatch(Collection)} loaded. Does nothing by default.
+     */
+    protected void afterUpdateBatch() {
+    }
+
+    /**
+     * @return SQL of the delete statement. Its only parameter is the id of the row to delete.
+     */
+    protected abstract String getDeleteSQL();
+
+    private static int getFetchSize() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.db.fetchSize", String.valueOf(DEFAULT_FETCH_SIZE))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_FETCH_SIZE;
+        }
+    }
+
+    private static int getBatchSize() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.db.batchSize", String.valueOf(DEFAULT_BATCH_SIZE))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_BATCH_SIZE;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Unchecked wrapper for a <code>SQLException</code> that occurs where no checked exception can be thrown, e.g.
+ * while a <code>Stream</code> returned by a DAO is consumed.
+ */
+public class DataAccessException extends RuntimeException {
+
+    public DataAccessException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,16 +1,17 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.utils.PasswordHasher;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 public class DefaultUserSetup {
     
     public static void createDefaultAdminUser() {
-        try (Connection connection = ConnectionBuilder.getConnection()) {
+        Connection connection = ConnectionBuilder.getConnection();
+        try {
             
             if (adminUserExists(connection)) {
                 System.out.println("Admin-Benutzer bereits vorhanden.");
@@ -50,29 +51,12 @@ public class DefaultUserSetup {
     }
     
     private static String hashPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("Fehler beim Hashen des Passworts: " + e.getMessage());
-            return password;
-        }
+        return PasswordHasher.getInstance().hash(password);
     }
     
     public static void listAllUsers() {
-        try (Connection connection = ConnectionBuilder.getConnection();
-             PreparedStatement stmt = connection.prepareStatement("SELECT username, role, locked FROM users");
+        Connection connection = ConnectionBuilder.getReadConnection();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT username, role, locked FROM users");
              ResultSet rs = stmt.executeQuery()) {
             
             System.out.println("\n=== Alle Benutzer ===");
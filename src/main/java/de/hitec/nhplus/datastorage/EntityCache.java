@@ -0,0 +1,247 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.metrics.Metrics;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache for slowly changing reference records, keyed by their id. Besides single entities it keeps the
+ * result of the last <code>readAll</code>, if it has no more rows than the capacity.
+ * <p>
+ * The cache is filled by {@link DaoImp} and invalidated by the writes of the DAO it belongs to. Every invalidation
+ * bumps a generation counter; a value that was loaded from the database while an invalidation happened is not
+ * stored, so a concurrent write can never be overwritten by the stale result of a read that started before it.
+ * <p>
+ * The entities are mutable, e.g. by the cell edits of the table views, so the cache keeps its own snapshots and
+ * hands out copies of them: an edit that is never saved, or whose update fails, never reaches the cache or another
+ * caller, and no other thread reads an entity the application thread is changing.
+ * <p>
+ * The capacity can be configured with the system property <code>nhplus.db.entityCacheSize</code> (default 1000). It
+ * bounds all cached entities: a <code>readAll</code> result with more rows is not kept, and the kept result is
+ * dropped as soon as one of its entities is evicted.
+ *
+ * @param <T> Type of the cached entities.
+ */
+public class EntityCache<T> {
+
+    private static final int DEFAULT_CAPACITY = 1000;
+    private static final List<EntityCache<?>> CACHES = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final IdFunction<T> idOf;
+    private final Copier<T> copier;
+    private final int capacity;
+    private final LinkedHashMap<Long, T> entities;
+    private List<T> all;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param name Name of the cache, usually the name of the table.
+     * @param idOf   Returns the id of an entity, e.g. <code>Patient::getPid</code>.
+     * @param copier Returns an independent copy of an entity.
+     */
+    public EntityCache(String name, IdFunction<T> idOf, Copier<T> copier) {
+        this.name = name;
+        this.idOf = idOf;
+        this.copier = copier;
+        this.capacity = getCapacity();
+        this.entities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                if (size() > EntityCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    // the list would keep the evicted entity alive beyond the capacity
+                    EntityCache.this.all = null;
+                    return true;
+                }
+                return false;
+            }
+        };
+        CACHES.add(this);
+        Metrics.registerCache(name, this::getHits, this::getMisses, this::getEvictions, this::size);
+    }
+
+    /**
+     * @return All entity caches created so far.
+     */
+    public static List<EntityCache<?>> getAll() {
+        return List.copyOf(CACHES);
+    }
+
+    /**
+     * Returns a copy of the cached entity with the given id, or loads it with the given loader on a miss.
+     *
+     * @param id     Id of the entity.
+     * @param loader Reads the entity from the database.
+     * @return The entity, owned by the caller, or <code>null</code> if the loader found none.
+     */
+    public T get(long id, Loader<T> loader) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            T snapshot = this.entities.get(id);
+            if (snapshot != null) {
+                this.hits.incrementAndGet();
+                return this.copier.copy(snapshot);
+            }
+            loadGeneration = this.generation;
+        }
+        this.misses.incrementAndGet();
+        T entity = loader.load();
+        if (entity != null) {
+            T snapshot = this.copier.copy(entity);
+            synchronized (this) {
+                if (loadGeneration == this.generation) {
+                    this.entities.put(id, snapshot);
+                }
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Returns copies of the cached result of <code>readAll</code>, or loads it with the given loader on a miss.
+     * <p>
+     * A result with no more rows than the capacity is kept; its entities also serve later <code>read(id)</code>
+     * calls.
+     *
+     * @param loader Reads all entities from the database.
+     * @return A new list with all entities, owned by the caller.
+     */
+    public ArrayList<T> getAll(Loader<List<T>> loader) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            if (this.all != null) {
+                this.hits.incrementAndGet();
+                return copyAll(this.all);
+            }
+            loadGeneration = this.generation;
+        }
+        this.misses.incrementAndGet();
+        List<T> loaded = loader.load();
+        if (loaded.size() <= this.capacity) {
+            List<T> snapshots = List.copyOf(copyAll(loaded));
+            synchronized (this) {
+                if (loadGeneration == this.generation) {
+                    for (T snapshot : snapshots) {
+                        this.entities.put(this.idOf.getId(snapshot), snapshot);
+                    }
+                    this.all = snapshots;
+                }
+            }
+        }
+        return new ArrayList<>(loaded);
+    }
+
+    private ArrayList<T> copyAll(List<T> entities) {
+        ArrayList<T> copies = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            copies.add(this.copier.copy(entity));
+        }
+        return copies;
+    }
+
+    /**
+     * Drops the entity with the given id and the cached <code>readAll</code> result.
+     */
+    public synchronized void invalidate(long id) {
+        this.generation++;
+        this.entities.remove(id);
+        this.all = null;
+    }
+
+    /**
+     * Drops the given entity and the cached <code>readAll</code> result.
+     */
+    public void invalidate(T entity) {
+        invalidate(this.idOf.getId(entity));
+    }
+
+    /**
+     * Drops only the cached <code>readAll</code> result, e.g. after an insert.
+     */
+    public synchronized void invalidateList() {
+        this.generation++;
+        this.all = null;
+    }
+
+    /**
+     * Drops everything.
+     */
+    public synchronized void invalidateAll() {
+        this.generation++;
+        this.entities.clear();
+        this.all = null;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return Share of lookups served from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return this.entities.size();
+    }
+
+    private static int getCapacity() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.db.entityCacheSize", String.valueOf(DEFAULT_CAPACITY))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_CAPACITY;
+        }
+    }
+
+    /**
+     * Reads a value from the database on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    /**
+     * Returns the id of an entity.
+     */
+    @FunctionalInterface
+    public interface IdFunction<T> {
+        long getId(T entity);
+    }
+
+    /**
+     * Returns an independent copy of an entity, so changes of the copy do not affect the original.
+     */
+    @FunctionalInterface
+    public interface Copier<T> {
+        T copy(T entity);
+    }
+}
@@ -0,0 +1,145 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.LoginLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores login attempts in the table <code>login_log</code>. Entries are only ever inserted, in batches, and read
+ * page by page, newest first.
+ */
+public class LoginLogDao {
+
+    /**
+     * Format of the column <code>timestamp</code>, the same as that of SQLite's <code>CURRENT_TIMESTAMP</code>, so
+     * timestamps compare correctly as text.
+     */
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String INSERT_SQL = "INSERT INTO login_log (username, ip_address, timestamp, successful, " +
+            "failure_reason) VALUES (?, ?, ?, ?, ?)";
+
+    private final Connection connection;
+    private final Connection readConnection;
+
+    /**
+     * @param connection     Writer connection, used for all modifying statements.
+     * @param readConnection Read-only connection, used for all queries.
+     */
+    public LoginLogDao(Connection connection, Connection readConnection) {
+        this.connection = connection;
+        this.readConnection = readConnection;
+    }
+
+    /**
+     * Inserts the given entries with one batch in one transaction.
+     */
+    public void createAll(Collection<LoginLog> logs) throws SQLException {
+        if (logs.isEmpty()) {
+            return;
+        }
+        ConnectionBuilder.inTransaction(writer -> {
+            StatementCache cache = StatementCache.forConnection(this.connection);
+            PreparedStatement statement = cache.acquire(INSERT_SQL);
+            try {
+                for (LoginLog log : logs) {
+                    statement.setString(1, log.getUsername());
+                    statement.setString(2, log.getIpAddress());
+                    statement.setString(3, log.getTimestamp().format(FORMATTER));
+                    statement.setBoolean(4, log.isSuccessful());
+                    statement.setString(5, log.getFailureReason());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } finally {
+                statement.clearBatch();
+                cache.release(statement);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads one page of the entries that match the given filters, newest first. The username filter matches any
+     * part of the username and ignores the case of ASCII letters, like <code>LIKE</code> does. Being a substring
+     * match, it cannot use the index on <code>(username, timestamp)</code>: SQLite walks the index on
+     * <code>timestamp</code> from the newest entry and checks the username of each one until the page is full, so
+     * a rare username costs up to one pass over the log. Queries without a username filter are answered from the
+     * index on <code>timestamp</code> alone.
+     *
+     * @param username Part of the username, or <code>null</code> for all users.
+     * @param from     Earliest timestamp, inclusive, or <code>null</code>.
+     * @param to       Latest timestamp, exclusive, or <code>null</code>.
+     * @param offset   Number of matching entries to skip.
+     * @param limit    Maximum number of entries.
+     */
+    public List<LoginLog> readPage(String username, LocalDateTime from, LocalDateTime to, int offset, int limit)
+            throws SQLException {
+        List<Object> parameters = new ArrayList<>();
+        if (username != null) {
+            parameters.add("%" + escapeLike(username) + "%");
+        }
+        if (from != null) {
+            parameters.add(from.format(FORMATTER));
+        }
+        if (to != null) {
+            parameters.add(to.format(FORMATTER));
+        }
+        parameters.add(limit);
+        parameters.add(offset);
+
+        List<LoginLog> logs = new ArrayList<>();
+        StatementCache cache = StatementCache.forConnection(this.readConnection);
+        PreparedStatement statement = cache.acquire(readPageSql(username != null, from != null, to != null));
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    LoginLog log = new LoginLog(result.getString(2), result.getString(3), result.getBoolean(5),
+                            result.getString(6));
+                    log.setId(result.getInt(1));
+                    log.setTimestamp(LocalDateTime.parse(result.getString(4), FORMATTER));
+                    logs.add(log);
+                }
+            }
+        } finally {
+            cache.release(statement);
+        }
+        return logs;
+    }
+
+    /**
+     * @return SQL of {@link #readPage} with the given filters. Its parameters are the values of the filters, in
+     * this order, followed by limit and offset.
+     */
+    static String readPageSql(boolean byUsername, boolean byFrom, boolean byTo) {
+        StringBuilder sql = new StringBuilder("SELECT id, username, ip_address, timestamp, successful, " +
+                "failure_reason FROM login_log WHERE 1 = 1");
+        if (byUsername) {
+            sql.append(" AND username LIKE ? ESCAPE '\\'");
+        }
+        if (byFrom) {
+            sql.append(" AND timestamp >= ?");
+        }
+        if (byTo) {
+            sql.append(" AND timestamp < ?");
+        }
+        return sql.append(" ORDER BY timestamp DESC, id DESC LIMIT ? OFFSET ?").toString();
+    }
+
+    /**
+     * Escapes the wildcards of <code>LIKE</code>, so they match themselves.
+     */
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
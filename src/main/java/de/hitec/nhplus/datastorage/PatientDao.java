@@ -3,56 +3,102 @@ package de.hitec.nhplus.datastorage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.RecordStatus;
 import de.hitec.nhplus.utils.DateConverter;
-import java.sql.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class PatientDao extends DaoImp<Patient> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatientDao.class);
+
+    static final String TABLE = "patient";
+    static final String ID_COLUMN = "pid";
+    /**
+     * Spalte, nach der die Archivierung Patienten auswählt.
+     */
+    static final String ARCHIVING_DATE_COLUMN = "dateOfBirth";
+
+    static final String READ_BY_ID_SQL = "SELECT * FROM patient WHERE pid = ?";
+    static final String FIND_BY_STATUS_SQL = "SELECT * FROM patient WHERE status = ?";
+    static final String FIND_OLDER_THAN_SQL =
+            "SELECT * FROM patient WHERE " + ANY_STATUS + " AND status_change_date < ?";
+    static final String FIND_BORN_BEFORE_SQL = "SELECT * FROM patient WHERE dateOfBirth < ?";
+    static final String READ_PAGE_SQL = "SELECT * FROM patient WHERE pid > ? ORDER BY pid LIMIT ?";
+    static final String UPDATE_SQL = "UPDATE patient SET " +
+            "firstname = ?, " +
+            "surname = ?, " +
+            "dateOfBirth = ?, " +
+            "carelevel = ?, " +
+            "roomnumber = ?, " +
+            "status = ?, " +
+            "status_change_date = ? " +
+            "WHERE pid = ?";
+    static final String DELETE_SQL = "DELETE FROM patient WHERE pid = ?";
+
+    private static final EntityCache<Patient> CACHE = new EntityCache<>("patient", Patient::getPid, PatientDao::copy);
 
     public PatientDao(Connection connection) {
         super(connection);
     }
-  
+
+    public PatientDao(Connection connection, Connection readConnection) {
+        super(connection, readConnection);
+    }
+
     /**
-     * Generates a <code>PreparedStatement</code> to persist the given object of <code>Patient</code>.
-     *
-     * @param patient Object of <code>Patient</code> to persist.
-     * @return <code>PreparedStatement</code> to insert the given patient.
+     * Patients are read far more often than they change, so they are served from a shared cache.
      */
+    @Override
+    protected EntityCache<Patient> getEntityCache() {
+        return CACHE;
+    }
+
+    private static Patient copy(Patient patient) {
+        return new Patient(patient.getPid(), patient.getFirstName(), patient.getSurname(),
+                DateConverter.convertStringToLocalDate(patient.getDateOfBirth()), patient.getCareLevel(),
+                patient.getRoomNumber(), patient.getStatus(), patient.getStatusChangeDate());
+    }
 
     @Override
-    protected PreparedStatement getCreateStatement(Patient patient) {
-        PreparedStatement preparedStatement = null;
-        try {
-            preparedStatement = connection.prepareStatement(
-                    "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber, status, status_change_date) " + 
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
-
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-            preparedStatement.setString(6, patient.getStatus().toString());
-            preparedStatement.setString(7, patient.getStatusChangeDate().toString());
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return preparedStatement;
+    protected String getEntityName() {
+        return "patient";
+    }
+
+    @Override
+    protected String getCreateSQL() {
+        return "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber, status, status_change_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    /**
+     * Binds the given object of <code>Patient</code> to the insert statement.
+     *
+     * @param preparedStatement Statement created from {@link #getCreateSQL()}.
+     * @param patient           Object of <code>Patient</code> to persist.
+     */
+    @Override
+    protected void bindCreateStatement(PreparedStatement preparedStatement, Patient patient) throws SQLException {
+        preparedStatement.setString(1, patient.getFirstName());
+        preparedStatement.setString(2, patient.getSurname());
+        preparedStatement.setString(3, patient.getDateOfBirth());
+        preparedStatement.setString(4, patient.getCareLevel());
+        preparedStatement.setString(5, patient.getRoomNumber());
+        preparedStatement.setString(6, patient.getStatus().toString());
+        preparedStatement.setString(7, patient.getStatusChangeDate().toString());
     }
 
     @Override
     protected PreparedStatement getReadByIDStatement(long pid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(READ_BY_ID_SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Patient {} konnte nicht gelesen werden", pid, exception);
         }
         return preparedStatement;
     }
@@ -92,9 +138,9 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM patient";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareReadStatement(SQL);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Patienten konnten nicht gelesen werden", exception);
         }
         return statement;
     }
@@ -132,46 +178,25 @@ public class PatientDao extends DaoImp<Patient> {
     }
 
     @Override
-    protected PreparedStatement getUpdateStatement(Patient patient) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL =
-                    "UPDATE patient SET " +
-                            "firstname = ?, " +
-                            "surname = ?, " +
-                            "dateOfBirth = ?, " +
-                            "carelevel = ?, " +
-                            "roomnumber = ?, " +
-                            "status = ?, " +
-                            "status_change_date = ?" +
-                            "WHERE pid = ?";
-
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-            preparedStatement.setString(6, patient.getStatus().toString());
-            preparedStatement.setString(7, patient.getStatusChangeDate().toString());
-            preparedStatement.setLong(8, patient.getPid());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    protected String getUpdateSQL() {
+        return UPDATE_SQL;
     }
 
     @Override
-    protected PreparedStatement getDeleteStatement(long pid) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "DELETE FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, pid);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    protected void bindUpdateStatement(PreparedStatement preparedStatement, Patient patient) throws SQLException {
+        preparedStatement.setString(1, patient.getFirstName());
+        preparedStatement.setString(2, patient.getSurname());
+        preparedStatement.setString(3, patient.getDateOfBirth());
+        preparedStatement.setString(4, patient.getCareLevel());
+        preparedStatement.setString(5, patient.getRoomNumber());
+        preparedStatement.setString(6, patient.getStatus().toString());
+        preparedStatement.setString(7, patient.getStatusChangeDate().toString());
+        preparedStatement.setLong(8, patient.getPid());
+    }
+
+    @Override
+    protected String getDeleteSQL() {
+        return DELETE_SQL;
     }
 
     /**
@@ -182,20 +207,7 @@ public class PatientDao extends DaoImp<Patient> {
      * @throws SQLException bei Datenbankproblemen
      */
     public List<Patient> findByStatus(RecordStatus status) throws SQLException {
-        List<Patient> result = new ArrayList<>();
-        final String SQL = "SELECT * FROM patient WHERE status = ?";
-
-        try (PreparedStatement statement = this.connection.prepareStatement(SQL)) {
-            statement.setString(1, status.toString());
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                Patient patient = getInstanceFromResultSet(resultSet);
-                result.add(patient);
-            }
-        }
-
-        return result;
+        return queryList(FIND_BY_STATUS_SQL, status.name());
     }
 
     /**
@@ -206,99 +218,116 @@ public class PatientDao extends DaoImp<Patient> {
      * @throws SQLException bei Datenbankproblemen
      */
     public List<Patient> findOlderThan(LocalDate date) throws SQLException {
-        List<Patient> result = new ArrayList<>();
-        final String SQL = "SELECT * FROM patient WHERE status_change_date < ?";
+        return queryList(FIND_OLDER_THAN_SQL, date.toString());
+    }
 
-        try (PreparedStatement statement = this.connection.prepareStatement(SQL)) {
-            statement.setString(1, date.toString());
-            ResultSet resultSet = statement.executeQuery();
+    /**
+     * Liefert alle Patienten mit einem bestimmten Status als Stream. Der Stream muss geschlossen werden.
+     *
+     * @param status Status nach dem gesucht wird
+     * @return Stream der gefundenen Patienten
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public Stream<Patient> streamByStatus(RecordStatus status) throws SQLException {
+        return stream(FIND_BY_STATUS_SQL, status.name());
+    }
 
-            while (resultSet.next()) {
-                Patient patient = getInstanceFromResultSet(resultSet);
-                result.add(patient);
-            }
-        }
+    /**
+     * Liefert alle Patienten, deren Status älter als das angegebene Datum ist, als Stream. Der Stream muss
+     * geschlossen werden.
+     *
+     * @param date Das Vergleichsdatum
+     * @return Stream der gefundenen Patienten
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public Stream<Patient> streamOlderThan(LocalDate date) throws SQLException {
+        return stream(FIND_OLDER_THAN_SQL, date.toString());
+    }
 
-        return result;
+    /**
+     * Liefert alle Patienten, die vor dem angegebenen Datum geboren sind, als Stream. Der Stream muss geschlossen
+     * werden.
+     *
+     * @param date Das Vergleichsdatum
+     * @return Stream der gefundenen Patienten
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public Stream<Patient> streamBornBefore(LocalDate date) throws SQLException {
+        return stream(FIND_BORN_BEFORE_SQL, date.toString());
     }
 
     /**
-     * Erstellt die Tabelle "patient" in der Datenbank, falls sie noch nicht existiert
+     * Findet die IDs der Patienten mit einem bestimmten Status, die vor dem angegebenen Datum geboren sind,
+     * abschnittsweise in aufsteigender Reihenfolge.
+     *
+     * @param status  Status nach dem gesucht wird
+     * @param date    Das Vergleichsdatum
+     * @param afterId Letzte pid des vorigen Abschnitts, oder 0 für den ersten
+     * @param limit   Maximale Anzahl der IDs
+     * @return Die gefundenen IDs, aufsteigend
+     * @throws SQLException bei Datenbankproblemen
      */
-    public void createTable() {
-        try {
-            if (connection == null) {
-                System.err.println("FEHLER: Connection ist null in createTable");
-                connection = ConnectionBuilder.getConnection();
-                if (connection == null) {
-                    throw new SQLException("Konnte keine Datenbankverbindung herstellen");
-                }
-            }
+    public long[] findIdsBornBefore(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return findIdsBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, status, date, afterId, limit);
+    }
 
-            Statement st = connection.createStatement();
-            System.out.println("Prüfe, ob Tabelle 'patient' existiert...");
-
-            ResultSet tables = connection.getMetaData().getTables(null, null, "patient", null);
-            boolean tableExists = tables.next();
-            tables.close();
-
-            if (!tableExists) {
-                System.out.println("Tabelle 'patient' existiert nicht. Erstelle neu...");
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS patient (" +
-                        "pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "firstname TEXT NOT NULL, " +
-                        "surname TEXT NOT NULL, " +
-                        "dateOfBirth TEXT, " +
-                        "carelevel TEXT, " +
-                        "roomnumber TEXT, " +
-                        "status TEXT, " +
-                        "status_change_date TEXT)";
-
-                System.out.println("Führe SQL aus: " + createTableSQL);
-                st.executeUpdate(createTableSQL);
-                System.out.println("Tabelle 'patient' erfolgreich erstellt.");
-            } else {
-                System.out.println("Tabelle 'patient' existiert bereits.");
-
-                // Überprüfe und füge status und status_change_date Spalten hinzu, falls sie fehlen
-                try {
-                    ResultSet columns = connection.getMetaData().getColumns(null, null, "patient", "status");
-                    boolean statusExists = columns.next();
-                    columns.close();
-
-                    if (!statusExists) {
-                        System.out.println("Spalten 'status' und 'status_change_date' fehlen. Füge hinzu...");
-                        st.executeUpdate("ALTER TABLE patient ADD COLUMN status TEXT");
-                        st.executeUpdate("ALTER TABLE patient ADD COLUMN status_change_date TEXT");
-
-                        st.executeUpdate("UPDATE patient SET status = 'ACTIVE', status_change_date = date('now') WHERE status IS NULL");
-                        System.out.println("Statusspalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    }
-                } catch (SQLException e) {
-                    System.out.println("Fehler beim Prüfen der Statusspalten: " + e.getMessage());
-                    try {
-                        System.out.println("Versuche, Spalten 'status' und 'status_change_date' hinzuzufügen...");
-                        st.executeUpdate("ALTER TABLE patient ADD COLUMN status TEXT");
-                        st.executeUpdate("ALTER TABLE patient ADD COLUMN status_change_date TEXT");
-
-                        st.executeUpdate("UPDATE patient SET status = 'ACTIVE', status_change_date = date('now') WHERE status IS NULL");
-                        System.out.println("Statusspalten erfolgreich hinzugefügt und mit Standardwerten gefüllt.");
-                    } catch (SQLException ex) {
-                        System.err.println("Fehler beim Hinzufügen der Statusspalten: " + ex.getMessage());
-                        ex.printStackTrace();
-                    }
-                }
-            }
+    /**
+     * Ändert den Status der angegebenen Patienten in einer Transaktion von <code>from</code> auf <code>to</code>.
+     * Patienten, die nicht den Status <code>from</code> haben, bleiben unverändert.
+     *
+     * @param pids Die IDs der Patienten
+     * @param from Der erwartete bisherige Status
+     * @param to   Der neue Status
+     * @return Die IDs der geänderten Patienten
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public List<Long> changeStatus(long[] pids, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatus(TABLE, ID_COLUMN, pids, from, to);
+    }
 
-            st.close();
-            System.out.println("Tabelle 'patient' ist bereit.");
+    /**
+     * Ändert den Status aller Patienten mit Status <code>from</code>, die vor dem angegebenen Datum geboren sind, in
+     * einer Transaktion auf <code>to</code>.
+     *
+     * @param date Das Vergleichsdatum
+     * @param from Der erwartete bisherige Status
+     * @param to   Der neue Status
+     * @return Die IDs der geänderten Patienten
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public List<Long> changeStatusBornBefore(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatusBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, date, from, to);
+    }
 
-        } catch (SQLException e) {
-            System.err.println("SQL-Fehler in createTable: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler in createTable: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Liefert alle Patienten als Stream, ohne die ganze Tabelle in den Speicher zu laden. Der Stream hält ein
+     * offenes <code>ResultSet</code> und muss geschlossen werden, am besten mit try-with-resources.
+     *
+     * @return Stream aller Patienten, sortiert nach pid
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public Stream<Patient> streamAll() throws SQLException {
+        return stream(prepareReadStatement("SELECT * FROM patient ORDER BY pid"));
+    }
+
+    /**
+     * Liest eine Seite von Patienten per Keyset-Paginierung: Die nächste Seite beginnt nach der letzten pid der
+     * vorherigen Seite.
+     *
+     * @param afterId Letzte pid der vorherigen Seite, 0 für die erste Seite
+     * @param limit   Maximale Anzahl Patienten pro Seite
+     * @return Patienten mit einer pid größer als <code>afterId</code>, sortiert nach pid
+     * @throws SQLException bei Datenbankproblemen
+     */
+    public List<Patient> readPage(long afterId, int limit) throws SQLException {
+        PreparedStatement statement = prepareReadStatement(READ_PAGE_SQL);
+        try {
+            statement.setLong(1, afterId);
+            statement.setInt(2, limit);
+        } catch (SQLException exception) {
+            releaseStatement(statement);
+            throw exception;
         }
+        return queryList(statement);
     }
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date. The schema version is stored in <code>PRAGMA user_version</code>; every
+ * {@link Migration} with a higher version than the stored one is applied in ascending order, each in its own
+ * transaction together with the new version number.
+ * <p>
+ * This class is the only place where tables are defined. The migrations run once at startup, so the DAOs can rely
+ * on the schema and do not have to probe the database metadata. Every step is idempotent, so databases that were
+ * created by older versions of the application, with a partial schema and <code>user_version</code> 0, are
+ * migrated as well.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Basistabellen anlegen", SchemaMigrator::createBaseTables),
+            new Migration(2, "Fehlende Spalten älterer Datenbanken ergänzen", SchemaMigrator::addMissingColumns),
+            new Migration(3, "Tabelle login_log anlegen", SchemaMigrator::createLoginLogTable),
+            new Migration(4, "Indizes für Suchspalten anlegen", SchemaMigrator::createIndexes),
+            new Migration(5, "Tabellen für Archivierungsläufe anlegen", SchemaMigrator::createArchivingTables),
+            new Migration(6, "Indizes für login_log anlegen", SchemaMigrator::createLoginLogIndexes),
+            new Migration(7, "Indizes für Anmeldung, Sperren und Geburtsdatum anlegen",
+                    SchemaMigrator::createLookupIndexes)
+    );
+
+    /**
+     * Indexes on the columns the DAOs filter by. <code>users.username</code> needs no entry here, its UNIQUE
+     * constraint already comes with an index. <code>caregiver.username</code> only has one on new databases, see
+     * {@link #createLookupIndexes}.
+     */
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_treatment_pid ON treatment (pid)",
+            "CREATE INDEX IF NOT EXISTS idx_treatment_cid ON treatment (cid)",
+            "CREATE INDEX IF NOT EXISTS idx_treatment_status_date ON treatment (status, treatment_date)",
+            "CREATE INDEX IF NOT EXISTS idx_patient_status_date ON patient (status, status_change_date)",
+            "CREATE INDEX IF NOT EXISTS idx_caregiver_status_date ON caregiver (status, status_change_date)"
+    );
+
+    /**
+     * Applies all pending migrations to the database of the <code>ConnectionBuilder</code>.
+     *
+     * @throws SQLException If a migration fails. Migrations applied before the failing one stay committed.
+     */
+    public static synchronized void migrate() throws SQLException {
+        int version = getCurrentVersion();
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= version) {
+                continue;
+            }
+            LOGGER.info("Schema-Migration {}: {}", migration.version, migration.description);
+            ConnectionBuilder.inTransaction(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    migration.step.apply(connection, statement);
+                    statement.execute("PRAGMA user_version = " + migration.version);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * @return The schema version stored in the database.
+     */
+    public static int getCurrentVersion() throws SQLException {
+        try (Statement statement = ConnectionBuilder.getConnection().createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return The schema version this version of the application expects.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static void createBaseTables(Connection connection, Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE IF NOT EXISTS users (" +
+                "uid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT UNIQUE NOT NULL, " +
+                "password TEXT NOT NULL, " +
+                "first_name TEXT NOT NULL, " +
+                "last_name TEXT NOT NULL, " +
+                "email TEXT, " +
+                "phone_number TEXT, " +
+                "role TEXT NOT NULL, " +
+                "caregiver_id BIGINT DEFAULT 0, " +
+                "failed_attempts INTEGER DEFAULT 0, " +
+                "lock_until BIGINT DEFAULT 0)");
+        statement.execute("CREATE TABLE IF NOT EXISTS patient (" +
+                "pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "firstname TEXT NOT NULL, " +
+                "surname TEXT NOT NULL, " +
+                "dateOfBirth TEXT NOT NULL, " +
+                "carelevel TEXT NOT NULL, " +
+                "roomnumber TEXT NOT NULL, " +
+                "status TEXT DEFAULT 'ACTIVE', " +
+                "status_change_date TEXT)");
+        statement.execute("CREATE TABLE IF NOT EXISTS caregiver (" +
+                "cid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "firstname TEXT NOT NULL, " +
+                "surname TEXT NOT NULL, " +
+                "telephone TEXT NOT NULL, " +
+                "username TEXT UNIQUE NOT NULL, " +
+                "password TEXT NOT NULL, " +
+                "role TEXT NOT NULL DEFAULT 'USER', " +
+                "locked BOOLEAN DEFAULT 0, " +
+                "failed_attempts INTEGER DEFAULT 0, " +
+                "last_failed_attempt DATETIME, " +
+                "status TEXT DEFAULT 'ACTIVE', " +
+                "status_change_date TEXT)");
+        statement.execute("CREATE TABLE IF NOT EXISTS treatment (" +
+                "tid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "pid INTEGER NOT NULL, " +
+                "cid INTEGER NOT NULL, " +
+                "treatment_date TEXT NOT NULL, " +
+                "begin TEXT NOT NULL, " +
+                "end TEXT NOT NULL, " +
+                "description TEXT NOT NULL, " +
+                "remark TEXT NOT NULL, " +
+                "status TEXT DEFAULT 'ACTIVE', " +
+                "status_change_date TEXT, " +
+                "FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE, " +
+                "FOREIGN KEY (cid) REFERENCES caregiver (cid) ON DELETE CASCADE)");
+    }
+
+    /**
+     * Earlier versions created the tables in several places with different definitions and added columns on the
+     * fly. This step adds every column the DAOs need that such a database may still lack.
+     */
+    private static void addMissingColumns(Connection connection, Statement statement) throws SQLException {
+        addColumnIfMissing(statement, "users", "caregiver_id", "BIGINT DEFAULT 0");
+        addColumnIfMissing(statement, "users", "failed_attempts", "INTEGER DEFAULT 0");
+        addColumnIfMissing(statement, "users", "lock_until", "BIGINT DEFAULT 0");
+
+        addStatusColumnsIfMissing(statement, "patient");
+
+        if (addColumnIfMissing(statement, "caregiver", "username", "TEXT")) {
+            statement.executeUpdate("UPDATE caregiver SET username = 'caregiver_' || cid WHERE username IS NULL");
+        }
+        if (addColumnIfMissing(statement, "caregiver", "password", "TEXT")) {
+            statement.executeUpdate("UPDATE caregiver SET password = '' WHERE password IS NULL");
+        }
+        addColumnIfMissing(statement, "caregiver", "role", "TEXT DEFAULT 'USER'");
+        addColumnIfMissing(statement, "caregiver", "locked", "BOOLEAN DEFAULT 0");
+        addColumnIfMissing(statement, "caregiver", "failed_attempts", "INTEGER DEFAULT 0");
+        addColumnIfMissing(statement, "caregiver", "last_failed_attempt", "DATETIME");
+        addStatusColumnsIfMissing(statement, "caregiver");
+
+        addStatusColumnsIfMissing(statement, "treatment");
+    }
+
+    /**
+     * Adds the archiving columns <code>status</code> and <code>status_change_date</code>. Rows that existed before
+     * count as active since today.
+     */
+    private static void addStatusColumnsIfMissing(Statement statement, String table) throws SQLException {
+        boolean statusAdded = addColumnIfMissing(statement, table, "status", "TEXT DEFAULT 'ACTIVE'");
+        boolean dateAdded = addColumnIfMissing(statement, table, "status_change_date", "TEXT");
+        if (statusAdded || dateAdded) {
+            statement.executeUpdate("UPDATE " + table + " SET status = COALESCE(status, 'ACTIVE'), " +
+                    "status_change_date = COALESCE(status_change_date, date('now'))");
+        }
+    }
+
+    private static void createLoginLogTable(Connection connection, Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE IF NOT EXISTS login_log (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT NOT NULL, " +
+                "ip_address TEXT, " +
+                "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                "successful BOOLEAN NOT NULL, " +
+                "failure_reason TEXT)");
+    }
+
+    private static void createIndexes(Connection connection, Statement statement) throws SQLException {
+        for (String index : INDEXES) {
+            statement.execute(index);
+        }
+    }
+
+    /**
+     * <code>archiving_checkpoint</code> holds the last processed id of an interrupted archiving job,
+     * <code>archiving_run</code> one row per finished or aborted run.
+     */
+    private static void createArchivingTables(Connection connection, Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE IF NOT EXISTS archiving_checkpoint (" +
+                "job TEXT PRIMARY KEY, " +
+                "last_id INTEGER NOT NULL, " +
+                "updated_at TEXT NOT NULL)");
+        statement.execute("CREATE TABLE IF NOT EXISTS archiving_run (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "job TEXT NOT NULL, " +
+                "started_at TEXT NOT NULL, " +
+                "duration_ms INTEGER NOT NULL, " +
+                "processed INTEGER NOT NULL, " +
+                "changed INTEGER NOT NULL, " +
+                "completed BOOLEAN NOT NULL)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_archiving_run_job_started ON archiving_run (job, started_at)");
+    }
+
+    /**
+     * The login log is filtered by user and time range and always shown newest first.
+     */
+    private static void createLoginLogIndexes(Connection connection, Statement statement) throws SQLException {
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_login_log_username_timestamp ON login_log (username, timestamp)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_login_log_timestamp ON login_log (timestamp)");
+    }
+
+    /**
+     * Indexes for the lookups that migration 4 missed:
+     * <ul>
+     *     <li><code>caregiver.username</code> - databases that got the column from {@link #addMissingColumns} have no
+     *     UNIQUE constraint on it and thus no index, so the caregiver login scanned the table. The index is not
+     *     unique, because such databases may already hold duplicates; the DAO checks new usernames itself.</li>
+     *     <li><code>users.role</code>, <code>users.failed_attempts</code> and <code>users.lock_until</code> - the
+     *     administrator check at startup and the lock states of the <code>AccountLockService</code>.</li>
+     *     <li><code>patient.dateOfBirth</code> - the archiving of patients by date of birth.</li>
+     * </ul>
+     */
+    private static void createLookupIndexes(Connection connection, Statement statement) throws SQLException {
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_caregiver_username ON caregiver (username)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_users_role ON users (role)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_users_failed_attempts ON users (failed_attempts)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_users_lock_until ON users (lock_until)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_patient_date_of_birth ON patient (dateOfBirth)");
+    }
+
+    /**
+     * Adds a column to a table, unless the table already has it.
+     *
+     * @return <code>true</code>, if the column was added.
+     */
+    private static boolean addColumnIfMissing(Statement statement, String table, String column, String definition)
+            throws SQLException {
+        try (ResultSet columns = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (columns.next()) {
+                if (column.equalsIgnoreCase(columns.getString("name"))) {
+                    return false;
+                }
+            }
+        }
+        statement.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        LOGGER.info("Spalte '{}' zur Tabelle '{}' hinzugefügt.", column, table);
+        return true;
+    }
+
+    /**
+     * Work done by a single migration.
+     */
+    @FunctionalInterface
+    interface MigrationStep {
+        void apply(Connection connection, Statement statement) throws SQLException;
+    }
+
+    /**
+     * One step of the schema history. Versions are strictly ascending; a released migration must never change.
+     */
+    static final class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log of the statements of the DAOs that took longer than a threshold. The entries go to the logger
+ * <code>de.hitec.nhplus.datastorage.SlowQueryLog</code>, which <code>log4j.xml</code> writes to its own file
+ * <code>slow-queries.log</code>. An entry holds the duration, the SQL and the number of rows. The first entry of
+ * every distinct SQL also holds the output of <code>EXPLAIN QUERY PLAN</code>, so full table scans
+ * (<code>SCAN</code> instead of <code>SEARCH ... USING INDEX</code>) can be found without a profiler.
+ * <p>
+ * The bound values are only logged if the threshold is set explicitly: remembering them costs a reflective proxy
+ * around every statement, see {@link BoundParameters}, which is not worth it for the default log. Values bound to a
+ * password column are masked. Entries of batches only hold the number of rows, not the values of any of them.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.db.slowQueryMillis</code> - threshold in milliseconds, default 200; a negative value turns the
+ *     log off. If set, the entries also hold the bound values.</li>
+ * </ul>
+ */
+final class SlowQueryLog {
+
+    private static final long DEFAULT_THRESHOLD_MILLIS = 200;
+    private static final String MASK = "****";
+
+    /** Placeholder after a column and a comparison, e.g. <code>username = ?</code> or <code>date &lt; ?</code>. */
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "(\\w+)\\s*(?:=|<>|!=|<=|>=|<|>|\\bLIKE|\\bIN\\s*\\([^)]*)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT = Pattern.compile(
+            "INSERT\\s+INTO\\s+\\w+\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SENSITIVE_COLUMN = Pattern.compile("password|passwort|hash|salt",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final long THRESHOLD_NANOS = getThresholdNanos();
+    private static final boolean CAPTURE_PARAMETERS = THRESHOLD_NANOS >= 0
+            && System.getProperty("nhplus.db.slowQueryMillis") != null;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final ConcurrentMap<String, Boolean> EXPLAINED = new ConcurrentHashMap<>();
+
+    private SlowQueryLog() {
+    }
+
+    /**
+     * @return <code>true</code>, if slow statements are logged at all.
+     */
+    static boolean isEnabled() {
+        return THRESHOLD_NANOS >= 0;
+    }
+
+    /**
+     * @return <code>true</code>, if the statements have to remember their bound values for the log, i.e. the
+     * threshold is set explicitly.
+     */
+    static boolean isCapturingParameters() {
+        return CAPTURE_PARAMETERS;
+    }
+
+    /**
+     * @param nanos Duration of a statement.
+     * @return <code>true</code>, if the statement has to be logged.
+     */
+    static boolean isSlow(long nanos) {
+        return isEnabled() && nanos >= THRESHOLD_NANOS;
+    }
+
+    /**
+     * Writes a slow statement to the log.
+     *
+     * @param connection Connection to run <code>EXPLAIN QUERY PLAN</code> on, if the SQL has not been logged yet.
+     * @param entity     Entity type of the DAO.
+     * @param sql        SQL of the statement, may be <code>null</code> if unknown.
+     * @param parameters Values bound to the statement, see {@link BoundParameters}.
+     * @param nanos      Duration of the statement.
+     * @param rows       Rows returned or changed.
+     */
+    static void log(Connection connection, String entity, String sql, List<Object> parameters, long nanos,
+                    long rows) {
+        write(connection, entity, sql, parameters, nanos, rows + " Zeilen");
+    }
+
+    /**
+     * Writes a slow batch to the log, with the number of rows but without any bound values.
+     *
+     * @param connection Connection to run <code>EXPLAIN QUERY PLAN</code> on, if the SQL has not been logged yet.
+     * @param entity     Entity type of the DAO.
+     * @param sql        SQL of the statement.
+     * @param nanos      Duration of the whole batch.
+     * @param rows       Rows sent in the batch.
+     */
+    static void logBatch(Connection connection, String entity, String sql, long nanos, long rows) {
+        write(connection, entity, sql, List.of(), nanos, "Batch mit " + rows + " Zeilen");
+    }
+
+    private static void write(Connection connection, String entity, String sql, List<Object> parameters, long nanos,
+                              String rows) {
+        if (!LOGGER.isWarnEnabled()) {
+            return;
+        }
+        StringBuilder entry = new StringBuilder()
+                .append(String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0))
+                .append(" [").append(entity).append("] ")
+                .append(rows).append("\n  ").append(sql);
+        if (!parameters.isEmpty()) {
+            entry.append("\n  Parameter: ").append(mask(sql, parameters));
+        }
+        if (sql != null && EXPLAINED.putIfAbsent(sql, Boolean.TRUE) == null) {
+            entry.append("\n  Plan:");
+            for (String line : explain(connection, sql)) {
+                entry.append("\n    ").append(line);
+            }
+        }
+        LOGGER.warn(entry.toString());
+    }
+
+    /**
+     * @return The bound values, with the values of password columns replaced by {@value #MASK}. If the statement
+     * touches a password column, every value whose column cannot be told from the SQL is masked as well.
+     */
+    static List<String> mask(String sql, List<Object> parameters) {
+        List<String> columns = sql != null ? placeholderColumns(sql) : List.of();
+        boolean sensitiveStatement = sql == null || SENSITIVE_COLUMN.matcher(sql).find();
+        List<String> masked = new ArrayList<>(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            String column = i < columns.size() ? columns.get(i) : null;
+            boolean sensitive = column != null ? SENSITIVE_COLUMN.matcher(column).find() : sensitiveStatement;
+            masked.add(sensitive ? MASK : String.valueOf(parameters.get(i)));
+        }
+        return masked;
+    }
+
+    /**
+     * @return For every <code>?</code> of the SQL, in order, the column it is compared with or inserted into, or
+     * <code>null</code> if that cannot be told, e.g. for <code>LIMIT ?</code>.
+     */
+    static List<String> placeholderColumns(String sql) {
+        Map<Integer, String> insertColumns = new HashMap<>();
+        Matcher insert = INSERT.matcher(sql);
+        if (insert.find()) {
+            String[] columns = insert.group(1).split(",");
+            String[] values = insert.group(2).split(",");
+            int offset = insert.start(2);
+            for (int i = 0; i < values.length && i < columns.length; i++) {
+                int placeholder = values[i].indexOf('?');
+                if (placeholder >= 0) {
+                    insertColumns.put(offset + placeholder, columns[i].trim());
+                }
+                offset += values[i].length() + 1;
+            }
+        }
+        List<String> columns = new ArrayList<>();
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                String column = insertColumns.get(i);
+                if (column == null) {
+                    Matcher compared = COMPARED_COLUMN.matcher(sql.substring(0, i));
+                    column = compared.find() ? compared.group(1) : null;
+                }
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return The lines of <code>EXPLAIN QUERY PLAN</code>, indented by their depth in the plan.
+     */
+    private static List<String> explain(Connection connection, String sql) {
+        List<String> lines = new ArrayList<>();
+        Map<Integer, Integer> depths = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                int depth = depths.getOrDefault(result.getInt("parent"), -1) + 1;
+                depths.put(result.getInt("id"), depth);
+                lines.add("  ".repeat(depth) + result.getString("detail"));
+            }
+        } catch (SQLException e) {
+            lines.add("nicht verfügbar: " + e.getMessage());
+        }
+        return lines;
+    }
+
+    private static long getThresholdNanos() {
+        try {
+            long millis = Long.parseLong(System.getProperty("nhplus.db.slowQueryMillis",
+                    String.valueOf(DEFAULT_THRESHOLD_MILLIS)));
+            return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+        } catch (NumberFormatException exception) {
+            return TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+        }
+    }
+}
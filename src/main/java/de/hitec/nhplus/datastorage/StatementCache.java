@@ -0,0 +1,295 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-connection cache of prepared statements with bounded LRU eviction.
+ * <p>
+ * A statement is checked out with {@link #acquire(String)} and has to be handed back with {@link #release}
+ * once its <code>ResultSet</code> is closed. While checked out, a statement belongs exclusively to the caller, so
+ * two threads sharing the same connection never bind parameters on the same statement. Statements that fall out of
+ * the cache are closed immediately, so no native SQLite statement is leaked.
+ * <p>
+ * The capacity per connection can be configured with the system property <code>nhplus.db.statementCacheSize</code>
+ * (default 64). While the {@link SlowQueryLog} captures bound values, the statements remember them, see
+ * {@link BoundParameters}.
+ */
+public class StatementCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final Map<Connection, StatementCache> CACHES = new IdentityHashMap<>();
+    private static final AtomicLong TOTAL_HITS = new AtomicLong();
+    private static final AtomicLong TOTAL_MISSES = new AtomicLong();
+    private static final AtomicLong TOTAL_EVICTIONS = new AtomicLong();
+
+    static {
+        Metrics.registerCache("statements", StatementCache::getTotalHits, StatementCache::getTotalMisses,
+                TOTAL_EVICTIONS::get, StatementCache::getTotalSize);
+    }
+
+    private final Connection connection;
+    private final LinkedHashMap<Key, PreparedStatement> idleStatements;
+    private final Map<PreparedStatement, Key> checkedOutStatements = new IdentityHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private boolean closed;
+
+    private StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.idleStatements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    TOTAL_EVICTIONS.incrementAndGet();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the statement cache of the given connection and creates it on first use.
+     *
+     * @param connection Connection whose statements are cached.
+     * @return The cache that belongs to <code>connection</code>.
+     */
+    public static synchronized StatementCache forConnection(Connection connection) {
+        return CACHES.computeIfAbsent(connection, key -> new StatementCache(key, getCapacity()));
+    }
+
+    /**
+     * Returns the statement cache of the given connection without creating one. Used to hand statements back, so a
+     * cache that was {@link #discard discarded} with its connection does not come back.
+     *
+     * @param connection Connection whose statements are cached.
+     * @return The cache that belongs to <code>connection</code>, or <code>null</code> if it has none.
+     */
+    public static synchronized StatementCache find(Connection connection) {
+        return CACHES.get(connection);
+    }
+
+    /**
+     * Closes all cached statements of the given connection and forgets its cache. Has to be called before the
+     * connection itself is closed.
+     *
+     * @param connection Connection whose cache is discarded.
+     */
+    public static synchronized void discard(Connection connection) {
+        StatementCache cache = CACHES.remove(connection);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * @return Snapshot of the caches of all currently open connections.
+     */
+    public static synchronized List<StatementCache> getAll() {
+        return new ArrayList<>(CACHES.values());
+    }
+
+    /**
+     * @return Number of cache hits over all connections since the start of the application.
+     */
+    public static long getTotalHits() {
+        return TOTAL_HITS.get();
+    }
+
+    /**
+     * @return Number of cache misses over all connections since the start of the application.
+     */
+    public static long getTotalMisses() {
+        return TOTAL_MISSES.get();
+    }
+
+    /**
+     * @return Number of idle statements over all open connections.
+     */
+    public static int getTotalSize() {
+        int size = 0;
+        for (StatementCache cache : getAll()) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Checks out a statement for the given SQL.
+     *
+     * @param sql SQL of the statement.
+     * @return A prepared statement that belongs to the caller until it is released.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement acquire(String sql) throws SQLException {
+        return acquire(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Checks out a statement for the given SQL.
+     *
+     * @param sql               SQL of the statement.
+     * @param autoGeneratedKeys Either <code>Statement.RETURN_GENERATED_KEYS</code> or
+     *                          <code>Statement.NO_GENERATED_KEYS</code>.
+     * @return A prepared statement that belongs to the caller until it is released.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement acquire(String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        synchronized (this) {
+            PreparedStatement statement = this.idleStatements.remove(key);
+            if (statement != null && !statement.isClosed()) {
+                this.hits.incrementAndGet();
+                TOTAL_HITS.incrementAndGet();
+                this.checkedOutStatements.put(statement, key);
+                return statement;
+            }
+        }
+        this.misses.incrementAndGet();
+        TOTAL_MISSES.incrementAndGet();
+        PreparedStatement statement = this.connection.prepareStatement(sql, autoGeneratedKeys);
+        if (SlowQueryLog.isCapturingParameters()) {
+            statement = BoundParameters.wrap(statement);
+        }
+        synchronized (this) {
+            this.checkedOutStatements.put(statement, key);
+        }
+        return statement;
+    }
+
+    /**
+     * Hands a checked out statement back to the cache. If an equivalent statement has been returned in the
+     * meantime, or the cache has been closed, the given one is closed instead.
+     *
+     * @param statement Statement obtained by {@link #acquire}.
+     * @return <code>true</code>, if the statement was checked out from this cache.
+     */
+    public synchronized boolean release(PreparedStatement statement) {
+        Key key = this.checkedOutStatements.remove(statement);
+        if (key == null) {
+            return false;
+        }
+        try {
+            if (statement.isClosed()) {
+                return true;
+            }
+            statement.clearParameters();
+        } catch (SQLException exception) {
+            closeQuietly(statement);
+            return true;
+        }
+        if (this.closed || this.idleStatements.containsKey(key)) {
+            closeQuietly(statement);
+        } else {
+            this.idleStatements.put(key, statement);
+        }
+        return true;
+    }
+
+    /**
+     * @param statement A statement obtained by {@link #acquire}.
+     * @return The SQL of the statement while it is checked out from this cache, otherwise <code>null</code>.
+     */
+    public synchronized String getSql(PreparedStatement statement) {
+        Key key = this.checkedOutStatements.get(statement);
+        return key != null ? key.sql : null;
+    }
+
+    /**
+     * Closes all idle statements. Statements that are currently checked out are closed when they are released.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        for (PreparedStatement statement : this.idleStatements.values()) {
+            closeQuietly(statement);
+        }
+        this.idleStatements.clear();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return Share of acquisitions served from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return this.idleStatements.size();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            LOGGER.warn("Statement could not be closed", exception);
+        }
+    }
+
+    private static int getCapacity() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.db.statementCacheSize", String.valueOf(DEFAULT_CAPACITY))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_CAPACITY;
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.autoGeneratedKeys == key.autoGeneratedKeys && this.sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.sql, this.autoGeneratedKeys);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.metrics.DaoStatementEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * Measures one statement executed by a DAO. When the statement is done, it is reported as
+ * {@link DaoStatementEvent} to a running flight recording and, if it took longer than the threshold, to the
+ * {@link SlowQueryLog}.
+ */
+final class StatementTrace {
+
+    private final DaoStatementEvent event = new DaoStatementEvent();
+    private final long start;
+    private long duration;
+
+    StatementTrace() {
+        this.event.begin();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Ends the measurement.
+     *
+     * @return <code>true</code>, if the statement has to be reported with {@link #report}.
+     */
+    boolean end() {
+        this.duration = System.nanoTime() - this.start;
+        this.event.end();
+        return this.event.shouldCommit() || SlowQueryLog.isSlow(this.duration);
+    }
+
+    /**
+     * Reports the statement after {@link #end()} returned <code>true</code>. Has to be called before the statement
+     * is handed back to its cache, which forgets the bound values.
+     *
+     * @param connection Connection the slow query log may explain the SQL on.
+     * @param entity     Entity type of the DAO.
+     * @param sql        SQL of the statement.
+     * @param statement  The executed statement, or <code>null</code> if its bound values do not matter.
+     * @param rows       Rows returned or changed.
+     */
+    void report(Connection connection, String entity, String sql, PreparedStatement statement, long rows) {
+        if (this.event.shouldCommit()) {
+            this.event.entity = entity;
+            this.event.sql = sql;
+            this.event.rows = rows;
+            this.event.commit();
+        }
+        if (SlowQueryLog.isSlow(this.duration)) {
+            SlowQueryLog.log(connection, entity, sql, BoundParameters.of(statement), this.duration, rows);
+        }
+    }
+
+    /**
+     * Reports one or more JDBC batches after {@link #end()} returned <code>true</code>. Only their size is logged;
+     * the statement only knows the values of the last row.
+     *
+     * @param connection Connection the slow query log may explain the SQL on.
+     * @param entity     Entity type of the DAO.
+     * @param sql        SQL of the statement.
+     * @param rows       Rows sent in the batches.
+     */
+    void reportBatch(Connection connection, String entity, String sql, long rows) {
+        if (this.event.shouldCommit()) {
+            this.event.entity = entity;
+            this.event.sql = sql;
+            this.event.rows = rows;
+            this.event.commit();
+        }
+        if (SlowQueryLog.isSlow(this.duration)) {
+            SlowQueryLog.logBatch(connection, entity, sql, this.duration, rows);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Unit of work that is executed inside a transaction on the writer connection.
+ *
+ * @param <R> Type of the result of the work.
+ * @see ConnectionBuilder#inTransaction(TransactionWork)
+ */
+@FunctionalInterface
+public interface TransactionWork<R> {
+
+    R execute(Connection connection) throws SQLException;
+}
@@ -3,39 +3,67 @@ package de.hitec.nhplus.datastorage;
 import de.hitec.nhplus.model.RecordStatus;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class TreatmentDao extends DaoImp<Treatment> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreatmentDao.class);
+
+    static final String TABLE = "treatment";
+    static final String ID_COLUMN = "tid";
+    /**
+     * Column by which archiving selects treatments.
+     */
+    static final String ARCHIVING_DATE_COLUMN = "treatment_date";
+
+    static final String READ_BY_ID_SQL = "SELECT * FROM treatment WHERE tid = ?";
+    static final String FIND_BY_PATIENT_SQL = "SELECT * FROM treatment WHERE pid = ?";
+    static final String FIND_BY_CAREGIVER_SQL = "SELECT * FROM treatment WHERE cid = ?";
+    static final String FIND_BY_STATUS_SQL = "SELECT * FROM treatment WHERE status = ?";
+    static final String FIND_OLDER_THAN_SQL =
+            "SELECT * FROM treatment WHERE " + ANY_STATUS + " AND treatment_date < ?";
+    static final String READ_PAGE_SQL = "SELECT * FROM treatment WHERE tid > ? ORDER BY tid LIMIT ?";
+    static final String UPDATE_SQL = "UPDATE treatment SET pid = ?, cid = ?, treatment_date = ?, begin = ?, end = ?, " +
+            "description = ?, remark = ?, status = ?, status_change_date = ? WHERE tid = ?";
+    static final String DELETE_SQL = "DELETE FROM treatment WHERE tid = ?";
 
     public TreatmentDao(Connection connection) {
         super(connection);
     }
 
+    public TreatmentDao(Connection connection, Connection readConnection) {
+        super(connection, readConnection);
+    }
+
     @Override
-    protected PreparedStatement getCreateStatement(Treatment treatment) {
-        PreparedStatement statement = null;
-        try {
-            statement = connection.prepareStatement(
-                    "INSERT INTO treatment (pid, cid, treatment_date, begin, end, description, remark, status, status_change_date) " +
-                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
-            statement.setLong(1, treatment.getPid());
-            statement.setLong(2, treatment.getCid());
-            statement.setString(3, treatment.getDate());
-            statement.setString(4, treatment.getBegin());
-            statement.setString(5, treatment.getEnd());
-            statement.setString(6, treatment.getDescription());
-            statement.setString(7, treatment.getRemarks());
-            statement.setString(8, treatment.getStatus().name());
-            statement.setString(9, treatment.getStatusChangeDate().toString());
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return statement;
+    protected String getEntityName() {
+        return "treatment";
+    }
+
+    @Override
+    protected String getCreateSQL() {
+        return "INSERT INTO treatment (pid, cid, treatment_date, begin, end, description, remark, status, status_change_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    @Override
+    protected void bindCreateStatement(PreparedStatement statement, Treatment treatment) throws SQLException {
+        statement.setLong(1, treatment.getPid());
+        statement.setLong(2, treatment.getCid());
+        statement.setString(3, treatment.getDate());
+        statement.setString(4, treatment.getBegin());
+        statement.setString(5, treatment.getEnd());
+        statement.setString(6, treatment.getDescription());
+        statement.setString(7, treatment.getRemarks());
+        statement.setString(8, treatment.getStatus().name());
+        statement.setString(9, treatment.getStatusChangeDate().toString());
     }
 
 
@@ -50,11 +78,10 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected PreparedStatement getReadByIDStatement(long tid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(READ_BY_ID_SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Behandlung {} konnte nicht gelesen werden", tid, exception);
         }
         return preparedStatement;
     }
@@ -94,9 +121,9 @@ public class TreatmentDao extends DaoImp<Treatment> {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM treatment";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareReadStatement(SQL);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Behandlungen konnten nicht gelesen werden", exception);
         }
         return statement;
     }
@@ -139,18 +166,16 @@ public class TreatmentDao extends DaoImp<Treatment> {
     private PreparedStatement getReadAllTreatmentsOfOnePatientByPid(long pid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(FIND_BY_PATIENT_SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Behandlungen von Patient {} konnten nicht gelesen werden", pid, exception);
         }
         return preparedStatement;
     }
 
     public List<Treatment> readTreatmentsByPid(long pid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery();
-        return getListFromResultSet(result);
+        return queryList(getReadAllTreatmentsOfOnePatientByPid(pid));
     }
 
 
@@ -164,11 +189,10 @@ public class TreatmentDao extends DaoImp<Treatment> {
     private PreparedStatement getReadAllTreatmentsOfOneCaregiverByCid(long cid) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM treatment WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(FIND_BY_CAREGIVER_SQL);
             preparedStatement.setLong(1, cid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Behandlungen von Pflegekraft {} konnten nicht gelesen werden", cid, exception);
         }
         return preparedStatement;
     }
@@ -182,60 +206,70 @@ public class TreatmentDao extends DaoImp<Treatment> {
      * <code>ResultSet</code>.
      */
     public List<Treatment> readTreatmentsByCid(long cid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOneCaregiverByCid(cid).executeQuery();
-        return getListFromResultSet(result);
+        return queryList(getReadAllTreatmentsOfOneCaregiverByCid(cid));
+    }
+
+    @Override
+    protected String getUpdateSQL() {
+        return UPDATE_SQL;
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to update the given treatment, identified
-     * by the id of the treatment (tid).
+     * Binds the given treatment to the update statement. The treatment is identified by its id (tid).
      *
+     * @param statement Statement created from {@link #getUpdateSQL()}.
      * @param treatment Treatment object to update.
-     * @return <code>PreparedStatement</code> to update the given treatment.
      */
+    @Override
+    protected void bindUpdateStatement(PreparedStatement statement, Treatment treatment) throws SQLException {
+        statement.setLong(1, treatment.getPid());
+        statement.setLong(2, treatment.getCid());
+        statement.setString(3, treatment.getDate());
+        statement.setString(4, treatment.getBegin());
+        statement.setString(5, treatment.getEnd());
+        statement.setString(6, treatment.getDescription());
+        statement.setString(7, treatment.getRemarks());
+        statement.setString(8, treatment.getStatus().name());
+        statement.setString(9, treatment.getStatusChangeDate().toString());
+        statement.setLong(10, treatment.getTid());
+    }
 
+    /**
+     * @return SQL to delete a treatment by its id (tid).
+     */
     @Override
-    protected PreparedStatement getUpdateStatement(Treatment treatment) {
-        PreparedStatement statement = null;
-        try {
-            statement = connection.prepareStatement(
-                    "UPDATE treatment SET pid = ?, cid = ?, treatment_date = ?, begin = ?, end = ?, " +
-                            "description = ?, remark = ?, status = ?, status_change_date = ? WHERE tid = ?");
-            statement.setLong(1, treatment.getPid());
-            statement.setLong(2, treatment.getCid());
-            statement.setString(3, treatment.getDate());
-            statement.setString(4, treatment.getBegin());
-            statement.setString(5, treatment.getEnd());
-            statement.setString(6, treatment.getDescription());
-            statement.setString(7, treatment.getRemarks());
-            statement.setString(8, treatment.getStatus().name());
-            statement.setString(9, treatment.getStatusChangeDate().toString());
-            statement.setLong(10, treatment.getTid());
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return statement;
+    protected String getDeleteSQL() {
+        return DELETE_SQL;
     }
 
     /**
-     * Generates a <code>PreparedStatement</code> to delete a treatment with the given id.
+     * Streams all treatments without loading the whole table into memory. The stream holds an open
+     * <code>ResultSet</code> and has to be closed, preferably with try-with-resources.
      *
-     * @param tid Id of the Treatment to delete.
-     * @return <code>PreparedStatement</code> to delete treatment with the given id.
+     * @return Stream of all treatments, ordered by tid.
      */
+    public Stream<Treatment> streamAll() throws SQLException {
+        return stream(prepareReadStatement("SELECT * FROM treatment ORDER BY tid"));
+    }
 
-    @Override
-    protected PreparedStatement getDeleteStatement(long tid) {
-        PreparedStatement preparedStatement = null;
+    /**
+     * Reads one page of treatments using keyset pagination: the next page starts after the last tid of the
+     * previous one, so every page costs the same regardless of how far into the table it is.
+     *
+     * @param afterId Last tid of the previous page, or 0 for the first page.
+     * @param limit   Maximum number of treatments on the page.
+     * @return Treatments with a tid greater than <code>afterId</code>, ordered by tid.
+     */
+    public List<Treatment> readPage(long afterId, int limit) throws SQLException {
+        PreparedStatement statement = prepareReadStatement(READ_PAGE_SQL);
         try {
-            final String SQL =
-                    "DELETE FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, tid);
+            statement.setLong(1, afterId);
+            statement.setInt(2, limit);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            releaseStatement(statement);
+            throw exception;
         }
-        return preparedStatement;
+        return queryList(statement);
     }
 
     /**
@@ -245,19 +279,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
      * @throws SQLException on database problems
      */
     public List<Treatment> findByStatus(RecordStatus status) throws SQLException {
-        List<Treatment> result = new ArrayList<>();
-        PreparedStatement statement = null;
-        try {
-            statement = connection.prepareStatement(
-                    "SELECT * FROM treatment WHERE status = ?");
-            statement.setString(1, status.name());
-            ResultSet resultSet = statement.executeQuery();
-            result = getListFromResultSet(resultSet);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw e;
-        }
-        return result;
+        return queryList(FIND_BY_STATUS_SQL, status.name());
     }
 
     /**
@@ -267,19 +289,67 @@ public class TreatmentDao extends DaoImp<Treatment> {
      * @throws SQLException on database problems
      */
     public List<Treatment> findOlderThan(LocalDate date) throws SQLException {
-        List<Treatment> result = new ArrayList<>();
-        PreparedStatement statement = null;
-        try {
-            statement = connection.prepareStatement(
-                    "SELECT * FROM treatment WHERE treatment_date < ?");
-            statement.setString(1, date.toString());
-            ResultSet resultSet = statement.executeQuery();
-            result = getListFromResultSet(resultSet);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw e;
-        }
-        return result;
+        return queryList(FIND_OLDER_THAN_SQL, date.toString());
+    }
+
+    /**
+     * Streams all treatments with a specific status. The stream has to be closed.
+     * @param status The status to search for
+     * @return Stream of found treatments
+     * @throws SQLException on database problems
+     */
+    public Stream<Treatment> streamByStatus(RecordStatus status) throws SQLException {
+        return stream(FIND_BY_STATUS_SQL, status.name());
+    }
+
+    /**
+     * Streams all treatments that are older than the specified date. The stream has to be closed.
+     * @param date The comparison date
+     * @return Stream of found treatments
+     * @throws SQLException on database problems
+     */
+    public Stream<Treatment> streamOlderThan(LocalDate date) throws SQLException {
+        return stream(FIND_OLDER_THAN_SQL, date.toString());
+    }
+
+    /**
+     * Finds the ids of the treatments with a specific status and a treatment date before <code>date</code>, one
+     * chunk at a time
+     * @param status The status to search for
+     * @param date The comparison date
+     * @param afterId Last tid of the previous chunk, or 0 for the first one
+     * @param limit Maximum number of ids
+     * @return The found tids, ascending
+     * @throws SQLException on database problems
+     */
+    public long[] findIdsOlderThan(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return findIdsBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, status, date, afterId, limit);
+    }
+
+    /**
+     * Changes the status of the given treatments from <code>from</code> to <code>to</code> in one transaction.
+     * Treatments that do not have status <code>from</code> are not changed.
+     * @param tids Ids of the treatments
+     * @param from Expected current status
+     * @param to New status
+     * @return Ids of the changed treatments
+     * @throws SQLException on database problems
+     */
+    public List<Long> changeStatus(long[] tids, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatus(TABLE, ID_COLUMN, tids, from, to);
+    }
+
+    /**
+     * Changes the status of all treatments with status <code>from</code> and a treatment date before
+     * <code>date</code> to <code>to</code>, in one transaction.
+     * @param date The comparison date
+     * @param from Expected current status
+     * @param to New status
+     * @return Ids of the changed treatments
+     * @throws SQLException on database problems
+     */
+    public List<Long> changeStatusOlderThan(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return transitionStatusBefore(TABLE, ID_COLUMN, ARCHIVING_DATE_COLUMN, date, from, to);
     }
 
 }
\ No newline at end of file
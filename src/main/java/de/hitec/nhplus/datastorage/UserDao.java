@@ -2,14 +2,24 @@ package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.User;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 public interface UserDao extends Dao<User> {
 
-    void createTable();
-
     User authenticate(String username, String password);
 
+    /**
+     * Like {@link #authenticate(String, String)}, but the default password of the admin account, which resets its
+     * stored password, is only accepted if <code>allowDefaultAdminPassword</code> is set.
+     *
+     * @param allowDefaultAdminPassword <code>false</code> to check the admin account like any other.
+     */
+    default User authenticate(String username, String password, boolean allowDefaultAdminPassword) {
+        return authenticate(username, password);
+    }
+
     User createUser(User user);
 
     ArrayList<User> readAllUsers();
@@ -21,4 +31,20 @@ public interface UserDao extends Dao<User> {
     void delete(User user);
 
     User findByUsername(String username);
+
+    /**
+     * @param now Current time in milliseconds.
+     * @return All users with failed login attempts or a lock that has not yet expired.
+     */
+    List<User> findWithLockState(long now) throws SQLException;
+
+    /**
+     * Stores the failed login attempts and the end of the lock of a user. These columns are written only by this
+     * method, <code>update</code> leaves them unchanged.
+     *
+     * @param username       Username of the user.
+     * @param failedAttempts Number of failed attempts since the last successful login.
+     * @param lockUntil      End of the lock in milliseconds, 0 if the user is not locked.
+     */
+    void updateLockState(String username, int failedAttempts, long lockUntil) throws SQLException;
 }
@@ -2,7 +2,9 @@ package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.User;
 import de.hitec.nhplus.model.UserRole;
-import de.hitec.nhplus.utils.PasswordUtils;
+import de.hitec.nhplus.utils.PasswordHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,53 +12,83 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class UserDaoImpl extends DaoImp<User> implements UserDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserDaoImpl.class);
+
+    static final String TABLE = "users";
+    static final String ID_COLUMN = "uid";
+
+    static final String READ_BY_ID_SQL = "SELECT * FROM users WHERE uid = ?";
+    static final String FIND_BY_USERNAME_SQL = "SELECT * FROM users WHERE username = ?";
+    static final String COUNT_BY_USERNAME_SQL = "SELECT COUNT(*) FROM users WHERE username = ?";
+    static final String COUNT_BY_ROLE_SQL = "SELECT COUNT(*) FROM users WHERE role = ?";
+    static final String READ_PASSWORD_SQL = "SELECT password FROM users WHERE uid = ?";
+    static final String FIND_WITH_LOCK_STATE_SQL = "SELECT * FROM users WHERE failed_attempts > 0 OR lock_until > ?";
+    static final String UPDATE_SQL = "UPDATE users SET username = ?, password = ?, first_name = ?, " +
+            "last_name = ?, email = ?, phone_number = ?, role = ?, caregiver_id = ? WHERE uid = ?";
+    static final String REPLACE_PASSWORD_SQL = "UPDATE users SET password = ? WHERE uid = ? AND (? IS NULL OR password = ?)";
+    static final String UPDATE_LOCK_STATE_SQL = "UPDATE users SET failed_attempts = ?, lock_until = ? WHERE username = ?";
+    static final String DELETE_SQL = "DELETE FROM users WHERE uid = ?";
+
+    /**
+     * Stored hashes of the users of a running {@link #updateAll(Collection)}, by uid; <code>null</code>
+     * outside of it. Only touched under the write lock.
+     */
+    private Map<Long, String> storedPasswords;
 
     public UserDaoImpl(Connection connection) {
         super(connection);
     }
 
+    public UserDaoImpl(Connection connection, Connection readConnection) {
+        super(connection, readConnection);
+    }
+
     @Override
-    protected PreparedStatement getCreateStatement(User user) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "INSERT INTO users (username, password, first_name, last_name, email, phone_number, role) " +
-                              "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
-            preparedStatement.setString(1, user.getUsername());
-            preparedStatement.setString(2, encryptPassword(user.getPassword()));
-            preparedStatement.setString(3, user.getFirstName());
-            preparedStatement.setString(4, user.getLastName());
-            preparedStatement.setString(5, user.getEmail());
-            preparedStatement.setString(6, user.getPhoneNumber());
-            preparedStatement.setString(7, user.getRole().name());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    protected String getEntityName() {
+        return "user";
+    }
+
+    @Override
+    protected String getCreateSQL() {
+        return "INSERT INTO users (username, password, first_name, last_name, email, phone_number, role) " +
+               "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    @Override
+    protected void bindCreateStatement(PreparedStatement preparedStatement, User user) throws SQLException {
+        preparedStatement.setString(1, user.getUsername());
+        preparedStatement.setString(2, encryptPassword(user.getPassword()));
+        preparedStatement.setString(3, user.getFirstName());
+        preparedStatement.setString(4, user.getLastName());
+        preparedStatement.setString(5, user.getEmail());
+        preparedStatement.setString(6, user.getPhoneNumber());
+        preparedStatement.setString(7, user.getRole().name());
     }
 
+    /**
+     * Hashes a password in cleartext. Every value passed here is treated as cleartext, there is no pass-through for
+     * strings that look like a hash.
+     */
     private String encryptPassword(String password) {
         if (password == null || password.isEmpty()) {
             return "";
         }
-        if (password.matches("^[a-fA-F0-9]{64}$")) {
-            return password;
-        }
-        return PasswordUtils.hashPassword(password);
+        return PasswordHasher.getInstance().hash(password);
     }
 
     @Override
     protected PreparedStatement getReadByIDStatement(long key) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "SELECT * FROM users WHERE uid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareReadStatement(READ_BY_ID_SQL);
             preparedStatement.setLong(1, key);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Benutzer {} konnte nicht gelesen werden", key, exception);
         }
         return preparedStatement;
     }
@@ -98,9 +130,9 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM users";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareReadStatement(SQL);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Benutzer konnten nicht gelesen werden", exception);
         }
         return statement;
     }
@@ -115,145 +147,79 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
     }
 
     @Override
-    protected PreparedStatement getUpdateStatement(User user) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "UPDATE users SET username = ?, password = ?, first_name = ?, " +
-                              "last_name = ?, email = ?, phone_number = ?, role = ?, caregiver_id = ?, failed_attempts = ?, lock_until = ? WHERE uid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, user.getUsername());
-
-            String currentPasswordInDb = getPasswordFromDatabase(user.getUid());
-            System.out.println("Aktuelles Benutzer-Passwort in DB: " + (currentPasswordInDb != null ? "[verschlüsselt]" : "null"));
-            System.out.println("Neues Benutzer-Passwort: " + (user.getPassword() != null ? "[vorhanden]" : "null"));
+    protected String getUpdateSQL() {
+        return UPDATE_SQL;
+    }
 
+    @Override
+    protected void bindUpdateStatement(PreparedStatement preparedStatement, User user) throws SQLException {
+        preparedStatement.setString(1, user.getUsername());
+
+        // A user read from the database carries the stored hash; only a changed value is a new password
+        String currentPasswordInDb = this.storedPasswords != null
+                ? this.storedPasswords.get(user.getUid())
+                : getPasswordFromDatabase(user.getUid());
+        if (user.getPassword() != null && user.getPassword().equals(currentPasswordInDb)) {
+            preparedStatement.setString(2, currentPasswordInDb);
+        } else {
             preparedStatement.setString(2, encryptPassword(user.getPassword()));
-            System.out.println("Benutzer-Passwort wurde verschlüsselt und wird aktualisiert.");
-
-            preparedStatement.setString(3, user.getFirstName());
-            preparedStatement.setString(4, user.getLastName());
-            preparedStatement.setString(5, user.getEmail());
-            preparedStatement.setString(6, user.getPhoneNumber());
-            preparedStatement.setString(7, user.getRole().name());
-            preparedStatement.setLong(8, user.getCaregiverId());
-            preparedStatement.setInt(9, user.getFailedAttempts());
-            preparedStatement.setLong(10, user.getLockUntil());
-            preparedStatement.setLong(11, user.getUid());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.debug("Benutzer-Passwort wurde geändert und wird verschlüsselt gespeichert.");
         }
-        return preparedStatement;
+
+        preparedStatement.setString(3, user.getFirstName());
+        preparedStatement.setString(4, user.getLastName());
+        preparedStatement.setString(5, user.getEmail());
+        preparedStatement.setString(6, user.getPhoneNumber());
+        preparedStatement.setString(7, user.getRole().name());
+        preparedStatement.setLong(8, user.getCaregiverId());
+        preparedStatement.setLong(9, user.getUid());
+    }
+
+    @Override
+    protected void beforeUpdateBatch(Collection<User> users) throws SQLException {
+        long[] uids = users.stream().mapToLong(User::getUid).toArray();
+        this.storedPasswords = readColumnByIds(TABLE, ID_COLUMN, "password", uids);
+    }
+
+    @Override
+    protected void afterUpdateBatch() {
+        this.storedPasswords = null;
     }
 
     private String getPasswordFromDatabase(long uid) {
+        PreparedStatement st = null;
         try {
-            PreparedStatement st = connection.prepareStatement("SELECT password FROM users WHERE uid = ?");
+            st = prepareStatement(READ_PASSWORD_SQL);
             st.setLong(1, uid);
 
-            ResultSet rs = st.executeQuery();
             String password = null;
-            if (rs.next()) {
-                password = rs.getString("password");
+            try (ResultSet rs = st.executeQuery()) {
+                if (rs.next()) {
+                    password = rs.getString("password");
+                }
             }
-            rs.close();
-            st.close();
             return password;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Gespeichertes Passwort von Benutzer {} konnte nicht gelesen werden", uid, e);
             return null;
+        } finally {
+            releaseStatement(st);
         }
     }
 
     @Override
-    protected PreparedStatement getDeleteStatement(long key) {
-        PreparedStatement preparedStatement = null;
-        try {
-            final String SQL = "DELETE FROM users WHERE uid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, key);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return preparedStatement;
+    protected String getDeleteSQL() {
+        return DELETE_SQL;
     }
 
-    @Override
-    public void createTable() {
+    /**
+     * Creates the default administrator <code>admin</code>, unless an administrator already exists.
+     */
+    void ensureAdminUser() {
         try {
-            Statement st = connection.createStatement();
-
-            ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='users';");
-            boolean tableExists = rs.next();
-            rs.close();
-
-            if (!tableExists) {
-                st.executeUpdate("CREATE TABLE users (" +
-                                "uid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                                "username TEXT UNIQUE NOT NULL, " +
-                                "password TEXT NOT NULL, " +
-                                "first_name TEXT NOT NULL, " +
-                                "last_name TEXT NOT NULL, " +
-                                "email TEXT, " +
-                                "phone_number TEXT, " +
-                                "role TEXT NOT NULL, " +
-                                "caregiver_id BIGINT DEFAULT 0, " +
-                                "failed_attempts INTEGER DEFAULT 0, " +
-                                "lock_until BIGINT DEFAULT 0)");
-
-                System.out.println("Benutzer-Tabelle 'users' wurde erstellt");
-
-                createAdminUser();
-            } else {
-                try {
-                    ResultSet columns = connection.getMetaData().getColumns(null, null, "users", "caregiver_id");
-                    boolean caregiverIdExists = columns.next();
-                    columns.close();
-
-                    if (!caregiverIdExists) {
-                        System.out.println("Spalte 'caregiver_id' fehlt in der Tabelle 'users'. Füge hinzu...");
-                        st.executeUpdate("ALTER TABLE users ADD COLUMN caregiver_id BIGINT DEFAULT 0");
-                        System.out.println("Spalte 'caregiver_id' wurde zur Tabelle 'users' hinzugefügt.");
-                    }
-                    ResultSet failedAttemptsCol = connection.getMetaData().getColumns(null, null, "users", "failed_attempts");
-                    if (!failedAttemptsCol.next()) {
-                        st.executeUpdate("ALTER TABLE users ADD COLUMN failed_attempts INTEGER DEFAULT 0");
-                        System.out.println("Spalte 'failed_attempts' wurde zur Tabelle 'users' hinzugefügt.");
-                    }
-                    failedAttemptsCol.close();
-                    ResultSet lockUntilCol = connection.getMetaData().getColumns(null, null, "users", "lock_until");
-                    if (!lockUntilCol.next()) {
-                        st.executeUpdate("ALTER TABLE users ADD COLUMN lock_until BIGINT DEFAULT 0");
-                        System.out.println("Spalte 'lock_until' wurde zur Tabelle 'users' hinzugefügt.");
-                    }
-                    lockUntilCol.close();
-                } catch (SQLException ex) {
-                    System.err.println("Fehler beim Prüfen oder Hinzufügen der Spalte 'caregiver_id': " + ex.getMessage());
-                    ex.printStackTrace();
-
-                    try {
-                        st.executeUpdate("ALTER TABLE users ADD COLUMN caregiver_id BIGINT DEFAULT 0");
-                        System.out.println("Spalte 'caregiver_id' wurde zur Tabelle 'users' hinzugefügt (Notfallversuch).");
-                    } catch (SQLException e) {
-                        if (!e.getMessage().contains("duplicate column")) {
-                            throw e;
-                        }
-                    }
-                }
-            }
+            LOGGER.debug("Prüfe auf vorhandene Admin-Benutzer...");
 
-            st.close();
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Erstellen der Benutzer-Tabelle: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    private void createAdminUser() {
-        try {
-            System.out.println("Prüfe auf vorhandene Admin-Benutzer...");
-
-            PreparedStatement checkAdmin = connection.prepareStatement(
-                "SELECT COUNT(*) FROM users WHERE role = ?");
+            PreparedStatement checkAdmin = connection.prepareStatement(COUNT_BY_ROLE_SQL);
             checkAdmin.setString(1, UserRole.ADMIN.name());
             ResultSet rs = checkAdmin.executeQuery();
             int adminCount = 0;
@@ -264,7 +230,7 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
             checkAdmin.close();
 
             if (adminCount == 0) {
-                System.out.println("Kein Admin-Benutzer gefunden. Erstelle Standard-Admin...");
+                LOGGER.info("Kein Admin-Benutzer gefunden. Erstelle Standard-Admin...");
 
                 User admin = new User(
                     "admin",
@@ -277,96 +243,115 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
                 );
 
                 long adminId = create(admin);
-                System.out.println("Admin-Benutzer erstellt mit ID: " + adminId);
+                LOGGER.info("Admin-Benutzer erstellt mit ID: {}", adminId);
             } else {
-                System.out.println("Admin-Benutzer bereits vorhanden. Keine Aktion erforderlich.");
+                LOGGER.debug("Admin-Benutzer bereits vorhanden. Keine Aktion erforderlich.");
             }
         } catch (SQLException e) {
-            System.err.println("Fehler beim Erstellen des Admin-Benutzers: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Fehler beim Erstellen des Admin-Benutzers", e);
         }
     }
 
     @Override
     public User authenticate(String username, String password) {
-        try {
-            Statement checkTable = connection.createStatement();
-            ResultSet tables = checkTable.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='users';");
-            boolean usersTableExists = tables.next();
-            tables.close();
-            checkTable.close();
-
-            if (!usersTableExists) {
-                System.out.println("Tabelle 'users' existiert nicht. Wird erstellt...");
-                createTable();
-            }
+        return authenticate(username, password, true);
+    }
 
-            PreparedStatement st = connection.prepareStatement(
-                "SELECT * FROM users WHERE username = ?");
+    @Override
+    public User authenticate(String username, String password, boolean allowDefaultAdminPassword) {
+        PreparedStatement st = null;
+        try {
+            st = prepareReadStatement(FIND_BY_USERNAME_SQL);
             st.setString(1, username);
 
-            ResultSet rs = st.executeQuery();
             User user = null;
-
-            if (rs.next()) {
-                user = getInstanceFromResultSet(rs);
-
-                boolean isAuthSuccess = false;
-                if ("admin".equals(username) && "admin123".equals(password)) {
-                    String expectedHash = PasswordUtils.hashPassword("admin123");
-                    if (expectedHash.equals(user.getPassword())) {
-                        isAuthSuccess = true;
-                    } else {
-                        System.out.println("Admin-Passwort wird neu gesetzt...");
-                        user.setPassword(expectedHash);
-                        user.setFailedAttempts(0);
-                        user.setLockUntil(0);
-                        updateUser(user);
-                        isAuthSuccess = true;
-                    }
-                } else {
-                    String encryptedPassword = encryptPassword(password);
-                    isAuthSuccess = encryptedPassword.equals(user.getPassword());
+            try (ResultSet rs = st.executeQuery()) {
+                if (rs.next()) {
+                    user = getInstanceFromResultSet(rs);
                 }
+            }
+            releaseStatement(st);
+            st = null;
+
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (user == null) {
+                // as slow as a wrong password, so the response time does not reveal which usernames exist
+                hasher.verifyDummy(password);
+                LOGGER.debug("Benutzer '{}' nicht gefunden.", username);
+                return null;
+            }
 
-                if (!isAuthSuccess) {
-                    System.out.println("Passwort für Benutzer '" + username + "' stimmt nicht überein.");
-                    user = null;
-                } else {
-                    System.out.println("Benutzer '" + username + "' erfolgreich authentifiziert.");
+            String storedHash = user.getPassword();
+            if (hasher.verify(password, storedHash)) {
+                if (hasher.needsRehash(storedHash)) {
+                    replacePasswordHash(user, storedHash, hasher.hash(password));
                 }
+            } else if (allowDefaultAdminPassword && "admin".equals(username) && "admin123".equals(password)) {
+                LOGGER.info("Admin-Passwort wird neu gesetzt...");
+                replacePasswordHash(user, null, hasher.hash(password));
             } else {
-                System.out.println("Benutzer '" + username + "' nicht gefunden.");
+                LOGGER.debug("Passwort für Benutzer '{}' stimmt nicht überein.", username);
+                return null;
             }
 
-            rs.close();
-            st.close();
+            LOGGER.debug("Benutzer '{}' erfolgreich authentifiziert.", username);
             return user;
         } catch (SQLException e) {
-            System.err.println("SQL-Fehler bei der Authentifizierung: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("SQL-Fehler bei der Authentifizierung", e);
             return null;
         } catch (Exception e) {
-            System.err.println("Unerwarteter Fehler bei der Authentifizierung: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Unerwarteter Fehler bei der Authentifizierung", e);
             return null;
+        } finally {
+            releaseStatement(st);
         }
     }
 
-    public boolean unlockUser(String username) {
+    /**
+     * Stores a new hash for the password of a user, e.g. to upgrade a legacy hash after a successful login.
+     *
+     * @param user     User whose hash is replaced. Receives the new hash.
+     * @param expected Hash that has to be stored currently, so a password changed in the meantime is not
+     *                 overwritten, or <code>null</code> to replace any hash.
+     * @param newHash  New hash.
+     */
+    private void replacePasswordHash(User user, String expected, String newHash) throws SQLException {
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement st = null;
         try {
-            PreparedStatement st = connection.prepareStatement(
-                "UPDATE users SET failed_attempts = 0, lock_until = 0 WHERE username = ?");
-            st.setString(1, username);
-            int rowsAffected = st.executeUpdate();
-            st.close();
-            
-            System.out.println("Benutzer '" + username + "' wurde entsperrt. Betroffene Zeilen: " + rowsAffected);
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Entsperren des Benutzers: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            st = prepareStatement(REPLACE_PASSWORD_SQL);
+            st.setString(1, newHash);
+            st.setLong(2, user.getUid());
+            st.setString(3, expected);
+            st.setString(4, expected);
+            if (st.executeUpdate() > 0) {
+                user.setPassword(newHash);
+                LOGGER.debug("Passwort-Hash von Benutzer '{}' wurde erneuert.", user.getUsername());
+            }
+        } finally {
+            releaseStatement(st);
+            ConnectionBuilder.getWriteLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findWithLockState(long now) throws SQLException {
+        return queryList(FIND_WITH_LOCK_STATE_SQL, now);
+    }
+
+    @Override
+    public void updateLockState(String username, int failedAttempts, long lockUntil) throws SQLException {
+        ConnectionBuilder.getWriteLock().lock();
+        PreparedStatement st = null;
+        try {
+            st = prepareStatement(UPDATE_LOCK_STATE_SQL);
+            st.setInt(1, failedAttempts);
+            st.setLong(2, lockUntil);
+            st.setString(3, username);
+            st.executeUpdate();
+        } finally {
+            releaseStatement(st);
+            ConnectionBuilder.getWriteLock().unlock();
         }
     }
 
@@ -377,7 +362,7 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
             user.setUid(id);
             return user;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Benutzer konnte nicht angelegt werden", e);
             return null;
         }
     }
@@ -387,7 +372,7 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
         try {
             return (ArrayList<User>) readAll();
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Benutzer konnten nicht gelesen werden", e);
             return new ArrayList<>();
         }
     }
@@ -397,7 +382,7 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
         try {
             return read(uid);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Benutzer {} konnte nicht gelesen werden", uid, e);
             return null;
         }
     }
@@ -407,7 +392,7 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
         try {
             update(user);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Benutzer {} konnte nicht aktualisiert werden", user.getUid(), e);
         }
     }
 
@@ -416,27 +401,15 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
         try {
             deleteById(user.getUid());
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Benutzer {} konnte nicht gelöscht werden", user.getUid(), e);
         }
     }
 
         @Override
         public User findByUsername(String username) {
+            PreparedStatement st = null;
             try {
-                Statement checkTable = connection.createStatement();
-                ResultSet tables = checkTable.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='users';");
-                boolean usersTableExists = tables.next();
-                tables.close();
-                checkTable.close();
-
-                if (!usersTableExists) {
-                    System.out.println("Tabelle 'users' existiert nicht. Wird erstellt...");
-                    createTable();
-                }
-
-                PreparedStatement st = connection.prepareStatement(
-                    "SELECT * FROM users WHERE username = ?"
-                );
+                st = prepareReadStatement(FIND_BY_USERNAME_SQL);
                 st.setString(1, username);
 
                 ResultSet rs = st.executeQuery();
@@ -448,100 +421,94 @@ public class UserDaoImpl extends DaoImp<User> implements UserDao {
                         try {
                             user.setCaregiverId(rs.getLong("caregiver_id"));
                         } catch (SQLException e) {
-                            System.out.println("Spalte 'caregiver_id' nicht gefunden: " + e.getMessage());
+                            LOGGER.warn("Spalte 'caregiver_id' nicht gefunden: {}", e.getMessage());
                             user.setCaregiverId(0);
                         }
                     }
                 } else {
-                    System.out.println("Kein Benutzer mit Benutzernamen '" + username + "' gefunden.");
+                    LOGGER.debug("Kein Benutzer mit Benutzernamen '{}' gefunden.", username);
                 }
 
                 rs.close();
-                st.close();
                 return user;
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOGGER.error("Benutzer '{}' konnte nicht gelesen werden", username, e);
                 return null;
+            } finally {
+                releaseStatement(st);
             }
         }
 
     public void migrateCaregiverToUsers() {
         try {
             Statement st = connection.createStatement();
-            ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='caregiver';");
-            boolean caregiverTableExists = rs.next();
-            rs.close();
+            ResultSet rs = st.executeQuery("SELECT * FROM caregiver");
+            List<User> usersToCreate = new ArrayList<>();
 
-            if (caregiverTableExists) {
-                rs = st.executeQuery("SELECT * FROM caregiver");
-                List<User> usersToCreate = new ArrayList<>();
+            while (rs.next()) {
+                String username;
+                String password;
 
-                while (rs.next()) {
-                    String username;
-                    String password;
-
-                    try {
-                        username = rs.getString("username");
-                        password = rs.getString("password");
-                    } catch (SQLException e) {
-                        username = "caregiver_" + rs.getLong("cid");
-                        password = "changeme";
-                    }
-
-                    if (username == null || username.isEmpty()) {
-                        username = "caregiver_" + rs.getLong("cid");
-                    }
+                try {
+                    username = rs.getString("username");
+                    password = rs.getString("password");
+                } catch (SQLException e) {
+                    username = "caregiver_" + rs.getLong("cid");
+                    password = "changeme";
+                }
 
-                    PreparedStatement checkUser = connection.prepareStatement(
-                        "SELECT COUNT(*) FROM users WHERE username = ?");
-                    checkUser.setString(1, username);
-                    ResultSet userCheck = checkUser.executeQuery();
-                    int userCount = 0;
-                    if (userCheck.next()) {
-                        userCount = userCheck.getInt(1);
-                    }
-                    userCheck.close();
-                    checkUser.close();
-
-                    if (userCount == 0) {
-                        User user = new User(
-                            username,
-                            password,
-                            rs.getString("firstname"),
-                            rs.getString("surname"),
-                            "",
-                            rs.getString("telephone"),
-                            UserRole.CAREGIVER
-                        );
-
-                        long caregiverId = rs.getLong("cid");
-                        user.setCaregiverId(caregiverId);
-
-                        usersToCreate.add(user);
-                    }
+                if (username == null || username.isEmpty()) {
+                    username = "caregiver_" + rs.getLong("cid");
                 }
-                rs.close();
 
-                for (User user : usersToCreate) {
-                    PreparedStatement insertUser = connection.prepareStatement(
-                        "INSERT INTO users (username, password, first_name, last_name, email, phone_number, role, caregiver_id) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
-                    insertUser.setString(1, user.getUsername());
-                    insertUser.setString(2, user.getPassword());
-                    insertUser.setString(3, user.getFirstName());
-                    insertUser.setString(4, user.getLastName());
-                    insertUser.setString(5, user.getEmail());
-                    insertUser.setString(6, user.getPhoneNumber());
-                    insertUser.setString(7, user.getRole().name());
-                    insertUser.setLong(8, user.getCaregiverId());
-                    insertUser.executeUpdate();
-                    insertUser.close();
+                PreparedStatement checkUser = connection.prepareStatement(COUNT_BY_USERNAME_SQL);
+                checkUser.setString(1, username);
+                ResultSet userCheck = checkUser.executeQuery();
+                int userCount = 0;
+                if (userCheck.next()) {
+                    userCount = userCheck.getInt(1);
+                }
+                userCheck.close();
+                checkUser.close();
+
+                if (userCount == 0) {
+                    User user = new User(
+                        username,
+                        password,
+                        rs.getString("firstname"),
+                        rs.getString("surname"),
+                        "",
+                        rs.getString("telephone"),
+                        UserRole.CAREGIVER
+                    );
+
+                    long caregiverId = rs.getLong("cid");
+                    user.setCaregiverId(caregiverId);
+
+                    usersToCreate.add(user);
                 }
             }
+            rs.close();
+
+            for (User user : usersToCreate) {
+                PreparedStatement insertUser = connection.prepareStatement(
+                    "INSERT INTO users (username, password, first_name, last_name, email, phone_number, role, caregiver_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                insertUser.setString(1, user.getUsername());
+                insertUser.setString(2, user.getPassword());
+                insertUser.setString(3, user.getFirstName());
+                insertUser.setString(4, user.getLastName());
+                insertUser.setString(5, user.getEmail());
+                insertUser.setString(6, user.getPhoneNumber());
+                insertUser.setString(7, user.getRole().name());
+                insertUser.setLong(8, user.getCaregiverId());
+                insertUser.executeUpdate();
+                insertUser.close();
+            }
 
             st.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.error("Pflegekräfte konnten nicht in die Benutzertabelle übernommen werden", e);
         }
     }
 }
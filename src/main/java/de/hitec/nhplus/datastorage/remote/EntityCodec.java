@@ -0,0 +1,241 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.LoginLog;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.model.UserRole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts entities to and from the JSON objects of the HTTP API. Dates and times are written in ISO format.
+ * <p>
+ * Password hashes never leave the server: the codecs for responses leave the password out, a user or caregiver
+ * sent back without a password keeps the stored one. Only the codecs for requests carry a password, which is then
+ * a new password in cleartext.
+ *
+ * @param <T> Type of the entity.
+ */
+public abstract class EntityCodec<T> {
+
+    public static final EntityCodec<Patient> PATIENT = new PatientCodec();
+    public static final EntityCodec<Treatment> TREATMENT = new TreatmentCodec();
+    public static final EntityCodec<Caregiver> CAREGIVER = new CaregiverCodec(false);
+    public static final EntityCodec<Caregiver> CAREGIVER_REQUEST = new CaregiverCodec(true);
+    public static final EntityCodec<User> USER = new UserCodec(false);
+    public static final EntityCodec<User> USER_REQUEST = new UserCodec(true);
+    public static final EntityCodec<LoginLog> LOGIN_LOG = new LoginLogCodec();
+
+    public abstract Map<String, Object> encode(T entity);
+
+    public abstract T decode(Map<String, Object> object);
+
+    public List<Map<String, Object>> encodeAll(Collection<? extends T> entities) {
+        List<Map<String, Object>> objects = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            objects.add(encode(entity));
+        }
+        return objects;
+    }
+
+    /**
+     * @param value Parsed JSON value: an object or <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public T decodeValue(Object value) {
+        return value == null ? null : decode((Map<String, Object>) value);
+    }
+
+    /**
+     * @param value Parsed JSON value: an array of objects.
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<T> decodeAll(Object value) {
+        List<Object> array = (List<Object>) value;
+        ArrayList<T> entities = new ArrayList<>(array.size());
+        for (Object element : array) {
+            entities.add(decode((Map<String, Object>) element));
+        }
+        return entities;
+    }
+
+    static long longValue(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    static String stringValue(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    static LocalDate dateValue(Map<String, Object> object, String key) {
+        String value = stringValue(object, key);
+        return value == null ? LocalDate.now() : LocalDate.parse(value);
+    }
+
+    static RecordStatus statusValue(Map<String, Object> object) {
+        String value = stringValue(object, "status");
+        return value == null ? RecordStatus.ACTIVE : RecordStatus.valueOf(value);
+    }
+
+    private static final class PatientCodec extends EntityCodec<Patient> {
+
+        @Override
+        public Map<String, Object> encode(Patient patient) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            // A new patient has no pid yet
+            object.put("pid", patient.pidProperty() == null ? 0 : patient.getPid());
+            object.put("firstName", patient.getFirstName());
+            object.put("surname", patient.getSurname());
+            object.put("dateOfBirth", patient.getDateOfBirth());
+            object.put("careLevel", patient.getCareLevel());
+            object.put("roomNumber", patient.getRoomNumber());
+            object.put("status", patient.getStatus());
+            object.put("statusChangeDate", String.valueOf(patient.getStatusChangeDate()));
+            return object;
+        }
+
+        @Override
+        public Patient decode(Map<String, Object> object) {
+            return new Patient(longValue(object, "pid"), stringValue(object, "firstName"),
+                    stringValue(object, "surname"), LocalDate.parse(stringValue(object, "dateOfBirth")),
+                    stringValue(object, "careLevel"), stringValue(object, "roomNumber"), statusValue(object),
+                    dateValue(object, "statusChangeDate"));
+        }
+    }
+
+    private static final class TreatmentCodec extends EntityCodec<Treatment> {
+
+        @Override
+        public Map<String, Object> encode(Treatment treatment) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            object.put("tid", treatment.getTid());
+            object.put("pid", treatment.getPid());
+            object.put("cid", treatment.getCid());
+            object.put("date", treatment.getDate());
+            object.put("begin", treatment.getBegin());
+            object.put("end", treatment.getEnd());
+            object.put("description", treatment.getDescription());
+            object.put("remarks", treatment.getRemarks());
+            object.put("status", treatment.getStatus());
+            object.put("statusChangeDate", String.valueOf(treatment.getStatusChangeDate()));
+            return object;
+        }
+
+        @Override
+        public Treatment decode(Map<String, Object> object) {
+            return new Treatment(longValue(object, "tid"), longValue(object, "pid"), longValue(object, "cid"),
+                    LocalDate.parse(stringValue(object, "date")), LocalTime.parse(stringValue(object, "begin")),
+                    LocalTime.parse(stringValue(object, "end")), stringValue(object, "description"),
+                    stringValue(object, "remarks"), statusValue(object), dateValue(object, "statusChangeDate"));
+        }
+    }
+
+    private static final class CaregiverCodec extends EntityCodec<Caregiver> {
+
+        private final boolean withPassword;
+
+        CaregiverCodec(boolean withPassword) {
+            this.withPassword = withPassword;
+        }
+
+        @Override
+        public Map<String, Object> encode(Caregiver caregiver) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            object.put("cid", caregiver.getCid());
+            object.put("username", caregiver.getUsername());
+            if (this.withPassword) {
+                object.put("password", caregiver.getPassword());
+            }
+            object.put("firstName", caregiver.getFirstName());
+            object.put("surname", caregiver.getSurname());
+            object.put("telephone", caregiver.getTelephone());
+            object.put("status", caregiver.getStatus());
+            object.put("statusChangeDate", String.valueOf(caregiver.getStatusChangeDate()));
+            return object;
+        }
+
+        @Override
+        public Caregiver decode(Map<String, Object> object) {
+            return new Caregiver(longValue(object, "cid"), stringValue(object, "username"),
+                    stringValue(object, "password"), stringValue(object, "firstName"),
+                    stringValue(object, "surname"), stringValue(object, "telephone"), statusValue(object),
+                    dateValue(object, "statusChangeDate"));
+        }
+    }
+
+    private static final class UserCodec extends EntityCodec<User> {
+
+        private final boolean withPassword;
+
+        UserCodec(boolean withPassword) {
+            this.withPassword = withPassword;
+        }
+
+        @Override
+        public Map<String, Object> encode(User user) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            object.put("uid", user.getUid());
+            object.put("username", user.getUsername());
+            if (this.withPassword) {
+                object.put("password", user.getPassword());
+            }
+            object.put("firstName", user.getFirstName());
+            object.put("lastName", user.getLastName());
+            object.put("email", user.getEmail());
+            object.put("phoneNumber", user.getPhoneNumber());
+            object.put("role", user.getRole());
+            object.put("caregiverId", user.getCaregiverId());
+            object.put("failedAttempts", user.getFailedAttempts());
+            object.put("lockUntil", user.getLockUntil());
+            return object;
+        }
+
+        @Override
+        public User decode(Map<String, Object> object) {
+            User user = new User(longValue(object, "uid"), stringValue(object, "username"),
+                    stringValue(object, "password"), stringValue(object, "firstName"),
+                    stringValue(object, "lastName"), stringValue(object, "email"),
+                    stringValue(object, "phoneNumber"), UserRole.valueOf(stringValue(object, "role")));
+            user.setCaregiverId(longValue(object, "caregiverId"));
+            user.setFailedAttempts((int) longValue(object, "failedAttempts"));
+            user.setLockUntil(longValue(object, "lockUntil"));
+            return user;
+        }
+    }
+
+    private static final class LoginLogCodec extends EntityCodec<LoginLog> {
+
+        @Override
+        public Map<String, Object> encode(LoginLog log) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            object.put("id", log.getId());
+            object.put("username", log.getUsername());
+            object.put("ipAddress", log.getIpAddress());
+            object.put("timestamp", String.valueOf(log.getTimestamp()));
+            object.put("successful", log.isSuccessful());
+            object.put("failureReason", log.getFailureReason());
+            return object;
+        }
+
+        @Override
+        public LoginLog decode(Map<String, Object> object) {
+            LoginLog log = new LoginLog(stringValue(object, "username"), stringValue(object, "ipAddress"),
+                    Boolean.TRUE.equals(object.get("successful")), stringValue(object, "failureReason"));
+            log.setId((int) longValue(object, "id"));
+            log.setTimestamp(LocalDateTime.parse(stringValue(object, "timestamp")));
+            return log;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the HTTP API between {@link RemoteDaoFactory} and the server.
+ * <p>
+ * Objects are read as <code>Map</code>, arrays as <code>List</code>, integral numbers as <code>Long</code>, other
+ * numbers as <code>Double</code>. Written can be maps, collections, arrays of <code>long</code>, strings, numbers,
+ * booleans, enums and <code>null</code>.
+ */
+public final class Json {
+
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text JSON document.
+     * @return The parsed value.
+     * @throws IllegalArgumentException If the text is not valid JSON.
+     */
+    public static Object parse(String text) {
+        Json parser = new Json(text);
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("Unerwartetes Zeichen");
+        }
+        return value;
+    }
+
+    public static String write(Object value) {
+        StringBuilder builder = new StringBuilder();
+        writeValue(builder, value);
+        return builder.toString();
+    }
+
+    private static void writeValue(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof String string) {
+            writeString(builder, string);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Enum<?> constant) {
+            writeString(builder, constant.name());
+        } else if (value instanceof Map<?, ?> map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                writeString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                writeValue(builder, entry.getValue());
+            }
+            builder.append('}');
+        } else if (value instanceof Iterable<?> iterable) {
+            builder.append('[');
+            boolean first = true;
+            for (Object element : iterable) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                writeValue(builder, element);
+            }
+            builder.append(']');
+        } else if (value instanceof long[] array) {
+            builder.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(array[i]);
+            }
+            builder.append(']');
+        } else {
+            writeString(builder, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder builder, String string) {
+        builder.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char character = string.charAt(i);
+            switch (character) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (character < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        builder.append(character);
+                    }
+                }
+            }
+        }
+        builder.append('"');
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (this.position >= this.text.length()) {
+            throw error("Unerwartetes Ende");
+        }
+        char character = this.text.charAt(this.position);
+        switch (character) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                expect("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        this.position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            this.position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Schlüssel erwartet");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (peek() != ':') {
+                throw error("':' erwartet");
+            }
+            this.position++;
+            object.put(key, readValue());
+            skipWhitespace();
+            char next = peek();
+            this.position++;
+            if (next == '}') {
+                return object;
+            }
+            if (next != ',') {
+                throw error("',' oder '}' erwartet");
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        this.position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            this.position++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            char next = peek();
+            this.position++;
+            if (next == ']') {
+                return array;
+            }
+            if (next != ',') {
+                throw error("',' oder ']' erwartet");
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder builder = new StringBuilder();
+        this.position++;
+        while (true) {
+            char character = peek();
+            this.position++;
+            if (character == '"') {
+                return builder.toString();
+            }
+            if (character != '\\') {
+                builder.append(character);
+                continue;
+            }
+            char escaped = peek();
+            this.position++;
+            switch (escaped) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (this.position + 4 > this.text.length()) {
+                        throw error("Unvollständige Unicode-Escape-Sequenz");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Ungültige Unicode-Escape-Sequenz");
+                    }
+                    this.position += 4;
+                }
+                default -> builder.append(escaped);
+            }
+        }
+    }
+
+    private Number readNumber() {
+        int start = this.position;
+        boolean integral = true;
+        while (this.position < this.text.length()) {
+            char character = this.text.charAt(this.position);
+            if (character == '.' || character == 'e' || character == 'E') {
+                integral = false;
+            } else if (character != '-' && character != '+' && !Character.isDigit(character)) {
+                break;
+            }
+            this.position++;
+        }
+        String number = this.text.substring(start, this.position);
+        try {
+            return integral ? (Number) Long.parseLong(number) : (Number) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Ungültiger Wert");
+        }
+    }
+
+    private void expect(String literal) {
+        if (!this.text.startsWith(literal, this.position)) {
+            throw error("'" + literal + "' erwartet");
+        }
+        this.position += literal.length();
+    }
+
+    private char peek() {
+        if (this.position >= this.text.length()) {
+            throw error("Unerwartetes Ende");
+        }
+        return this.text.charAt(this.position);
+    }
+
+    private void skipWhitespace() {
+        while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+            this.position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " an Position " + this.position + " im JSON-Dokument");
+    }
+}
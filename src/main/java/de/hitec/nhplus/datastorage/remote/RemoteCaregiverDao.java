@@ -0,0 +1,159 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.RecordStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link CaregiverDao} that reads and writes the caregivers through the server, at <code>/api/caregivers</code>.
+ * Passwords are checked by the server; the caregivers it returns carry no password hash. Streams are read
+ * completely before they are returned.
+ */
+public class RemoteCaregiverDao implements CaregiverDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteCaregiverDao.class);
+
+    private final RemoteEndpoint<Caregiver> endpoint;
+
+    public RemoteCaregiverDao(RemoteClient client) {
+        this.endpoint = new RemoteEndpoint<>(client, "/api/caregivers", EntityCodec.CAREGIVER,
+                EntityCodec.CAREGIVER_REQUEST, Caregiver::getCid);
+    }
+
+    @Override
+    public long create(Caregiver caregiver) throws SQLException {
+        return this.endpoint.create(caregiver);
+    }
+
+    @Override
+    public long[] createAll(Collection<Caregiver> caregivers) throws SQLException {
+        return this.endpoint.createAll(caregivers);
+    }
+
+    @Override
+    public Caregiver read(long cid) throws SQLException {
+        return this.endpoint.read(cid);
+    }
+
+    @Override
+    public List<Caregiver> readAll() throws SQLException {
+        return this.endpoint.readAll();
+    }
+
+    @Override
+    public void update(Caregiver caregiver) throws SQLException {
+        this.endpoint.update(caregiver);
+    }
+
+    @Override
+    public void updateAll(Collection<Caregiver> caregivers) throws SQLException {
+        this.endpoint.updateAll(caregivers);
+    }
+
+    @Override
+    public void deleteById(long cid) throws SQLException {
+        this.endpoint.deleteById(cid);
+    }
+
+    @Override
+    public void deleteAllById(long[] cids) throws SQLException {
+        this.endpoint.deleteAllById(cids);
+    }
+
+    @Override
+    public Caregiver createCaregiver(Caregiver caregiver) {
+        try {
+            caregiver.setCid(create(caregiver));
+            return caregiver;
+        } catch (SQLException e) {
+            LOGGER.error("Pflegekraft konnte nicht angelegt werden", e);
+            return null;
+        }
+    }
+
+    @Override
+    public ArrayList<Caregiver> readAllCaregivers() {
+        try {
+            return this.endpoint.readAll();
+        } catch (SQLException e) {
+            LOGGER.error("Pflegekräfte konnten nicht gelesen werden", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Caregiver readCaregiver(long cid) {
+        try {
+            return read(cid);
+        } catch (SQLException e) {
+            LOGGER.error("Pflegekraft {} konnte nicht gelesen werden", cid, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void updateCaregiver(Caregiver caregiver) {
+        try {
+            update(caregiver);
+        } catch (SQLException e) {
+            LOGGER.error("Pflegekraft {} konnte nicht aktualisiert werden", caregiver.getCid(), e);
+        }
+    }
+
+    @Override
+    public void delete(Caregiver caregiver) {
+        try {
+            deleteById(caregiver.getCid());
+        } catch (SQLException e) {
+            LOGGER.error("Pflegekraft {} konnte nicht gelöscht werden", caregiver.getCid(), e);
+        }
+    }
+
+    @Override
+    public Caregiver authenticate(String username, String password) {
+        Map<String, Object> credentials = new LinkedHashMap<>();
+        credentials.put("username", username);
+        credentials.put("password", password);
+        try {
+            return EntityCodec.CAREGIVER.decodeValue(this.endpoint.action("authenticate", credentials));
+        } catch (SQLException e) {
+            LOGGER.error("Fehler bei der Authentifizierung über den Server: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Stream<Caregiver> streamByStatus(RecordStatus status) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("status", status)).stream();
+    }
+
+    @Override
+    public Stream<Caregiver> streamOlderThan(LocalDate date) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("olderThan", date)).stream();
+    }
+
+    @Override
+    public long[] findIdsOlderThan(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return this.endpoint.findIdsBefore(status, date, afterId, limit);
+    }
+
+    @Override
+    public List<Long> changeStatus(long[] cids, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatus(cids, from, to);
+    }
+
+    @Override
+    public List<Long> changeStatusOlderThan(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatusBefore("olderThan", date, from, to);
+    }
+}
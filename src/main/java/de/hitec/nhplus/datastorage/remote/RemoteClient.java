@@ -0,0 +1,161 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Sends the requests of the remote DAOs to the server. One client, and with it one pool of HTTP connections, is
+ * shared by all DAOs of a {@link RemoteDaoFactory}.
+ * <p>
+ * Every failure, whether the server cannot be reached or answers with an error, is reported as
+ * <code>SQLException</code>, so callers handle it like a failure of the local database. The HTTP status of an error
+ * answer is the error code of the exception.
+ * <p>
+ * After a successful login the client sends the session the server opened for the user with every request, so the
+ * server can tell which user is working, e.g. to allow changes of the users only to administrators.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.server.timeoutMillis</code> - timeout of one request, default 10000</li>
+ *     <li><code>nhplus.server.token</code> - shared secret sent with every request, if the server requires one</li>
+ * </ul>
+ */
+public class RemoteClient {
+
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String SESSION_HEADER = "X-NHPlus-Session";
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final String token;
+    private volatile String session;
+
+    /**
+     * @param baseUrl URL of the server, e.g. <code>http://station1:8421</code>.
+     */
+    public RemoteClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = Duration.ofMillis(getTimeoutMillis());
+        this.token = System.getProperty("nhplus.server.token");
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(this.timeout)
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return this.baseUrl;
+    }
+
+    /**
+     * @param session Id of the session of the logged in user, or <code>null</code> to send requests without one.
+     */
+    void setSession(String session) {
+        this.session = session;
+    }
+
+    /**
+     * @return The parsed response, or <code>null</code> if the server does not know the resource.
+     */
+    Object get(String path) throws SQLException {
+        return send("GET", path, null);
+    }
+
+    Object post(String path, Object body) throws SQLException {
+        return send("POST", path, body);
+    }
+
+    Object put(String path, Object body) throws SQLException {
+        return send("PUT", path, body);
+    }
+
+    Object delete(String path) throws SQLException {
+        return send("DELETE", path, null);
+    }
+
+    /**
+     * @return The query string for the given parameters, including the leading <code>?</code>.
+     */
+    static String query(Map<String, ?> parameters) {
+        StringJoiner query = new StringJoiner("&", "?", "");
+        for (Map.Entry<String, ?> parameter : parameters.entrySet()) {
+            if (parameter.getValue() != null) {
+                query.add(parameter.getKey() + "=" + URLEncoder.encode(String.valueOf(parameter.getValue()),
+                        StandardCharsets.UTF_8));
+            }
+        }
+        return query.toString();
+    }
+
+    private Object send(String method, String path, Object body) throws SQLException {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+                .timeout(this.timeout)
+                .header("Accept", JSON)
+                .method(method, publisher);
+        if (body != null) {
+            request.header("Content-Type", JSON);
+        }
+        if (this.token != null) {
+            request.header("Authorization", "Bearer " + this.token);
+        }
+        String session = this.session;
+        if (session != null) {
+            request.header(SESSION_HEADER, session);
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = this.httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new SQLException("Server " + this.baseUrl + " nicht erreichbar: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Anfrage an den Server wurde unterbrochen", e);
+        }
+
+        int status = response.statusCode();
+        if (status == 404 && "GET".equals(method)) {
+            return null;
+        }
+        Object result = parse(response.body());
+        if (status >= 400) {
+            String message = result instanceof Map<?, ?> error ? String.valueOf(error.get("error")) : response.body();
+            throw new SQLException("Server meldet Fehler " + status + " bei " + method + " " + path + ": " + message,
+                    null, status);
+        }
+        return result;
+    }
+
+    private static Object parse(String body) throws SQLException {
+        if (body == null || body.isBlank()) {
+            return null;
+        }
+        try {
+            return Json.parse(body);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Ungültige Antwort des Servers: " + e.getMessage(), e);
+        }
+    }
+
+    private static int getTimeoutMillis() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.server.timeoutMillis", String.valueOf(DEFAULT_TIMEOUT_MILLIS))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_TIMEOUT_MILLIS;
+        }
+    }
+}
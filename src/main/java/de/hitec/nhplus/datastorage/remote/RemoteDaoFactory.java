@@ -0,0 +1,71 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.ArchivingJobDao;
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.LoginLogDao;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TransactionWork;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.UserDao;
+
+import java.sql.SQLException;
+
+/**
+ * Creates DAOs that talk to the NHPlus server instead of opening the database file. Used by the client when the
+ * system property <code>nhplus.server.url</code> is set, see {@link DaoFactory#getDaoFactory()}.
+ * <p>
+ * The server owns the database and runs the scheduled archiving, so this factory has no
+ * {@link ArchivingJobDao}.
+ */
+public class RemoteDaoFactory extends DaoFactory {
+
+    private final RemoteClient client;
+
+    public RemoteDaoFactory(String serverUrl) {
+        this.client = new RemoteClient(serverUrl);
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    /**
+     * Runs the work without a transaction: every request is a transaction of its own on the server.
+     */
+    @Override
+    public <R> R inTransaction(TransactionWork<R> work) throws SQLException {
+        return work.execute(null);
+    }
+
+    @Override
+    public TreatmentDao createTreatmentDao() {
+        return new RemoteTreatmentDao(this.client);
+    }
+
+    @Override
+    public PatientDao createPatientDAO() {
+        return new RemotePatientDao(this.client);
+    }
+
+    @Override
+    public CaregiverDao createCaregiverDAO() {
+        return new RemoteCaregiverDao(this.client);
+    }
+
+    @Override
+    public UserDao createUserDAO() {
+        return new RemoteUserDao(this.client);
+    }
+
+    @Override
+    public ArchivingJobDao createArchivingJobDao() {
+        throw new UnsupportedOperationException("Die Archivierung läuft auf dem Server " + this.client.getBaseUrl());
+    }
+
+    @Override
+    public LoginLogDao createLoginLogDao() {
+        return new RemoteLoginLogDao(this.client);
+    }
+}
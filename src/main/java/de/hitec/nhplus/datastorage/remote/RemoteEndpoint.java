@@ -0,0 +1,157 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.model.RecordStatus;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * The operations of {@link de.hitec.nhplus.datastorage.Dao} and the status changes of the archiving on one
+ * resource of the server, e.g. <code>/api/patients</code>. The remote DAOs delegate to it.
+ *
+ * @param <T> Type of the entities of the resource.
+ */
+class RemoteEndpoint<T> {
+
+    private final RemoteClient client;
+    private final String path;
+    private final EntityCodec<T> codec;
+    private final EntityCodec<T> requestCodec;
+    private final ToLongFunction<T> idFunction;
+
+    /**
+     * @param codec        Codec for the entities the server sends.
+     * @param requestCodec Codec for the entities sent to the server.
+     * @param idFunction   Returns the ID of an entity.
+     */
+    RemoteEndpoint(RemoteClient client, String path, EntityCodec<T> codec, EntityCodec<T> requestCodec,
+                   ToLongFunction<T> idFunction) {
+        this.client = client;
+        this.path = path;
+        this.codec = codec;
+        this.requestCodec = requestCodec;
+        this.idFunction = idFunction;
+    }
+
+    long create(T entity) throws SQLException {
+        Map<?, ?> response = (Map<?, ?>) this.client.post(this.path, this.requestCodec.encode(entity));
+        return ((Number) response.get("id")).longValue();
+    }
+
+    long[] createAll(Collection<T> entities) throws SQLException {
+        if (entities.isEmpty()) {
+            return new long[0];
+        }
+        return toLongArray(this.client.post(this.path, this.requestCodec.encodeAll(entities)));
+    }
+
+    T read(long id) throws SQLException {
+        return this.codec.decodeValue(this.client.get(this.path + "/" + id));
+    }
+
+    ArrayList<T> readAll() throws SQLException {
+        return this.codec.decodeAll(this.client.get(this.path));
+    }
+
+    /**
+     * @param parameters Query parameters that select one of the queries of the resource.
+     */
+    ArrayList<T> query(Map<String, ?> parameters) throws SQLException {
+        return this.codec.decodeAll(this.client.get(this.path + RemoteClient.query(parameters)));
+    }
+
+    T queryOne(Map<String, ?> parameters) throws SQLException {
+        List<T> entities = query(parameters);
+        return entities.isEmpty() ? null : entities.get(0);
+    }
+
+    void update(T entity) throws SQLException {
+        this.client.put(this.path + "/" + this.idFunction.applyAsLong(entity), this.requestCodec.encode(entity));
+    }
+
+    void updateAll(Collection<T> entities) throws SQLException {
+        if (!entities.isEmpty()) {
+            this.client.put(this.path, this.requestCodec.encodeAll(entities));
+        }
+    }
+
+    void deleteById(long id) throws SQLException {
+        this.client.delete(this.path + "/" + id);
+    }
+
+    void deleteAllById(long[] ids) throws SQLException {
+        if (ids.length > 0) {
+            this.client.post(this.path + "/delete", ids);
+        }
+    }
+
+    /**
+     * Calls an action of the resource, e.g. <code>/api/users/authenticate</code>.
+     *
+     * @return The parsed response.
+     */
+    Object action(String name, Object body) throws SQLException {
+        return this.client.post(this.path + "/" + name, body);
+    }
+
+    long[] findIdsBefore(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("idsBefore", date);
+        parameters.put("status", status);
+        parameters.put("afterId", afterId);
+        parameters.put("limit", limit);
+        return toLongArray(this.client.get(this.path + RemoteClient.query(parameters)));
+    }
+
+    List<Long> changeStatus(long[] ids, RecordStatus from, RecordStatus to) throws SQLException {
+        Map<String, Object> body = statusChange(from, to);
+        body.put("ids", ids);
+        return toLongList(action("status", body));
+    }
+
+    /**
+     * @param condition Name of the date condition of the resource, e.g. <code>olderThan</code>.
+     */
+    List<Long> changeStatusBefore(String condition, LocalDate date, RecordStatus from, RecordStatus to)
+            throws SQLException {
+        Map<String, Object> body = statusChange(from, to);
+        body.put(condition, date.toString());
+        return toLongList(action("status", body));
+    }
+
+    private static Map<String, Object> statusChange(RecordStatus from, RecordStatus to) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("from", from);
+        body.put("to", to);
+        return body;
+    }
+
+    static long[] toLongArray(Object value) {
+        List<?> array = (List<?>) value;
+        long[] result = new long[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Number) array.get(i)).longValue();
+        }
+        return result;
+    }
+
+    static List<Long> toLongList(Object value) {
+        List<Long> result = new ArrayList<>();
+        for (long id : toLongArray(value)) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    static Map<String, Object> parameters(String name, Object value) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put(name, value);
+        return parameters;
+    }
+}
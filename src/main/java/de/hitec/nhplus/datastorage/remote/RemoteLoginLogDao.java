@@ -0,0 +1,44 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.LoginLogDao;
+import de.hitec.nhplus.model.LoginLog;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link LoginLogDao} that writes and reads the login log through the server, at <code>/api/login-log</code>.
+ */
+public class RemoteLoginLogDao extends LoginLogDao {
+
+    private final RemoteEndpoint<LoginLog> endpoint;
+
+    public RemoteLoginLogDao(RemoteClient client) {
+        super(null, null);
+        this.endpoint = new RemoteEndpoint<>(client, "/api/login-log", EntityCodec.LOGIN_LOG, EntityCodec.LOGIN_LOG,
+                LoginLog::getId);
+    }
+
+    @Override
+    public void createAll(Collection<LoginLog> logs) throws SQLException {
+        if (!logs.isEmpty()) {
+            this.endpoint.action("batch", EntityCodec.LOGIN_LOG.encodeAll(logs));
+        }
+    }
+
+    @Override
+    public List<LoginLog> readPage(String username, LocalDateTime from, LocalDateTime to, int offset, int limit)
+            throws SQLException {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("offset", offset);
+        parameters.put("limit", limit);
+        parameters.put("username", username);
+        parameters.put("from", from);
+        parameters.put("to", to);
+        return this.endpoint.query(parameters);
+    }
+}
@@ -0,0 +1,122 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link PatientDao} that reads and writes the patients through the server, at <code>/api/patients</code>. It has
+ * no connection of its own; every public method of {@link PatientDao} is answered by the server. Streams are read
+ * completely before they are returned.
+ */
+public class RemotePatientDao extends PatientDao {
+
+    private final RemoteEndpoint<Patient> endpoint;
+
+    public RemotePatientDao(RemoteClient client) {
+        super(null, null);
+        this.endpoint = new RemoteEndpoint<>(client, "/api/patients", EntityCodec.PATIENT, EntityCodec.PATIENT,
+                Patient::getPid);
+    }
+
+    @Override
+    public long create(Patient patient) throws SQLException {
+        return this.endpoint.create(patient);
+    }
+
+    @Override
+    public long[] createAll(Collection<Patient> patients) throws SQLException {
+        return this.endpoint.createAll(patients);
+    }
+
+    @Override
+    public Patient read(long pid) throws SQLException {
+        return this.endpoint.read(pid);
+    }
+
+    @Override
+    public List<Patient> readAll() throws SQLException {
+        return this.endpoint.readAll();
+    }
+
+    @Override
+    public void update(Patient patient) throws SQLException {
+        this.endpoint.update(patient);
+    }
+
+    @Override
+    public void updateAll(Collection<Patient> patients) throws SQLException {
+        this.endpoint.updateAll(patients);
+    }
+
+    @Override
+    public void deleteById(long pid) throws SQLException {
+        this.endpoint.deleteById(pid);
+    }
+
+    @Override
+    public void deleteAllById(long[] pids) throws SQLException {
+        this.endpoint.deleteAllById(pids);
+    }
+
+    @Override
+    public List<Patient> findByStatus(RecordStatus status) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("status", status));
+    }
+
+    @Override
+    public List<Patient> findOlderThan(LocalDate date) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("olderThan", date));
+    }
+
+    @Override
+    public Stream<Patient> streamByStatus(RecordStatus status) throws SQLException {
+        return findByStatus(status).stream();
+    }
+
+    @Override
+    public Stream<Patient> streamOlderThan(LocalDate date) throws SQLException {
+        return findOlderThan(date).stream();
+    }
+
+    @Override
+    public Stream<Patient> streamBornBefore(LocalDate date) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("bornBefore", date)).stream();
+    }
+
+    @Override
+    public long[] findIdsBornBefore(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return this.endpoint.findIdsBefore(status, date, afterId, limit);
+    }
+
+    @Override
+    public List<Long> changeStatus(long[] pids, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatus(pids, from, to);
+    }
+
+    @Override
+    public List<Long> changeStatusBornBefore(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatusBefore("bornBefore", date, from, to);
+    }
+
+    @Override
+    public Stream<Patient> streamAll() throws SQLException {
+        return readAll().stream();
+    }
+
+    @Override
+    public List<Patient> readPage(long afterId, int limit) throws SQLException {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("afterId", afterId);
+        parameters.put("limit", limit);
+        return this.endpoint.query(parameters);
+    }
+}
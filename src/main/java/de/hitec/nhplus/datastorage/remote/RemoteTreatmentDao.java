@@ -0,0 +1,127 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link TreatmentDao} that reads and writes the treatments through the server, at <code>/api/treatments</code>.
+ * It has no connection of its own; every public method of {@link TreatmentDao} is answered by the server. Streams
+ * are read completely before they are returned.
+ */
+public class RemoteTreatmentDao extends TreatmentDao {
+
+    private final RemoteEndpoint<Treatment> endpoint;
+
+    public RemoteTreatmentDao(RemoteClient client) {
+        super(null, null);
+        this.endpoint = new RemoteEndpoint<>(client, "/api/treatments", EntityCodec.TREATMENT, EntityCodec.TREATMENT,
+                Treatment::getTid);
+    }
+
+    @Override
+    public long create(Treatment treatment) throws SQLException {
+        return this.endpoint.create(treatment);
+    }
+
+    @Override
+    public long[] createAll(Collection<Treatment> treatments) throws SQLException {
+        return this.endpoint.createAll(treatments);
+    }
+
+    @Override
+    public Treatment read(long tid) throws SQLException {
+        return this.endpoint.read(tid);
+    }
+
+    @Override
+    public List<Treatment> readAll() throws SQLException {
+        return this.endpoint.readAll();
+    }
+
+    @Override
+    public void update(Treatment treatment) throws SQLException {
+        this.endpoint.update(treatment);
+    }
+
+    @Override
+    public void updateAll(Collection<Treatment> treatments) throws SQLException {
+        this.endpoint.updateAll(treatments);
+    }
+
+    @Override
+    public void deleteById(long tid) throws SQLException {
+        this.endpoint.deleteById(tid);
+    }
+
+    @Override
+    public void deleteAllById(long[] tids) throws SQLException {
+        this.endpoint.deleteAllById(tids);
+    }
+
+    @Override
+    public List<Treatment> readTreatmentsByPid(long pid) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("pid", pid));
+    }
+
+    @Override
+    public List<Treatment> readTreatmentsByCid(long cid) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("cid", cid));
+    }
+
+    @Override
+    public Stream<Treatment> streamAll() throws SQLException {
+        return readAll().stream();
+    }
+
+    @Override
+    public List<Treatment> readPage(long afterId, int limit) throws SQLException {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("afterId", afterId);
+        parameters.put("limit", limit);
+        return this.endpoint.query(parameters);
+    }
+
+    @Override
+    public List<Treatment> findByStatus(RecordStatus status) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("status", status));
+    }
+
+    @Override
+    public List<Treatment> findOlderThan(LocalDate date) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("olderThan", date));
+    }
+
+    @Override
+    public Stream<Treatment> streamByStatus(RecordStatus status) throws SQLException {
+        return findByStatus(status).stream();
+    }
+
+    @Override
+    public Stream<Treatment> streamOlderThan(LocalDate date) throws SQLException {
+        return findOlderThan(date).stream();
+    }
+
+    @Override
+    public long[] findIdsOlderThan(RecordStatus status, LocalDate date, long afterId, int limit) throws SQLException {
+        return this.endpoint.findIdsBefore(status, date, afterId, limit);
+    }
+
+    @Override
+    public List<Long> changeStatus(long[] tids, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatus(tids, from, to);
+    }
+
+    @Override
+    public List<Long> changeStatusOlderThan(LocalDate date, RecordStatus from, RecordStatus to) throws SQLException {
+        return this.endpoint.changeStatusBefore("olderThan", date, from, to);
+    }
+}
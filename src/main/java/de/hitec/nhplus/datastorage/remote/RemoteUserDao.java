@@ -0,0 +1,188 @@
+package de.hitec.nhplus.datastorage.remote;
+
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link UserDao} that reads and writes the users through the server, at <code>/api/users</code>. Passwords are
+ * checked by the server; the users it returns carry no password hash. The server also counts failed logins and
+ * keeps the locks, so the lock state can be read through this DAO but not written.
+ */
+public class RemoteUserDao implements UserDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteUserDao.class);
+
+    /** Error code of the <code>SQLException</code> of {@link #login} while the login is locked. */
+    public static final int LOCKED = 423;
+
+    private final RemoteClient client;
+    private final RemoteEndpoint<User> endpoint;
+
+    public RemoteUserDao(RemoteClient client) {
+        this.client = client;
+        this.endpoint = new RemoteEndpoint<>(client, "/api/users", EntityCodec.USER, EntityCodec.USER_REQUEST,
+                User::getUid);
+    }
+
+    @Override
+    public long create(User user) throws SQLException {
+        return this.endpoint.create(user);
+    }
+
+    @Override
+    public long[] createAll(Collection<User> users) throws SQLException {
+        return this.endpoint.createAll(users);
+    }
+
+    @Override
+    public User read(long uid) throws SQLException {
+        return this.endpoint.read(uid);
+    }
+
+    @Override
+    public List<User> readAll() throws SQLException {
+        return this.endpoint.readAll();
+    }
+
+    @Override
+    public void update(User user) throws SQLException {
+        this.endpoint.update(user);
+    }
+
+    @Override
+    public void updateAll(Collection<User> users) throws SQLException {
+        this.endpoint.updateAll(users);
+    }
+
+    @Override
+    public void deleteById(long uid) throws SQLException {
+        this.endpoint.deleteById(uid);
+    }
+
+    @Override
+    public void deleteAllById(long[] uids) throws SQLException {
+        this.endpoint.deleteAllById(uids);
+    }
+
+    @Override
+    public User authenticate(String username, String password) {
+        try {
+            return login(username, password);
+        } catch (SQLException e) {
+            LOGGER.error("Fehler bei der Authentifizierung über den Server: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks the credentials on the server, which also counts the attempt and keeps the locks. A successful login
+     * replaces the session of the client by the one the server opened for the user; any other attempt ends it.
+     *
+     * @return The user, or <code>null</code> if the credentials are wrong.
+     * @throws SQLException If the server fails or refuses the attempt; error code {@value #LOCKED}, while the user
+     *                      or the address of this workstation is locked.
+     */
+    public User login(String username, String password) throws SQLException {
+        Map<String, Object> credentials = new LinkedHashMap<>();
+        credentials.put("username", username);
+        credentials.put("password", password);
+        this.client.setSession(null);
+        Object response = this.endpoint.action("authenticate", credentials);
+        if (response instanceof Map<?, ?> user) {
+            this.client.setSession((String) user.get("session"));
+        }
+        return EntityCodec.USER.decodeValue(response);
+    }
+
+    /**
+     * Asks the server to lift the lock of the admin account and of this workstation with the emergency code.
+     *
+     * @return <code>true</code>, if the server knows the user and has lifted the locks.
+     * @throws SQLException If the server fails or refuses the unlock, e.g. because it is not only reachable locally.
+     */
+    public boolean unlockAccount(String username, String code) throws SQLException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("username", username);
+        request.put("code", code);
+        return Boolean.TRUE.equals(this.endpoint.action("unlock", request));
+    }
+
+    @Override
+    public User createUser(User user) {
+        try {
+            user.setUid(create(user));
+            return user;
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer konnte nicht angelegt werden", e);
+            return null;
+        }
+    }
+
+    @Override
+    public ArrayList<User> readAllUsers() {
+        try {
+            return this.endpoint.readAll();
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer konnten nicht gelesen werden", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public User readUser(long uid) {
+        try {
+            return read(uid);
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer {} konnte nicht gelesen werden", uid, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void updateUser(User user) {
+        try {
+            update(user);
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer {} konnte nicht aktualisiert werden", user.getUid(), e);
+        }
+    }
+
+    @Override
+    public void delete(User user) {
+        try {
+            deleteById(user.getUid());
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer {} konnte nicht gelöscht werden", user.getUid(), e);
+        }
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        try {
+            return this.endpoint.queryOne(RemoteEndpoint.parameters("username", username));
+        } catch (SQLException e) {
+            LOGGER.error("Benutzer {} konnte nicht gesucht werden", username, e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<User> findWithLockState(long now) throws SQLException {
+        return this.endpoint.query(RemoteEndpoint.parameters("lockState", now));
+    }
+
+    /**
+     * Does nothing: the lock state is written only by the server, which counts the attempts it checks itself.
+     */
+    @Override
+    public void updateLockState(String username, int failedAttempts, long lockUntil) {
+    }
+}
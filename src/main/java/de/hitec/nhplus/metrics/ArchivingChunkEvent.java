@@ -0,0 +1,42 @@
+package de.hitec.nhplus.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one chunk of records whose status an archiving service changes, including the logging
+ * of the changes.
+ */
+@Name("de.hitec.nhplus.ArchivingChunk")
+@Label("Archiving Chunk")
+@Category({"NHPlus", "Archiving"})
+@Description("Status change of one chunk of records")
+public class ArchivingChunkEvent extends Event {
+
+    @Label("Entity")
+    public String entity;
+
+    @Label("From Status")
+    public String from;
+
+    @Label("To Status")
+    public String to;
+
+    @Label("Records")
+    @Description("Records in the chunk")
+    public long records;
+
+    @Label("Changed")
+    @Description("Records that had the expected status and were changed")
+    public long changed;
+
+    public ArchivingChunkEvent(String entity, String from, String to, long records) {
+        this.entity = entity;
+        this.from = from;
+        this.to = to;
+        this.records = records;
+    }
+}
@@ -0,0 +1,55 @@
+package de.hitec.nhplus.metrics;
+
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Reads the statistics of a cache through the given functions, so the cache keeps counting on its own.
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+    private final String name;
+    private final LongSupplier hits;
+    private final LongSupplier misses;
+    private final LongSupplier evictions;
+    private final IntSupplier size;
+
+    CacheStatistics(String name, LongSupplier hits, LongSupplier misses, LongSupplier evictions, IntSupplier size) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.getAsLong();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.getAsLong();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.evictions.getAsLong();
+    }
+
+    @Override
+    public int getSize() {
+        return this.size.getAsInt();
+    }
+}
@@ -0,0 +1,17 @@
+package de.hitec.nhplus.metrics;
+
+/**
+ * JMX view of the hit rate of a cache, e.g. the statement cache or an entity cache.
+ */
+public interface CacheStatisticsMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getEvictions();
+
+    int getSize();
+}
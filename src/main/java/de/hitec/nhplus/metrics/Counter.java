@@ -0,0 +1,27 @@
+package de.hitec.nhplus.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter, e.g. of failed logins. Increments from many threads do not contend.
+ */
+public class Counter implements CounterMXBean {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+}
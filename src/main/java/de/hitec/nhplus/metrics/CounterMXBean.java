@@ -0,0 +1,9 @@
+package de.hitec.nhplus.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMXBean {
+
+    long getCount();
+}
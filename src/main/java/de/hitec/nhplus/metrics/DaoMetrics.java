@@ -0,0 +1,25 @@
+package de.hitec.nhplus.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The histograms of the operations of the DAO of one entity type, named <code>dao.{entity}.{operation}</code>.
+ */
+public class DaoMetrics {
+
+    private final Map<DaoOperation, LatencyHistogram> histograms = new EnumMap<>(DaoOperation.class);
+
+    DaoMetrics(String entity) {
+        for (DaoOperation operation : DaoOperation.values()) {
+            this.histograms.put(operation, Metrics.histogram("dao." + entity + "." + operation.getKey()));
+        }
+    }
+
+    /**
+     * @param startNanos Value of <code>System.nanoTime()</code> when the operation started.
+     */
+    public void record(DaoOperation operation, long startNanos) {
+        this.histograms.get(operation).recordSince(startNanos);
+    }
+}
@@ -0,0 +1,29 @@
+package de.hitec.nhplus.metrics;
+
+/**
+ * The operations of <code>DaoImp</code> whose durations are recorded per entity type.
+ */
+public enum DaoOperation {
+    CREATE("create"),
+    CREATE_ALL("createAll"),
+    READ("read"),
+    READ_ALL("readAll"),
+    UPDATE("update"),
+    UPDATE_ALL("updateAll"),
+    DELETE("deleteById"),
+    DELETE_ALL("deleteAllById"),
+    /** Queries of the subclasses, e.g. <code>findByStatus</code>. */
+    QUERY("query"),
+    /** Status changes of the archiving. */
+    TRANSITION("transition");
+
+    private final String key;
+
+    DaoOperation(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+}
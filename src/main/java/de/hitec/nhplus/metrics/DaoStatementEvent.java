@@ -0,0 +1,31 @@
+package de.hitec.nhplus.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one SQL statement executed by a DAO. The event lasts from the execution until the
+ * result has been mapped, or until the stream of a lazily mapped query is closed. The stack trace shows the thread
+ * and the caller, e.g. a controller that queried on the JavaFX application thread.
+ */
+@Name("de.hitec.nhplus.DaoStatement")
+@Label("DAO Statement")
+@Category({"NHPlus", "Database"})
+@Description("SQL statement executed by a DAO")
+@StackTrace
+public class DaoStatementEvent extends Event {
+
+    @Label("Entity")
+    public String entity;
+
+    @Label("SQL")
+    public String sql;
+
+    @Label("Rows")
+    @Description("Rows returned by a query, changed by an update or sent in a batch")
+    public long rows;
+}
@@ -0,0 +1,24 @@
+package de.hitec.nhplus.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading an FXML view, including the <code>initialize</code> method of its controller
+ * and the data the controller reads there.
+ */
+@Name("de.hitec.nhplus.FxmlLoad")
+@Label("FXML Load")
+@Category({"NHPlus", "User Interface"})
+@Description("Loading of an FXML view and its controller")
+public class FxmlLoadEvent extends Event {
+
+    @Label("View")
+    public String view;
+
+    @Label("Controller")
+    public Class<?> controller;
+}
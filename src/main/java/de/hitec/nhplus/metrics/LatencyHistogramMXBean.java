@@ -0,0 +1,23 @@
+package de.hitec.nhplus.metrics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}. All times are in milliseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
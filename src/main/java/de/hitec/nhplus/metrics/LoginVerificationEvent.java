@@ -0,0 +1,27 @@
+package de.hitec.nhplus.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for checking one login attempt: lock state, password verification and the bookkeeping of
+ * the attempt. It never contains the password.
+ */
+@Name("de.hitec.nhplus.LoginVerification")
+@Label("Login Verification")
+@Category({"NHPlus", "Security"})
+@Description("Check of one login attempt")
+public class LoginVerificationEvent extends Event {
+
+    @Label("Username")
+    public String username;
+
+    @Label("Successful")
+    public boolean successful;
+
+    @Label("Cancelled")
+    public boolean cancelled;
+}
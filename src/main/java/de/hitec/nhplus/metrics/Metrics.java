@@ -0,0 +1,114 @@
+package de.hitec.nhplus.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the metrics of the application: latency histograms, counters and cache statistics, each under a
+ * dotted name such as <code>dao.treatment.readAll</code> or <code>login.failed</code>. A metric is created on first
+ * use and lives as long as the application.
+ * <p>
+ * Every metric is also published as MXBean on the platform MBean server, under
+ * <code>de.hitec.nhplus:type=Latency|Counter|Cache,name=...</code>, so it can be watched with JConsole or any JMX
+ * client. Setting <code>nhplus.metrics.jmx</code> to <code>false</code> turns the publishing off.
+ */
+public final class Metrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    private static final String DOMAIN = "de.hitec.nhplus";
+    private static final boolean JMX_ENABLED = Boolean.parseBoolean(System.getProperty("nhplus.metrics.jmx", "true"));
+
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, CacheStatistics> CACHES = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, DaoMetrics> DAOS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The histogram with the given name, created on first use.
+     */
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        return histogram != null ? histogram : add(HISTOGRAMS, "Latency", name, new LatencyHistogram());
+    }
+
+    /**
+     * @return The counter with the given name, created on first use.
+     */
+    public static Counter counter(String name) {
+        Counter counter = COUNTERS.get(name);
+        return counter != null ? counter : add(COUNTERS, "Counter", name, new Counter());
+    }
+
+    /**
+     * @param entity Entity type of the DAO, e.g. <code>treatment</code>.
+     * @return The histograms of the DAO operations on the entity type.
+     */
+    public static DaoMetrics dao(String entity) {
+        return DAOS.computeIfAbsent(entity, DaoMetrics::new);
+    }
+
+    /**
+     * Publishes the statistics of a cache. The cache keeps counting itself, the functions read its counters. A
+     * second cache with the same name is ignored.
+     */
+    public static void registerCache(String name, LongSupplier hits, LongSupplier misses, LongSupplier evictions,
+                                     IntSupplier size) {
+        add(CACHES, "Cache", name, new CacheStatistics(name, hits, misses, evictions, size));
+    }
+
+    /**
+     * @return All histograms, sorted by name.
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    /**
+     * @return All counters, sorted by name.
+     */
+    public static Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(COUNTERS);
+    }
+
+    /**
+     * @return The statistics of all registered caches, sorted by name.
+     */
+    public static Map<String, CacheStatistics> getCaches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * Adds the metric unless another thread was faster, and publishes it if it was added.
+     *
+     * @return The metric that is registered under the name.
+     */
+    private static <M> M add(ConcurrentMap<String, M> metrics, String type, String name, M metric) {
+        M existing = metrics.putIfAbsent(name, metric);
+        if (existing != null) {
+            return existing;
+        }
+        if (JMX_ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metric,
+                        new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name)));
+            } catch (JMException e) {
+                LOGGER.warn("Metrik {} konnte nicht per JMX veröffentlicht werden: {}", name, e.getMessage());
+            }
+        }
+        return metric;
+    }
+}
@@ -0,0 +1,73 @@
+package de.hitec.nhplus.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Result of one run of an archiving job: how many records were looked at, how many of them changed their status and
+ * how long it took.
+ */
+public class ArchivingRun {
+    private final String job;
+    private final LocalDateTime startedAt;
+    private final Duration duration;
+    private final long processed;
+    private final long changed;
+    private final boolean completed;
+
+    /**
+     * @param job       Name of the job, e.g. <code>treatment</code>.
+     * @param startedAt Start of the run.
+     * @param duration  Duration of the run.
+     * @param processed Number of records the run looked at.
+     * @param changed   Number of records whose status was changed.
+     * @param completed <code>false</code>, if the run was interrupted and will be resumed from its checkpoint.
+     */
+    public ArchivingRun(String job, LocalDateTime startedAt, Duration duration, long processed, long changed,
+                        boolean completed) {
+        this.job = job;
+        this.startedAt = startedAt;
+        this.duration = duration;
+        this.processed = processed;
+        this.changed = changed;
+        this.completed = completed;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Processed records per second.
+     */
+    public double getThroughput() {
+        long millis = Math.max(1, duration.toMillis());
+        return processed * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d verarbeitet, %d geändert in %d ms (%.1f/s)%s", job, processed, changed,
+                duration.toMillis(), getThroughput(), completed ? "" : ", unterbrochen");
+    }
+}
@@ -0,0 +1,355 @@
+package de.hitec.nhplus.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.hitec.nhplus.datastorage.Dao;
+import de.hitec.nhplus.datastorage.remote.EntityCodec;
+import de.hitec.nhplus.datastorage.remote.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Serves one entity type of the database over HTTP, e.g. the patients at <code>/api/patients</code>:
+ * <ul>
+ *     <li><code>GET /api/patients</code> - all entities, or the result of a query if parameters are given</li>
+ *     <li><code>GET /api/patients/{id}</code> - one entity, 404 if it does not exist</li>
+ *     <li><code>POST /api/patients</code> - creates one entity (object) or several in one batch (array)</li>
+ *     <li><code>PUT /api/patients/{id}</code> - updates one entity; <code>PUT /api/patients</code> several</li>
+ *     <li><code>DELETE /api/patients/{id}</code> - deletes one entity</li>
+ *     <li><code>POST /api/patients/delete</code> - deletes the entities whose IDs are given as array</li>
+ *     <li><code>POST /api/patients/{action}</code> - one of the actions of the resource</li>
+ * </ul>
+ * A resource can be restricted so that only administrators, identified by their {@link Sessions session}, may
+ * change it. Request bodies larger than <code>nhplus.server.maxBodyBytes</code> bytes (default 16 MiB) are refused with 413.
+ * A query is selected by the first of its registered parameters that is present, in the order of registration.
+ * Every request gets its own DAO from the factory, so concurrent requests are spread over the read-only
+ * connections of the pool. The DAO operations are the same the desktop application uses, so transactions, the
+ * write lock and the caches apply unchanged.
+ *
+ * @param <T> Type of the entities.
+ * @param <D> Type of the DAO. The CRUD routes are only served if it is a {@link Dao} of <code>T</code>.
+ */
+class EntityResource<T, D> implements HttpHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityResource.class);
+
+    @FunctionalInterface
+    interface Query<D> {
+        Object run(D dao, Map<String, String> parameters) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Action<D> {
+        Object run(D dao, Object body) throws SQLException;
+    }
+
+    /**
+     * Action that needs the address of the client, e.g. to count failed logins per address.
+     */
+    @FunctionalInterface
+    interface ClientAction<D> {
+        Object run(D dao, Object body, String clientAddress) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface UpdateHook<T, D> {
+        void beforeUpdate(D dao, T entity) throws SQLException;
+    }
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final int DEFAULT_MAX_BODY_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_BODY_BYTES = Math.min(Integer.MAX_VALUE - 1,
+            NhPlusServer.getIntProperty("nhplus.server.maxBodyBytes", DEFAULT_MAX_BODY_BYTES));
+
+    private final String path;
+    private final Supplier<? extends D> daos;
+    private final EntityCodec<T> codec;
+    private final EntityCodec<T> requestCodec;
+    private final ToLongFunction<T> idFunction;
+    private final Map<String, Query<D>> queries = new LinkedHashMap<>();
+    private final Map<String, ClientAction<D>> actions = new HashMap<>();
+    private UpdateHook<T, D> updateHook = (dao, entity) -> {
+    };
+    private final byte[] token;
+    private Sessions adminSessions;
+    private Set<String> openActions = Set.of();
+
+    /**
+     * @param path         Path of the resource, e.g. <code>/api/patients</code>.
+     * @param daos         Creates the DAO for one request.
+     * @param codec        Codec for the entities sent to the client.
+     * @param requestCodec Codec for the entities the client sends.
+     * @param idFunction   Returns the ID of an entity.
+     * @param token        Secret every request has to send, or <code>null</code>.
+     */
+    EntityResource(String path, Supplier<? extends D> daos, EntityCodec<T> codec, EntityCodec<T> requestCodec,
+                   ToLongFunction<T> idFunction, String token) {
+        this.path = path;
+        this.daos = daos;
+        this.codec = codec;
+        this.requestCodec = requestCodec;
+        this.idFunction = idFunction;
+        this.token = token == null ? null : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+    }
+
+    String getPath() {
+        return this.path;
+    }
+
+    EntityResource<T, D> query(String parameter, Query<D> query) {
+        this.queries.put(parameter, query);
+        return this;
+    }
+
+    EntityResource<T, D> action(String name, Action<D> action) {
+        return action(name, (dao, body, clientAddress) -> action.run(dao, body));
+    }
+
+    EntityResource<T, D> action(String name, ClientAction<D> action) {
+        this.actions.put(name, action);
+        return this;
+    }
+
+    /**
+     * Allows requests other than <code>GET</code> only in the session of an administrator, except the given
+     * actions, e.g. the login itself.
+     */
+    EntityResource<T, D> adminWrites(Sessions sessions, Set<String> openActions) {
+        this.adminSessions = sessions;
+        this.openActions = openActions;
+        return this;
+    }
+
+    /**
+     * Sets the hook that runs before an entity sent by a client is updated, e.g. to keep its stored password.
+     */
+    EntityResource<T, D> beforeUpdate(UpdateHook<T, D> hook) {
+        this.updateHook = hook;
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!isAuthorized(exchange)) {
+                sendError(exchange, 401, "Nicht autorisiert");
+                return;
+            }
+            try {
+                Response response = dispatch(exchange);
+                send(exchange, response.status, response.body);
+            } catch (ResourceException e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException | ClassCastException | DateTimeException | NullPointerException e) {
+                sendError(exchange, 400, "Ungültige Anfrage: " + e.getMessage());
+            } catch (SQLException e) {
+                LOGGER.error("Datenbankfehler bei {} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(),
+                        e.getMessage());
+                sendError(exchange, 500, e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.error("Fehler bei {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+                sendError(exchange, 500, e.toString());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response dispatch(HttpExchange exchange) throws IOException, SQLException {
+        String method = exchange.getRequestMethod();
+        String rest = exchange.getRequestURI().getPath().substring(this.path.length());
+        if (rest.startsWith("/")) {
+            rest = rest.substring(1);
+        }
+        if (this.adminSessions != null && !method.equals("GET")
+                && !(method.equals("POST") && this.openActions.contains(rest))) {
+            Sessions.Session session = this.adminSessions.find(exchange);
+            if (session == null) {
+                throw new ResourceException(401, "Anmeldung erforderlich");
+            }
+            if (!session.admin()) {
+                throw new ResourceException(403, "Nur für Administratoren");
+            }
+        }
+        D dao = this.daos.get();
+
+        switch (method) {
+            case "GET":
+                if (rest.isEmpty()) {
+                    return Response.ok(query(dao, parseQuery(exchange.getRequestURI().getRawQuery())));
+                }
+                T entity = crud(dao).read(parseId(rest));
+                if (entity == null) {
+                    throw new ResourceException(404, "Nicht gefunden: " + exchange.getRequestURI().getPath());
+                }
+                return Response.ok(this.codec.encode(entity));
+            case "POST":
+                Object body = readBody(exchange);
+                if (rest.isEmpty()) {
+                    if (body instanceof List<?>) {
+                        return new Response(201, crud(dao).createAll(this.requestCodec.decodeAll(body)));
+                    }
+                    return new Response(201, Collections.singletonMap("id",
+                            crud(dao).create(this.requestCodec.decodeValue(body))));
+                }
+                if (rest.equals("delete")) {
+                    crud(dao).deleteAllById(toLongArray(body));
+                    return Response.NO_CONTENT;
+                }
+                ClientAction<D> action = this.actions.get(rest);
+                if (action == null) {
+                    throw new ResourceException(404, "Unbekannte Aktion: " + rest);
+                }
+                return Response.ok(action.run(dao, body, exchange.getRemoteAddress().getAddress().getHostAddress()));
+            case "PUT":
+                Object updateBody = readBody(exchange);
+                if (rest.isEmpty()) {
+                    List<T> entities = this.requestCodec.decodeAll(updateBody);
+                    for (T update : entities) {
+                        this.updateHook.beforeUpdate(dao, update);
+                    }
+                    crud(dao).updateAll(entities);
+                    return Response.NO_CONTENT;
+                }
+                T update = this.requestCodec.decodeValue(updateBody);
+                if (this.idFunction.applyAsLong(update) != parseId(rest)) {
+                    throw new ResourceException(400, "ID im Pfad und im Inhalt stimmen nicht überein");
+                }
+                this.updateHook.beforeUpdate(dao, update);
+                crud(dao).update(update);
+                return Response.NO_CONTENT;
+            case "DELETE":
+                crud(dao).deleteById(parseId(rest));
+                return Response.NO_CONTENT;
+            default:
+                throw new ResourceException(405, "Methode nicht erlaubt: " + method);
+        }
+    }
+
+    private Object query(D dao, Map<String, String> parameters) throws SQLException {
+        if (parameters.isEmpty()) {
+            return this.codec.encodeAll(crud(dao).readAll());
+        }
+        for (Map.Entry<String, Query<D>> query : this.queries.entrySet()) {
+            if (parameters.containsKey(query.getKey())) {
+                return query.getValue().run(dao, parameters);
+            }
+        }
+        throw new ResourceException(400, "Unbekannte Abfrage: " + parameters.keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Dao<T> crud(D dao) {
+        if (!(dao instanceof Dao<?>)) {
+            throw new ResourceException(405, "Methode für " + this.path + " nicht erlaubt");
+        }
+        return (Dao<T>) dao;
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (this.token == null) {
+            return true;
+        }
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && MessageDigest.isEqual(this.token, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long parseId(String value) {
+        return Long.parseLong(value);
+    }
+
+    static long[] toLongArray(Object value) {
+        List<?> array = (List<?>) value;
+        long[] result = new long[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Number) array.get(i)).longValue();
+        }
+        return result;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads and parses the body of the request. Reads at most {@link #MAX_BODY_BYTES} bytes, whatever the client
+     * announces as <code>Content-Length</code>.
+     */
+    private static Object readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+            throw new ResourceException(413, "Anfrage größer als " + MAX_BODY_BYTES + " Bytes");
+        }
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ResourceException(413, "Anfrage größer als " + MAX_BODY_BYTES + " Bytes");
+        }
+        String body = new String(bytes, StandardCharsets.UTF_8);
+        return body.isBlank() ? null : Json.parse(body);
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (status == 204) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Collections.singletonMap("error", message));
+    }
+
+    private record Response(int status, Object body) {
+
+        static final Response NO_CONTENT = new Response(204, null);
+
+        static Response ok(Object body) {
+            return new Response(200, body);
+        }
+    }
+
+    /**
+     * Failure that is answered with the given HTTP status.
+     */
+    static class ResourceException extends RuntimeException {
+
+        private final int status;
+
+        ResourceException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
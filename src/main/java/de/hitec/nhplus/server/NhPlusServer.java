@@ -0,0 +1,360 @@
+package de.hitec.nhplus.server;
+
+import com.sun.net.httpserver.HttpServer;
+import de.hitec.nhplus.archiving.ArchivingLogger;
+import de.hitec.nhplus.archiving.ArchivingScheduler;
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.CaregiverDao;
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DatabaseInitializer;
+import de.hitec.nhplus.datastorage.LoginLogDao;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.datastorage.remote.EntityCodec;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.LoginLog;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.service.AccountLockService;
+import de.hitec.nhplus.service.LoginLogService;
+import de.hitec.nhplus.utils.PasswordHasher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Headless server mode: one process owns the database file and serves the DAOs over HTTP to the workstations of
+ * the ward, which run the desktop application with <code>-Dnhplus.server.url=http://&lt;host&gt;:&lt;port&gt;</code>.
+ * SQLite then sees a single process with one writer connection instead of several processes fighting over the
+ * file lock. The server also runs the scheduled archiving, which the clients leave out; like on the desktop it is
+ * only started with <code>-Dnhplus.archiving.enabled=true</code>, see {@link ArchivingScheduler}.
+ * <p>
+ * Start with <code>java -m de.hitec.nhplus/de.hitec.nhplus.server.NhPlusServer</code>.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li><code>nhplus.server.host</code> - address to listen on, default <code>127.0.0.1</code>; set it to the
+ *     address of the ward network to accept other workstations</li>
+ *     <li><code>nhplus.server.port</code> - port, default 8421</li>
+ *     <li><code>nhplus.server.threads</code> - number of request threads, default twice the number of
+ *     processors, at least 4</li>
+ *     <li><code>nhplus.server.token</code> - shared secret the clients have to send; may only be left out if the
+ *     server listens on a loopback address</li>
+ *     <li><code>nhplus.server.maxBodyBytes</code> - largest accepted request body, default 16 MiB</li>
+ * </ul>
+ * Logins are checked against the locks of {@link AccountLockService} on the server, per username and per address
+ * of the client, and every failed attempt is counted there. The lock state of the users can be read by the clients
+ * but not written. A successful login of a user opens a {@link Sessions session}; the users can only be changed in
+ * the session of an administrator. The default password of the admin account, which resets its stored password, and
+ * the emergency unlock of the admin account are only accepted while the server listens on a loopback address.
+ * Requests are handled by a fixed pool of platform threads. Reads run in parallel on the read-only connections,
+ * writes are serialized by the write lock of {@link ConnectionBuilder} as in the desktop application.
+ */
+public final class NhPlusServer {
+
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_PORT = 8421;
+    private static final int BACKLOG = 64;
+    private static final String CAREGIVER_LOCK_PREFIX = "caregiver:";
+    private static final String EMERGENCY_UNLOCK_CODE = "unlock123";
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final ArchivingScheduler archivingScheduler;
+
+    private NhPlusServer(HttpServer httpServer, ExecutorService executor, ArchivingScheduler archivingScheduler) {
+        this.httpServer = httpServer;
+        this.executor = executor;
+        this.archivingScheduler = archivingScheduler;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (DaoFactory.getDaoFactory().isRemote()) {
+            System.err.println("nhplus.server.url darf beim Server nicht gesetzt sein.");
+            System.exit(1);
+        }
+        NhPlusServer server;
+        try {
+            server = start();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "nhplus-server-shutdown"));
+    }
+
+    /**
+     * Prepares the database, starts the archiving and starts listening.
+     *
+     * @throws IllegalStateException If the server would listen on a network address without a token.
+     */
+    public static NhPlusServer start() throws IOException {
+        String host = System.getProperty("nhplus.server.host", DEFAULT_HOST);
+        String token = System.getProperty("nhplus.server.token");
+        if (token != null && token.isEmpty()) {
+            token = null;
+        }
+        boolean loopback = InetAddress.getByName(host).isLoopbackAddress();
+        if (token == null && !loopback) {
+            throw new IllegalStateException("nhplus.server.token muss gesetzt sein, wenn der Server auf " + host
+                    + " und nicht nur auf einer Loopback-Adresse lauscht.");
+        }
+
+        PasswordHasher.calibrateAsync();
+        DatabaseInitializer.initializeDatabase();
+        LoginLogService.importLogFile();
+
+        ArchivingScheduler archivingScheduler = new ArchivingScheduler();
+        archivingScheduler.startScheduler();
+
+        int port = getIntProperty("nhplus.server.port", DEFAULT_PORT);
+        int threads = getIntProperty("nhplus.server.threads",
+                Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory());
+
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        httpServer.setExecutor(executor);
+        for (EntityResource<?, ?> resource : createResources(token, loopback)) {
+            httpServer.createContext(resource.getPath(), resource);
+        }
+        httpServer.start();
+        System.out.println("NHPlus-Server läuft auf http://" + host + ":" + port + " mit " + threads + " Threads.");
+        return new NhPlusServer(httpServer, executor, archivingScheduler);
+    }
+
+    /**
+     * Stops accepting requests, lets running requests finish for up to five seconds and closes the database.
+     */
+    public void stop() {
+        this.httpServer.stop(1);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.archivingScheduler.stopScheduler();
+        AsyncDao.shutdown();
+        ArchivingLogger.shutdown();
+        ConnectionBuilder.closeConnection();
+        System.out.println("NHPlus-Server beendet.");
+    }
+
+    /**
+     * @param token    Secret every request has to send, or <code>null</code>.
+     * @param loopback <code>true</code>, if the server only listens on a loopback address.
+     */
+    private static List<EntityResource<?, ?>> createResources(String token, boolean loopback) {
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        Sessions sessions = new Sessions();
+        List<EntityResource<?, ?>> resources = new ArrayList<>();
+
+        resources.add(new EntityResource<Patient, PatientDao>("/api/patients", factory::createPatientDAO,
+                EntityCodec.PATIENT, EntityCodec.PATIENT, Patient::getPid, token)
+                .query("idsBefore", (dao, p) -> dao.findIdsBornBefore(status(p), date(p, "idsBefore"),
+                        Long.parseLong(p.get("afterId")), Integer.parseInt(p.get("limit"))))
+                .query("status", (dao, p) -> EntityCodec.PATIENT.encodeAll(dao.findByStatus(status(p))))
+                .query("olderThan", (dao, p) -> EntityCodec.PATIENT.encodeAll(dao.findOlderThan(date(p, "olderThan"))))
+                .query("bornBefore", (dao, p) -> {
+                    try (Stream<Patient> patients = dao.streamBornBefore(date(p, "bornBefore"))) {
+                        return EntityCodec.PATIENT.encodeAll(patients.toList());
+                    }
+                })
+                .query("afterId", (dao, p) -> EntityCodec.PATIENT.encodeAll(
+                        dao.readPage(Long.parseLong(p.get("afterId")), Integer.parseInt(p.get("limit")))))
+                .action("status", (dao, body) -> {
+                    Map<?, ?> change = (Map<?, ?>) body;
+                    RecordStatus from = RecordStatus.valueOf((String) change.get("from"));
+                    RecordStatus to = RecordStatus.valueOf((String) change.get("to"));
+                    if (change.containsKey("ids")) {
+                        return dao.changeStatus(EntityResource.toLongArray(change.get("ids")), from, to);
+                    }
+                    return dao.changeStatusBornBefore(LocalDate.parse((String) change.get("bornBefore")), from, to);
+                }));
+
+        resources.add(new EntityResource<Treatment, TreatmentDao>("/api/treatments", factory::createTreatmentDao,
+                EntityCodec.TREATMENT, EntityCodec.TREATMENT, Treatment::getTid, token)
+                .query("pid", (dao, p) -> EntityCodec.TREATMENT.encodeAll(
+                        dao.readTreatmentsByPid(Long.parseLong(p.get("pid")))))
+                .query("cid", (dao, p) -> EntityCodec.TREATMENT.encodeAll(
+                        dao.readTreatmentsByCid(Long.parseLong(p.get("cid")))))
+                .query("idsBefore", (dao, p) -> dao.findIdsOlderThan(status(p), date(p, "idsBefore"),
+                        Long.parseLong(p.get("afterId")), Integer.parseInt(p.get("limit"))))
+                .query("status", (dao, p) -> EntityCodec.TREATMENT.encodeAll(dao.findByStatus(status(p))))
+                .query("olderThan", (dao, p) -> EntityCodec.TREATMENT.encodeAll(
+                        dao.findOlderThan(date(p, "olderThan"))))
+                .query("afterId", (dao, p) -> EntityCodec.TREATMENT.encodeAll(
+                        dao.readPage(Long.parseLong(p.get("afterId")), Integer.parseInt(p.get("limit")))))
+                .action("status", (dao, body) -> {
+                    Map<?, ?> change = (Map<?, ?>) body;
+                    RecordStatus from = RecordStatus.valueOf((String) change.get("from"));
+                    RecordStatus to = RecordStatus.valueOf((String) change.get("to"));
+                    if (change.containsKey("ids")) {
+                        return dao.changeStatus(EntityResource.toLongArray(change.get("ids")), from, to);
+                    }
+                    return dao.changeStatusOlderThan(LocalDate.parse((String) change.get("olderThan")), from, to);
+                }));
+
+        resources.add(new EntityResource<Caregiver, CaregiverDao>("/api/caregivers", factory::createCaregiverDAO,
+                EntityCodec.CAREGIVER, EntityCodec.CAREGIVER_REQUEST, Caregiver::getCid, token)
+                .query("idsBefore", (dao, p) -> dao.findIdsOlderThan(status(p), date(p, "idsBefore"),
+                        Long.parseLong(p.get("afterId")), Integer.parseInt(p.get("limit"))))
+                .query("status", (dao, p) -> {
+                    try (Stream<Caregiver> caregivers = dao.streamByStatus(status(p))) {
+                        return EntityCodec.CAREGIVER.encodeAll(caregivers.toList());
+                    }
+                })
+                .query("olderThan", (dao, p) -> {
+                    try (Stream<Caregiver> caregivers = dao.streamOlderThan(date(p, "olderThan"))) {
+                        return EntityCodec.CAREGIVER.encodeAll(caregivers.toList());
+                    }
+                })
+                .action("status", (dao, body) -> {
+                    Map<?, ?> change = (Map<?, ?>) body;
+                    RecordStatus from = RecordStatus.valueOf((String) change.get("from"));
+                    RecordStatus to = RecordStatus.valueOf((String) change.get("to"));
+                    if (change.containsKey("ids")) {
+                        return dao.changeStatus(EntityResource.toLongArray(change.get("ids")), from, to);
+                    }
+                    return dao.changeStatusOlderThan(LocalDate.parse((String) change.get("olderThan")), from, to);
+                })
+                .action("authenticate", (dao, body, clientAddress) ->
+                        authenticate(body, CAREGIVER_LOCK_PREFIX, clientAddress, (username, password) -> {
+                            Caregiver caregiver = dao.authenticate(username, password);
+                            return caregiver == null ? null : EntityCodec.CAREGIVER.encode(caregiver);
+                        }))
+                .beforeUpdate((dao, caregiver) -> {
+                    // Clients never see the hash; a caregiver sent without a password keeps the stored one
+                    if (caregiver.getPassword() == null) {
+                        Caregiver stored = dao.read(caregiver.getCid());
+                        caregiver.setPassword(stored == null ? null : stored.getPassword());
+                    }
+                }));
+
+        resources.add(new EntityResource<User, UserDao>("/api/users", factory::createUserDAO,
+                EntityCodec.USER, EntityCodec.USER_REQUEST, User::getUid, token)
+                .query("username", (dao, p) -> {
+                    User user = dao.findByUsername(p.get("username"));
+                    return user == null ? List.of() : List.of(EntityCodec.USER.encode(user));
+                })
+                .query("lockState", (dao, p) -> EntityCodec.USER.encodeAll(
+                        dao.findWithLockState(Long.parseLong(p.get("lockState")))))
+                .action("authenticate", (dao, body, clientAddress) ->
+                        authenticate(body, "", clientAddress, (username, password) -> {
+                            User user = dao.authenticate(username, password, loopback);
+                            if (user == null) {
+                                return null;
+                            }
+                            Map<String, Object> encoded = EntityCodec.USER.encode(user);
+                            encoded.put("session", sessions.open(user));
+                            return encoded;
+                        }))
+                .action("unlock", (dao, body, clientAddress) -> {
+                    // The emergency unlock of the login form, done here because the server keeps the locks
+                    Map<?, ?> request = (Map<?, ?>) body;
+                    String username = (String) request.get("username");
+                    if (!loopback || !"admin".equals(username) || !EMERGENCY_UNLOCK_CODE.equals(request.get("code"))) {
+                        throw new EntityResource.ResourceException(403, "Entsperren nicht erlaubt");
+                    }
+                    return AccountLockService.getInstance().unlockAccount(username, clientAddress);
+                })
+                .adminWrites(sessions, Set.of("authenticate", "unlock"))
+                .beforeUpdate((dao, user) -> {
+                    // Clients never see the hash; a user sent without a password keeps the stored one
+                    if (user.getPassword() == null) {
+                        User stored = dao.read(user.getUid());
+                        user.setPassword(stored == null ? null : stored.getPassword());
+                    }
+                }));
+
+        resources.add(new EntityResource<LoginLog, LoginLogDao>("/api/login-log", factory::createLoginLogDao,
+                EntityCodec.LOGIN_LOG, EntityCodec.LOGIN_LOG, LoginLog::getId, token)
+                .query("offset", (dao, p) -> EntityCodec.LOGIN_LOG.encodeAll(dao.readPage(p.get("username"),
+                        dateTime(p, "from"), dateTime(p, "to"), Integer.parseInt(p.get("offset")),
+                        Integer.parseInt(p.get("limit")))))
+                .action("batch", (dao, body) -> {
+                    dao.createAll(EntityCodec.LOGIN_LOG.decodeAll(body));
+                    return null;
+                }));
+        return resources;
+    }
+
+    /**
+     * Checks the credentials of an authenticate action, unless the username or the client address is locked, and
+     * counts the attempt in the {@link AccountLockService} of the server.
+     *
+     * @param body          Credentials with <code>username</code> and <code>password</code>.
+     * @param lockPrefix    Prefix of the username in the lock service, keeps users and caregivers of the same name
+     *                      apart.
+     * @param clientAddress Address the request came from.
+     * @param check         Returns the encoded entity for valid credentials, <code>null</code> otherwise.
+     * @return The result of <code>check</code>.
+     * @throws EntityResource.ResourceException 423, while the username or the address is locked.
+     */
+    private static Object authenticate(Object body, String lockPrefix, String clientAddress,
+                                       BiFunction<String, String, Object> check) {
+        Map<?, ?> credentials = (Map<?, ?>) body;
+        String username = (String) credentials.get("username");
+        String lockKey = username == null ? null : lockPrefix + username;
+        AccountLockService lockService = AccountLockService.getInstance();
+        if (lockService.getRemainingLockMillis(lockKey, clientAddress) > 0) {
+            throw new EntityResource.ResourceException(423, "Account oder Adresse gesperrt");
+        }
+        Object result = check.apply(username, (String) credentials.get("password"));
+        if (result == null) {
+            lockService.recordFailedAttempt(lockKey, clientAddress);
+        } else {
+            lockService.recordSuccessfulLogin(lockKey);
+        }
+        return result;
+    }
+
+    private static RecordStatus status(Map<String, String> parameters) {
+        return RecordStatus.valueOf(parameters.get("status"));
+    }
+
+    private static LocalDate date(Map<String, String> parameters, String name) {
+        return LocalDate.parse(parameters.get(name));
+    }
+
+    private static LocalDateTime dateTime(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        return value == null ? null : LocalDateTime.parse(value);
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-http-" + count.incrementAndGet());
+            thread.setDaemon(false);
+            return thread;
+        };
+    }
+
+    static int getIntProperty(String name, int defaultValue) {
+        try {
+            return Math.max(1, Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue))));
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+}
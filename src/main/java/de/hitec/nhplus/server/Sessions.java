@@ -0,0 +1,68 @@
+package de.hitec.nhplus.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import de.hitec.nhplus.model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sessions of the users logged in through the server. The authenticate action of <code>/api/users</code> opens one
+ * per successful login; the client sends its id in the header {@value #HEADER} with every later request. The shared
+ * token of the server only proves that a request comes from a workstation of the ward, the session tells which user
+ * sent it. A session ends {@value #DURATION_HOURS} hours after the login.
+ */
+final class Sessions {
+
+    static final String HEADER = "X-NHPlus-Session";
+    private static final int DURATION_HOURS = 12;
+    private static final long DURATION_MILLIS = TimeUnit.HOURS.toMillis(DURATION_HOURS);
+    private static final int ID_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * A logged in user.
+     *
+     * @param username  Username of the user.
+     * @param admin     <code>true</code>, if the user was an administrator at the login.
+     * @param expiresAt End of the session in milliseconds.
+     */
+    record Session(String username, boolean admin, long expiresAt) {
+    }
+
+    /**
+     * Opens a session for a user who has just logged in.
+     *
+     * @return The id of the session, which the client has to send with its requests.
+     */
+    String open(User user) {
+        long now = System.currentTimeMillis();
+        this.sessions.values().removeIf(session -> session.expiresAt <= now);
+        byte[] bytes = new byte[ID_BYTES];
+        this.random.nextBytes(bytes);
+        String id = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        this.sessions.put(id, new Session(user.getUsername(), user.isAdmin(), now + DURATION_MILLIS));
+        return id;
+    }
+
+    /**
+     * @return The session the request was sent in, or <code>null</code> if it names none or an expired one.
+     */
+    Session find(HttpExchange exchange) {
+        String id = exchange.getRequestHeaders().getFirst(HEADER);
+        if (id == null) {
+            return null;
+        }
+        Session session = this.sessions.get(id);
+        if (session != null && session.expiresAt <= System.currentTimeMillis()) {
+            this.sessions.remove(id, session);
+            return null;
+        }
+        return session;
+    }
+}
@@ -1,70 +1,366 @@
 package de.hitec.nhplus.service;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.metrics.Metrics;
+import de.hitec.nhplus.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+/**
+ * Counts failed login attempts and locks accounts and addresses. This is the only place that decides about locks;
+ * the columns <code>failed_attempts</code> and <code>lock_until</code> of <code>users</code> are written only here.
+ * <p>
+ * Attempts are counted per username and per IP address. A username is locked for
+ * {@value #LOCKOUT_DURATION_MINUTES} minutes after {@value #MAX_FAILED_ATTEMPTS} failed attempts, an address after
+ * {@value #MAX_FAILED_ATTEMPTS_PER_ADDRESS}, so trying many usernames from one address is stopped as well. A
+ * successful login resets the counter of the username. Attempts without a known client address, e.g. at the login
+ * form of the desktop application, are counted per username only: one shared address for the whole workstation
+ * would lock out every user of it.
+ * <p>
+ * The counters live in concurrent maps and are updated atomically per key, so concurrent logins are safe. Every
+ * counter expires {@value #LOCKOUT_DURATION_MINUTES} minutes after its last failed attempt or the end of its lock; a
+ * {@link TimingWheel}, advanced once per second by a background thread, removes expired counters. Each map holds at
+ * most <code>nhplus.lockout.maxEntries</code> counters (default 10000). If a burst of attempts with ever new
+ * usernames or addresses fills a map, the counters that would expire next are dropped early, so memory stays
+ * bounded. Counters with a running lock are never dropped early, otherwise such a burst would lift the lock; only
+ * they can grow a map past its limit, and they expire {@value #LOCKOUT_DURATION_MINUTES} minutes after their lock.
+ * <p>
+ * Changes of the per-user counters are written behind to the <code>users</code> table by the same background
+ * thread, at most one second later and all in one transaction. On startup the counters and locks are read back from
+ * the table. Per-address counters are kept in memory only.
+ */
 public class AccountLockService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountLockService.class);
     private static final int MAX_FAILED_ATTEMPTS = 3;
+    private static final int MAX_FAILED_ATTEMPTS_PER_ADDRESS = 10;
     private static final int LOCKOUT_DURATION_MINUTES = 15;
-    
-    private Map<String, Integer> failedAttempts = new HashMap<>();
-    private Map<String, LocalDateTime> lockoutTime = new HashMap<>();
-    
-    public boolean isAccountLocked(String username) {
-        if (!lockoutTime.containsKey(username)) {
-            return false;
+    private static final long LOCKOUT_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(LOCKOUT_DURATION_MINUTES);
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private static final de.hitec.nhplus.metrics.Counter SUCCESSFUL_LOGINS = Metrics.counter("login.success");
+    private static final de.hitec.nhplus.metrics.Counter FAILED_LOGINS = Metrics.counter("login.failed");
+    private static final de.hitec.nhplus.metrics.Counter ACCOUNT_LOCKOUTS = Metrics.counter("login.lockouts.account");
+    private static final de.hitec.nhplus.metrics.Counter ADDRESS_LOCKOUTS = Metrics.counter("login.lockouts.address");
+
+    private static AccountLockService instance;
+
+    private final DaoFactory daoFactory;
+    private final UserDao userDao;
+    private final LongSupplier clock;
+    private final int maxEntries;
+    private final Map<String, Counter> users = new ConcurrentHashMap<>();
+    private final Map<String, Counter> addresses = new ConcurrentHashMap<>();
+    private final TimingWheel<String> userExpiry;
+    private final TimingWheel<String> addressExpiry;
+    private final Map<String, Counter> dirtyUsers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates a lock service and loads the stored locks. The background thread is not started, so expired counters
+     * are only removed and changes only written by {@link #tick()}.
+     *
+     * @param daoFactory Factory of the user DAO and of the transactions of the write-behind.
+     * @param clock      Current time in milliseconds.
+     */
+    AccountLockService(DaoFactory daoFactory, LongSupplier clock) {
+        this.daoFactory = daoFactory;
+        this.userDao = daoFactory.createUserDAO();
+        this.clock = clock;
+        this.maxEntries = getMaxEntries();
+        long now = clock.getAsLong();
+        this.userExpiry = new TimingWheel<>(WHEEL_SLOTS, TICK_MILLIS, now);
+        this.addressExpiry = new TimingWheel<>(WHEEL_SLOTS, TICK_MILLIS, now);
+        loadLockStates(now);
+    }
+
+    /**
+     * @return The lock service shared by all logins. It is created, and the stored locks are loaded, on first use.
+     */
+    public static synchronized AccountLockService getInstance() {
+        if (instance == null) {
+            instance = new AccountLockService(DaoFactory.getDaoFactory(), System::currentTimeMillis);
+            instance.start();
         }
-        
-        LocalDateTime lockTime = lockoutTime.get(username);
-        LocalDateTime now = LocalDateTime.now();
-        long minutesSinceLock = ChronoUnit.MINUTES.between(lockTime, now);
-        
-        if (minutesSinceLock >= LOCKOUT_DURATION_MINUTES) {
-      
-            unlockAccount(username);
-            System.out.println("DEBUG: Account " + username + " wurde automatisch entsperrt nach " + minutesSinceLock + " Minuten");
-            return false;
+        return instance;
+    }
+
+    /**
+     * Starts the background thread that calls {@link #tick()} once per second.
+     */
+    private void start() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-lockout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes pending changes to the database and stops the background thread. Does nothing if the service was never
+     * used.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.executor.shutdownNow();
+            instance.flush();
+            instance = null;
         }
-        
-        System.out.println("DEBUG: Account " + username + " ist noch für " + (LOCKOUT_DURATION_MINUTES - minutesSinceLock) + " Minuten gesperrt");
-        return true;
     }
-    
-    public void recordFailedAttempt(String username) {
-        int attempts = failedAttempts.getOrDefault(username, 0) + 1;
-        failedAttempts.put(username, attempts);
-        
-        System.out.println("DEBUG: Fehlgeschlagener Versuch #" + attempts + " für " + username);
-        
-        if (attempts >= MAX_FAILED_ATTEMPTS) {
-            lockAccount(username);
+
+    public boolean isAccountLocked(String username) {
+        return getRemainingLockMillis(this.users, username) > 0;
+    }
+
+    public boolean isAddressLocked(String ipAddress) {
+        return getRemainingLockMillis(this.addresses, ipAddress) > 0;
+    }
+
+    /**
+     * @return Milliseconds until neither the username nor the address is locked any more, 0 if none of them is
+     * locked.
+     */
+    public long getRemainingLockMillis(String username, String ipAddress) {
+        return Math.max(getRemainingLockMillis(this.users, username), getRemainingLockMillis(this.addresses, ipAddress));
+    }
+
+    /**
+     * Counts a failed attempt for the username and for the address and locks them once they reach their limit.
+     *
+     * @param username  Username that was tried, may be <code>null</code>.
+     * @param ipAddress Address the attempt came from, may be <code>null</code>.
+     * @return Number of failed attempts of the username since its last successful login or unlock.
+     */
+    public int recordFailedAttempt(String username, String ipAddress) {
+        FAILED_LOGINS.increment();
+        long now = this.clock.getAsLong();
+        if (ipAddress != null) {
+            Counter counter = recordFailure(this.addresses, this.addressExpiry, ipAddress,
+                    MAX_FAILED_ATTEMPTS_PER_ADDRESS, now);
+            if (counter.failedAttempts == MAX_FAILED_ATTEMPTS_PER_ADDRESS) {
+                ADDRESS_LOCKOUTS.increment();
+            }
+        }
+        if (username == null || username.isEmpty()) {
+            return 0;
         }
+        Counter counter = recordFailure(this.users, this.userExpiry, username, MAX_FAILED_ATTEMPTS, now);
+        this.dirtyUsers.put(username, counter);
+        if (counter.failedAttempts == MAX_FAILED_ATTEMPTS) {
+            ACCOUNT_LOCKOUTS.increment();
+            LOGGER.debug("Account {} wurde für {} Minuten gesperrt", username, LOCKOUT_DURATION_MINUTES);
+        }
+        return counter.failedAttempts;
     }
-    
+
     public void recordSuccessfulLogin(String username) {
-        failedAttempts.remove(username);
-        lockoutTime.remove(username);
-        System.out.println("DEBUG: Erfolgreicher Login für " + username + " - Sperr-Zähler zurückgesetzt");
-    }
-    
-    private void lockAccount(String username) {
-        lockoutTime.put(username, LocalDateTime.now());
-        System.out.println("DEBUG: Account " + username + " wurde gesperrt um " + LocalDateTime.now());
-    }
-    
-    public void unlockAccount(String username) {
-        failedAttempts.remove(username);
-        lockoutTime.remove(username);
-        System.out.println("DEBUG: Account " + username + " wurde manuell entsperrt");
-    }
-    
+        SUCCESSFUL_LOGINS.increment();
+        this.users.remove(username);
+        this.dirtyUsers.put(username, Counter.NONE);
+    }
+
+    /**
+     * Removes the lock and the failed attempts of a username immediately, in memory and in the database.
+     *
+     * @return <code>true</code>, if the database contains a user with this name.
+     */
+    public boolean unlockAccount(String username) {
+        return unlockAccount(username, null);
+    }
+
+    /**
+     * Removes the lock and the failed attempts of a username immediately, in memory and in the database, and the
+     * lock of the address the unlock was requested from.
+     *
+     * @param username  Username to unlock.
+     * @param ipAddress Address to unlock as well, may be <code>null</code>.
+     * @return <code>true</code>, if the database contains a user with this name.
+     */
+    public boolean unlockAccount(String username, String ipAddress) {
+        if (ipAddress != null) {
+            this.addresses.remove(ipAddress);
+        }
+        this.users.remove(username);
+        this.dirtyUsers.remove(username);
+        LOGGER.debug("Account {} wurde manuell entsperrt", username);
+        try {
+            this.userDao.updateLockState(username, 0, 0);
+            return this.userDao.findByUsername(username) != null;
+        } catch (SQLException e) {
+            LOGGER.error("Fehler beim Entsperren von {}: {}", username, e.getMessage());
+            return false;
+        }
+    }
+
     public int getFailedAttempts(String username) {
-        return failedAttempts.getOrDefault(username, 0);
+        Counter counter = this.users.get(username);
+        return counter != null ? counter.failedAttempts : 0;
+    }
+
+    public static int getMaxFailedAttempts() {
+        return MAX_FAILED_ATTEMPTS;
+    }
+
+    public static int getLockoutDurationMinutes() {
+        return LOCKOUT_DURATION_MINUTES;
+    }
+
+    private long getRemainingLockMillis(Map<String, Counter> counters, String key) {
+        if (key == null) {
+            return 0;
+        }
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : Math.max(0, counter.lockUntil - this.clock.getAsLong());
+    }
+
+    private Counter recordFailure(Map<String, Counter> counters, TimingWheel<String> expiry, String key,
+                                  int maxAttempts, long now) {
+        if (!counters.containsKey(key) && counters.size() >= this.maxEntries) {
+            evictEarliest(counters, expiry, now);
+        }
+        Counter counter = counters.compute(key, (ignored, current) -> {
+            if (current != null && current.lockUntil > 0 && current.lockUntil <= now) {
+                // the lock has run out, counting starts again
+                current = null;
+            }
+            int attempts = (current != null ? current.failedAttempts : 0) + 1;
+            long lockUntil = current != null ? current.lockUntil : 0;
+            if (attempts >= maxAttempts && lockUntil == 0) {
+                lockUntil = now + LOCKOUT_DURATION_MILLIS;
+            }
+            return new Counter(attempts, lockUntil, Math.max(lockUntil, now) + LOCKOUT_DURATION_MILLIS);
+        });
+        synchronized (expiry) {
+            expiry.schedule(key, counter.expiresAt);
+        }
+        return counter;
+    }
+
+    /**
+     * Drops the counters that would expire next, to make room for a new one. Counters with a running lock are kept
+     * and scheduled again.
+     */
+    private void evictEarliest(Map<String, Counter> counters, TimingWheel<String> expiry, long now) {
+        List<String> keys;
+        synchronized (expiry) {
+            keys = expiry.pollEarliest();
+        }
+        for (String key : keys) {
+            Counter counter = counters.computeIfPresent(key, (ignored, current) -> current.lockUntil > now ? current : null);
+            if (counter != null) {
+                synchronized (expiry) {
+                    expiry.schedule(key, counter.expiresAt);
+                }
+            }
+        }
     }
-    
-    public LocalDateTime getLockoutTime(String username) {
-        return lockoutTime.get(username);
+
+    /**
+     * Runs once per second: removes expired counters and writes the changed user counters to the database.
+     */
+    void tick() {
+        try {
+            long now = this.clock.getAsLong();
+            expire(this.users, this.userExpiry, now, true);
+            expire(this.addresses, this.addressExpiry, now, false);
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Fehler in der Verwaltung der Kontosperren", e);
+        }
+    }
+
+    private void expire(Map<String, Counter> counters, TimingWheel<String> expiry, long now, boolean persist) {
+        List<String> due;
+        synchronized (expiry) {
+            due = expiry.advance(now);
+        }
+        for (String key : due) {
+            Counter counter = counters.computeIfPresent(key, (ignored, current) -> current.expiresAt <= now ? null : current);
+            if (counter != null) {
+                synchronized (expiry) {
+                    expiry.schedule(key, counter.expiresAt);
+                }
+            } else if (persist) {
+                this.dirtyUsers.putIfAbsent(key, Counter.NONE);
+            }
+        }
+    }
+
+    /**
+     * Writes the latest state of every changed user counter in one transaction. A state that changes again while
+     * it is written stays marked and is written by the next flush.
+     */
+    private void flush() {
+        if (this.dirtyUsers.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Counter>> changes = new ArrayList<>(this.dirtyUsers.entrySet());
+        try {
+            this.daoFactory.inTransaction(connection -> {
+                for (Map.Entry<String, Counter> change : changes) {
+                    Counter counter = change.getValue();
+                    this.userDao.updateLockState(change.getKey(), counter.failedAttempts, counter.lockUntil);
+                }
+                return null;
+            });
+            for (Map.Entry<String, Counter> change : changes) {
+                this.dirtyUsers.remove(change.getKey(), change.getValue());
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Kontosperren konnten nicht gespeichert werden: {}", e.getMessage());
+        }
+    }
+
+    private void loadLockStates(long now) {
+        try {
+            for (User user : this.userDao.findWithLockState(now)) {
+                long lockUntil = user.getLockUntil() > now ? user.getLockUntil() : 0;
+                int attempts = lockUntil > 0 ? Math.max(user.getFailedAttempts(), MAX_FAILED_ATTEMPTS) : user.getFailedAttempts();
+                Counter counter = new Counter(attempts, lockUntil, Math.max(lockUntil, now) + LOCKOUT_DURATION_MILLIS);
+                this.users.put(user.getUsername(), counter);
+                this.userExpiry.schedule(user.getUsername(), counter.expiresAt);
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Gespeicherte Kontosperren konnten nicht geladen werden: {}", e.getMessage());
+        }
+    }
+
+    private static int getMaxEntries() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getProperty("nhplus.lockout.maxEntries", String.valueOf(DEFAULT_MAX_ENTRIES))));
+        } catch (NumberFormatException exception) {
+            return DEFAULT_MAX_ENTRIES;
+        }
+    }
+
+    /**
+     * Immutable state of one counter. Updates replace the whole counter inside <code>Map.compute</code>.
+     */
+    private static final class Counter {
+        private static final Counter NONE = new Counter(0, 0, 0);
+
+        private final int failedAttempts;
+        private final long lockUntil;
+        private final long expiresAt;
+
+        private Counter(int failedAttempts, long lockUntil, long expiresAt) {
+            this.failedAttempts = failedAttempts;
+            this.lockUntil = lockUntil;
+            this.expiresAt = expiresAt;
+        }
     }
 }
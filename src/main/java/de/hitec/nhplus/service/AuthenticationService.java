@@ -1,13 +1,17 @@
 package de.hitec.nhplus.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class AuthenticationService {
-    private AccountLockService lockService = new AccountLockService();
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthenticationService.class);
+    private AccountLockService lockService = AccountLockService.getInstance();
     private LoginLogService loginLogService = new LoginLogService();
     
     public AuthenticationResult authenticate(String username, String password, String ipAddress) {
-        System.out.println("DEBUG: Authentifizierungsversuch für: " + username);
+        LOGGER.debug("Authentifizierungsversuch für: {}", username);
         
-        if (lockService.isAccountLocked(username)) {
+        if (lockService.getRemainingLockMillis(username, ipAddress) > 0) {
             String reason = "Account temporär gesperrt";
             loginLogService.logLoginAttempt(username, ipAddress, false, reason);
             return new AuthenticationResult(false, reason);
@@ -15,14 +19,14 @@ public class AuthenticationService {
         
  
         boolean credentialsValid = validateCredentials(username, password);
-        System.out.println("DEBUG: Anmeldedaten gültig: " + credentialsValid);
+        LOGGER.debug("Anmeldedaten gültig: {}", credentialsValid);
         
         if (credentialsValid) {
             lockService.recordSuccessfulLogin(username);
             loginLogService.logLoginAttempt(username, ipAddress, true, null);
             return new AuthenticationResult(true, "Login erfolgreich");
         } else {
-            lockService.recordFailedAttempt(username);
+            lockService.recordFailedAttempt(username, ipAddress);
             String reason = "Ungültige Anmeldedaten";
             loginLogService.logLoginAttempt(username, ipAddress, false, reason);
             return new AuthenticationResult(false, reason);
@@ -31,7 +35,7 @@ public class AuthenticationService {
     
     private boolean validateCredentials(String username, String password) {
         
-        System.out.println("DEBUG: Validiere Anmeldedaten für " + username);
+        LOGGER.debug("Validiere Anmeldedaten für {}", username);
         
         
         return false; // 
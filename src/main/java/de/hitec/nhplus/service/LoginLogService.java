@@ -1,65 +1,170 @@
 package de.hitec.nhplus.service;
 
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.LoginLogDao;
 import de.hitec.nhplus.model.LoginLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Records login attempts in the table <code>login_log</code>.
+ * <p>
+ * Attempts are not written by the caller. They are put into a bounded queue, and one flush on the writer thread of
+ * {@link AsyncDao} inserts everything queued so far with a single batch. While a flush is running, new attempts
+ * collect in the queue for the next one. If the queue is full, the caller inserts its attempt itself. Pending
+ * attempts are written before the application exits, because <code>AsyncDao.shutdown()</code> waits for all
+ * submitted writes.
+ */
 public class LoginLogService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginLogService.class);
    
     private static final String LOG_FILE = "login_logs.txt";
+    private static final String IMPORTED_SUFFIX = ".imported";
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int QUEUE_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    private static final BlockingQueue<LoginLog> PENDING = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final AtomicBoolean FLUSH_SCHEDULED = new AtomicBoolean();
 
     public void logLoginAttempt(String username, String ipAddress, boolean successful, String failureReason) {
         LoginLog log = new LoginLog(username, ipAddress, successful, failureReason);
-        writeToFile(log);
+        if (PENDING.offer(log)) {
+            scheduleFlush();
+        } else {
+            insert(List.of(log));
+        }
+    }
+
+    /**
+     * Returns the newest entries of the log, newest first.
+     *
+     * @param limit Maximum number of entries.
+     */
+    public List<LoginLog> getRecentLogs(int limit) {
+        return getLogs(null, null, null, 0, limit);
     }
 
-    private void writeToFile(LoginLog log) {
-        File file = new File(LOG_FILE);
+    /**
+     * Returns one page of the entries that match the given filters, newest first. Attempts that are still queued
+     * are not included.
+     *
+     * @param username Part of the username, case-insensitive, or <code>null</code> or blank for all users.
+     * @param from     Earliest timestamp, inclusive, or <code>null</code>.
+     * @param to       Latest timestamp, exclusive, or <code>null</code>.
+     * @param offset   Number of matching entries to skip.
+     * @param limit    Maximum number of entries.
+     */
+    public List<LoginLog> getLogs(String username, LocalDateTime from, LocalDateTime to, int offset, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        String user = username == null || username.isBlank() ? null : username.trim();
         try {
-            // Ensure the file exists
-            if (!file.exists()) {
-                file.createNewFile();
-            }
-            try (FileWriter writer = new FileWriter(file, true)) {
-                String logEntry = String.format("%s|%s|%s|%s|%s%n",
-                    log.getTimestamp().format(FORMATTER),
-                    log.getUsername(),
-                    log.getIpAddress(),
-                    log.isSuccessful() ? "SUCCESS" : "FAILED",
-                    log.getFailureReason() != null ? log.getFailureReason() : ""
-                );
-                writer.write(logEntry);
-            }
-        } catch (IOException e) {
-            System.err.println("Error writing to log file: " + e.getMessage());
+            return DaoFactory.getDaoFactory().createLoginLogDao().readPage(user, from, to, offset, limit);
+        } catch (SQLException e) {
+            LOGGER.error("Error reading login log: {}", e.getMessage());
+            return new ArrayList<>();
         }
     }
 
-    public List<LoginLog> getRecentLogs(int limit) {
-        List<LoginLog> logs = new ArrayList<>();
-        File file = new File(LOG_FILE);
-        if (!file.exists()) {
-            return logs;
+    /**
+     * Loads the entries of <code>login_logs.txt</code>, which earlier versions wrote instead of the table, into
+     * <code>login_log</code> and renames the file to <code>login_logs.txt.imported</code>, so it is imported only
+     * once. All entries are inserted in one transaction; if the import fails, nothing is inserted and the file is
+     * kept for the next start.
+     */
+    public static void importLogFile() {
+        Path file = Paths.get(LOG_FILE);
+        if (!Files.exists(file)) {
+            return;
         }
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null && logs.size() < limit) {
-                LoginLog log = parseLogLine(line);
-                if (log != null) {
-                    logs.add(0, log); // Add to beginning for reverse chronological order
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        LoginLogDao dao = factory.createLoginLogDao();
+        try {
+            int imported = factory.inTransaction(writer -> {
+                int count = 0;
+                List<LoginLog> batch = new ArrayList<>();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        LoginLog log = parseLogLine(line);
+                        if (log == null) {
+                            continue;
+                        }
+                        batch.add(log);
+                        if (batch.size() == IMPORT_BATCH_SIZE) {
+                            dao.createAll(batch);
+                            count += batch.size();
+                            batch.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Login-Protokoll konnte nicht gelesen werden", e);
                 }
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading log file: " + e.getMessage());
+                dao.createAll(batch);
+                return count + batch.size();
+            });
+            Files.move(file, file.resolveSibling(LOG_FILE + IMPORTED_SUFFIX));
+            LOGGER.info("{} Einträge aus {} in login_log übernommen.", imported, LOG_FILE);
+        } catch (SQLException | IOException e) {
+            LOGGER.error("Fehler beim Import von {}: {}", LOG_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Submits a flush to the writer thread, unless one is already waiting there.
+     */
+    private static void scheduleFlush() {
+        if (!FLUSH_SCHEDULED.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            AsyncDao.write(() -> {
+                flush();
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            // AsyncDao is already shut down
+            flush();
+        }
+    }
+
+    private static void flush() {
+        FLUSH_SCHEDULED.set(false);
+        List<LoginLog> batch = new ArrayList<>();
+        PENDING.drainTo(batch);
+        insert(batch);
+    }
+
+    private static void insert(List<LoginLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        try {
+            DaoFactory.getDaoFactory().createLoginLogDao().createAll(logs);
+        } catch (SQLException e) {
+            LOGGER.error("Error writing login log, {} entries lost: {}", logs.size(), e.getMessage());
         }
-        return logs;
     }
 
-    private LoginLog parseLogLine(String line) {
+    private static LoginLog parseLogLine(String line) {
         String[] parts = line.split("\\|");
         if (parts.length >= 4) {
             try {
@@ -73,7 +178,7 @@ public class LoginLogService {
                 log.setTimestamp(timestamp);
                 return log;
             } catch (Exception e) {
-                System.err.println("Error parsing log line: " + line);
+                LOGGER.warn("Error parsing log line: {}", line);
             }
         }
         return null;
@@ -0,0 +1,106 @@
+package de.hitec.nhplus.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel that tells when keys are due for expiry.
+ * <p>
+ * Time is divided into ticks; a key is stored in the slot of the tick of its deadline, modulo the number of slots.
+ * Scheduling and advancing by one tick therefore cost O(1) per key, independent of the number of scheduled keys.
+ * Deadlines further away than one revolution land in a slot that comes up too early. The wheel does not track the
+ * rounds itself: it returns the key, and the caller, who knows the current deadline of the key, schedules it again.
+ * The same applies to deadlines that were moved after scheduling, so they never have to be removed from a slot.
+ * <p>
+ * A key is in at most one slot at a time. The wheel is not thread-safe, callers synchronize on it.
+ *
+ * @param <K> Type of the keys.
+ */
+class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<K>> slots;
+    private final Map<K, Long> scheduledTicks = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param slotCount  Number of slots of the wheel.
+     * @param tickMillis Length of one tick in milliseconds.
+     * @param now        Current time in milliseconds.
+     */
+    TimingWheel(int slotCount, long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            this.slots.add(new HashSet<>());
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Schedules a key for the given deadline, unless it is already scheduled.
+     *
+     * @param key      Key to schedule.
+     * @param deadline Time in milliseconds at which the key is due.
+     */
+    void schedule(K key, long deadline) {
+        if (this.scheduledTicks.containsKey(key)) {
+            return;
+        }
+        long tick = Math.max(this.currentTick + 1, deadline / this.tickMillis + 1);
+        long lastTick = this.currentTick + this.slots.size();
+        tick = Math.min(tick, lastTick);
+        this.scheduledTicks.put(key, tick);
+        slotOf(tick).add(key);
+    }
+
+    /**
+     * Moves the wheel forward to the given time.
+     *
+     * @param now Current time in milliseconds.
+     * @return The keys of all slots that were passed. They are no longer scheduled.
+     */
+    List<K> advance(long now) {
+        List<K> due = new ArrayList<>();
+        long targetTick = now / this.tickMillis;
+        long ticks = Math.min(targetTick - this.currentTick, this.slots.size());
+        for (long i = 1; i <= ticks; i++) {
+            takeSlot(slotOf(this.currentTick + i), due);
+        }
+        this.currentTick = Math.max(this.currentTick, targetTick);
+        return due;
+    }
+
+    /**
+     * Removes the keys of the slot that is due next, e.g. to free memory before their deadline.
+     *
+     * @return The keys of the next non-empty slot, or an empty list if no key is scheduled.
+     */
+    List<K> pollEarliest() {
+        List<K> keys = new ArrayList<>();
+        for (int i = 1; i <= this.slots.size() && keys.isEmpty(); i++) {
+            takeSlot(slotOf(this.currentTick + i), keys);
+        }
+        return keys;
+    }
+
+    int size() {
+        return this.scheduledTicks.size();
+    }
+
+    private void takeSlot(Set<K> slot, List<K> target) {
+        for (K key : slot) {
+            this.scheduledTicks.remove(key);
+            target.add(key);
+        }
+        slot.clear();
+    }
+
+    private Set<K> slotOf(long tick) {
+        return this.slots.get((int) Math.floorMod(tick, (long) this.slots.size()));
+    }
+}
@@ -0,0 +1,213 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.metrics.LatencyHistogram;
+import de.hitec.nhplus.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hashes and verifies passwords with PBKDF2 (HMAC-SHA256) and a random salt per password.
+ * <p>
+ * Hashes are stored as <code>pbkdf2$v1$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;</code>, salt and hash in Base64.
+ * The iteration count is part of every hash, so it can be raised without invalidating existing hashes. Hashes of
+ * earlier versions, an unsalted SHA-256 in hex, are still accepted by {@link #verify}; {@link #needsRehash} tells
+ * the caller to replace them, and hashes with clearly fewer iterations than the current ones, after a successful
+ * login.
+ * <p>
+ * The iteration count is calibrated once, on a background thread started by {@link #calibrateAsync()}, so that one
+ * verification takes about <code>nhplus.password.targetMillis</code> milliseconds (default 100) on this machine. It
+ * never goes below {@value #MIN_ITERATIONS}. The system property <code>nhplus.password.iterations</code> sets a fixed
+ * count instead. Hashing is deliberately slow and must not run on the JavaFX application thread.
+ */
+public final class PasswordHasher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2";
+    private static final String VERSION = "v1";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MIN_ITERATIONS = 100_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final long DEFAULT_TARGET_MILLIS = 100;
+    /**
+     * Hashes with at least this share of the current iterations, in percent, are kept. The calibration varies by a
+     * few percent from start to start; without the tolerance most logins would write a new hash.
+     */
+    private static final int REHASH_THRESHOLD_PERCENT = 80;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final LatencyHistogram VERIFY_LATENCY = Metrics.histogram("login.verify");
+    private static CompletableFuture<PasswordHasher> instance;
+
+    private final int iterations;
+    private final String dummyHash;
+
+    PasswordHasher(int iterations) {
+        this.iterations = iterations;
+        this.dummyHash = hash("nhplus-dummy");
+    }
+
+    /**
+     * Starts the calibration in the background, unless it is already running or done. Should be called early at
+     * startup, so the first login does not have to wait for it.
+     */
+    public static synchronized CompletableFuture<PasswordHasher> calibrateAsync() {
+        if (instance == null) {
+            instance = CompletableFuture.supplyAsync(() -> new PasswordHasher(calibrate()));
+        }
+        return instance;
+    }
+
+    /**
+     * @return The calibrated hasher. Waits for the calibration if it has not finished yet.
+     */
+    public static PasswordHasher getInstance() {
+        return calibrateAsync().join();
+    }
+
+    /**
+     * @param password Password in cleartext.
+     * @return A new salted hash of the password in the current format.
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, this.iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return String.join("$", PREFIX, VERSION, String.valueOf(this.iterations),
+                encoder.encodeToString(salt), encoder.encodeToString(hash));
+    }
+
+    /**
+     * Checks a password against a stored hash in the current or the legacy format. The comparison takes the same
+     * time whether the hashes differ early or late.
+     *
+     * @param password Password in cleartext.
+     * @param stored   Stored hash.
+     * @return <code>true</code>, if the password matches.
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null || stored.isEmpty()) {
+            return false;
+        }
+        if (isLegacyHash(stored)) {
+            byte[] expected = stored.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = legacyHash(password).getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(expected, actual);
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 5 || !PREFIX.equals(parts[0]) || !VERSION.equals(parts[1])) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            int storedIterations = Integer.parseInt(parts[2]);
+            if (storedIterations <= 0) {
+                return false;
+            }
+            byte[] salt = Base64.getDecoder().decode(parts[3]);
+            byte[] expected = Base64.getDecoder().decode(parts[4]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations, expected.length * 8));
+        } catch (IllegalArgumentException e) {
+            return false;
+        } finally {
+            VERIFY_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Verifies the password against a fixed hash with the current iteration count and discards the result. Called
+     * for unknown usernames, so they take as long to reject as a wrong password and cannot be told apart by the
+     * response time.
+     *
+     * @param password Password in cleartext.
+     */
+    public void verifyDummy(String password) {
+        verify(password == null ? "" : password, this.dummyHash);
+    }
+
+    /**
+     * @param stored Stored hash that was just verified successfully.
+     * @return <code>true</code>, if the hash should be replaced by a new one: it is in the legacy format or uses
+     * less than {@value #REHASH_THRESHOLD_PERCENT} percent of the iterations of the current calibration.
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX + "$" + VERSION + "$")) {
+            return true;
+        }
+        try {
+            long storedIterations = Integer.parseInt(stored.split("\\$")[2]);
+            return storedIterations * 100 < (long) this.iterations * REHASH_THRESHOLD_PERCENT;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    private static boolean isLegacyHash(String stored) {
+        return stored.matches("^[a-fA-F0-9]{64}$");
+    }
+
+    private static String legacyHash(String password) {
+        return PasswordUtils.hashPassword(password);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        return pbkdf2(password, salt, iterations, HASH_BITS);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int bits) {
+        char[] characters = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(characters, salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 ist nicht verfügbar", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(characters, '\0');
+        }
+    }
+
+    /**
+     * Measures how long a fixed number of iterations takes and scales it to the target time. The first rounds warm
+     * up the JIT and are not measured.
+     */
+    private static int calibrate() {
+        Integer fixed = Integer.getInteger("nhplus.password.iterations");
+        if (fixed != null) {
+            return Math.max(1, fixed);
+        }
+        long targetMillis = Long.getLong("nhplus.password.targetMillis", DEFAULT_TARGET_MILLIS);
+        byte[] salt = new byte[SALT_BYTES];
+        for (int i = 0; i < 3; i++) {
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double iterationsPerMilli = CALIBRATION_ITERATIONS / (best / 1_000_000.0);
+        long iterations = Math.round(iterationsPerMilli * targetMillis);
+        int calibrated = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+        LOGGER.info("Passwort-Hashing kalibriert: {} Iterationen für ca. {} ms.", calibrated, targetMillis);
+        return calibrated;
+    }
+}
@@ -57,6 +57,10 @@ public class PasswordUtils {
         return hasLower && hasUpper && hasDigit && hasSpecial;
     }
 
+    /**
+     * Unsalted SHA-256 of the password, the hash format of earlier versions. New hashes are created with
+     * {@link PasswordHasher}; this method is only used to verify hashes that have not been upgraded yet.
+     */
     public static String hashPassword(String password) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
@@ -0,0 +1,335 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.RecordStatus;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic nursing home history of any size, from a few hundred to millions of treatments, for
+ * load tests, benchmarks and demonstrations. The same settings and seed always produce the same database.
+ * <p>
+ * Every patient stays in the home for a random part of the history. Active patients are still there; locked and
+ * deleted patients left on a random day, which becomes their status change date, and their treatments carry
+ * their status. Treatments are spread over the stay at the given rate per year and written month by month, so
+ * their IDs ascend with their date as in a real database. Caregivers get no password; they cannot log in.
+ * <p>
+ * All rows are written with <code>createAll</code>, in transactions of <code>transactionSize</code> rows. The data
+ * is added to the database of the <code>ConnectionBuilder</code>; {@link #main(String[])} wipes it first, like
+ * {@link SetUpDB}.
+ * <pre>
+ *     new SyntheticDataGenerator(42).patients(2000).caregivers(150).years(15).generate();
+ * </pre>
+ */
+public class SyntheticDataGenerator {
+
+    private static final String[] FIRST_NAMES = {"Anna", "Bernd", "Christa", "Dieter", "Elisabeth", "Franz",
+            "Gerda", "Hans", "Ilse", "Jürgen", "Karin", "Lothar", "Monika", "Norbert", "Oskar", "Petra", "Renate",
+            "Siegfried", "Ursula", "Werner", "Ahmet", "Fatma", "Jonas", "Luise", "Martina", "Seppl", "Gertrud"};
+    private static final String[] SURNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+            "Wagner", "Becker", "Schulz", "Hoffmann", "Koch", "Richter", "Klein", "Wolf", "Neumann", "Schwarz",
+            "Zimmermann", "Braun", "Krüger", "Hartmann", "Yilmaz", "Franzen", "Gerdsen", "Herberger", "Neubauer"};
+    private static final String[][] TREATMENTS = {
+            {"Waschen", "Patient mit Waschlappen gewaschen und frisch angezogen."},
+            {"Waschen", "Waschen per Dusche auf einem Stuhl; Patient gewendet."},
+            {"Gespräch", "Patient ist unruhig und wird im Gespräch beruhigt."},
+            {"Spaziergang", "Spaziergang im Park, Patient döst im Rollstuhl ein."},
+            {"Physiotherapie", "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur."},
+            {"KG", "Massage der Extremitäten zur Verbesserung der Durchblutung."},
+            {"KG", "Lymphdrainage."},
+            {"Toilettengang", "Hilfe beim Toilettengang."},
+            {"Medikamentengabe", "Medikamente nach Plan verabreicht."},
+            {"Verbandswechsel", "Verband gewechselt, Wunde heilt gut."}
+    };
+    private static final int[] DURATIONS_MINUTES = {15, 30, 30, 45, 60, 90};
+
+    private final long seed;
+    private int patients = 100;
+    private int caregivers = 20;
+    private double treatmentsPerPatientPerYear = 50;
+    private int years = 10;
+    private double lockedFraction = 0.1;
+    private double deletedFraction = 0.05;
+    private LocalDate endDate = LocalDate.now();
+    private int transactionSize = 100_000;
+
+    /**
+     * @param seed Seed of the random data; the same seed and settings produce the same database.
+     */
+    public SyntheticDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public SyntheticDataGenerator patients(int patients) {
+        this.patients = requirePositive(patients, "patients");
+        return this;
+    }
+
+    public SyntheticDataGenerator caregivers(int caregivers) {
+        this.caregivers = requirePositive(caregivers, "caregivers");
+        return this;
+    }
+
+    /**
+     * @param treatmentsPerPatientPerYear Average number of treatments a patient gets per year of stay.
+     */
+    public SyntheticDataGenerator treatmentsPerPatientPerYear(double treatmentsPerPatientPerYear) {
+        if (!(treatmentsPerPatientPerYear >= 0)) {
+            throw new IllegalArgumentException("treatmentsPerPatientPerYear must not be negative");
+        }
+        this.treatmentsPerPatientPerYear = treatmentsPerPatientPerYear;
+        return this;
+    }
+
+    /**
+     * @param years Length of the history in years, ending at the end date.
+     */
+    public SyntheticDataGenerator years(int years) {
+        this.years = requirePositive(years, "years");
+        return this;
+    }
+
+    /**
+     * @param lockedFraction  Fraction of patients and caregivers with status <code>LOCKED</code>.
+     * @param deletedFraction Fraction of patients and caregivers with status <code>DELETED</code>.
+     */
+    public SyntheticDataGenerator statusFractions(double lockedFraction, double deletedFraction) {
+        if (!(lockedFraction >= 0 && deletedFraction >= 0 && lockedFraction + deletedFraction <= 1)) {
+            throw new IllegalArgumentException("Fractions must be between 0 and 1 and add up to at most 1");
+        }
+        this.lockedFraction = lockedFraction;
+        this.deletedFraction = deletedFraction;
+        return this;
+    }
+
+    /**
+     * @param endDate Last day of the history, today by default. Fixing it makes the data independent of the day it
+     *                is generated on.
+     */
+    public SyntheticDataGenerator endDate(LocalDate endDate) {
+        this.endDate = endDate;
+        return this;
+    }
+
+    /**
+     * @param transactionSize Number of treatments written per transaction.
+     */
+    public SyntheticDataGenerator transactionSize(int transactionSize) {
+        this.transactionSize = requirePositive(transactionSize, "transactionSize");
+        return this;
+    }
+
+    /**
+     * @return The expected number of treatments per patient with the current settings. The actual number varies
+     * with the seed by a few percent for more than a few hundred patients.
+     */
+    public double expectedTreatmentsPerPatient() {
+        // Active patients stay half of the history on average, the others leave halfway through their stay
+        double inactiveFraction = this.lockedFraction + this.deletedFraction;
+        double averageStayYears = this.years * ((1 - inactiveFraction) / 2 + inactiveFraction / 4);
+        return this.treatmentsPerPatientPerYear * averageStayYears;
+    }
+
+    /**
+     * Adds the generated patients, caregivers and treatments to the database.
+     *
+     * @return The number of generated rows.
+     * @throws SQLException If writing fails. Transactions that were committed before stay in the database.
+     */
+    public Summary generate() throws SQLException {
+        SplittableRandom random = new SplittableRandom(this.seed);
+        LocalDate startDate = this.endDate.minusYears(this.years);
+
+        long[] cids = generateCaregivers(random, startDate);
+        List<Stay> stays = generatePatients(random, startDate);
+        long treatments = generateTreatments(random, startDate, stays, cids);
+        System.out.println("Synthetische Daten erzeugt: " + stays.size() + " Patienten, " + cids.length
+                + " Pflegekräfte, " + treatments + " Behandlungen.");
+        return new Summary(stays.size(), cids.length, treatments);
+    }
+
+    private long[] generateCaregivers(SplittableRandom random, LocalDate startDate) throws SQLException {
+        List<Caregiver> list = new ArrayList<>(this.caregivers);
+        Set<String> usernames = new HashSet<>();
+        for (int i = 0; i < this.caregivers; i++) {
+            String firstName = pick(random, FIRST_NAMES);
+            String surname = pick(random, SURNAMES);
+            String username = (firstName.charAt(0) + surname).toLowerCase();
+            for (int suffix = 2; !usernames.add(username); suffix++) {
+                username = (firstName.charAt(0) + surname).toLowerCase() + suffix;
+            }
+            list.add(new Caregiver(0, username, null, firstName, surname,
+                    String.format("017%08d", random.nextInt(100_000_000)), randomStatus(random),
+                    randomDate(random, startDate, this.endDate)));
+        }
+        return DaoFactory.getDaoFactory().createCaregiverDAO().createAll(list);
+    }
+
+    private List<Stay> generatePatients(SplittableRandom random, LocalDate startDate) throws SQLException {
+        List<Patient> list = new ArrayList<>(this.patients);
+        List<Stay> stays = new ArrayList<>(this.patients);
+        for (int i = 0; i < this.patients; i++) {
+            LocalDate admission = randomDate(random, startDate, this.endDate);
+            RecordStatus status = randomStatus(random);
+            // Locked and deleted patients have left the home, their status changed on the day they left
+            LocalDate departure = status == RecordStatus.ACTIVE ? this.endDate
+                    : randomDate(random, admission, this.endDate);
+            LocalDate dateOfBirth = admission.minusYears(65 + random.nextInt(30)).minusDays(random.nextInt(365));
+            list.add(new Patient(0, pick(random, FIRST_NAMES), pick(random, SURNAMES), dateOfBirth,
+                    String.valueOf(1 + random.nextInt(5)),
+                    String.format("%d%02d", random.nextInt(4), 1 + random.nextInt(30)), status,
+                    status == RecordStatus.ACTIVE ? admission : departure));
+            stays.add(new Stay(admission, departure, status));
+        }
+        PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
+        long[] pids = dao.createAll(list);
+        for (int i = 0; i < pids.length; i++) {
+            stays.get(i).pid = pids[i];
+        }
+        return stays;
+    }
+
+    private long generateTreatments(SplittableRandom random, LocalDate startDate, List<Stay> stays, long[] cids)
+            throws SQLException {
+        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        List<Treatment> pending = new ArrayList<>();
+        List<Treatment> month = new ArrayList<>();
+        long count = 0;
+        for (LocalDate monthStart = startDate; monthStart.isBefore(this.endDate); monthStart = monthStart.plusMonths(1)) {
+            LocalDate monthEnd = monthStart.plusMonths(1).isAfter(this.endDate) ? this.endDate
+                    : monthStart.plusMonths(1);
+            for (Stay stay : stays) {
+                LocalDate from = stay.admission.isAfter(monthStart) ? stay.admission : monthStart;
+                LocalDate to = stay.departure.isBefore(monthEnd) ? stay.departure : monthEnd;
+                if (!from.isBefore(to)) {
+                    continue;
+                }
+                double expected = this.treatmentsPerPatientPerYear * ChronoUnit.DAYS.between(from, to) / 365.0;
+                int treatments = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+                for (int i = 0; i < treatments; i++) {
+                    month.add(createTreatment(random, stay, cids, randomDate(random, from, to)));
+                }
+            }
+            month.sort((first, second) -> first.getDate().compareTo(second.getDate()));
+            pending.addAll(month);
+            month.clear();
+            if (pending.size() >= this.transactionSize) {
+                count += write(dao, pending);
+            }
+        }
+        return count + write(dao, pending);
+    }
+
+    private Treatment createTreatment(SplittableRandom random, Stay stay, long[] cids, LocalDate date) {
+        String[] treatment = TREATMENTS[random.nextInt(TREATMENTS.length)];
+        LocalTime begin = LocalTime.of(6 + random.nextInt(14), 5 * random.nextInt(12));
+        // Begins end at 19:55, so the treatment ends on the same day
+        LocalTime end = begin.plusMinutes(DURATIONS_MINUTES[random.nextInt(DURATIONS_MINUTES.length)]);
+        return new Treatment(0, stay.pid, cids[random.nextInt(cids.length)], date, begin, end, treatment[0],
+                treatment[1], stay.status, stay.status == RecordStatus.ACTIVE ? date : stay.departure);
+    }
+
+    private static int write(TreatmentDao dao, List<Treatment> treatments) throws SQLException {
+        int count = treatments.size();
+        dao.createAll(treatments);
+        treatments.clear();
+        return count;
+    }
+
+    private RecordStatus randomStatus(SplittableRandom random) {
+        double value = random.nextDouble();
+        if (value < this.deletedFraction) {
+            return RecordStatus.DELETED;
+        }
+        return value < this.deletedFraction + this.lockedFraction ? RecordStatus.LOCKED : RecordStatus.ACTIVE;
+    }
+
+    /**
+     * @return A random day in <code>[from, to)</code>, or <code>from</code> if the range is empty.
+     */
+    private static LocalDate randomDate(SplittableRandom random, LocalDate from, LocalDate to) {
+        long days = ChronoUnit.DAYS.between(from, to);
+        return days <= 0 ? from : from.plusDays(random.nextLong(days));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    /**
+     * Number of rows a run of the generator has written.
+     */
+    public record Summary(int patients, int caregivers, long treatments) {
+    }
+
+    private static final class Stay {
+
+        private final LocalDate admission;
+        private final LocalDate departure;
+        private final RecordStatus status;
+        private long pid;
+
+        private Stay(LocalDate admission, LocalDate departure, RecordStatus status) {
+            this.admission = admission;
+            this.departure = departure;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Replaces the patients, caregivers and treatments of the database with generated ones. The settings are read
+     * from the system properties <code>nhplus.generator.patients</code>, <code>.caregivers</code>,
+     * <code>.treatmentsPerYear</code>, <code>.years</code>, <code>.locked</code>, <code>.deleted</code> and
+     * <code>.seed</code>.
+     */
+    public static void main(String[] args) throws SQLException {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(getLongProperty("seed", 42))
+                .patients((int) getLongProperty("patients", 1000))
+                .caregivers((int) getLongProperty("caregivers", 50))
+                .treatmentsPerPatientPerYear(getDoubleProperty("treatmentsPerYear", 50))
+                .years((int) getLongProperty("years", 10))
+                .statusFractions(getDoubleProperty("locked", 0.1), getDoubleProperty("deleted", 0.05));
+        SetUpDB.wipeDb(ConnectionBuilder.getConnection());
+        SchemaMigrator.migrate();
+        generator.generate();
+        ConnectionBuilder.closeConnection();
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getProperty("nhplus.generator." + name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+
+    private static double getDoubleProperty(String name, double defaultValue) {
+        try {
+            return Double.parseDouble(System.getProperty("nhplus.generator." + name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+}
@@ -6,6 +6,11 @@ module de.hitec.nhplus {
     requires java.sql;
     requires org.xerial.sqlitejdbc;
     requires java.desktop;
+    requires java.net.http;
+    requires jdk.httpserver;
+    requires java.management;
+    requires jdk.jfr;
+    requires org.slf4j;
 
     opens de.hitec.nhplus to javafx.fxml;
     opens de.hitec.nhplus.controller to javafx.fxml;
@@ -14,4 +19,5 @@ module de.hitec.nhplus {
     exports de.hitec.nhplus;
     exports de.hitec.nhplus.controller;
     exports de.hitec.nhplus.model;
+    exports de.hitec.nhplus.metrics;
 }
\ No newline at end of file
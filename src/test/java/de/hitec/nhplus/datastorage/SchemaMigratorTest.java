@@ -0,0 +1,177 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Migrates a temporary database and checks with <code>EXPLAIN QUERY PLAN</code> that the lookups of the DAOs use
+ * an index instead of scanning their table.
+ */
+class SchemaMigratorTest {
+
+    /**
+     * The statements of the DAOs that select rows by a condition, taken from the DAOs themselves. Reading a whole
+     * table, e.g. <code>SELECT * FROM patient</code>, is a scan by nature and therefore not listed. Statements that
+     * are generated for chunks of ids are checked with chunks of two.
+     */
+    private static final List<String> DAO_LOOKUPS = List.of(
+            PatientDao.READ_BY_ID_SQL,
+            PatientDao.FIND_BY_STATUS_SQL,
+            PatientDao.FIND_OLDER_THAN_SQL,
+            PatientDao.FIND_BORN_BEFORE_SQL,
+            PatientDao.READ_PAGE_SQL,
+            DaoImp.findIdsBeforeSql(PatientDao.TABLE, PatientDao.ID_COLUMN, PatientDao.ARCHIVING_DATE_COLUMN),
+            PatientDao.UPDATE_SQL,
+            DaoImp.transitionStatusSql(PatientDao.TABLE, PatientDao.ID_COLUMN, 2),
+            DaoImp.transitionStatusBeforeSql(PatientDao.TABLE, PatientDao.ID_COLUMN,
+                    PatientDao.ARCHIVING_DATE_COLUMN),
+            PatientDao.DELETE_SQL,
+
+            CaregiverDaoImpl.READ_BY_ID_SQL,
+            CaregiverDaoImpl.FIND_BY_STATUS_SQL,
+            CaregiverDaoImpl.FIND_OLDER_THAN_SQL,
+            CaregiverDaoImpl.FIND_BY_USERNAME_SQL,
+            CaregiverDaoImpl.COUNT_BY_USERNAME_SQL,
+            CaregiverDaoImpl.READ_PASSWORD_SQL,
+            DaoImp.readColumnByIdsSql(CaregiverDaoImpl.TABLE, CaregiverDaoImpl.ID_COLUMN, "password", 2),
+            DaoImp.findIdsBeforeSql(CaregiverDaoImpl.TABLE, CaregiverDaoImpl.ID_COLUMN,
+                    CaregiverDaoImpl.ARCHIVING_DATE_COLUMN),
+            CaregiverDaoImpl.UPDATE_SQL,
+            CaregiverDaoImpl.REPLACE_PASSWORD_SQL,
+            DaoImp.transitionStatusSql(CaregiverDaoImpl.TABLE, CaregiverDaoImpl.ID_COLUMN, 2),
+            DaoImp.transitionStatusBeforeSql(CaregiverDaoImpl.TABLE, CaregiverDaoImpl.ID_COLUMN,
+                    CaregiverDaoImpl.ARCHIVING_DATE_COLUMN),
+            CaregiverDaoImpl.DELETE_SQL,
+
+            TreatmentDao.READ_BY_ID_SQL,
+            TreatmentDao.FIND_BY_PATIENT_SQL,
+            TreatmentDao.FIND_BY_CAREGIVER_SQL,
+            TreatmentDao.FIND_BY_STATUS_SQL,
+            TreatmentDao.FIND_OLDER_THAN_SQL,
+            TreatmentDao.READ_PAGE_SQL,
+            DaoImp.findIdsBeforeSql(TreatmentDao.TABLE, TreatmentDao.ID_COLUMN, TreatmentDao.ARCHIVING_DATE_COLUMN),
+            TreatmentDao.UPDATE_SQL,
+            DaoImp.transitionStatusSql(TreatmentDao.TABLE, TreatmentDao.ID_COLUMN, 2),
+            DaoImp.transitionStatusBeforeSql(TreatmentDao.TABLE, TreatmentDao.ID_COLUMN,
+                    TreatmentDao.ARCHIVING_DATE_COLUMN),
+            TreatmentDao.DELETE_SQL,
+
+            UserDaoImpl.READ_BY_ID_SQL,
+            UserDaoImpl.FIND_BY_USERNAME_SQL,
+            UserDaoImpl.COUNT_BY_USERNAME_SQL,
+            UserDaoImpl.COUNT_BY_ROLE_SQL,
+            UserDaoImpl.READ_PASSWORD_SQL,
+            DaoImp.readColumnByIdsSql(UserDaoImpl.TABLE, UserDaoImpl.ID_COLUMN, "password", 2),
+            UserDaoImpl.FIND_WITH_LOCK_STATE_SQL,
+            UserDaoImpl.UPDATE_SQL,
+            UserDaoImpl.REPLACE_PASSWORD_SQL,
+            UserDaoImpl.UPDATE_LOCK_STATE_SQL,
+            UserDaoImpl.DELETE_SQL,
+
+            LoginLogDao.readPageSql(false, true, true),
+
+            ArchivingJobDao.READ_CHECKPOINT_SQL,
+            ArchivingJobDao.CLEAR_CHECKPOINT_SQL
+    );
+
+    private Path directory;
+
+    @BeforeEach
+    void useTemporaryDatabase() throws IOException {
+        this.directory = Files.createTempDirectory("nhplus-test");
+        System.setProperty("nhplus.db.path", this.directory.resolve("test.db").toString());
+    }
+
+    @AfterEach
+    void closeDatabase() throws IOException {
+        ConnectionBuilder.closeConnection();
+        System.clearProperty("nhplus.db.path");
+        try (var files = Files.walk(this.directory)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void migratesNewDatabaseToLatestVersion() throws SQLException {
+        SchemaMigrator.migrate();
+
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getCurrentVersion());
+    }
+
+    @Test
+    void daoLookupsUseAnIndex() throws SQLException {
+        SchemaMigrator.migrate();
+
+        assertNoScans(ConnectionBuilder.getConnection());
+    }
+
+    /**
+     * Databases of older versions got <code>caregiver.username</code> from an <code>ALTER TABLE</code>, without the
+     * UNIQUE constraint and its index.
+     */
+    @Test
+    void daoLookupsUseAnIndexAfterUpgrade() throws SQLException {
+        try (Statement statement = ConnectionBuilder.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE caregiver (cid INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "firstname TEXT NOT NULL, surname TEXT NOT NULL, telephone TEXT NOT NULL)");
+            statement.execute("INSERT INTO caregiver (firstname, surname, telephone) VALUES ('Anna', 'Berg', '123')");
+        }
+
+        SchemaMigrator.migrate();
+
+        assertNoScans(ConnectionBuilder.getConnection());
+    }
+
+    /**
+     * The username filter of the login log is a substring match, which no index can answer. The page is read by
+     * walking the timestamp index, newest first, without sorting the matches.
+     */
+    @Test
+    void loginLogUsernameFilterWalksTimestampIndex() throws SQLException {
+        SchemaMigrator.migrate();
+
+        List<String> plan = explain(ConnectionBuilder.getConnection(), LoginLogDao.readPageSql(true, false, false));
+
+        assertEquals(List.of("SCAN login_log USING INDEX idx_login_log_timestamp"), plan);
+    }
+
+    private static void assertNoScans(Connection connection) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        for (String sql : DAO_LOOKUPS) {
+            for (String line : explain(connection, sql)) {
+                if (line.startsWith("SCAN")) {
+                    scans.add(sql + "\n    " + line);
+                }
+            }
+        }
+        assertTrue(scans.isEmpty(), "Abfragen ohne Index:\n" + String.join("\n", scans));
+    }
+
+    private static List<String> explain(Connection connection, String sql) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                lines.add(result.getString("detail"));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,79 @@
+package de.hitec.nhplus.datastorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks out and hands back statements of an in-memory database.
+ */
+class StatementCacheTest {
+
+    private static final String SQL = "SELECT 1";
+
+    private Connection connection;
+
+    @BeforeEach
+    void openConnection() throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    void closeConnection() throws SQLException {
+        StatementCache.discard(this.connection);
+        this.connection.close();
+    }
+
+    @Test
+    void reusesReleasedStatement() throws SQLException {
+        StatementCache cache = StatementCache.forConnection(this.connection);
+        PreparedStatement statement = cache.acquire(SQL);
+
+        assertTrue(cache.release(statement));
+
+        assertSame(statement, cache.acquire(SQL));
+    }
+
+    @Test
+    void doesNotShareCheckedOutStatement() throws SQLException {
+        StatementCache cache = StatementCache.forConnection(this.connection);
+
+        assertNotSame(cache.acquire(SQL), cache.acquire(SQL));
+    }
+
+    @Test
+    void findDoesNotCreateCache() {
+        assertNull(StatementCache.find(this.connection));
+
+        StatementCache cache = StatementCache.forConnection(this.connection);
+
+        assertSame(cache, StatementCache.find(this.connection));
+    }
+
+    @Test
+    void discardedCacheClosesReleasedStatementAndStaysGone() throws SQLException {
+        StatementCache cache = StatementCache.forConnection(this.connection);
+        PreparedStatement idle = cache.acquire(SQL);
+        cache.release(idle);
+        PreparedStatement checkedOut = cache.acquire("SELECT 2");
+
+        StatementCache.discard(this.connection);
+
+        assertTrue(idle.isClosed());
+        assertFalse(checkedOut.isClosed());
+        assertTrue(cache.release(checkedOut));
+        assertTrue(checkedOut.isClosed());
+        assertNull(StatementCache.find(this.connection));
+    }
+}
@@ -0,0 +1,314 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.TransactionWork;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.model.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives an {@link AccountLockService} with a manual clock and an in-memory user DAO. The background thread is not
+ * started; the tests call {@link AccountLockService#tick()} themselves.
+ */
+class AccountLockServiceTest {
+
+    private static final long START = 1_000_000_000L;
+    private static final long LOCKOUT_MILLIS =
+            TimeUnit.MINUTES.toMillis(AccountLockService.getLockoutDurationMinutes());
+
+    private final InMemoryUserDao userDao = new InMemoryUserDao();
+    private long now = START;
+
+    @AfterEach
+    void clearMaxEntries() {
+        System.clearProperty("nhplus.lockout.maxEntries");
+    }
+
+    @Test
+    void locksAccountAtMaxFailedAttempts() {
+        AccountLockService service = createService();
+
+        for (int i = 1; i < AccountLockService.getMaxFailedAttempts(); i++) {
+            assertEquals(i, service.recordFailedAttempt("anna", null));
+            assertFalse(service.isAccountLocked("anna"));
+        }
+        service.recordFailedAttempt("anna", null);
+
+        assertTrue(service.isAccountLocked("anna"));
+        assertEquals(LOCKOUT_MILLIS, service.getRemainingLockMillis("anna", null));
+        assertFalse(service.isAccountLocked("bert"));
+    }
+
+    @Test
+    void lockEndsAfterLockoutDuration() {
+        AccountLockService service = createService();
+        lock(service, "anna");
+
+        this.now += LOCKOUT_MILLIS - 1;
+        assertTrue(service.isAccountLocked("anna"));
+        this.now += 1;
+        assertFalse(service.isAccountLocked("anna"));
+
+        assertEquals(1, service.recordFailedAttempt("anna", null));
+    }
+
+    @Test
+    void locksAddressThatTriesManyUsernames() {
+        AccountLockService service = createService();
+
+        for (int i = 0; i < 10; i++) {
+            service.recordFailedAttempt("user" + i, "10.0.0.1");
+        }
+
+        assertTrue(service.isAddressLocked("10.0.0.1"));
+        assertFalse(service.isAddressLocked("10.0.0.2"));
+        assertFalse(service.isAccountLocked("user0"));
+    }
+
+    @Test
+    void successfulLoginResetsCounter() {
+        AccountLockService service = createService();
+        service.recordFailedAttempt("anna", null);
+
+        service.recordSuccessfulLogin("anna");
+
+        assertEquals(0, service.getFailedAttempts("anna"));
+        assertEquals(1, service.recordFailedAttempt("anna", null));
+    }
+
+    @Test
+    void tickRemovesExpiredCountersAndWritesThem() {
+        AccountLockService service = createService();
+        this.userDao.add("anna");
+        service.recordFailedAttempt("anna", null);
+
+        service.tick();
+        assertEquals(1, this.userDao.find("anna").getFailedAttempts());
+
+        this.now = START + LOCKOUT_MILLIS - 1000;
+        service.tick();
+        assertEquals(1, service.getFailedAttempts("anna"));
+
+        this.now = START + LOCKOUT_MILLIS + 1000;
+        service.tick();
+        assertEquals(0, service.getFailedAttempts("anna"));
+        assertEquals(0, this.userDao.find("anna").getFailedAttempts());
+    }
+
+    @Test
+    void lockedCounterExpiresOneLockoutAfterItsLock() {
+        AccountLockService service = createService();
+        lock(service, "anna");
+
+        this.now = START + 2 * LOCKOUT_MILLIS - 1000;
+        service.tick();
+        assertEquals(AccountLockService.getMaxFailedAttempts(), service.getFailedAttempts("anna"));
+
+        this.now = START + 2 * LOCKOUT_MILLIS + 1000;
+        service.tick();
+        assertEquals(0, service.getFailedAttempts("anna"));
+    }
+
+    @Test
+    void fullMapEvictsCountersThatExpireNext() {
+        System.setProperty("nhplus.lockout.maxEntries", "2");
+        AccountLockService service = createService();
+        service.recordFailedAttempt("anna", null);
+        this.now += 2000;
+        service.tick();
+        service.recordFailedAttempt("bert", null);
+
+        service.recordFailedAttempt("carl", null);
+
+        assertEquals(0, service.getFailedAttempts("anna"));
+        assertEquals(1, service.getFailedAttempts("bert"));
+        assertEquals(1, service.getFailedAttempts("carl"));
+    }
+
+    @Test
+    void fullMapKeepsLockedCounters() {
+        System.setProperty("nhplus.lockout.maxEntries", "1");
+        AccountLockService service = createService();
+        lock(service, "anna");
+
+        service.recordFailedAttempt("bert", null);
+
+        assertTrue(service.isAccountLocked("anna"));
+        assertEquals(1, service.getFailedAttempts("bert"));
+    }
+
+    @Test
+    void restoresStoredLocks() {
+        User anna = this.userDao.add("anna");
+        anna.setFailedAttempts(AccountLockService.getMaxFailedAttempts());
+        anna.setLockUntil(START + 60_000);
+
+        AccountLockService service = createService();
+
+        assertTrue(service.isAccountLocked("anna"));
+        assertEquals(60_000, service.getRemainingLockMillis("anna", null));
+    }
+
+    @Test
+    void unlockRemovesLockAtOnce() {
+        AccountLockService service = createService();
+        this.userDao.add("anna");
+        lock(service, "anna");
+        service.tick();
+        assertTrue(this.userDao.find("anna").getLockUntil() > START);
+
+        assertTrue(service.unlockAccount("anna"));
+
+        assertFalse(service.isAccountLocked("anna"));
+        assertEquals(0, this.userDao.find("anna").getLockUntil());
+        assertFalse(service.unlockAccount("nobody"));
+    }
+
+    private AccountLockService createService() {
+        DaoFactory factory = new DaoFactory() {
+            @Override
+            public UserDao createUserDAO() {
+                return AccountLockServiceTest.this.userDao;
+            }
+
+            @Override
+            public <R> R inTransaction(TransactionWork<R> work) throws SQLException {
+                return work.execute(null);
+            }
+        };
+        return new AccountLockService(factory, () -> this.now);
+    }
+
+    private static void lock(AccountLockService service, String username) {
+        for (int i = 0; i < AccountLockService.getMaxFailedAttempts(); i++) {
+            service.recordFailedAttempt(username, null);
+        }
+    }
+
+    /**
+     * Keeps the lock states of its users in memory. Only the methods the lock service uses are implemented.
+     */
+    private static final class InMemoryUserDao implements UserDao {
+
+        private final Map<String, User> users = new HashMap<>();
+
+        User add(String username) {
+            User user = new User(username, "hash", UserRole.CAREGIVER);
+            this.users.put(username, user);
+            return user;
+        }
+
+        User find(String username) {
+            return this.users.get(username);
+        }
+
+        @Override
+        public User findByUsername(String username) {
+            return this.users.get(username);
+        }
+
+        @Override
+        public List<User> findWithLockState(long now) {
+            List<User> found = new ArrayList<>();
+            for (User user : this.users.values()) {
+                if (user.getFailedAttempts() > 0 || user.getLockUntil() > now) {
+                    found.add(user);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public void updateLockState(String username, int failedAttempts, long lockUntil) {
+            User user = this.users.get(username);
+            if (user != null) {
+                user.setFailedAttempts(failedAttempts);
+                user.setLockUntil(lockUntil);
+            }
+        }
+
+        @Override
+        public User authenticate(String username, String password) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public User createUser(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ArrayList<User> readAllUsers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public User readUser(long uid) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateUser(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long create(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public User read(long key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<User> readAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteById(long key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long[] createAll(Collection<User> objects) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateAll(Collection<User> objects) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteAllById(long[] keys) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.hitec.nhplus.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks when the keys of a {@link TimingWheel} with 8 slots of one second come due.
+ */
+class TimingWheelTest {
+
+    private static final int SLOTS = 8;
+    private static final long TICK = 1000;
+    private static final long START = 1_000_000_000L;
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(SLOTS, TICK, START);
+
+    @Test
+    void returnsKeyInTheTickAfterItsDeadline() {
+        this.wheel.schedule("a", START + 2500);
+
+        assertTrue(this.wheel.advance(START + 2999).isEmpty());
+        assertEquals(List.of("a"), this.wheel.advance(START + 3000));
+        assertEquals(0, this.wheel.size());
+    }
+
+    @Test
+    void returnsKeyBeyondOneRevolutionOncePerRevolutionUntilItIsDue() {
+        long deadline = START + 20_000;
+        this.wheel.schedule("far", deadline);
+
+        assertTrue(this.wheel.advance(START + 7000).isEmpty());
+        assertEquals(List.of("far"), this.wheel.advance(START + 8000));
+
+        this.wheel.schedule("far", deadline);
+        assertTrue(this.wheel.advance(START + 15_000).isEmpty());
+        assertEquals(List.of("far"), this.wheel.advance(START + 16_000));
+
+        this.wheel.schedule("far", deadline);
+        assertTrue(this.wheel.advance(START + 20_999).isEmpty());
+        assertEquals(List.of("far"), this.wheel.advance(START + 21_000));
+    }
+
+    @Test
+    void keepsFirstDeadlineOfKeyThatIsScheduledAgain() {
+        this.wheel.schedule("a", START + 1000);
+        this.wheel.schedule("a", START + 5000);
+
+        assertEquals(1, this.wheel.size());
+        assertEquals(List.of("a"), this.wheel.advance(START + 2000));
+
+        this.wheel.schedule("a", START + 5000);
+        assertTrue(this.wheel.advance(START + 5999).isEmpty());
+        assertEquals(List.of("a"), this.wheel.advance(START + 6000));
+    }
+
+    @Test
+    void advanceOverGapReturnsEveryKeyOnce() {
+        this.wheel.schedule("a", START + 1000);
+        this.wheel.schedule("b", START + 4000);
+        this.wheel.schedule("c", START + 60_000);
+
+        List<String> due = this.wheel.advance(START + 100_000);
+
+        assertEquals(3, due.size());
+        assertTrue(due.containsAll(List.of("a", "b", "c")));
+        assertEquals(0, this.wheel.size());
+
+        this.wheel.schedule("d", START + 100_500);
+        assertTrue(this.wheel.advance(START + 100_999).isEmpty());
+        assertEquals(List.of("d"), this.wheel.advance(START + 101_000));
+    }
+
+    @Test
+    void advanceToEarlierTimeReturnsNothing() {
+        this.wheel.schedule("a", START + 1000);
+        this.wheel.advance(START + 500);
+
+        assertTrue(this.wheel.advance(START - 5000).isEmpty());
+        assertEquals(List.of("a"), this.wheel.advance(START + 2000));
+    }
+
+    @Test
+    void pollEarliestTakesOnlyTheNextSlot() {
+        this.wheel.schedule("a", START + 2000);
+        this.wheel.schedule("b", START + 2500);
+        this.wheel.schedule("c", START + 5000);
+
+        List<String> earliest = this.wheel.pollEarliest();
+
+        assertEquals(2, earliest.size());
+        assertTrue(earliest.containsAll(List.of("a", "b")));
+        assertEquals(List.of("c"), this.wheel.pollEarliest());
+        assertTrue(this.wheel.pollEarliest().isEmpty());
+    }
+}
@@ -0,0 +1,103 @@
+package de.hitec.nhplus.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the stored format of {@link PasswordHasher}, the legacy SHA-256 hashes and the rehash threshold. Uses a
+ * hasher with few iterations instead of the calibrated one.
+ */
+class PasswordHasherTest {
+
+    private static final int ITERATIONS = 1000;
+
+    private final PasswordHasher hasher = new PasswordHasher(ITERATIONS);
+
+    @Test
+    void verifiesOwnHash() {
+        String stored = this.hasher.hash("geheim");
+
+        assertTrue(stored.startsWith("pbkdf2$v1$" + ITERATIONS + "$"));
+        assertTrue(this.hasher.verify("geheim", stored));
+        assertFalse(this.hasher.verify("Geheim", stored));
+        assertFalse(this.hasher.verify(null, stored));
+    }
+
+    @Test
+    void saltsEveryHash() {
+        assertNotEquals(this.hasher.hash("geheim"), this.hasher.hash("geheim"));
+    }
+
+    @Test
+    void verifiesHashWithOtherIterationCount() {
+        String stored = new PasswordHasher(ITERATIONS / 2).hash("geheim");
+
+        assertTrue(this.hasher.verify("geheim", stored));
+    }
+
+    @Test
+    void rejectsMalformedHashes() {
+        String[] parts = this.hasher.hash("geheim").split("\\$");
+        String salt = parts[3];
+        String hash = parts[4];
+
+        assertFalse(this.hasher.verify("geheim", null));
+        assertFalse(this.hasher.verify("geheim", ""));
+        assertFalse(this.hasher.verify("geheim", "geheim"));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "1000", salt)));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "1000", salt, hash, "x")));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "bcrypt", "v1", "1000", salt, hash)));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v2", "1000", salt, hash)));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "tausend", salt, hash)));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "1000", "*salt*", hash)));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "1000", salt, "*hash*")));
+        assertFalse(this.hasher.verify("geheim", String.join("$", "pbkdf2", "v1", "1000", "", hash)));
+    }
+
+    @Test
+    void rejectsZeroOrNegativeIterations() {
+        String[] parts = this.hasher.hash("geheim").split("\\$");
+
+        for (String iterations : new String[]{"0", "-1000", String.valueOf(Integer.MIN_VALUE)}) {
+            String stored = String.join("$", "pbkdf2", "v1", iterations, parts[3], parts[4]);
+            assertFalse(this.hasher.verify("geheim", stored), iterations);
+            assertTrue(this.hasher.needsRehash(stored), iterations);
+        }
+    }
+
+    @Test
+    void verifiesLegacySha256Hashes() throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("geheim".getBytes(StandardCharsets.UTF_8));
+        String legacy = HexFormat.of().formatHex(digest);
+
+        assertTrue(this.hasher.verify("geheim", legacy));
+        assertTrue(this.hasher.verify("geheim", legacy.toUpperCase()));
+        assertFalse(this.hasher.verify("Geheim", legacy));
+        assertFalse(this.hasher.verify("geheim", legacy.substring(1)));
+        assertTrue(this.hasher.needsRehash(legacy));
+    }
+
+    @Test
+    void needsRehashBelowEightyPercentOfTheIterations() {
+        assertFalse(this.hasher.needsRehash(this.hasher.hash("geheim")));
+        assertFalse(this.hasher.needsRehash(new PasswordHasher(ITERATIONS * 2).hash("geheim")));
+        assertFalse(this.hasher.needsRehash(new PasswordHasher(ITERATIONS * 80 / 100).hash("geheim")));
+        assertTrue(this.hasher.needsRehash(new PasswordHasher(ITERATIONS * 80 / 100 - 1).hash("geheim")));
+    }
+
+    @Test
+    void needsRehashOfUnknownFormats() {
+        assertTrue(this.hasher.needsRehash(null));
+        assertTrue(this.hasher.needsRehash("pbkdf2$v1$"));
+        assertTrue(this.hasher.needsRehash("pbkdf2$v1$tausend$salt$hash"));
+        assertTrue(this.hasher.needsRehash("pbkdf2$v2$1000$salt$hash"));
+    }
+}